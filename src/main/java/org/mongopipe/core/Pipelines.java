@@ -67,16 +67,17 @@ public class Pipelines {
    * @returns runner for manually running pipeline without the need of @PipelineRun annotated interface methods.
    */
   public static PipelineRunner getRunner(String runConfigId) {
+    RunContext runContext = RunContextProvider.getContext(runConfigId);
     PipelineRunner pipelineRunner = RUNNER_MAP.get(runConfigId);
-    if (pipelineRunner != null) {
+    // A configuration registered again with the same id replaces the runner.
+    if (pipelineRunner != null && pipelineRunner.getRunContext() == runContext) {
       return pipelineRunner;
     }
-    RunContext runContext = RunContextProvider.getContext(runConfigId);
     if (runContext == null) {
       throw new MongoPipeConfigException("Create and register configuration first");
     }
     PipelineStore pipelineStore = STORE_MAP.get(runConfigId);
-    if (pipelineStore == null) {
+    if (pipelineStore == null || pipelineStore.getRunContext() != runContext) {
       pipelineStore = getStore(runConfigId);
     }
     pipelineRunner = new PipelineRunner(runContext, pipelineStore);
@@ -94,6 +95,14 @@ public class Pipelines {
 
 
 
+  /**
+   * Stops the background threads started by the registered configurations, e.g. the pipeline file watcher (MigrationConfig#watchEnabled).
+   * Can be used as a shutdown hook: <code>Runtime.getRuntime().addShutdownHook(new Thread(Pipelines::shutdown))</code>
+   */
+  public static void shutdown() {
+    RunContextProvider.closeAll();
+  }
+
   /**
    * Load pipelines for the configured pipeline source (default is to load them from classpath path) and update the ones that have changed.
    * This should be called at program startup.
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a @PipelineRun lookup by key whose calls made inside a BatchScope are merged into a single pipeline run, avoiding a query per key
+ * (N+1 queries). The key parameter is bound to the array of all the requested keys so the pipeline needs to match it with $in, and each
+ * caller gets the results having its key. E.g.:
+ *   <pre>
+ *    // Pipeline: [{ $match: { name: { $in: "${name}" } } }]
+ *    @PipelineRun("pizzasByName")
+ *    @Batchable(value = "name", resultKey = "name")
+ *    CompletableFuture&lt;List&lt;Pizza&gt;&gt; findByName(@Param("name") String name);
+ *
+ *    try (BatchScope scope = BatchScope.open()) {
+ *      CompletableFuture&lt;List&lt;Pizza&gt;&gt; cheese = store.findByName("Cheese");
+ *      CompletableFuture&lt;List&lt;Pizza&gt;&gt; vegan = store.findByName("Vegan");
+ *    } // Single pipeline run here, or on scope.dispatch().
+ *   </pre>
+ * The method needs to return a CompletableFuture (or CompletionStage) of the element or of a List of elements. Outside a scope each call
+ * runs immediately.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD})
+@Documented
+public @interface Batchable {
+
+  /**
+   * Name of the key parameter, as used in the pipeline (i.e. the @Param name or the parameter position when @Param is not used).
+   */
+  String value();
+
+  /**
+   * Field of the result documents holding the key, used to give each caller its results.
+   */
+  String resultKey() default "_id";
+}
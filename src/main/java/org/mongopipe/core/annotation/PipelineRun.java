@@ -32,4 +32,22 @@ public @interface PipelineRun {
    */
   String value();
 
+  /**
+   * Only for updateOne/updateMany pipelines. If true the concurrent calls are collected for a short window (MongoPipeConfig#microBatchWindowMs
+   * and MongoPipeConfig#microBatchMaxSize) and written together in one bulkWrite. The method needs to return void, Boolean or a
+   * CompletableFuture/CompletionStage of Void or Boolean, since the per call modified counts are not available in a bulk write.
+   */
+  boolean microBatch() default false;
+
+  /**
+   * Only for aggregate pipelines returning a List, Iterable or Stream. If true the results are cached in memory by the parameter values, the
+   * same as AggregateParams#cacheResults. See MongoPipeConfig#resultCacheConfig for the limits.
+   */
+  boolean cacheResults() default false;
+
+  /**
+   * Same as AggregateParams#fallbackSafe, the last known results are returned when the database fails or the circuit breaker is open.
+   */
+  boolean fallbackSafe() default false;
+
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.config;
+
+/**
+ * Configures the circuit breaker protecting the database calls, see CircuitBreaker. The circuit opens when, over the last "windowSize"
+ * calls (and at least "minimumCalls"), the rate of failed or slow calls reaches "failureRateThreshold". While open the calls fail fast, or
+ * are served from the last known results for the pipelines marked fallback safe (AggregateParams#fallbackSafe).
+ */
+public class CircuitBreakerConfig {
+  public static final int DEFAULT_WINDOW_SIZE = 100;
+  public static final int DEFAULT_MINIMUM_CALLS = 20;
+  public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+  public static final long DEFAULT_SLOW_CALL_DURATION_MS = 2000;
+  public static final long DEFAULT_OPEN_DURATION_MS = 10_000;
+
+  int windowSize = DEFAULT_WINDOW_SIZE;
+  int minimumCalls = DEFAULT_MINIMUM_CALLS;
+  double failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+  long slowCallDurationMs = DEFAULT_SLOW_CALL_DURATION_MS;
+  long openDurationMs = DEFAULT_OPEN_DURATION_MS;
+
+  private CircuitBreakerConfig(Builder builder) {
+    setWindowSize(builder.windowSize);
+    setMinimumCalls(builder.minimumCalls);
+    setFailureRateThreshold(builder.failureRateThreshold);
+    setSlowCallDurationMs(builder.slowCallDurationMs);
+    setOpenDurationMs(builder.openDurationMs);
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public int getWindowSize() {
+    return windowSize;
+  }
+
+  /**
+   * Number of the most recent calls considered for the failure rate.
+   */
+  public void setWindowSize(int windowSize) {
+    this.windowSize = windowSize;
+  }
+
+  public int getMinimumCalls() {
+    return minimumCalls;
+  }
+
+  /**
+   * Minimum number of recorded calls before the circuit can open.
+   */
+  public void setMinimumCalls(int minimumCalls) {
+    this.minimumCalls = minimumCalls;
+  }
+
+  public double getFailureRateThreshold() {
+    return failureRateThreshold;
+  }
+
+  /**
+   * Rate (0 to 1) of failed or slow calls opening the circuit.
+   */
+  public void setFailureRateThreshold(double failureRateThreshold) {
+    this.failureRateThreshold = failureRateThreshold;
+  }
+
+  public long getSlowCallDurationMs() {
+    return slowCallDurationMs;
+  }
+
+  /**
+   * Calls taking at least this long count as failed, 0 to count only the errors.
+   */
+  public void setSlowCallDurationMs(long slowCallDurationMs) {
+    this.slowCallDurationMs = slowCallDurationMs;
+  }
+
+  public long getOpenDurationMs() {
+    return openDurationMs;
+  }
+
+  /**
+   * Time the circuit stays open before letting a single probe call through. The circuit closes if the probe succeeds.
+   */
+  public void setOpenDurationMs(long openDurationMs) {
+    this.openDurationMs = openDurationMs;
+  }
+
+  public static final class Builder {
+    private int windowSize = DEFAULT_WINDOW_SIZE;
+    private int minimumCalls = DEFAULT_MINIMUM_CALLS;
+    private double failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+    private long slowCallDurationMs = DEFAULT_SLOW_CALL_DURATION_MS;
+    private long openDurationMs = DEFAULT_OPEN_DURATION_MS;
+
+    private Builder() {
+    }
+
+    public Builder windowSize(int val) {
+      windowSize = val;
+      return this;
+    }
+
+    public Builder minimumCalls(int val) {
+      minimumCalls = val;
+      return this;
+    }
+
+    public Builder failureRateThreshold(double val) {
+      failureRateThreshold = val;
+      return this;
+    }
+
+    public Builder slowCallDurationMs(long val) {
+      slowCallDurationMs = val;
+      return this;
+    }
+
+    public Builder openDurationMs(long val) {
+      openDurationMs = val;
+      return this;
+    }
+
+    public CircuitBreakerConfig build() {
+      return new CircuitBreakerConfig(this);
+    }
+  }
+}
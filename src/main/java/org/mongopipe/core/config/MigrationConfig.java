@@ -18,12 +18,48 @@ package org.mongopipe.core.config;
 
 public class MigrationConfig {
   public static final String DEFAULT_PATH = "pipelines";
+  public static final long DEFAULT_LOCK_LEASE_MS = 30_000;
+  public static final long DEFAULT_LOCK_WAIT_TIMEOUT_MS = 5 * 60_000;
+  public static final long DEFAULT_LOCK_POLL_MS = 1_000;
+  public static final long DEFAULT_WATCH_DEBOUNCE_MS = 500;
+  public static final String DEFAULT_BUNDLE_PATH = "mongopipe-pipelines.bundle";
+
+  /**
+   * What an instance does when the migration lock is held by another instance.
+   */
+  public enum FollowerMode {
+    /**
+     * Wait for the other instance to complete the migration (or for its lease to expire and take over).
+     */
+    WAIT,
+    /**
+     * Skip the migration and continue the startup.
+     */
+    SKIP
+  }
+
   boolean enabled;
   String pipelinesPath = DEFAULT_PATH;
+  boolean lockEnabled = true;
+  long lockLeaseMs = DEFAULT_LOCK_LEASE_MS;
+  long lockWaitTimeoutMs = DEFAULT_LOCK_WAIT_TIMEOUT_MS;
+  long lockPollMs = DEFAULT_LOCK_POLL_MS;
+  FollowerMode followerMode = FollowerMode.WAIT;
+  boolean watchEnabled;
+  long watchDebounceMs = DEFAULT_WATCH_DEBOUNCE_MS;
+  String bundlePath = DEFAULT_BUNDLE_PATH;
 
   private MigrationConfig(Builder builder) {
     setEnabled(builder.enabled);
     setPipelinesPath(builder.pipelinesPath);
+    setLockEnabled(builder.lockEnabled);
+    setLockLeaseMs(builder.lockLeaseMs);
+    setLockWaitTimeoutMs(builder.lockWaitTimeoutMs);
+    setLockPollMs(builder.lockPollMs);
+    setFollowerMode(builder.followerMode);
+    setWatchEnabled(builder.watchEnabled);
+    setWatchDebounceMs(builder.watchDebounceMs);
+    setBundlePath(builder.bundlePath);
   }
 
   public static Builder builder() {
@@ -53,10 +89,107 @@ public class MigrationConfig {
     this.pipelinesPath = pipelinesPath;
   }
 
+  public boolean isLockEnabled() {
+    return lockEnabled;
+  }
+
+  /**
+   * If enabled (default) then when multiple instances start at the same time only the one holding the migration lock runs the migration.
+   * The lock is a lease document in the status collection, renewed periodically while the migration runs.
+   */
+  public void setLockEnabled(boolean lockEnabled) {
+    this.lockEnabled = lockEnabled;
+  }
+
+  public long getLockLeaseMs() {
+    return lockLeaseMs;
+  }
+
+  /**
+   * Duration of the migration lock lease. If the instance holding the lock dies, another instance can take over after the lease expires.
+   * The lease is renewed every third of this duration, it needs to be well above the clock differences between instances.
+   */
+  public void setLockLeaseMs(long lockLeaseMs) {
+    this.lockLeaseMs = lockLeaseMs;
+  }
+
+  public long getLockWaitTimeoutMs() {
+    return lockWaitTimeoutMs;
+  }
+
+  /**
+   * Maximum time to wait in {@link FollowerMode#WAIT} mode for another instance to complete the migration.
+   */
+  public void setLockWaitTimeoutMs(long lockWaitTimeoutMs) {
+    this.lockWaitTimeoutMs = lockWaitTimeoutMs;
+  }
+
+  public long getLockPollMs() {
+    return lockPollMs;
+  }
+
+  /**
+   * How often a waiting instance checks the migration status and the lock.
+   */
+  public void setLockPollMs(long lockPollMs) {
+    this.lockPollMs = lockPollMs;
+  }
+
+  public FollowerMode getFollowerMode() {
+    return followerMode;
+  }
+
+  public void setFollowerMode(FollowerMode followerMode) {
+    this.followerMode = followerMode;
+  }
+
+  public boolean isWatchEnabled() {
+    return watchEnabled;
+  }
+
+  /**
+   * If enabled then after the migration the pipelines directory is watched for changes and the changed pipeline files are migrated
+   * without a restart. Works only for pipelines located on the file system (not in jars), so mainly useful during development.
+   */
+  public void setWatchEnabled(boolean watchEnabled) {
+    this.watchEnabled = watchEnabled;
+  }
+
+  public long getWatchDebounceMs() {
+    return watchDebounceMs;
+  }
+
+  /**
+   * Quiet period after the last file change before migrating the changed files, so that a burst of changes is migrated once.
+   */
+  public void setWatchDebounceMs(long watchDebounceMs) {
+    this.watchDebounceMs = watchDebounceMs;
+  }
+
+  public String getBundlePath() {
+    return bundlePath;
+  }
+
+  /**
+   * Classpath path of the precompiled pipeline bundle (see PipelineBundleCompiler). If found it is used instead of scanning the
+   * pipelinesPath. Set to null to always use the pipeline files.
+   */
+  public void setBundlePath(String bundlePath) {
+    this.bundlePath = bundlePath;
+  }
+
 
   public static final class Builder {
     private boolean enabled = true;
     private String pipelinesPath = DEFAULT_PATH;
+    private boolean lockEnabled = true;
+    private long lockLeaseMs = DEFAULT_LOCK_LEASE_MS;
+    private long lockWaitTimeoutMs = DEFAULT_LOCK_WAIT_TIMEOUT_MS;
+    private long lockPollMs = DEFAULT_LOCK_POLL_MS;
+    private FollowerMode followerMode = FollowerMode.WAIT;
+    private boolean watchEnabled;
+    private long watchDebounceMs = DEFAULT_WATCH_DEBOUNCE_MS;
+    private String bundlePath = DEFAULT_BUNDLE_PATH;
 
     private Builder() {
     }
@@ -71,6 +204,46 @@ public class MigrationConfig {
       return this;
     }
 
+    public Builder lockEnabled(boolean val) {
+      lockEnabled = val;
+      return this;
+    }
+
+    public Builder lockLeaseMs(long val) {
+      lockLeaseMs = val;
+      return this;
+    }
+
+    public Builder lockWaitTimeoutMs(long val) {
+      lockWaitTimeoutMs = val;
+      return this;
+    }
+
+    public Builder lockPollMs(long val) {
+      lockPollMs = val;
+      return this;
+    }
+
+    public Builder followerMode(FollowerMode val) {
+      followerMode = val;
+      return this;
+    }
+
+    public Builder watchEnabled(boolean val) {
+      watchEnabled = val;
+      return this;
+    }
+
+    public Builder watchDebounceMs(long val) {
+      watchDebounceMs = val;
+      return this;
+    }
+
+    public Builder bundlePath(String val) {
+      bundlePath = val;
+      return this;
+    }
+
     public MigrationConfig build() {
       return new MigrationConfig(this);
     }
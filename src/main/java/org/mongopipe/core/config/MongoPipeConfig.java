@@ -20,14 +20,35 @@ import com.mongodb.client.MongoClient;
 import org.mongopipe.core.runner.context.RunContext;
 import org.mongopipe.core.runner.context.RunContextProvider;
 
+import java.util.concurrent.Executor;
+
 /**
  * Library main configuration.
  * NOTE: Multiple configurations can coexist with different "id" field allowing the execution of pipelines on multiple databases.
  */
 public class MongoPipeConfig {
+
+  /**
+   * Kind of threads used by the default async executor.
+   */
+  public enum ExecutorMode {
+    /**
+     * A cached pool of platform (daemon) threads.
+     */
+    PLATFORM,
+    /**
+     * A new virtual thread per call, allowing thousands of concurrent blocking calls. Requires running on Java 21+, otherwise falls back on
+     * PLATFORM. A virtual thread blocked inside a "synchronized" block pins its carrier thread (until Java 24), so avoid database calls
+     * inside "synchronized" in your own code; older driver versions may also pin inside their connection pool.
+     */
+    VIRTUAL
+  }
   public static final String DEFAULT_STORE_COLLECTION = "pipeline_store";
   public static final String DEFAULT_HISTORY_COLLECTION = "pipeline_store_history";
   public static final String DEFAULT_STATUS_COLLECTION = "pipeline_status";
+  public static final long DEFAULT_MICRO_BATCH_WINDOW_MS = 2;
+  public static final int DEFAULT_MICRO_BATCH_MAX_SIZE = 500;
+  public static final String DEFAULT_MIGRATION_STATUS_COLLECTION = "pipeline_migration_status";
 
   /**
    * Connection string URI for the Mongo database.
@@ -63,7 +84,29 @@ public class MongoPipeConfig {
 
   protected String storeHistoryCollection = DEFAULT_HISTORY_COLLECTION;
 
+  /**
+   * If "true" (default) the history is written asynchronously in batches, so that pipeline updates (e.g. migrations) are not slowed down.
+   * Use PipelineStore#flushHistory() to wait for the pending writes.
+   */
+  protected boolean storeHistoryAsync = true;
+
+  /**
+   * If greater than 0 then archived pipeline versions are removed by MongoDB (TTL index) after this number of seconds.
+   */
+  protected long storeHistoryTtlSeconds;
+
+  /**
+   * If greater than 0 then only the latest given number of archived versions are kept for each pipeline.
+   */
+  protected int storeHistoryMaxVersions;
+
   protected String statusCollection = DEFAULT_STATUS_COLLECTION;
+
+  /**
+   * Name of collection keeping the migration status of each pipeline, one document per pipeline.
+   */
+  protected String migrationStatusCollection = DEFAULT_MIGRATION_STATUS_COLLECTION;
+
   /**
    * If true then store provider should use local caching of the pipelines instead of hitting the database each time.
    * By default is disabled meaning it will read from the database the pipeline before each execution.
@@ -78,6 +121,53 @@ public class MongoPipeConfig {
    */
   protected String scanPackage;
 
+  /**
+   * Executor running the asynchronous pipeline calls (PipelineRunner#runAsync and @Store methods returning CompletableFuture or
+   * CompletionStage). If not provided a daemon thread pool is created on first use.
+   */
+  protected Executor asyncExecutor;
+
+  /**
+   * Threads of the default async executor, used when "asyncExecutor" is not provided.
+   */
+  protected ExecutorMode asyncExecutorMode = ExecutorMode.PLATFORM;
+
+  /**
+   * For micro batched updates (@PipelineRun#microBatch): maximum time the first update of a batch waits for others to join.
+   */
+  protected long microBatchWindowMs = DEFAULT_MICRO_BATCH_WINDOW_MS;
+
+  /**
+   * For micro batched updates (@PipelineRun#microBatch): a batch is written as soon as it has this number of updates.
+   */
+  protected int microBatchMaxSize = DEFAULT_MICRO_BATCH_MAX_SIZE;
+
+  /**
+   * Limits of the aggregate result cache, used only by the pipelines enabling it (AggregateParams#cacheResults or
+   * &#64;PipelineRun#cacheResults).
+   */
+  protected ResultCacheConfig resultCacheConfig;
+
+  /**
+   * If true, identical concurrent runs of an aggregate pipeline (same pipeline version, parameters and result type) returning a List are
+   * sent only once to the database, the other callers wait for its results. See SingleFlight. Stream and Iterable results are not
+   * deduplicated, since sharing them would require reading the whole cursor in memory, so they keep being read lazily from the cursor.
+   * Runs of the pipelines caching their results (AggregateParams#cacheResults) are always deduplicated on cache misses, whatever the
+   * result type.
+   */
+  protected boolean singleFlightEnabled;
+
+  /**
+   * If provided, the database calls of the pipeline runs go through a circuit breaker. See CircuitBreaker.
+   */
+  protected CircuitBreakerConfig circuitBreakerConfig;
+
+  /**
+   * If provided, the given reference collections are kept in memory and the $lookup stages against them are joined in the JVM. See
+   * ReplicatedCollections.
+   */
+  protected ReplicationConfig replicationConfig;
+
   private MongoPipeConfig(Builder builder) {
     setUri(builder.uri);
     setMongoClient(builder.mongoClient);
@@ -86,10 +176,22 @@ public class MongoPipeConfig {
     setStoreCollection(builder.storeCollection);
     setStoreHistoryEnabled(builder.storeHistoryEnabled);
     setStoreHistoryCollection(builder.storeHistoryCollection);
+    setStoreHistoryAsync(builder.storeHistoryAsync);
+    setStoreHistoryTtlSeconds(builder.storeHistoryTtlSeconds);
+    setStoreHistoryMaxVersions(builder.storeHistoryMaxVersions);
     setStatusCollection(builder.statusCollection);
+    setMigrationStatusCollection(builder.migrationStatusCollection);
     setStoreCacheEnabled(builder.storeCacheEnabled);
     setMigrationConfig(builder.migrationConfig);
     setScanPackage(builder.scanPackage);
+    setAsyncExecutor(builder.asyncExecutor);
+    setAsyncExecutorMode(builder.asyncExecutorMode);
+    setMicroBatchWindowMs(builder.microBatchWindowMs);
+    setMicroBatchMaxSize(builder.microBatchMaxSize);
+    setResultCacheConfig(builder.resultCacheConfig);
+    setSingleFlightEnabled(builder.singleFlightEnabled);
+    setCircuitBreakerConfig(builder.circuitBreakerConfig);
+    setReplicationConfig(builder.replicationConfig);
   }
 
   public static Builder builder() {
@@ -152,6 +254,30 @@ public class MongoPipeConfig {
     this.storeHistoryCollection = storeHistoryCollection;
   }
 
+  public boolean isStoreHistoryAsync() {
+    return storeHistoryAsync;
+  }
+
+  public void setStoreHistoryAsync(boolean storeHistoryAsync) {
+    this.storeHistoryAsync = storeHistoryAsync;
+  }
+
+  public long getStoreHistoryTtlSeconds() {
+    return storeHistoryTtlSeconds;
+  }
+
+  public void setStoreHistoryTtlSeconds(long storeHistoryTtlSeconds) {
+    this.storeHistoryTtlSeconds = storeHistoryTtlSeconds;
+  }
+
+  public int getStoreHistoryMaxVersions() {
+    return storeHistoryMaxVersions;
+  }
+
+  public void setStoreHistoryMaxVersions(int storeHistoryMaxVersions) {
+    this.storeHistoryMaxVersions = storeHistoryMaxVersions;
+  }
+
   public String getStatusCollection() {
     return statusCollection;
   }
@@ -160,6 +286,14 @@ public class MongoPipeConfig {
     this.statusCollection = statusCollection;
   }
 
+  public String getMigrationStatusCollection() {
+    return migrationStatusCollection;
+  }
+
+  public void setMigrationStatusCollection(String migrationStatusCollection) {
+    this.migrationStatusCollection = migrationStatusCollection;
+  }
+
   public boolean isStoreCacheEnabled() {
     return storeCacheEnabled;
   }
@@ -184,6 +318,70 @@ public class MongoPipeConfig {
     this.scanPackage = scanPackage;
   }
 
+  public Executor getAsyncExecutor() {
+    return asyncExecutor;
+  }
+
+  public void setAsyncExecutor(Executor asyncExecutor) {
+    this.asyncExecutor = asyncExecutor;
+  }
+
+  public ExecutorMode getAsyncExecutorMode() {
+    return asyncExecutorMode;
+  }
+
+  public void setAsyncExecutorMode(ExecutorMode asyncExecutorMode) {
+    this.asyncExecutorMode = asyncExecutorMode;
+  }
+
+  public long getMicroBatchWindowMs() {
+    return microBatchWindowMs;
+  }
+
+  public void setMicroBatchWindowMs(long microBatchWindowMs) {
+    this.microBatchWindowMs = microBatchWindowMs;
+  }
+
+  public int getMicroBatchMaxSize() {
+    return microBatchMaxSize;
+  }
+
+  public void setMicroBatchMaxSize(int microBatchMaxSize) {
+    this.microBatchMaxSize = microBatchMaxSize;
+  }
+
+  public ResultCacheConfig getResultCacheConfig() {
+    return resultCacheConfig;
+  }
+
+  public void setResultCacheConfig(ResultCacheConfig resultCacheConfig) {
+    this.resultCacheConfig = resultCacheConfig;
+  }
+
+  public boolean isSingleFlightEnabled() {
+    return singleFlightEnabled;
+  }
+
+  public void setSingleFlightEnabled(boolean singleFlightEnabled) {
+    this.singleFlightEnabled = singleFlightEnabled;
+  }
+
+  public CircuitBreakerConfig getCircuitBreakerConfig() {
+    return circuitBreakerConfig;
+  }
+
+  public void setCircuitBreakerConfig(CircuitBreakerConfig circuitBreakerConfig) {
+    this.circuitBreakerConfig = circuitBreakerConfig;
+  }
+
+  public ReplicationConfig getReplicationConfig() {
+    return replicationConfig;
+  }
+
+  public void setReplicationConfig(ReplicationConfig replicationConfig) {
+    this.replicationConfig = replicationConfig;
+  }
+
   public static final class Builder {
     private String uri;
     private MongoClient mongoClient;
@@ -192,10 +390,22 @@ public class MongoPipeConfig {
     private String storeCollection = DEFAULT_STORE_COLLECTION;
     private boolean storeHistoryEnabled = true;
     private String storeHistoryCollection = DEFAULT_HISTORY_COLLECTION;
+    private boolean storeHistoryAsync = true;
+    private long storeHistoryTtlSeconds;
+    private int storeHistoryMaxVersions;
     private String statusCollection = DEFAULT_STATUS_COLLECTION;
+    private String migrationStatusCollection = DEFAULT_MIGRATION_STATUS_COLLECTION;
     private boolean storeCacheEnabled;
     private MigrationConfig migrationConfig = MigrationConfig.builder().build();
     private String scanPackage;
+    private Executor asyncExecutor;
+    private ExecutorMode asyncExecutorMode = ExecutorMode.PLATFORM;
+    private long microBatchWindowMs = DEFAULT_MICRO_BATCH_WINDOW_MS;
+    private int microBatchMaxSize = DEFAULT_MICRO_BATCH_MAX_SIZE;
+    private ResultCacheConfig resultCacheConfig = ResultCacheConfig.builder().build();
+    private boolean singleFlightEnabled;
+    private CircuitBreakerConfig circuitBreakerConfig;
+    private ReplicationConfig replicationConfig;
 
     private Builder() {
     }
@@ -235,11 +445,31 @@ public class MongoPipeConfig {
       return this;
     }
 
+    public Builder storeHistoryAsync(boolean val) {
+      storeHistoryAsync = val;
+      return this;
+    }
+
+    public Builder storeHistoryTtlSeconds(long val) {
+      storeHistoryTtlSeconds = val;
+      return this;
+    }
+
+    public Builder storeHistoryMaxVersions(int val) {
+      storeHistoryMaxVersions = val;
+      return this;
+    }
+
     public Builder statusCollection(String val) {
       statusCollection = val;
       return this;
     }
 
+    public Builder migrationStatusCollection(String val) {
+      migrationStatusCollection = val;
+      return this;
+    }
+
     public Builder storeCacheEnabled(boolean val) {
       storeCacheEnabled = val;
       return this;
@@ -255,6 +485,46 @@ public class MongoPipeConfig {
       return this;
     }
 
+    public Builder asyncExecutor(Executor val) {
+      asyncExecutor = val;
+      return this;
+    }
+
+    public Builder asyncExecutorMode(ExecutorMode val) {
+      asyncExecutorMode = val;
+      return this;
+    }
+
+    public Builder microBatchWindowMs(long val) {
+      microBatchWindowMs = val;
+      return this;
+    }
+
+    public Builder microBatchMaxSize(int val) {
+      microBatchMaxSize = val;
+      return this;
+    }
+
+    public Builder resultCacheConfig(ResultCacheConfig val) {
+      resultCacheConfig = val;
+      return this;
+    }
+
+    public Builder singleFlightEnabled(boolean val) {
+      singleFlightEnabled = val;
+      return this;
+    }
+
+    public Builder circuitBreakerConfig(CircuitBreakerConfig val) {
+      circuitBreakerConfig = val;
+      return this;
+    }
+
+    public Builder replicationConfig(ReplicationConfig val) {
+      replicationConfig = val;
+      return this;
+    }
+
     public MongoPipeConfig build() {
       return new MongoPipeConfig(this);
     }
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.config;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Small, slowly changing reference collections (currencies, tenants, product types) kept in memory, see ReplicatedCollections. The
+ * $lookup stages against them (with localField and foreignField) are removed from the pipeline sent to the database and joined in the JVM.
+ */
+public class ReplicationConfig {
+  public static final long DEFAULT_REFRESH_INTERVAL_MS = 60_000;
+  public static final int DEFAULT_MAX_DOCUMENTS = 10_000;
+
+  Set<String> collections = Collections.emptySet();
+  long refreshIntervalMs = DEFAULT_REFRESH_INTERVAL_MS;
+  int maxDocuments = DEFAULT_MAX_DOCUMENTS;
+  boolean changeStreamEnabled;
+
+  private ReplicationConfig(Builder builder) {
+    setCollections(builder.collections);
+    setRefreshIntervalMs(builder.refreshIntervalMs);
+    setMaxDocuments(builder.maxDocuments);
+    setChangeStreamEnabled(builder.changeStreamEnabled);
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public Set<String> getCollections() {
+    return collections;
+  }
+
+  /**
+   * Names of the replicated collections.
+   */
+  public void setCollections(Set<String> collections) {
+    this.collections = collections;
+  }
+
+  public long getRefreshIntervalMs() {
+    return refreshIntervalMs;
+  }
+
+  /**
+   * A replicated collection is reloaded when used after this time. It is also reloaded after writes through mongopipe (CrudStore, update
+   * pipelines) and, if enabled, after the changes received on its change stream.
+   */
+  public void setRefreshIntervalMs(long refreshIntervalMs) {
+    this.refreshIntervalMs = refreshIntervalMs;
+  }
+
+  public int getMaxDocuments() {
+    return maxDocuments;
+  }
+
+  /**
+   * A collection having more documents is not replicated, its $lookup stages run on the database.
+   */
+  public void setMaxDocuments(int maxDocuments) {
+    this.maxDocuments = maxDocuments;
+  }
+
+  public boolean isChangeStreamEnabled() {
+    return changeStreamEnabled;
+  }
+
+  /**
+   * If true the replicated collections are watched with a change stream (requires a replica set) and reloaded on their next use after a
+   * change. Polling by "refreshIntervalMs" continues if the change stream can not be opened.
+   */
+  public void setChangeStreamEnabled(boolean changeStreamEnabled) {
+    this.changeStreamEnabled = changeStreamEnabled;
+  }
+
+  public static final class Builder {
+    private Set<String> collections = Collections.emptySet();
+    private long refreshIntervalMs = DEFAULT_REFRESH_INTERVAL_MS;
+    private int maxDocuments = DEFAULT_MAX_DOCUMENTS;
+    private boolean changeStreamEnabled;
+
+    private Builder() {
+    }
+
+    public Builder collections(String... val) {
+      collections = new LinkedHashSet<>(Arrays.asList(val));
+      return this;
+    }
+
+    public Builder refreshIntervalMs(long val) {
+      refreshIntervalMs = val;
+      return this;
+    }
+
+    public Builder maxDocuments(int val) {
+      maxDocuments = val;
+      return this;
+    }
+
+    public Builder changeStreamEnabled(boolean val) {
+      changeStreamEnabled = val;
+      return this;
+    }
+
+    public ReplicationConfig build() {
+      return new ReplicationConfig(this);
+    }
+  }
+}
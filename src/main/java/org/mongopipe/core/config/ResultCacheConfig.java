@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.config;
+
+/**
+ * Limits of the pipeline result cache. The cache is used only for the pipelines that enable it (AggregateParams#cacheResults or
+ * &#64;PipelineRun#cacheResults).
+ */
+public class ResultCacheConfig {
+  public static final int DEFAULT_MAX_ENTRIES = 1000;
+  public static final long DEFAULT_MAX_WEIGHT = 100_000;
+  public static final long DEFAULT_TTL_MS = 60_000;
+  public static final long DEFAULT_DISK_QUOTA_BYTES = 1024L * 1024 * 1024;
+  public static final long DEFAULT_DISK_TTL_MS = 60 * 60_000;
+
+  int maxEntries = DEFAULT_MAX_ENTRIES;
+  long maxWeight = DEFAULT_MAX_WEIGHT;
+  long ttlMs = DEFAULT_TTL_MS;
+  long staleWhileRevalidateMs;
+  long staleIfErrorMs;
+  String diskDirectory;
+  long diskQuotaBytes = DEFAULT_DISK_QUOTA_BYTES;
+  long diskTtlMs = DEFAULT_DISK_TTL_MS;
+  boolean subsumptionEnabled;
+
+  private ResultCacheConfig(Builder builder) {
+    setMaxEntries(builder.maxEntries);
+    setMaxWeight(builder.maxWeight);
+    setTtlMs(builder.ttlMs);
+    setStaleWhileRevalidateMs(builder.staleWhileRevalidateMs);
+    setStaleIfErrorMs(builder.staleIfErrorMs);
+    setDiskDirectory(builder.diskDirectory);
+    setDiskQuotaBytes(builder.diskQuotaBytes);
+    setDiskTtlMs(builder.diskTtlMs);
+    setSubsumptionEnabled(builder.subsumptionEnabled);
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  /**
+   * Maximum number of cached results, the least recently used are evicted first.
+   */
+  public void setMaxEntries(int maxEntries) {
+    this.maxEntries = maxEntries;
+  }
+
+  public long getMaxWeight() {
+    return maxWeight;
+  }
+
+  /**
+   * Maximum total number of result elements (documents) over all the cached results, 0 for no limit. A single result above this limit is
+   * not cached.
+   */
+  public void setMaxWeight(long maxWeight) {
+    this.maxWeight = maxWeight;
+  }
+
+  public long getTtlMs() {
+    return ttlMs;
+  }
+
+  /**
+   * Time after which a cached result expires, 0 for no expiration. Results are anyway removed when their pipeline is updated or deleted.
+   */
+  public void setTtlMs(long ttlMs) {
+    this.ttlMs = ttlMs;
+  }
+
+  public long getStaleWhileRevalidateMs() {
+    return staleWhileRevalidateMs;
+  }
+
+  /**
+   * For this time after its expiration a cached result is still returned, while it is refreshed in the background. 0 to disable.
+   */
+  public void setStaleWhileRevalidateMs(long staleWhileRevalidateMs) {
+    this.staleWhileRevalidateMs = staleWhileRevalidateMs;
+  }
+
+  public long getStaleIfErrorMs() {
+    return staleIfErrorMs;
+  }
+
+  /**
+   * For this time after its expiration a cached result of a fallback safe pipeline (AggregateParams#fallbackSafe) is returned if the
+   * database call fails or the circuit breaker is open. 0 to disable.
+   */
+  public void setStaleIfErrorMs(long staleIfErrorMs) {
+    this.staleIfErrorMs = staleIfErrorMs;
+  }
+
+  public String getDiskDirectory() {
+    return diskDirectory;
+  }
+
+  /**
+   * Local directory of the on disk second level cache, used by the pipelines with AggregateParams#cacheOnDisk. The cached results survive
+   * restarts. If not provided there is no disk cache.
+   */
+  public void setDiskDirectory(String diskDirectory) {
+    this.diskDirectory = diskDirectory;
+  }
+
+  public long getDiskQuotaBytes() {
+    return diskQuotaBytes;
+  }
+
+  /**
+   * Maximum size of the disk cache files, the oldest results are deleted first.
+   */
+  public void setDiskQuotaBytes(long diskQuotaBytes) {
+    this.diskQuotaBytes = diskQuotaBytes;
+  }
+
+  public long getDiskTtlMs() {
+    return diskTtlMs;
+  }
+
+  /**
+   * Time after which a result cached on disk expires, 0 for no expiration.
+   */
+  public void setDiskTtlMs(long diskTtlMs) {
+    this.diskTtlMs = diskTtlMs;
+  }
+
+  public boolean isSubsumptionEnabled() {
+    return subsumptionEnabled;
+  }
+
+  /**
+   * If enabled, a missing result is computed in the JVM from a cached result of the same pipeline whose leading $match is broader, e.g.
+   * the same pipeline run with fewer filter parameters or a wider range. Applies only to document results (Document or BsonDocument)
+   * and to the stages that can be run locally, see CacheSubsumption.
+   */
+  public void setSubsumptionEnabled(boolean subsumptionEnabled) {
+    this.subsumptionEnabled = subsumptionEnabled;
+  }
+
+  public static final class Builder {
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    private long maxWeight = DEFAULT_MAX_WEIGHT;
+    private long ttlMs = DEFAULT_TTL_MS;
+    private long staleWhileRevalidateMs;
+    private long staleIfErrorMs;
+    private String diskDirectory;
+    private long diskQuotaBytes = DEFAULT_DISK_QUOTA_BYTES;
+    private long diskTtlMs = DEFAULT_DISK_TTL_MS;
+    private boolean subsumptionEnabled;
+
+    private Builder() {
+    }
+
+    public Builder maxEntries(int val) {
+      maxEntries = val;
+      return this;
+    }
+
+    public Builder maxWeight(long val) {
+      maxWeight = val;
+      return this;
+    }
+
+    public Builder ttlMs(long val) {
+      ttlMs = val;
+      return this;
+    }
+
+    public Builder staleWhileRevalidateMs(long val) {
+      staleWhileRevalidateMs = val;
+      return this;
+    }
+
+    public Builder staleIfErrorMs(long val) {
+      staleIfErrorMs = val;
+      return this;
+    }
+
+    public Builder diskDirectory(String val) {
+      diskDirectory = val;
+      return this;
+    }
+
+    public Builder diskQuotaBytes(long val) {
+      diskQuotaBytes = val;
+      return this;
+    }
+
+    public Builder diskTtlMs(long val) {
+      diskTtlMs = val;
+      return this;
+    }
+
+    public Builder subsumptionEnabled(boolean val) {
+      subsumptionEnabled = val;
+      return this;
+    }
+
+    public ResultCacheConfig build() {
+      return new ResultCacheConfig(this);
+    }
+  }
+}
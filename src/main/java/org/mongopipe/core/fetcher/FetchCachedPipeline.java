@@ -5,6 +5,7 @@ import org.mongopipe.core.model.Pipeline;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 public class FetchCachedPipeline implements FetchPipeline {
@@ -12,7 +13,11 @@ public class FetchCachedPipeline implements FetchPipeline {
   private final FetchPipeline fetchPipelineStoreDelegate;
   // For in memory use a cache library or map implementation(but without collisions, unlike Java default Map implementations). By default
   // disable cache.
-  Map<String, Pipeline> cache = new ConcurrentHashMap<>();
+  volatile Map<String, Pipeline> cache = new ConcurrentHashMap<>();
+  private volatile boolean loaded;
+  // A lock instead of "synchronized" because the reload waits on the database and a virtual thread blocked inside "synchronized" pins its
+  // carrier thread (until Java 24).
+  private final ReentrantLock lock = new ReentrantLock();
 
   public FetchCachedPipeline(FetchPipeline fetchPipelineStoreDelegate) {
     this.fetchPipelineStoreDelegate = fetchPipelineStoreDelegate;
@@ -33,10 +38,40 @@ public class FetchCachedPipeline implements FetchPipeline {
 
   @Override
   public void update() {
-    cache.clear();
-    synchronized (cache) {
+    lock.lock();
+    try {
+      // Readers keep using the previous pipelines until the new ones are loaded.
+      Map<String, Pipeline> newCache = new ConcurrentHashMap<>();
       fetchPipelineStoreDelegate.getAll()
-          .forEach(obj -> cache.put(obj.getId(), obj));
+          .forEach(obj -> newCache.put(obj.getId(), obj));
+      cache = newCache;
+      loaded = true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void update(Pipeline pipeline) {
+    lock.lock();
+    try {
+      if (!loaded) {
+        update(); // First change loads all.
+      } else {
+        cache.put(pipeline.getId(), pipeline);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void remove(String id) {
+    lock.lock();
+    try {
+      cache.remove(id);
+    } finally {
+      lock.unlock();
     }
   }
 
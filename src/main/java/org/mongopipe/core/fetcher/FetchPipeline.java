@@ -13,4 +13,15 @@ public interface FetchPipeline {
   default void update() {
 
   }
+
+  /**
+   * Updates a single pipeline, e.g. in a cache, instead of reloading all of them.
+   */
+  default void update(Pipeline pipeline) {
+
+  }
+
+  default void remove(String id) {
+
+  }
 }
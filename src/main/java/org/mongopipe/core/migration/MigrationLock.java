@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.migration;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import org.bson.Document;
+import org.mongopipe.core.config.MigrationConfig;
+import org.mongopipe.core.logging.CustomLogFactory;
+import org.mongopipe.core.logging.Log;
+import org.mongopipe.core.runner.context.RunContext;
+
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.lt;
+import static com.mongodb.client.model.Filters.or;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.set;
+
+/**
+ * Lease based lock allowing only one instance to run the migration at a time. The lock is a document in the status collection holding the
+ * owner and the lease expiration time. While held, the lease is renewed by a heartbeat. If the owner dies the lease expires and another
+ * instance can take over.
+ */
+public class MigrationLock {
+  private static final Log LOG = CustomLogFactory.getLogger(MigrationLock.class);
+  public static final String LOCK_ID = "migrationLock";
+  private static final int DUPLICATE_KEY_ERROR_CODE = 11000;
+
+  private final RunContext runContext;
+  private final long leaseMs;
+  private final String owner;
+  private ScheduledExecutorService heartbeat;
+  private volatile boolean held;
+
+  public MigrationLock(RunContext runContext, MigrationConfig migrationConfig) {
+    this(runContext, migrationConfig, UUID.randomUUID().toString());
+  }
+
+  MigrationLock(RunContext runContext, MigrationConfig migrationConfig, String owner) {
+    this.runContext = runContext;
+    this.leaseMs = migrationConfig.getLockLeaseMs();
+    this.owner = owner;
+  }
+
+  private MongoCollection<Document> getCollection() {
+    return runContext.getMongoDatabase().getCollection(runContext.getMongoPipeConfig().getStatusCollection());
+  }
+
+  /**
+   * Acquires the lock if it is free, expired or already held by this owner.
+   * @return true if acquired.
+   */
+  public synchronized boolean tryAcquire() {
+    Date now = new Date();
+    try {
+      // If the lock is held by another owner and not expired the filter does not match and the upsert fails on the duplicate _id.
+      getCollection().findOneAndUpdate(
+          and(eq("_id", LOCK_ID), or(eq("owner", owner), lt("expiresAt", now))),
+          combine(set("owner", owner), set("acquiredAt", now), set("expiresAt", new Date(now.getTime() + leaseMs))),
+          new FindOneAndUpdateOptions().upsert(true));
+    } catch (MongoWriteException e) {
+      if (e.getError().getCategory() == ErrorCategory.DUPLICATE_KEY) {
+        return false;
+      }
+      throw e;
+    } catch (MongoCommandException e) {
+      if (e.getErrorCode() == DUPLICATE_KEY_ERROR_CODE) {
+        return false;
+      }
+      throw e;
+    }
+    held = true;
+    startHeartbeat();
+    LOG.info("Acquired pipeline migration lock: {}", owner);
+    return true;
+  }
+
+  private void startHeartbeat() {
+    if (heartbeat == null) {
+      heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "mongopipe-migration-lock-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+      });
+      long period = Math.max(1, leaseMs / 3);
+      heartbeat.scheduleAtFixedRate(this::renew, period, period, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Extends the lease. If the lease was lost (e.g. the process was paused longer than the lease) another instance may have taken over.
+   */
+  void renew() {
+    try {
+      long matched = getCollection().updateOne(
+          and(eq("_id", LOCK_ID), eq("owner", owner)),
+          set("expiresAt", new Date(System.currentTimeMillis() + leaseMs))).getMatchedCount();
+      if (matched == 0 && held) {
+        held = false;
+        LOG.warn("Pipeline migration lock lease was lost by: {}", owner);
+      }
+    } catch (RuntimeException e) {
+      LOG.warn("Could not renew pipeline migration lock lease: " + e.getMessage());
+    }
+  }
+
+  public synchronized void release() {
+    if (heartbeat != null) {
+      heartbeat.shutdownNow();
+      heartbeat = null;
+    }
+    if (held) {
+      getCollection().deleteOne(and(eq("_id", LOCK_ID), eq("owner", owner)));
+      held = false;
+      LOG.info("Released pipeline migration lock: {}", owner);
+    }
+  }
+
+  public boolean isHeld() {
+    return held;
+  }
+
+  public String getOwner() {
+    return owner;
+  }
+}
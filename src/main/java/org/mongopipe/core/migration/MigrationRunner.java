@@ -18,6 +18,7 @@ package org.mongopipe.core.migration;
 
 import org.mongopipe.core.Stores;
 import org.mongopipe.core.config.MigrationConfig;
+import org.mongopipe.core.config.MigrationConfig.FollowerMode;
 import org.mongopipe.core.exception.MongoPipeMigrationException;
 import org.mongopipe.core.logging.CustomLogFactory;
 import org.mongopipe.core.logging.Log;
@@ -28,16 +29,25 @@ import org.mongopipe.core.migration.source.MigratablePipeline;
 import org.mongopipe.core.model.Pipeline;
 import org.mongopipe.core.runner.context.RunContext;
 import org.mongopipe.core.runner.context.RunContextProvider;
+import org.mongopipe.core.store.PipelineMigrationStatusStore;
 import org.mongopipe.core.store.PipelineStore;
 import org.mongopipe.core.store.StatusStore;
 
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static org.mongopipe.core.util.MigrationUtil.getChecksum;
-import static org.mongopipe.core.util.MigrationUtil.getHash;
+import static org.mongopipe.core.util.MigrationUtil.getFastChecksum;
 
 /**
  * Runs the pipeline migration from a given source usually a resources folder.
@@ -48,11 +58,13 @@ public class MigrationRunner {
   private final RunContext runContext;
   private final PipelineStore pipelineStore;
   private StatusStore statusStore;
+  private PipelineMigrationStatusStore pipelineMigrationStatusStore;
 
   public MigrationRunner(RunContext runContext, PipelineStore pipelineStore) {
     this.runContext = runContext;
     this.pipelineStore = pipelineStore;
     statusStore = Stores.from(StatusStore.class);
+    pipelineMigrationStatusStore = new PipelineMigrationStatusStore(runContext);
   }
 
   public MigrationRunner() {
@@ -71,68 +83,227 @@ public class MigrationRunner {
     if (source == null) {
       throw new MongoPipeMigrationException("Missing pipeline migration source");
     }
+    List<MigratablePipeline> migratablePipelines = source.getMigrablePipelines().collect(Collectors.toList());
+    String sourceFastChecksum = getFastChecksum(migratablePipelines);
+
+    // 1. First compute fast checksum of the source pipelines contents and compare with existing.
+    //   If equal then no change needed. This means that existing db pipeline changes (done via API or directly), will remain untouched.
+    //   This check needs no lock, so when many instances start with the same pipelines only the first one does the migration.
+    if (isMigrated(sourceFastChecksum)) {
+      LOG.info("Pipeline migration not needed.");
+    } else if (!migrationConfig.isLockEnabled()) {
+      migrate(migratablePipelines, sourceFastChecksum);
+    } else {
+      migrateWithLock(migratablePipelines, sourceFastChecksum, migrationConfig);
+    }
+
+    if (migrationConfig.isWatchEnabled()) {
+      startWatcher(source, migrationConfig);
+    }
+    LOG.debug("Migration ended.");
+  }
+
+  private void startWatcher(PipelineMigrationSource source, MigrationConfig migrationConfig) {
+    List<Path> directories = source.getWatchableDirectories();
+    if (directories.isEmpty()) {
+      LOG.warn("Pipeline watch is enabled but no pipeline file system directories were found.");
+      return;
+    }
+    if (runContext.getPipelineFileWatcher() == null) {
+      PipelineFileWatcher pipelineFileWatcher = new PipelineFileWatcher(this, directories, migrationConfig.getWatchDebounceMs());
+      runContext.setPipelineFileWatcher(pipelineFileWatcher);
+      pipelineFileWatcher.start();
+    }
+  }
+
+  /**
+   * Migrates only the given changed sources, e.g. detected by the {@link PipelineFileWatcher}. A pipeline is updated only if its content
+   * checksum differs from the stored pipeline one, and only its migration status is written. A source failing to parse (e.g. a file that
+   * is still being edited) is logged and skipped.
+   */
+  public void migrateChanged(Collection<MigratablePipeline> changedPipelines) {
+    List<PipelineMigrationStatus> changedStatuses = new ArrayList<>();
+    for (MigratablePipeline migratablePipeline : changedPipelines) {
+      Pipeline pipeline;
+      try {
+        pipeline = migratablePipeline.getPipeline();
+      } catch (RuntimeException e) {
+        LOG.error("Could not parse pipeline from " + migratablePipeline.getSourceName() + ": " + e.getMessage());
+        continue;
+      }
+      Pipeline existing = pipelineStore.getPipeline(pipeline.getId());
+      if (existing != null && getChecksum(existing).equals(getChecksum(pipeline))) {
+        LOG.debug("No migration needed for pipeline: " + pipeline.getId());
+        continue;
+      }
+      changedStatuses.add(savePipelineAndReturnMigrationStatus(migratablePipeline));
+    }
+    pipelineMigrationStatusStore.saveAll(changedStatuses);
+  }
+
+  private boolean isMigrated(String sourceFastChecksum) {
+    return statusStore.getStatus()
+        .map(status -> sourceFastChecksum.equals(status.getMigrationStatus().getFastChecksum()))
+        .orElse(false);
+  }
+
+  private Long getStatusVersion() {
+    return statusStore.getStatus().map(Status::getVersion).orElse(null);
+  }
+
+  /**
+   * Runs the migration only if holding the migration lock. Otherwise in FollowerMode#WAIT waits for the lock holder to complete, i.e. for
+   * the status version to change, or for the lock to be released or expire and then takes over. In FollowerMode#SKIP returns immediately.
+   */
+  private void migrateWithLock(List<MigratablePipeline> migratablePipelines, String sourceFastChecksum, MigrationConfig migrationConfig) {
+    MigrationLock lock = new MigrationLock(runContext, migrationConfig);
+    long deadline = System.currentTimeMillis() + migrationConfig.getLockWaitTimeoutMs();
+    Long statusVersion = getStatusVersion();
+    while (true) {
+      if (lock.tryAcquire()) {
+        try {
+          migrate(migratablePipelines, sourceFastChecksum);
+        } finally {
+          lock.release();
+        }
+        return;
+      }
+      if (migrationConfig.getFollowerMode() == FollowerMode.SKIP) {
+        LOG.info("Pipeline migration is run by another instance, skipping it.");
+        return;
+      }
+      if (System.currentTimeMillis() > deadline) {
+        throw new MongoPipeMigrationException("Timed out waiting for the pipeline migration run by another instance");
+      }
+      LOG.info("Pipeline migration is run by another instance, waiting for it to complete.");
+      try {
+        Thread.sleep(migrationConfig.getLockPollMs());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new MongoPipeMigrationException("Interrupted while waiting for the pipeline migration lock", e);
+      }
+      Long currentStatusVersion = getStatusVersion();
+      if (!Objects.equals(statusVersion, currentStatusVersion)) {
+        statusVersion = currentStatusVersion;
+        if (isMigrated(sourceFastChecksum)) {
+          LOG.info("Pipeline migration completed by another instance.");
+          pipelineStore.refresh(); // Pipelines might have been already cached.
+          return;
+        }
+      }
+    }
+  }
+
+  private void migrate(List<MigratablePipeline> migratablePipelines, String sourceFastChecksum) {
+    // 2. Compare again the fast checksum since another instance might have completed the migration meanwhile.
+    //    If not equal then iterate on all units and use the manifest (source path, size, content hash) to skip the unchanged ones
+    //    without parsing them. The changed or new ones are parsed and their checksum compared with the db one to decide the create/update.
+    // 3. Only the statuses of the changed pipelines are written back, each pipeline status being a separate document.
     Optional<Status> statusOptional = statusStore.getStatus();
+    String dbFastChecksum = statusOptional.map(status -> status.getMigrationStatus().getFastChecksum()).orElse(null);
+    if (sourceFastChecksum.equals(dbFastChecksum)) {
+      LOG.info("Pipeline migration not needed.");
+      return;
+    }
+    List<PipelineMigrationStatus> legacyStatuses = statusOptional
+        .map(status -> status.getMigrationStatus().getPipelineMigrationStatuses())
+        .orElse(null);
+    boolean legacyLayout = legacyStatuses != null && !legacyStatuses.isEmpty();
+    // Older versions kept all the statuses embedded in the main status document, these are moved to the separate collection.
+    List<PipelineMigrationStatus> dbStatuses = legacyLayout ? legacyStatuses : pipelineMigrationStatusStore.findAll();
+    Map<String, PipelineMigrationStatus> statusesBySourcePath = index(dbStatuses, PipelineMigrationStatus::getSourcePath);
+    Map<String, PipelineMigrationStatus> statusesByPipelineId = index(dbStatuses, PipelineMigrationStatus::getPipelineId);
+
+    // Parsing is CPU bound so the changed sources are decoded in parallel. The saving remains sequential.
+    migratablePipelines.parallelStream()
+        .filter(migrablePipeline -> findUnchangedStatus(migrablePipeline, statusesBySourcePath) == null)
+        .forEach(MigratablePipeline::getPipeline);
+
+    List<PipelineMigrationStatus> changedStatuses = new ArrayList<>();
+    List<PipelineMigrationStatus> pipelineMigrationStatuses = migratablePipelines.stream()
+        .map(migrablePipeline -> migrate(migrablePipeline, statusesBySourcePath, statusesByPipelineId, changedStatuses))
+        .collect(Collectors.toList());
+
+    Set<String> sourcePipelineIds = pipelineMigrationStatuses.stream()
+        .map(PipelineMigrationStatus::getPipelineId)
+        .collect(Collectors.toSet());
+    List<String> removedPipelineIds = statusesByPipelineId.keySet().stream()
+        .filter(pipelineId -> !sourcePipelineIds.contains(pipelineId))
+        .collect(Collectors.toList());
+
+    pipelineMigrationStatusStore.saveAll(legacyLayout ? pipelineMigrationStatuses : changedStatuses);
+    pipelineMigrationStatusStore.deleteByPipelineIds(removedPipelineIds);
+    saveNewStatus(sourceFastChecksum, statusOptional.map(Status::getVersion).orElse(0L) + 1);
+    LOG.info("Pipeline migration updated {} pipeline statuses.", legacyLayout ? pipelineMigrationStatuses.size() : changedStatuses.size());
+  }
+
+  private Map<String, PipelineMigrationStatus> index(List<PipelineMigrationStatus> statuses,
+      Function<PipelineMigrationStatus, String> keyFunction) {
+    Map<String, PipelineMigrationStatus> statusesByKey = new HashMap<>();
+    statuses.stream()
+        .filter(migrationStatus -> keyFunction.apply(migrationStatus) != null)
+        .forEach(migrationStatus -> statusesByKey.putIfAbsent(keyFunction.apply(migrationStatus), migrationStatus));
+    return statusesByKey;
+  }
+
+  /**
+   * @return the existing status if the source is unchanged (same path, size and content hash), null otherwise.
+   */
+  private PipelineMigrationStatus findUnchangedStatus(MigratablePipeline migrablePipeline,
+      Map<String, PipelineMigrationStatus> statusesBySourcePath) {
+    String sourcePath = migrablePipeline.getSourcePath();
+    PipelineMigrationStatus manifestStatus = sourcePath == null ? null : statusesBySourcePath.get(sourcePath);
+    if (manifestStatus != null && Objects.equals(manifestStatus.getSize(), migrablePipeline.getSize())
+        && Objects.equals(manifestStatus.getContentHash(), migrablePipeline.getContentHash())) {
+      return manifestStatus;
+    }
+    return null;
+  }
 
-    if (!statusOptional.isPresent()) {
-      // First time migration runs.
-      createAll(source);
+  private PipelineMigrationStatus migrate(MigratablePipeline migrablePipeline, Map<String, PipelineMigrationStatus> statusesBySourcePath,
+      Map<String, PipelineMigrationStatus> statusesByPipelineId, List<PipelineMigrationStatus> changedStatuses) {
+    PipelineMigrationStatus manifestStatus = findUnchangedStatus(migrablePipeline, statusesBySourcePath);
+    if (manifestStatus != null) {
+      // Last modified time alone is not persisted, it changes on every rebuild even if the content does not.
+      LOG.debug("Source not changed, no migration needed for: " + manifestStatus.getSourcePath());
+      return manifestStatus;
+    }
+
+    PipelineMigrationStatus dbStatus = statusesByPipelineId.get(migrablePipeline.getPipeline().getId());
+    PipelineMigrationStatus pipelineMigrationStatus;
+    if (dbStatus == null) {
+      pipelineMigrationStatus = savePipelineAndReturnMigrationStatus(migrablePipeline);
     } else {
-      // 1. First compute fast checksum of the source pipelines and compare with existing.
-      //   If equal then no change needed. This means that existing db pipeline changes (done via API or directly), will remain untouched.
-      // 2. If not equal then iterate on all units, compute checksum and compare with db one and if it differs then create/update.
-      List<MigratablePipeline> migratablePipelines = source.getMigrablePipelines().collect(Collectors.toList());
-      String sourceFastChecksum = getFastChecksum(migratablePipelines);
-      Status status = statusOptional.get();
-
-      String dbFastChecksum = status.getMigrationStatus().getFastChecksum();
-      if(sourceFastChecksum.equals(dbFastChecksum)) {
-        LOG.info("Pipeline migration not needed.");
+      String migrableChecksum = migrablePipeline.getPipelineChecksum();
+      if (migrableChecksum.equalsIgnoreCase(dbStatus.getChecksum())) {
+        LOG.debug("No migration needed for pipeline: " + migrablePipeline.getPipeline().getId());
+        pipelineMigrationStatus = dbStatus;  // No change
+        setFingerprint(pipelineMigrationStatus, migrablePipeline);
       } else {
-        List<PipelineMigrationStatus> pipelineMigrationStatuses = migratablePipelines.stream().map(migrablePipeline -> {
-
-          Optional<PipelineMigrationStatus> dbStatus = status.getMigrationStatus().getPipelineMigrationStatuses().stream()
-              .filter(migrationStatus -> migrationStatus.getPipelineId().equals(migrablePipeline.getPipeline().getId()))
-              .findFirst();
-
-          PipelineMigrationStatus pipelineMigrationStatus = null;
-          if (!dbStatus.isPresent()) {
-            pipelineMigrationStatus = savePipelineAndReturnMigrationStatus(migrablePipeline);
-          } else {
-            String migrableChecksum = getChecksum(migrablePipeline.getPipeline());
-            String dbChecksum = dbStatus.get().getChecksum();
-            if (migrableChecksum.equalsIgnoreCase(dbChecksum)) {
-              LOG.debug("No migration needed for pipeline: " + migrablePipeline.getPipeline().getId());
-              pipelineMigrationStatus = dbStatus.get();  // No change
-            } else {
-              pipelineMigrationStatus = savePipelineAndReturnMigrationStatus(migrablePipeline);
-            }
-          }
-          return pipelineMigrationStatus;
-        }).collect(Collectors.toList());
-
-        saveNewStatus(migratablePipelines, pipelineMigrationStatuses);
+        pipelineMigrationStatus = savePipelineAndReturnMigrationStatus(migrablePipeline);
       }
     }
-
-    LOG.debug("Migration ended.");
+    changedStatuses.add(pipelineMigrationStatus);
+    return pipelineMigrationStatus;
   }
 
-  private String getFastChecksum(List<MigratablePipeline> migratablePipelines) {
-    return getHash(String.valueOf(migratablePipelines.stream()
-        .map(unit -> "." + unit.getLastModifiedTime())
-        .reduce("", String::concat)));
+  private void setFingerprint(PipelineMigrationStatus pipelineMigrationStatus, MigratablePipeline migratablePipeline) {
+    pipelineMigrationStatus.setSourcePath(migratablePipeline.getSourcePath());
+    pipelineMigrationStatus.setSize(migratablePipeline.getSize());
+    pipelineMigrationStatus.setLastModifiedTime(migratablePipeline.getLastModifiedTime());
+    pipelineMigrationStatus.setContentHash(migratablePipeline.getContentHash());
   }
 
-  private void saveNewStatus(List<MigratablePipeline> migratablePipelines, List<PipelineMigrationStatus> pipelineMigrationStatuses) {
+  private void saveNewStatus(String fastChecksum, Long version) {
     LocalDateTime now = LocalDateTime.now();
     MigrationStatus migrationStatus = MigrationStatus.builder()
         .runAt(now)
+        .fastChecksum(fastChecksum)
         .build();
-    migrationStatus.setPipelineMigrationStatuses(pipelineMigrationStatuses);
-    migrationStatus.setFastChecksum(getFastChecksum(migratablePipelines));
 
-    // Main status.
+    // Main status, kept small since the pipeline statuses are stored separately.
     Status status = Status.builder()
+        .version(version) // Instances waiting for the migration lock watch the version change.
         .updatedAt(now)
         .migrationStatus(migrationStatus)
         .build();
@@ -140,15 +311,6 @@ public class MigrationRunner {
     statusStore.save(status);
   }
 
-  private void createAll(PipelineMigrationSource source) {
-    List<MigratablePipeline> migratablePipelines = source.getMigrablePipelines().collect(Collectors.toList());
-    List<PipelineMigrationStatus> pipelineMigrationStatuses = migratablePipelines.stream()
-        .map(unit -> savePipelineAndReturnMigrationStatus(unit))
-        .collect(Collectors.toList());
-
-    saveNewStatus(migratablePipelines, pipelineMigrationStatuses);
-  }
-
   private PipelineMigrationStatus savePipelineAndReturnMigrationStatus(MigratablePipeline migratablePipeline) {
     Pipeline pipeline = migratablePipeline.getPipeline();
     LOG.info("Updating pipeline {} from source {}", pipeline.getId(), migratablePipeline.getSourceName());
@@ -157,11 +319,13 @@ public class MigrationRunner {
     } catch (Exception e) {
       LOG.error("Skip pipeline migration for '" + pipeline.getId() + "'. Exception:" + e.getMessage(), e);
     }
-    return PipelineMigrationStatus.builder()
+    PipelineMigrationStatus pipelineMigrationStatus = PipelineMigrationStatus.builder()
         .pipelineId(pipeline.getId())
         .checksum(getChecksum(pipeline))
         .updateTime(pipeline.getUpdatedAt())
         .build();
+    setFingerprint(pipelineMigrationStatus, migratablePipeline);
+    return pipelineMigrationStatus;
   }
 
 }
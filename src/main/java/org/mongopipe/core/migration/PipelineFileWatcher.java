@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.migration;
+
+import org.mongopipe.core.exception.MongoPipeMigrationException;
+import org.mongopipe.core.logging.CustomLogFactory;
+import org.mongopipe.core.logging.Log;
+import org.mongopipe.core.migration.source.FileMigratablePipeline;
+import org.mongopipe.core.migration.source.MigratablePipeline;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static org.mongopipe.core.migration.source.FileMigratablePipelineScanner.CANDIDATE_EXTENSIONS;
+import static org.mongopipe.core.migration.source.FileMigratablePipelineScanner.getExtension;
+
+/**
+ * Watches the pipelines directories for created or modified pipeline files and migrates only those, without a restart.
+ * Changes are debounced: the changed files are collected until no change happens for the configured quiet period, so that an editor
+ * saving multiple times or a bulk copy results in a single migration of each file.
+ * Deleted files are ignored, same as with the startup migration the pipelines are not deleted from the database.
+ */
+public class PipelineFileWatcher implements Closeable {
+  private static final Log LOG = CustomLogFactory.getLogger(PipelineFileWatcher.class);
+  private final MigrationRunner migrationRunner;
+  private final List<Path> directories;
+  private final long debounceMs;
+  private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+  private WatchService watchService;
+  private Thread thread;
+
+  public PipelineFileWatcher(MigrationRunner migrationRunner, List<Path> directories, long debounceMs) {
+    this.migrationRunner = migrationRunner;
+    this.directories = directories;
+    this.debounceMs = debounceMs;
+  }
+
+  public synchronized void start() {
+    if (thread != null) {
+      return;
+    }
+    try {
+      watchService = FileSystems.getDefault().newWatchService();
+      for (Path directory : directories) {
+        registerAll(directory);
+      }
+    } catch (IOException e) {
+      throw new MongoPipeMigrationException("Could not watch pipeline directories " + directories, e);
+    }
+    thread = new Thread(this::watch, "mongopipe-pipeline-file-watcher");
+    thread.setDaemon(true);
+    thread.start();
+    LOG.info("Watching pipeline directories for changes: {}", directories);
+  }
+
+  private void registerAll(Path root) throws IOException {
+    // WatchService is not recursive, so each subdirectory is registered.
+    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) throws IOException {
+        watchedDirectories.put(directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY), directory);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private void watch() {
+    Set<Path> changedFiles = new LinkedHashSet<>();
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        // Wait indefinitely for the first change, then only for the quiet period.
+        WatchKey key = changedFiles.isEmpty() ? watchService.take() : watchService.poll(debounceMs, TimeUnit.MILLISECONDS);
+        if (key == null) {
+          migrate(changedFiles);
+          changedFiles = new LinkedHashSet<>();
+          continue;
+        }
+        collectChanges(key, changedFiles);
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      LOG.debug("Pipeline file watcher stopped.");
+    }
+  }
+
+  private void collectChanges(WatchKey key, Set<Path> changedFiles) {
+    Path directory = watchedDirectories.get(key);
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == OVERFLOW || directory == null) {
+        LOG.warn("Pipeline file watcher missed some changes, restart to migrate all changes.");
+        continue;
+      }
+      Path path = directory.resolve((Path) event.context());
+      if (Files.isDirectory(path)) {
+        if (event.kind() == ENTRY_CREATE) {
+          try {
+            registerAll(path);
+            // Files copied along with the new directory might have been created before it was registered.
+            try (Stream<Path> files = Files.walk(path)) {
+              changedFiles.addAll(files.filter(Files::isRegularFile).collect(Collectors.toList()));
+            }
+          } catch (IOException e) {
+            LOG.warn("Could not watch pipeline directory " + path + ": " + e.getMessage());
+          }
+        }
+      } else {
+        changedFiles.add(path);
+      }
+    }
+    if (!key.reset()) {
+      watchedDirectories.remove(key);
+    }
+  }
+
+  private void migrate(Set<Path> changedFiles) {
+    List<MigratablePipeline> changedPipelines = changedFiles.stream()
+        .filter(path -> Files.isRegularFile(path) && CANDIDATE_EXTENSIONS.contains(getExtension(path.getFileName().toString())))
+        .map(path -> new FileMigratablePipeline(path.toFile()))
+        .collect(Collectors.toList());
+    if (!changedPipelines.isEmpty()) {
+      try {
+        migrationRunner.migrateChanged(changedPipelines);
+      } catch (RuntimeException e) {
+        LOG.error("Pipeline hot reload failed: " + e.getMessage(), e);
+      }
+    }
+  }
+
+  public synchronized boolean isRunning() {
+    return thread != null;
+  }
+
+  @Override
+  public synchronized void close() {
+    if (thread != null) {
+      thread.interrupt();
+      thread = null;
+    }
+    if (watchService != null) {
+      try {
+        watchService.close();
+      } catch (IOException e) {
+        LOG.warn("Could not close pipeline file watcher: " + e.getMessage());
+      }
+      watchService = null;
+    }
+  }
+}
@@ -18,8 +18,19 @@ package org.mongopipe.core.migration;
 
 import org.mongopipe.core.migration.source.MigratablePipeline;
 
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
 import java.util.stream.Stream;
 
 public interface PipelineMigrationSource {
   Stream<MigratablePipeline> getMigrablePipelines();
+
+  /**
+   * @return the local file system directories containing the pipelines, that can be watched for changes. Empty if not applicable
+   *         (e.g. pipelines located in jars).
+   */
+  default List<Path> getWatchableDirectories() {
+    return Collections.emptyList();
+  }
 }
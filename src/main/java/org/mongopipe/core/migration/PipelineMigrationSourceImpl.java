@@ -21,12 +21,16 @@ import org.mongopipe.core.config.MigrationConfig;
 import org.mongopipe.core.exception.MongoPipeMigrationException;
 import org.mongopipe.core.logging.CustomLogFactory;
 import org.mongopipe.core.logging.Log;
+import org.mongopipe.core.migration.bundle.PipelineBundle;
 import org.mongopipe.core.migration.source.FileMigratablePipelineScanner;
 import org.mongopipe.core.migration.source.JarMigratablePipelineScanner;
 import org.mongopipe.core.migration.source.MigratablePipeline;
 
 import java.io.IOException;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
@@ -46,6 +50,13 @@ public class PipelineMigrationSourceImpl implements PipelineMigrationSource {
 
   private List<MigratablePipeline> getPipelineSources() {
     try {
+      if (migrationConfig.getBundlePath() != null) {
+        URL bundleUrl = Thread.currentThread().getContextClassLoader().getResource(migrationConfig.getBundlePath());
+        if (bundleUrl != null) {
+          LOG.info("Loading pipelines from bundle {}", bundleUrl);
+          return PipelineBundle.load(bundleUrl).getMigratablePipelines();
+        }
+      }
       if (migrationConfig.getPipelinesPath().endsWith("/")) {
         migrationConfig.setPipelinesPath(migrationConfig.getPipelinesPath() + "/");
       }
@@ -74,5 +85,20 @@ public class PipelineMigrationSourceImpl implements PipelineMigrationSource {
     return getPipelineSources().stream();
   }
 
+  @Override
+  public List<Path> getWatchableDirectories() {
+    try {
+      List<Path> directories = new ArrayList<>();
+      for (URL url : Collections.list(Thread.currentThread().getContextClassLoader().getResources(migrationConfig.getPipelinesPath()))) {
+        if ("file".equalsIgnoreCase(url.getProtocol())) {
+          directories.add(Paths.get(url.toURI()));
+        }
+      }
+      return directories;
+    } catch (IOException | URISyntaxException e) {
+      throw new MongoPipeMigrationException("Could not load pipeline source:" + e.getMessage(), e);
+    }
+  }
+
 
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.migration.bundle;
+
+import org.bson.BsonBinaryReader;
+import org.bson.codecs.DecoderContext;
+import org.mongopipe.core.migration.source.MigratablePipeline;
+import org.mongopipe.core.model.Pipeline;
+
+import java.nio.ByteBuffer;
+
+import static org.mongopipe.core.config.PojoCodecConfig.getCodecRegistry;
+
+/**
+ * Pipeline from a {@link PipelineBundle}. The fingerprint and checksum are precomputed, and the pipeline is decoded from its raw BSON only
+ * if the migration needs it.
+ */
+public class BundleMigratablePipeline implements MigratablePipeline {
+  public static final String SOURCE_PATH_PREFIX = "bundle:";
+  private final String bundleLocation;
+  private final String sourcePath;
+  private final String pipelineId;
+  private final Long size;
+  private final Long lastModifiedTime;
+  private final String contentHash;
+  private final String checksum;
+  private final ByteBuffer content;
+  private Pipeline pipeline;
+
+  BundleMigratablePipeline(String bundleLocation, String sourcePath, String pipelineId, Long size, Long lastModifiedTime,
+      String contentHash, String checksum, ByteBuffer content) {
+    this.bundleLocation = bundleLocation;
+    this.sourcePath = sourcePath;
+    this.pipelineId = pipelineId;
+    this.size = size;
+    this.lastModifiedTime = lastModifiedTime;
+    this.contentHash = contentHash;
+    this.checksum = checksum;
+    this.content = content;
+  }
+
+  @Override
+  public Long getLastModifiedTime() {
+    return lastModifiedTime;
+  }
+
+  @Override
+  public Pipeline getPipeline() {
+    if (pipeline == null) {
+      try (BsonBinaryReader reader = new BsonBinaryReader(content.duplicate())) {
+        pipeline = getCodecRegistry().get(Pipeline.class).decode(reader, DecoderContext.builder().build());
+      }
+    }
+    return pipeline;
+  }
+
+  @Override
+  public String getSourceName() {
+    return bundleLocation + "!/" + sourcePath;
+  }
+
+  /**
+   * The path inside the bundle does not depend on where the bundle is deployed, so the migration manifest remains valid across deployments.
+   */
+  @Override
+  public String getSourcePath() {
+    return SOURCE_PATH_PREFIX + sourcePath;
+  }
+
+  @Override
+  public Long getSize() {
+    return size;
+  }
+
+  @Override
+  public String getContentHash() {
+    return contentHash;
+  }
+
+  @Override
+  public String getPipelineChecksum() {
+    return checksum;
+  }
+
+  public String getPipelineId() {
+    return pipelineId;
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.migration.bundle;
+
+import org.bson.BsonArray;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.DecoderContext;
+import org.mongopipe.core.exception.MongoPipeMigrationException;
+import org.mongopipe.core.migration.source.MigratablePipeline;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A precompiled pipeline bundle, created at build time by {@link PipelineBundleCompiler}. Allows the migration to skip the classpath
+ * scanning, the JSON parsing and the hashing of the pipeline files.<p>
+ * Layout (little endian like BSON):
+ * <pre>
+ *   "MPB1" magic | int32 index length | index BSON document | pipeline BSON documents
+ * </pre>
+ * The index holds for each pipeline its source path, size, last modified time, content hash, checksum and the offset and length of the
+ * pipeline BSON document relative to the start of the pipeline documents.<p>
+ * A bundle located on the file system is memory mapped. Inside a jar it is read into memory since jar entries can not be mapped.
+ */
+public class PipelineBundle {
+  public static final byte[] MAGIC = {'M', 'P', 'B', '1'};
+  static final String ENTRIES = "entries";
+  static final String SOURCE_PATH = "sourcePath";
+  static final String PIPELINE_ID = "pipelineId";
+  static final String SIZE = "size";
+  static final String LAST_MODIFIED_TIME = "lastModifiedTime";
+  static final String CONTENT_HASH = "contentHash";
+  static final String CHECKSUM = "checksum";
+  static final String OFFSET = "offset";
+  static final String LENGTH = "length";
+
+  private final String location;
+  private final ByteBuffer pipelinesData;
+  private final BsonArray index;
+
+  private PipelineBundle(String location, ByteBuffer buffer) {
+    this.location = location;
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    byte[] magic = new byte[MAGIC.length];
+    buffer.get(magic);
+    if (!Arrays.equals(MAGIC, magic)) {
+      throw new MongoPipeMigrationException("Not a pipeline bundle: " + location);
+    }
+    int indexLength = buffer.getInt();
+    ByteBuffer indexBuffer = slice(buffer, buffer.position(), indexLength);
+    try (BsonBinaryReader reader = new BsonBinaryReader(indexBuffer)) {
+      index = new BsonDocumentCodec().decode(reader, DecoderContext.builder().build()).getArray(ENTRIES);
+    }
+    pipelinesData = slice(buffer, buffer.position() + indexLength, buffer.limit() - buffer.position() - indexLength);
+  }
+
+  static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+    ByteBuffer duplicate = buffer.duplicate();
+    duplicate.position(offset);
+    duplicate.limit(offset + length);
+    return duplicate.slice().order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  public static PipelineBundle load(URL url) {
+    try {
+      if ("file".equalsIgnoreCase(url.getProtocol())) {
+        try (FileChannel channel = FileChannel.open(Paths.get(url.toURI()), StandardOpenOption.READ)) {
+          return new PipelineBundle(url.toString(), channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+      }
+      try (InputStream inputStream = url.openStream()) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+          outputStream.write(buffer, 0, read);
+        }
+        return new PipelineBundle(url.toString(), ByteBuffer.wrap(outputStream.toByteArray()));
+      }
+    } catch (IOException | URISyntaxException e) {
+      throw new MongoPipeMigrationException("Could not load pipeline bundle " + url, e);
+    }
+  }
+
+  public List<MigratablePipeline> getMigratablePipelines() {
+    List<MigratablePipeline> migratablePipelines = new ArrayList<>(index.size());
+    for (BsonValue value : index) {
+      BsonDocument entry = value.asDocument();
+      migratablePipelines.add(new BundleMigratablePipeline(location,
+          entry.getString(SOURCE_PATH).getValue(),
+          entry.getString(PIPELINE_ID).getValue(),
+          entry.getInt64(SIZE).getValue(),
+          entry.getInt64(LAST_MODIFIED_TIME).getValue(),
+          entry.getString(CONTENT_HASH).getValue(),
+          entry.getString(CHECKSUM).getValue(),
+          slice(pipelinesData, entry.getInt32(OFFSET).getValue(), entry.getInt32(LENGTH).getValue())));
+    }
+    return migratablePipelines;
+  }
+
+  public String getLocation() {
+    return location;
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.migration.bundle;
+
+import org.bson.BsonArray;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.mongopipe.core.exception.MongoPipeMigrationException;
+import org.mongopipe.core.migration.source.FileMigratablePipeline;
+import org.mongopipe.core.model.Pipeline;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.mongopipe.core.config.PojoCodecConfig.getCodecRegistry;
+import static org.mongopipe.core.migration.bundle.PipelineBundle.CHECKSUM;
+import static org.mongopipe.core.migration.bundle.PipelineBundle.CONTENT_HASH;
+import static org.mongopipe.core.migration.bundle.PipelineBundle.ENTRIES;
+import static org.mongopipe.core.migration.bundle.PipelineBundle.LAST_MODIFIED_TIME;
+import static org.mongopipe.core.migration.bundle.PipelineBundle.LENGTH;
+import static org.mongopipe.core.migration.bundle.PipelineBundle.MAGIC;
+import static org.mongopipe.core.migration.bundle.PipelineBundle.OFFSET;
+import static org.mongopipe.core.migration.bundle.PipelineBundle.PIPELINE_ID;
+import static org.mongopipe.core.migration.bundle.PipelineBundle.SIZE;
+import static org.mongopipe.core.migration.bundle.PipelineBundle.SOURCE_PATH;
+import static org.mongopipe.core.migration.source.FileMigratablePipelineScanner.CANDIDATE_EXTENSIONS;
+import static org.mongopipe.core.migration.source.FileMigratablePipelineScanner.getExtension;
+import static org.mongopipe.core.util.MigrationUtil.getChecksum;
+
+/**
+ * Build time tool compiling the pipeline files of a directory into a {@link PipelineBundle}. When the bundle is found on the classpath
+ * (see MigrationConfig#bundlePath) the migration uses it instead of the pipeline files.<p>
+ * E.g. with the exec-maven-plugin, run after the resources are copied:
+ * <pre>
+ *   &lt;execution&gt;
+ *     &lt;phase&gt;process-classes&lt;/phase&gt;
+ *     &lt;goals&gt;&lt;goal&gt;java&lt;/goal&gt;&lt;/goals&gt;
+ *     &lt;configuration&gt;
+ *       &lt;mainClass&gt;org.mongopipe.core.migration.bundle.PipelineBundleCompiler&lt;/mainClass&gt;
+ *       &lt;arguments&gt;
+ *         &lt;argument&gt;${project.build.outputDirectory}/pipelines&lt;/argument&gt;
+ *         &lt;argument&gt;${project.build.outputDirectory}/mongopipe-pipelines.bundle&lt;/argument&gt;
+ *       &lt;/arguments&gt;
+ *     &lt;/configuration&gt;
+ *   &lt;/execution&gt;
+ * </pre>
+ */
+public class PipelineBundleCompiler {
+
+  public static void main(String[] args) {
+    if (args.length != 2) {
+      System.err.println("Usage: PipelineBundleCompiler <pipelines directory> <bundle file>");
+      System.exit(1);
+    }
+    int count = compile(Paths.get(args[0]), Paths.get(args[1]));
+    System.out.println("Compiled " + count + " pipelines into " + args[1]);
+  }
+
+  /**
+   * @return the number of pipelines written in the bundle.
+   */
+  public static int compile(Path pipelinesDirectory, Path bundleFile) {
+    List<Path> files;
+    try (Stream<Path> paths = Files.walk(pipelinesDirectory)) {
+      files = paths
+          .filter(path -> Files.isRegularFile(path) && CANDIDATE_EXTENSIONS.contains(getExtension(path.getFileName().toString())))
+          .sorted()
+          .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new MongoPipeMigrationException("Could not read pipelines directory " + pipelinesDirectory, e);
+    }
+
+    BsonArray entries = new BsonArray();
+    BasicOutputBuffer pipelinesData = new BasicOutputBuffer();
+    for (Path file : files) {
+      FileMigratablePipeline migratablePipeline = new FileMigratablePipeline(file.toFile());
+      Pipeline pipeline = migratablePipeline.getPipeline();
+      int offset = pipelinesData.getPosition();
+      try (BsonBinaryWriter writer = new BsonBinaryWriter(pipelinesData)) {
+        getCodecRegistry().get(Pipeline.class).encode(writer, pipeline, EncoderContext.builder().build());
+      }
+      // Source path relative to the pipelines directory and with '/' separators, same on any OS.
+      String sourcePath = pipelinesDirectory.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+      entries.add(new BsonDocument(SOURCE_PATH, new BsonString(sourcePath))
+          .append(PIPELINE_ID, new BsonString(pipeline.getId()))
+          .append(SIZE, new BsonInt64(migratablePipeline.getSize()))
+          .append(LAST_MODIFIED_TIME, new BsonInt64(migratablePipeline.getLastModifiedTime()))
+          .append(CONTENT_HASH, new BsonString(migratablePipeline.getContentHash()))
+          .append(CHECKSUM, new BsonString(getChecksum(pipeline)))
+          .append(OFFSET, new BsonInt32(offset))
+          .append(LENGTH, new BsonInt32(pipelinesData.getPosition() - offset)));
+    }
+
+    BasicOutputBuffer index = new BasicOutputBuffer();
+    try (BsonBinaryWriter writer = new BsonBinaryWriter(index)) {
+      new BsonDocumentCodec().encode(writer, new BsonDocument(ENTRIES, entries), EncoderContext.builder().build());
+    }
+
+    try {
+      if (bundleFile.getParent() != null) {
+        Files.createDirectories(bundleFile.getParent());
+      }
+      try (OutputStream outputStream = Files.newOutputStream(bundleFile)) {
+        outputStream.write(MAGIC);
+        outputStream.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(index.getPosition()).array());
+        outputStream.write(index.getInternalBuffer(), 0, index.getPosition());
+        outputStream.write(pipelinesData.getInternalBuffer(), 0, pipelinesData.getPosition());
+      }
+    } catch (IOException e) {
+      throw new MongoPipeMigrationException("Could not write pipeline bundle " + bundleFile, e);
+    }
+    return files.size();
+  }
+}
@@ -21,7 +21,8 @@ import java.util.List;
 
 public class MigrationStatus {
   LocalDateTime runAt;
-  String fastChecksum;  // time based
+  String fastChecksum;  // content based
+  // Legacy, statuses are now kept one document per pipeline in MongoPipeConfig#migrationStatusCollection. Read only for upgrading.
   List<PipelineMigrationStatus> pipelineMigrationStatuses;
 
   private MigrationStatus(Builder builder) {
@@ -18,10 +18,18 @@ package org.mongopipe.core.migration.model;
 
 import java.time.LocalDateTime;
 
+/**
+ * Migration status of a single pipeline. Also keeps the fingerprint of the source the pipeline was loaded from (the migration manifest
+ * entry), allowing unchanged sources to be skipped without parsing them.
+ */
 public class PipelineMigrationStatus {
   String pipelineId;
   String checksum; // real checksum
   LocalDateTime updateTime;
+  String sourcePath;
+  Long size;
+  Long lastModifiedTime;
+  String contentHash; // raw source content hash
 
   public PipelineMigrationStatus() {
 
@@ -37,6 +45,10 @@ public class PipelineMigrationStatus {
     setPipelineId(builder.pipelineId);
     setChecksum(builder.checksum);
     setUpdateTime(builder.updateTime);
+    setSourcePath(builder.sourcePath);
+    setSize(builder.size);
+    setLastModifiedTime(builder.lastModifiedTime);
+    setContentHash(builder.contentHash);
   }
 
   public static Builder builder() {
@@ -67,10 +79,46 @@ public class PipelineMigrationStatus {
     this.updateTime = updateTime;
   }
 
+  public String getSourcePath() {
+    return sourcePath;
+  }
+
+  public void setSourcePath(String sourcePath) {
+    this.sourcePath = sourcePath;
+  }
+
+  public Long getSize() {
+    return size;
+  }
+
+  public void setSize(Long size) {
+    this.size = size;
+  }
+
+  public Long getLastModifiedTime() {
+    return lastModifiedTime;
+  }
+
+  public void setLastModifiedTime(Long lastModifiedTime) {
+    this.lastModifiedTime = lastModifiedTime;
+  }
+
+  public String getContentHash() {
+    return contentHash;
+  }
+
+  public void setContentHash(String contentHash) {
+    this.contentHash = contentHash;
+  }
+
   public static final class Builder {
     private String pipelineId;
     private String checksum;
     private LocalDateTime updateTime;
+    private String sourcePath;
+    private Long size;
+    private Long lastModifiedTime;
+    private String contentHash;
 
     private Builder() {
     }
@@ -90,6 +138,26 @@ public class PipelineMigrationStatus {
       return this;
     }
 
+    public Builder sourcePath(String val) {
+      sourcePath = val;
+      return this;
+    }
+
+    public Builder size(Long val) {
+      size = val;
+      return this;
+    }
+
+    public Builder lastModifiedTime(Long val) {
+      lastModifiedTime = val;
+      return this;
+    }
+
+    public Builder contentHash(String val) {
+      contentHash = val;
+      return this;
+    }
+
     public PipelineMigrationStatus build() {
       return new PipelineMigrationStatus(this);
     }
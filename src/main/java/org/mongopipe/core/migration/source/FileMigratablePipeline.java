@@ -19,18 +19,21 @@ package org.mongopipe.core.migration.source;
 import org.mongopipe.core.exception.MongoPipeMigrationException;
 import org.mongopipe.core.model.Pipeline;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.nio.channels.Channels;
-import java.nio.channels.FileChannel;
+import java.io.InputStreamReader;
 import java.nio.charset.Charset;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.Files;
 
 import static org.mongopipe.core.util.BsonUtil.toPojo;
+import static org.mongopipe.core.util.MigrationUtil.getHash;
 
 public class FileMigratablePipeline implements MigratablePipeline {
 
   private File file;
+  private byte[] content;
+  private String contentHash;
   private Pipeline pipeline;
 
   public FileMigratablePipeline(File file) {
@@ -42,20 +45,24 @@ public class FileMigratablePipeline implements MigratablePipeline {
     return file.lastModified();
   }
 
-  @Override
-  public Pipeline getPipeline() {
-    if (pipeline == null) {
-      // Alternative:
-      // pipeline = BsonUtil.loadResourceIntoPojo(this.resourcePath, Pipeline.class);
-      // https://stackoverflow.com/questions/3923129/get-a-list-of-resources-from-classpath-directory#comment67155595_3923685
+  private byte[] getContent() {
+    if (content == null) {
       try {
-        //String content = new String(Files.readAllBytes(file.toPath()));
-        pipeline = toPojo(Channels.newReader(FileChannel.open(file.toPath(), StandardOpenOption.READ),
-            Charset.defaultCharset().newDecoder(), 4096), Pipeline.class);
+        content = Files.readAllBytes(file.toPath());
       } catch (IOException e) {
         throw new MongoPipeMigrationException("Could not read pipeline file " + file.getAbsolutePath(), e);
       }
     }
+    return content;
+  }
+
+  @Override
+  public Pipeline getPipeline() {
+    if (pipeline == null) {
+      // The raw content is read only once and shared with the content hash.
+      pipeline = toPojo(new InputStreamReader(new ByteArrayInputStream(getContent()), Charset.defaultCharset().newDecoder()),
+          Pipeline.class);
+    }
     return pipeline;
   }
 
@@ -63,4 +70,22 @@ public class FileMigratablePipeline implements MigratablePipeline {
   public String getSourceName() {
     return file.getAbsolutePath();
   }
+
+  @Override
+  public String getSourcePath() {
+    return file.getAbsolutePath();
+  }
+
+  @Override
+  public Long getSize() {
+    return file.length();
+  }
+
+  @Override
+  public String getContentHash() {
+    if (contentHash == null) {
+      contentHash = getHash(getContent());
+    }
+    return contentHash;
+  }
 }
@@ -16,25 +16,19 @@
 
 package org.mongopipe.core.migration.source;
 
-import org.mongopipe.core.Pipelines;
 import org.mongopipe.core.exception.MongoPipeMigrationException;
-import org.mongopipe.core.logging.CustomLogFactory;
-import org.mongopipe.core.logging.Log;
 import org.mongopipe.core.model.Pipeline;
 
-import java.io.IOException;
+import java.io.ByteArrayInputStream;
 import java.io.InputStreamReader;
-import java.io.Reader;
-import java.net.URL;
 import java.nio.charset.Charset;
-import java.util.Collections;
-import java.util.Optional;
 
 import static org.mongopipe.core.util.BsonUtil.toPojo;
+import static org.mongopipe.core.util.MigrationUtil.getHash;
 
 public class JarMigratablePipeline implements MigratablePipeline {
-  private static final Log LOG = CustomLogFactory.getLogger(JarMigratablePipeline.class);
   private Pipeline pipeline;
+  private String contentHash;
   private JarPipelineEntry jarPipelineEntry;
 
   public JarMigratablePipeline(JarPipelineEntry jarPipelineEntry) {
@@ -46,32 +40,19 @@ public class JarMigratablePipeline implements MigratablePipeline {
     return jarPipelineEntry.getLastModifiedTime();
   }
 
+  private byte[] getContent() {
+    if (jarPipelineEntry.getContent() == null) {
+      throw new MongoPipeMigrationException("Missing content for " + jarPipelineEntry);
+    }
+    return jarPipelineEntry.getContent();
+  }
+
   @Override
   public Pipeline getPipeline() {
     if (pipeline == null) {
-      // https://stackoverflow.com/questions/3923129/get-a-list-of-resources-from-classpath-directory#comment67155595_3923685
-      Reader reader = null;
-      try {
-        Optional<URL> pipelineUrlOptional = Collections.list(
-            Thread.currentThread().getContextClassLoader().getResources(jarPipelineEntry.getPath())).stream()
-            .filter(url -> url.getPath().contains(jarPipelineEntry.getJarPath()))
-            .findFirst();
-        if (!pipelineUrlOptional.isPresent()) {
-          throw new MongoPipeMigrationException("Can not find pipeline for " + jarPipelineEntry);
-        }
-        reader = new InputStreamReader(pipelineUrlOptional.get().openStream(), Charset.defaultCharset().newDecoder());
-        pipeline = toPojo(reader, Pipeline.class);
-      } catch (IOException e) {
-        throw new MongoPipeMigrationException(e);
-      } finally {
-        if (reader != null) {
-          try {
-            reader.close();
-          } catch (IOException e) {
-            LOG.error(e.getMessage(), e);
-          }
-        }
-      }
+      // The raw content is read only once and shared with the content hash.
+      pipeline = toPojo(new InputStreamReader(new ByteArrayInputStream(getContent()), Charset.defaultCharset().newDecoder()),
+          Pipeline.class);
     }
     return pipeline;
   }
@@ -80,4 +61,22 @@ public class JarMigratablePipeline implements MigratablePipeline {
   public String getSourceName() {
     return jarPipelineEntry.getJarPath();
   }
+
+  @Override
+  public String getSourcePath() {
+    return jarPipelineEntry.getJarPath() + "!/" + jarPipelineEntry.getPath();
+  }
+
+  @Override
+  public Long getSize() {
+    return jarPipelineEntry.getSize();
+  }
+
+  @Override
+  public String getContentHash() {
+    if (contentHash == null) {
+      contentHash = getHash(getContent());
+    }
+    return contentHash;
+  }
 }
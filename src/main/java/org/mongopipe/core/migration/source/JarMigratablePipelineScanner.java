@@ -22,12 +22,17 @@ import org.mongopipe.core.exception.MongoPipeMigrationException;
 import org.mongopipe.core.logging.CustomLogFactory;
 import org.mongopipe.core.logging.Log;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.JarURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.List;
+import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.stream.Collectors;
 
@@ -50,12 +55,38 @@ public class JarMigratablePipelineScanner implements MigratablePipelineScanner {
     }
   }
 
-  private List<JarPipelineEntry> getPipelineEntries(JarFile jarFile, String pipelinesPath, URL url) {
+  /**
+   * Lists and reads the pipeline entries in a single pass over the already opened jar, instead of looking up each entry again on the
+   * classpath later. The content is kept so that the pipelines can be parsed and hashed without reading them again.
+   */
+  private List<JarPipelineEntry> getPipelineEntries(JarFile jarFile, String pipelinesPath, URL url) throws IOException {
     String prefix = jarFile.getName().toLowerCase().endsWith(".war") ? "WEB-INF/classes/" : "";
-    return jarFile.stream()
-        .filter(entry -> entry.getName().startsWith(prefix + pipelinesPath) && CANDIDATE_EXTENSIONS.contains(getExtension(entry.getName())))
-        .map(entry -> new JarPipelineEntry(entry.getName().substring(prefix.length()), entry.getTime(), url.getPath()))
-        .collect(Collectors.toList());
+    // Location of the jar itself, e.g. for "file:/app.jar!/BOOT-INF/lib/lib.jar!/pipelines" is "file:/app.jar!/BOOT-INF/lib/lib.jar".
+    String jarPath = url.getPath().contains("!/") ? url.getPath().substring(0, url.getPath().lastIndexOf("!/")) : url.getPath();
+    List<JarPipelineEntry> pipelineEntries = new ArrayList<>();
+    Enumeration<JarEntry> entries = jarFile.entries();
+    while (entries.hasMoreElements()) {
+      JarEntry entry = entries.nextElement();
+      if (!entry.isDirectory() && entry.getName().startsWith(prefix + pipelinesPath)
+          && CANDIDATE_EXTENSIONS.contains(getExtension(entry.getName()))) {
+        byte[] content = readContent(jarFile, entry);
+        pipelineEntries.add(new JarPipelineEntry(entry.getName().substring(prefix.length()), entry.getTime(), jarPath,
+            (long) content.length, content));
+      }
+    }
+    return pipelineEntries;
+  }
+
+  private static byte[] readContent(JarFile jarFile, JarEntry entry) throws IOException {
+    try (InputStream inputStream = jarFile.getInputStream(entry)) {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream(entry.getSize() > 0 ? (int) entry.getSize() : 4096);
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = inputStream.read(buffer)) != -1) {
+        outputStream.write(buffer, 0, read);
+      }
+      return outputStream.toByteArray();
+    }
   }
 
   @Override
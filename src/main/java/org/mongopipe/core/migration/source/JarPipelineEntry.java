@@ -20,6 +20,8 @@ public class JarPipelineEntry {
   private String path;
   private Long lastModifiedTime;
   private String jarPath;
+  private Long size;
+  private byte[] content; // Raw entry content, read while scanning the jar.
 
   public JarPipelineEntry(String path, Long lastModifiedTime, String jarPath) {
     this.path = path;
@@ -27,6 +29,12 @@ public class JarPipelineEntry {
     this.jarPath = jarPath;
   }
 
+  public JarPipelineEntry(String path, Long lastModifiedTime, String jarPath, Long size, byte[] content) {
+    this(path, lastModifiedTime, jarPath);
+    this.size = size;
+    this.content = content;
+  }
+
   public String getPath() {
     return path;
   }
@@ -51,8 +59,25 @@ public class JarPipelineEntry {
     this.jarPath = jarPath;
   }
 
+  public Long getSize() {
+    return size;
+  }
+
+  public void setSize(Long size) {
+    this.size = size;
+  }
+
+  public byte[] getContent() {
+    return content;
+  }
+
+  public void setContent(byte[] content) {
+    this.content = content;
+  }
+
   @Override
   public java.lang.String toString() {
-    return "JarPipelineEntry(path=" + this.getPath() + ", lastModifiedTime=" + this.getLastModifiedTime() + ", jarPath=" + this.getJarPath() + ")";
+    return "JarPipelineEntry(path=" + this.getPath() + ", lastModifiedTime=" + this.getLastModifiedTime() + ", jarPath=" + this.getJarPath()
+        + ", size=" + this.getSize() + ")";
   }
 }
\ No newline at end of file
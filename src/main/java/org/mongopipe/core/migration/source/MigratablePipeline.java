@@ -18,8 +18,41 @@ package org.mongopipe.core.migration.source;
 
 import org.mongopipe.core.model.Pipeline;
 
+import static org.mongopipe.core.util.MigrationUtil.getChecksum;
+
 public interface MigratablePipeline {
   Long getLastModifiedTime();
   Pipeline getPipeline();
   String getSourceName();
+
+  /**
+   * @return the unique location of this pipeline inside its source (e.g. file path or jar entry path). Used as the migration manifest key.
+   *         A null value means the source can not be identified and the pipeline will always be parsed and compared.
+   */
+  default String getSourcePath() {
+    return getSourceName();
+  }
+
+  /**
+   * @return the raw content size in bytes or null if unknown.
+   */
+  default Long getSize() {
+    return null;
+  }
+
+  /**
+   * @return the hash of the raw source content. Unlike the last modified time it does not change when a jar is rebuilt with the same files.
+   *         Implementations reading raw files should hash the bytes instead of parsing the pipeline.
+   */
+  default String getContentHash() {
+    return getChecksum(getPipeline());
+  }
+
+  /**
+   * @return the checksum of the parsed pipeline content, see MigrationUtil#getChecksum. Sources having it precomputed (e.g. a pipeline
+   *         bundle) can return it without decoding the pipeline.
+   */
+  default String getPipelineChecksum() {
+    return getChecksum(getPipeline());
+  }
 }
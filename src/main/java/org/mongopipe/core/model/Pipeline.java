@@ -18,13 +18,16 @@ package org.mongopipe.core.model;
 
 import org.bson.BsonDocument;
 import org.bson.codecs.pojo.annotations.BsonId;
+import org.bson.codecs.pojo.annotations.BsonIgnore;
 import org.bson.conversions.Bson;
 import org.mongopipe.core.runner.command.param.CommandOptions;
 import org.mongopipe.core.util.BsonUtil;
+import org.mongopipe.core.util.MigrationUtil;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 import static org.mongopipe.core.util.BsonUtil.escapeJsonFieldValue;
@@ -125,6 +128,9 @@ public class Pipeline {
    */
   protected Serializable extra;
 
+  @BsonIgnore
+  private transient volatile ChecksumCache checksumCache;
+
   public Pipeline() {
   }
 
@@ -242,6 +248,7 @@ public class Pipeline {
 
   public void setId(String id) {
     this.id = id;
+    checksumCache = null;
   }
 
   public Long getVersion() {
@@ -274,6 +281,7 @@ public class Pipeline {
 
   public void setPipeline(List<BsonDocument> pipeline) {
     this.pipeline = pipeline;
+    checksumCache = null;
   }
 
   public String getPipelineAsString() {
@@ -282,6 +290,7 @@ public class Pipeline {
 
   public void setPipelineAsString(String pipelineAsString) {
     this.pipelineAsString = pipelineAsString;
+    checksumCache = null;
   }
 
   public String getCollection() {
@@ -290,6 +299,7 @@ public class Pipeline {
 
   public void setCollection(String collection) {
     this.collection = collection;
+    checksumCache = null;
   }
 
   public String getDescription() {
@@ -298,6 +308,7 @@ public class Pipeline {
 
   public void setDescription(String description) {
     this.description = description;
+    checksumCache = null;
   }
 
   public CommandOptions getCommandOptions() {
@@ -310,6 +321,7 @@ public class Pipeline {
 
   public void setCommandOptions(CommandOptions commandOptions) {
     this.commandOptions = commandOptions;
+    checksumCache = null;
   }
 
   public Serializable getExtra() {
@@ -318,6 +330,29 @@ public class Pipeline {
 
   public void setExtra(Serializable extra) {
     this.extra = extra;
+    checksumCache = null;
+  }
+
+  /**
+   * @return the checksum of the pipeline content. It is cached and recomputed only after the version changes or a content setter is called.
+   */
+  public String checksum() {
+    ChecksumCache cache = checksumCache;
+    if (cache == null || !Objects.equals(cache.version, version)) {
+      cache = new ChecksumCache(version, MigrationUtil.computeChecksum(this));
+      checksumCache = cache;
+    }
+    return cache.checksum;
+  }
+
+  private static final class ChecksumCache {
+    private final Long version;
+    private final String checksum;
+
+    private ChecksumCache(Long version, String checksum) {
+      this.version = version;
+      this.checksum = checksum;
+    }
   }
 
   @Override
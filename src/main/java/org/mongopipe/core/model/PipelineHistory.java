@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.model;
+
+import org.bson.codecs.pojo.annotations.BsonId;
+
+import java.time.LocalDateTime;
+
+/**
+ * An archived version of a pipeline, saved on each pipeline update or delete when MongoPipeConfig#storeHistoryEnabled.
+ * Each version is kept separately under the (pipelineId, version) key.
+ */
+public class PipelineHistory {
+  @BsonId
+  protected String id;
+  protected String pipelineId;
+  protected Long version;
+  /**
+   * When the version was archived, used also for the retention (MongoPipeConfig#storeHistoryTtlSeconds).
+   */
+  protected LocalDateTime archivedAt;
+  protected Pipeline pipeline;
+
+  public PipelineHistory() {
+  }
+
+  private PipelineHistory(Builder builder) {
+    setPipelineId(builder.pipelineId);
+    setVersion(builder.version);
+    setArchivedAt(builder.archivedAt);
+    setPipeline(builder.pipeline);
+    setId(toId(pipelineId, version));
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * @return the history document id for the given pipeline version.
+   */
+  public static String toId(String pipelineId, Long version) {
+    return pipelineId + ":" + version;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public void setId(String id) {
+    this.id = id;
+  }
+
+  public String getPipelineId() {
+    return pipelineId;
+  }
+
+  public void setPipelineId(String pipelineId) {
+    this.pipelineId = pipelineId;
+  }
+
+  public Long getVersion() {
+    return version;
+  }
+
+  public void setVersion(Long version) {
+    this.version = version;
+  }
+
+  public LocalDateTime getArchivedAt() {
+    return archivedAt;
+  }
+
+  public void setArchivedAt(LocalDateTime archivedAt) {
+    this.archivedAt = archivedAt;
+  }
+
+  public Pipeline getPipeline() {
+    return pipeline;
+  }
+
+  public void setPipeline(Pipeline pipeline) {
+    this.pipeline = pipeline;
+  }
+
+  public static final class Builder {
+    private String pipelineId;
+    private Long version;
+    private LocalDateTime archivedAt;
+    private Pipeline pipeline;
+
+    private Builder() {
+    }
+
+    public Builder pipelineId(String val) {
+      pipelineId = val;
+      return this;
+    }
+
+    public Builder version(Long val) {
+      version = val;
+      return this;
+    }
+
+    public Builder archivedAt(LocalDateTime val) {
+      archivedAt = val;
+      return this;
+    }
+
+    public Builder pipeline(Pipeline val) {
+      pipeline = val;
+      return this;
+    }
+
+    public PipelineHistory build() {
+      return new PipelineHistory(this);
+    }
+  }
+}
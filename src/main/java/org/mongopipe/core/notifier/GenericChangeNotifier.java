@@ -23,4 +23,11 @@ public class GenericChangeNotifier {
   public void fire() {
     publisher.firePropertyChange("change", null, null);
   }
+
+  /**
+   * Trigger a named event carrying the changed value, allowing listeners to apply only that change.
+   */
+  public void fire(String eventName, Object value) {
+    publisher.firePropertyChange(eventName, null, value);
+  }
 }
@@ -17,14 +17,26 @@
 package org.mongopipe.core.runner;
 
 
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoIterable;
+import org.bson.BsonDocument;
 import org.bson.Document;
 import org.mongopipe.core.Stores;
+import org.mongopipe.core.exception.CircuitOpenException;
 import org.mongopipe.core.exception.MongoPipeConfigException;
 import org.mongopipe.core.exception.MongoPipeRunException;
+import org.mongopipe.core.logging.CustomLogFactory;
+import org.mongopipe.core.logging.Log;
 import org.mongopipe.core.model.Pipeline;
+import org.mongopipe.core.runner.cache.DiskResultCache;
+import org.mongopipe.core.runner.cache.ResultCache;
 import org.mongopipe.core.runner.command.AggregateCommand;
+import org.mongopipe.core.runner.command.BatchUpdateCommand;
+import org.mongopipe.core.runner.command.BatchUpdateResult;
 import org.mongopipe.core.runner.command.CommandSupplier;
 import org.mongopipe.core.runner.command.FindOneAndUpdateCommand;
+import org.mongopipe.core.runner.command.MicroBatcher;
+import org.mongopipe.core.runner.command.MongoCommand;
 import org.mongopipe.core.runner.command.UpdateManyCommand;
 import org.mongopipe.core.runner.command.UpdateOneCommand;
 import org.mongopipe.core.runner.command.param.AggregateParams;
@@ -32,15 +44,31 @@ import org.mongopipe.core.runner.command.param.FindOneAndUpdateOptions;
 import org.mongopipe.core.runner.command.param.UpdateManyOptions;
 import org.mongopipe.core.runner.command.param.UpdateOneOptions;
 import org.mongopipe.core.runner.context.RunContext;
+import org.mongopipe.core.runner.cursor.CursorPrefetcher;
+import org.mongopipe.core.runner.cursor.CursorSpliterator;
+import org.mongopipe.core.runner.evaluation.BsonParameterEvaluator;
+import org.mongopipe.core.runner.reactive.ReactiveResults;
+import org.mongopipe.core.runner.resilience.CircuitBreaker;
+import org.mongopipe.core.runner.resilience.CircuitBreakingIterable;
 import org.mongopipe.core.store.PipelineStore;
 import org.mongopipe.core.util.BsonUtil;
+import org.mongopipe.core.util.PipelineUtil;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -52,6 +80,7 @@ import static org.mongopipe.core.util.ReflectionUtil.getMethodGenericType;
  * Use the {@link Stores} class to create a runner. A runner is thread safe and does not need to be recreated.
  */
 public class PipelineRunner {
+  private static final Log LOG = CustomLogFactory.getLogger(PipelineRunner.class);
   static Map<String, CommandSupplier> SUPPLIERS = new HashMap<>();
 
   // Consider also allowing the calling directly the driver API with the evaluated pipeline, in future.
@@ -74,23 +103,97 @@ public class PipelineRunner {
     this.pipelineStore = pipelineStore;
   }
 
+  public RunContext getRunContext() {
+    return runContext;
+  }
+
   /**
    * Allows running a pipeline event if it was not previously stored with PipelineStore in the db.
    * @param returnContainerClass  In case return type is a List, Iterable, Stream, etc
    */
   public <T> T run(Pipeline pipeline, Class returnClass, Class<T> returnContainerClass, Map<String, ?> parameters) {
+    AggregateParams aggregateParams = pipeline.getCommandOptions() instanceof AggregateParams ?
+        (AggregateParams) pipeline.getCommandOptions() : null;
+    boolean fallbackSafe = aggregateParams != null && Boolean.TRUE.equals(aggregateParams.getFallbackSafe());
+    boolean cacheResults = aggregateParams != null && (Boolean.TRUE.equals(aggregateParams.getCacheResults())
+        || Boolean.TRUE.equals(aggregateParams.getCacheOnDisk()));
+    return run(pipeline, returnClass, returnContainerClass, parameters, cacheResults || fallbackSafe, fallbackSafe);
+  }
+
+  /**
+   * Same as {@link PipelineRunner#run(Pipeline, Class, Class, Map)} but caches the results in the ResultCache of the run context, even if
+   * AggregateParams#cacheResults is not set. Only aggregate pipelines returning a List, Iterable or Stream are cached.
+   */
+  public <T> T runCached(Pipeline pipeline, Class returnClass, Class<T> returnContainerClass, Map<String, ?> parameters) {
+    return runCached(pipeline, returnClass, returnContainerClass, parameters, false);
+  }
+
+  /**
+   * @param fallbackSafe same as AggregateParams#fallbackSafe.
+   * @see PipelineRunner#runCached(Pipeline, Class, Class, Map)
+   */
+  public <T> T runCached(Pipeline pipeline, Class returnClass, Class<T> returnContainerClass, Map<String, ?> parameters,
+      boolean fallbackSafe) {
+    AggregateParams aggregateParams = pipeline.getCommandOptions() instanceof AggregateParams ?
+        (AggregateParams) pipeline.getCommandOptions() : null;
+    return run(pipeline, returnClass, returnContainerClass, parameters, true,
+        fallbackSafe || aggregateParams != null && Boolean.TRUE.equals(aggregateParams.getFallbackSafe()));
+  }
+
+  private <T> T run(Pipeline pipeline, Class returnClass, Class<T> returnContainerClass, Map<String, ?> parameters,
+      boolean cacheResults, boolean fallbackSafe) {
     validate(pipeline);
     if (Arrays.asList(List.class, Stream.class, Iterable.class).contains(returnClass)) {
       returnContainerClass = returnClass;
       returnClass = Document.class;
     }
     Class pojoClass = returnClass != null ? returnClass : Document.class;
-    CommandSupplier commandSupplier = SUPPLIERS.get(pipeline.getCommandOptions() == null ?
-        AggregateParams.TYPE : pipeline.getCommandOptions().getType());
-    Object result = commandSupplier.build(pipeline, runContext, parameters == null ? Collections.emptyMap() : parameters,
-        pojoClass).run();
+    if (parameters == null) {
+      parameters = Collections.emptyMap();
+    }
+    boolean deduplicated = runContext.getMongoPipeConfig().isSingleFlightEnabled() && List.class.equals(returnContainerClass);
+    if ((cacheResults || deduplicated) && isMaterializable(pipeline, returnContainerClass)) {
+      return runMaterialized(pipeline, pojoClass, returnContainerClass, parameters, cacheResults, fallbackSafe);
+    }
+    String commandType = pipeline.getCommandOptions() == null ? AggregateParams.TYPE : pipeline.getCommandOptions().getType();
+    MongoCommand command = SUPPLIERS.get(commandType).build(pipeline, runContext, parameters, pojoClass);
+    CircuitBreaker circuitBreaker = runContext.getCircuitBreaker();
+    boolean isAggregate = AggregateParams.TYPE.equals(commandType);
+    if (isAggregate && isPublisher(returnContainerClass)) {
+      // Each subscriber gets its own cursor, the aggregate command only builds it.
+      return (T) ReactiveResults.toCursorPublisher(() -> (Iterable) runLazily(command, circuitBreaker, pipeline), pipeline, runContext);
+    }
+    Object result;
+    if (circuitBreaker == null) {
+      result = command.run();
+    } else if (isAggregate) {
+      if (List.class.equals(returnContainerClass)) {
+        // Read entirely here, so the outcome covers all the reads.
+        Class resultClass = returnClass;
+        Class<T> containerClass = returnContainerClass;
+        return circuitBreaker.call(pipeline.getId(), () -> mapFinalResult(command.run(), pipeline, resultClass, containerClass));
+      }
+      result = runLazily(command, circuitBreaker, pipeline);
+    } else {
+      result = circuitBreaker.call(pipeline.getId(), command::run);
+    }
 
-    return mapFinalResult(result, returnClass, returnContainerClass);
+    if (isPublisher(returnContainerClass)) {
+      return (T) ReactiveResults.toPublisher(result, pipeline, runContext);
+    }
+    return mapFinalResult(result, pipeline, returnClass, returnContainerClass);
+  }
+
+  /**
+   * Runs an aggregate command, whose cursor is read by the caller.
+   * @return the results, if a circuit breaker is configured it is checked and the outcome recorded when the cursor is opened.
+   */
+  private static Object runLazily(MongoCommand command, CircuitBreaker circuitBreaker, Pipeline pipeline) {
+    Object result = command.run();
+    if (circuitBreaker != null && result instanceof MongoIterable) {
+      return new CircuitBreakingIterable<>((MongoIterable<?>) result, circuitBreaker, pipeline.getId());
+    }
+    return result;
   }
 
   /**
@@ -111,7 +214,131 @@ public class PipelineRunner {
     }
   }
 
-  private <T> T mapFinalResult(Object result, Class resultClass, Class<T> returnContainerClass) {
+  /**
+   * Cursors (Publisher or a single result mapped from a cursor) are neither cached nor deduplicated.
+   */
+  private static boolean isMaterializable(Pipeline pipeline, Class containerClass) {
+    boolean isAggregate = pipeline.getCommandOptions() == null || AggregateParams.TYPE.equals(pipeline.getCommandOptions().getType());
+    return isAggregate && Arrays.asList(List.class, Stream.class, Iterable.class).contains(containerClass);
+  }
+
+  /**
+   * Runs the aggregate pipeline reading all the results, through the SingleFlight and if "cacheResults" through the ResultCache:
+   * <ul>
+   *   <li>An expired result is returned while refreshed in the background, for ResultCacheConfig#staleWhileRevalidateMs.</li>
+   *   <li>If "fallbackSafe" and the database fails or the circuit is open, the last known result is returned, for
+   *   ResultCacheConfig#staleIfErrorMs.</li>
+   *   <li>With AggregateParams#cacheOnDisk the results missing in memory are read from the DiskResultCache.</li>
+   *   <li>With ResultCacheConfig#subsumptionEnabled missing document results are computed from broader cached results.</li>
+   * </ul>
+   */
+  private <T> T runMaterialized(Pipeline pipeline, Class pojoClass, Class<T> returnContainerClass, Map<String, ?> parameters,
+      boolean cacheResults, boolean fallbackSafe) {
+    ResultCache resultCache = runContext.getResultCache();
+    ResultCache.Key key = ResultCache.key(pipeline, parameters, pojoClass);
+    AggregateParams aggregateParams = pipeline.getCommandOptions() instanceof AggregateParams ?
+        (AggregateParams) pipeline.getCommandOptions() : null;
+    DiskResultCache diskCache = cacheResults && aggregateParams != null && Boolean.TRUE.equals(aggregateParams.getCacheOnDisk()) ?
+        resultCache.getDiskCache() : null;
+    boolean subsumable = cacheResults && resultCache.getConfig().isSubsumptionEnabled()
+        && (Document.class.equals(pojoClass) || BsonDocument.class.equals(pojoClass));
+    List<BsonDocument> stages = subsumable ? new BsonParameterEvaluator(parameters).evaluate(pipeline.getPipeline()) : null;
+    if (cacheResults) {
+      List<Object> results = resultCache.get(key);
+      if (results == null && diskCache != null) {
+        long generation = resultCache.getGeneration();
+        results = diskCache.get(key, pojoClass);
+        if (results != null) {
+          results = Collections.unmodifiableList(results);
+          resultCache.put(key, PipelineUtil.getReadCollections(pipeline), results, generation);
+        }
+      }
+      if (results == null && stages != null) {
+        long generation = resultCache.getGeneration();
+        List<BsonDocument> documents = resultCache.getSubsumed(key, stages);
+        if (documents != null) {
+          results = Collections.unmodifiableList(documents.stream()
+              .map(document -> BsonDocument.class.equals(pojoClass) ? document : BsonUtil.toPojo(document, pojoClass))
+              .collect(Collectors.toList()));
+          resultCache.put(key, PipelineUtil.getReadCollections(pipeline), stages, results, generation);
+        }
+      }
+      long staleWhileRevalidateMs = resultCache.getConfig().getStaleWhileRevalidateMs();
+      if (results == null && staleWhileRevalidateMs > 0) {
+        results = resultCache.getStale(key, staleWhileRevalidateMs);
+        if (results != null) {
+          refreshInBackground(pipeline, pojoClass, parameters, key, stages, diskCache);
+        }
+      }
+      if (results != null) {
+        return toContainer(results, returnContainerClass);
+      }
+    }
+    try {
+      return toContainer(fetch(pipeline, pojoClass, parameters, key, cacheResults, stages, diskCache), returnContainerClass);
+    } catch (MongoException | CircuitOpenException e) {
+      List<Object> lastKnown = fallbackSafe ? resultCache.getStale(key, resultCache.getConfig().getStaleIfErrorMs()) : null;
+      if (lastKnown == null) {
+        throw e;
+      }
+      LOG.warn("Returning the last known results of pipeline '{}' after: {}", pipeline.getId(), e.getMessage());
+      return toContainer(lastKnown, returnContainerClass);
+    }
+  }
+
+  private List<Object> fetch(Pipeline pipeline, Class pojoClass, Map<String, ?> parameters, ResultCache.Key key, boolean cacheResults,
+      List<BsonDocument> stages, DiskResultCache diskCache) {
+    Set<String> collections = PipelineUtil.getReadCollections(pipeline);
+    CircuitBreaker circuitBreaker = runContext.getCircuitBreaker();
+    return runContext.getSingleFlight().run(key, collections, generation -> {
+      Supplier<List<Object>> read = () -> {
+        Iterable<Object> cursor = (Iterable<Object>) new AggregateCommand(pipeline, runContext, parameters, pojoClass).run();
+        return Collections.unmodifiableList(StreamSupport.stream(cursor.spliterator(), false).collect(Collectors.toList()));
+      };
+      List<Object> results = circuitBreaker != null ? circuitBreaker.call(pipeline.getId(), read) : read.get();
+      ResultCache resultCache = runContext.getResultCache();
+      if (cacheResults) {
+        resultCache.put(key, collections, stages, results, generation);
+      }
+      if (diskCache != null && !resultCache.isInvalidatedAfter(key, collections, generation)) {
+        long diskTtlMs = resultCache.getConfig().getDiskTtlMs();
+        diskCache.put(key, collections, results, diskTtlMs > 0 ? System.currentTimeMillis() + diskTtlMs : 0);
+      }
+      return results;
+    });
+  }
+
+  private void refreshInBackground(Pipeline pipeline, Class pojoClass, Map<String, ?> parameters, ResultCache.Key key,
+      List<BsonDocument> stages, DiskResultCache diskCache) {
+    ResultCache resultCache = runContext.getResultCache();
+    if (!resultCache.startRefresh(key)) {
+      return; // Already refreshing.
+    }
+    try {
+      runContext.getAsyncExecutor().execute(() -> {
+        try {
+          fetch(pipeline, pojoClass, parameters, key, true, stages, diskCache);
+        } catch (RuntimeException e) {
+          LOG.warn("Could not refresh the results of pipeline '{}': {}", pipeline.getId(), e.getMessage());
+        } finally {
+          resultCache.endRefresh(key);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      resultCache.endRefresh(key);
+    }
+  }
+
+  private static <T> T toContainer(List<Object> results, Class<T> returnContainerClass) {
+    // The callers get their own list, the elements are shared.
+    return (T) (Stream.class.equals(returnContainerClass) ? results.stream() : new ArrayList<>(results));
+  }
+
+  private static boolean isPublisher(Class containerClass) {
+    return containerClass != null && ReactiveResults.PUBLISHER_CLASS_NAME.equals(containerClass.getName());
+  }
+
+  private <T> T mapFinalResult(Object result, Pipeline pipeline, Class resultClass, Class<T> returnContainerClass) {
     if (result == null) {
       return (T) result;
     }
@@ -140,7 +367,12 @@ public class PipelineRunner {
       }
 
       if (Stream.class.equals(returnContainerClass)) {
-        if (result instanceof Iterable) {
+        if (result instanceof MongoIterable) {
+          AggregateParams aggregateParams = pipeline.getCommandOptions() instanceof AggregateParams
+              ? (AggregateParams) pipeline.getCommandOptions() : null;
+          return (T) CursorSpliterator.stream((MongoIterable) result, aggregateParams == null ? null : aggregateParams.getBatchSize(),
+              pipeline.getId());
+        } else if (result instanceof Iterable) {
           return (T) StreamSupport.stream(((Iterable) result).spliterator(), false);
         } else {
           return (T) Stream.of(result);
@@ -195,6 +427,30 @@ public class PipelineRunner {
     return run(pipelineStore.getPipeline(pipelineId), elementClass, List.class, parameters);
   }
 
+  public long runAndBatch(String pipelineId, Map<String, ?> parameters, int batchSize, Consumer<List<Document>> consumer) {
+    return runAndBatch(pipelineId, Document.class, parameters, batchSize, consumer);
+  }
+
+  /**
+   * Runs the pipeline and gives the results to the consumer in batches of the given size, on the calling thread. While the consumer
+   * processes a batch the next one is fetched from the database on the async executor (MongoPipeConfig#asyncExecutor). The results are
+   * always read from the database cursor, never cached (AggregateParams#cacheResults) nor deduplicated.
+   * E.g.: <code>
+   *   Pipelines.getRunner().runAndBatch("matchingPizzasBySize", Pizza.class, Maps.of("pizzaSize", "medium"), 500, pizzas -> ...)
+   * </code>
+   * @return the number of results.
+   */
+  public <T> long runAndBatch(String pipelineId, Class<T> elementClass, Map<String, ?> parameters, int batchSize,
+      Consumer<List<T>> consumer) {
+    Pipeline pipeline = getPipeline(pipelineId);
+    if (pipeline.getCommandOptions() != null && !AggregateParams.TYPE.equals(pipeline.getCommandOptions().getType())) {
+      throw new MongoPipeConfigException("Only aggregate pipelines can be run in batches: " + pipelineId);
+    }
+    // Not materialized, the prefetcher needs the cursor.
+    Object results = run(pipeline, elementClass, Iterable.class, parameters, false, false);
+    return new CursorPrefetcher<>((Iterable<T>) results, batchSize, runContext.getAsyncExecutor()).forEachBatch(consumer);
+  }
+
 
   public <T> T run(String pipelineId, Map<String, ?> parameters, Class<T> returnClass) {
     return (T) run(pipelineStore.getPipeline(pipelineId), returnClass, getContainerReturnType(returnClass), parameters);
@@ -214,6 +470,156 @@ public class PipelineRunner {
         parameters);
   }
 
+  /**
+   * Runs the pipeline on the MongoPipeConfig#asyncExecutor without blocking the calling thread. Cursor results (List, Iterable, Stream) are
+   * fully read before completing, so that consuming the result does not block on the database.
+   * E.g.: <code>
+   *   CompletableFuture&lt;List&lt;Pizza&gt;&gt; pizzas = runner.runAsync(pipeline, Pizza.class, List.class, Maps.of("pizzaSize", "medium"));
+   * </code>
+   * @param returnContainerClass  In case return type is a List, Iterable, Stream, etc
+   */
+  public <T> CompletableFuture<T> runAsync(Pipeline pipeline, Class returnClass, Class<T> returnContainerClass, Map<String, ?> parameters) {
+    return supplyAsync(returnContainerClass, containerClass -> run(pipeline, returnClass, containerClass, parameters));
+  }
+
+  /**
+   * Same as {@link PipelineRunner#runAsync(Pipeline, Class, Class, Map)} but through the ResultCache, see
+   * {@link PipelineRunner#runCached(Pipeline, Class, Class, Map, boolean)}.
+   */
+  public <T> CompletableFuture<T> runCachedAsync(Pipeline pipeline, Class returnClass, Class<T> returnContainerClass,
+      Map<String, ?> parameters, boolean fallbackSafe) {
+    return supplyAsync(returnContainerClass, containerClass -> runCached(pipeline, returnClass, containerClass, parameters, fallbackSafe));
+  }
+
+  private <T> CompletableFuture<T> supplyAsync(Class<T> returnContainerClass, Function<Class, Object> run) {
+    return CompletableFuture.supplyAsync(() -> {
+      if (Iterable.class.equals(returnContainerClass) || Stream.class.equals(returnContainerClass)) {
+        List result = (List) run.apply(List.class);
+        return (T) (Stream.class.equals(returnContainerClass) ? result.stream() : result);
+      }
+      return (T) run.apply(returnContainerClass);
+    }, runContext.getAsyncExecutor());
+  }
+
+  /**
+   * @see PipelineRunner#runAsync(Pipeline, Class, Class, Map)
+   */
+  public <T> CompletableFuture<T> runAsync(String pipelineId, Class returnClass, Class<T> containerClass, Map<String, ?> parameters) {
+    return runAsync(getPipeline(pipelineId), returnClass, containerClass, parameters);
+  }
+
+  public <T> CompletableFuture<T> runAsync(String pipelineId, Class<T> returnClass, Map<String, ?> parameters) {
+    return runAsync(getPipeline(pipelineId), returnClass, null, parameters);
+  }
+
+  /**
+   * Runs the pipeline asynchronously and returns the results as a list of elements of given type.
+   * E.g.: <code>
+   *   Pipelines.getRunner().runAndListAsync("matchingPizzasBySize", Pizza.class, Maps.of("pizzaSize", "medium"))
+   * </code>
+   */
+  public <T> CompletableFuture<List<T>> runAndListAsync(String pipelineId, Class<T> elementClass, Map<String, ?> parameters) {
+    return runAsync(getPipeline(pipelineId), elementClass, (Class<List<T>>) (Class) List.class, parameters);
+  }
+
+  /**
+   * Runs the same pipeline once for each parameter set, concurrently on the MongoPipeConfig#asyncExecutor, with at most "parallelism"
+   * runs in progress. The pipeline is fetched once.
+   * E.g.: <code>
+   *   runner.runAll("salesReport", Report.class, regions.stream().map(region -&gt; Maps.of("region", region)).collect(toList()), 8)
+   * </code>
+   * @return the results of each parameter set, in the order of the parameter sets.
+   */
+  public <T> List<List<T>> runAll(String pipelineId, Class<T> elementClass, List<Map<String, ?>> paramSets, int parallelism) {
+    if (parallelism <= 0) {
+      throw new MongoPipeRunException("Parallelism must be positive: " + parallelism);
+    }
+    Pipeline pipeline = getPipeline(pipelineId);
+    Semaphore permits = new Semaphore(parallelism);
+    List<CompletableFuture<List<T>>> runs = new ArrayList<>(paramSets.size());
+    try {
+      for (Map<String, ?> parameters : paramSets) {
+        permits.acquire();
+        CompletableFuture<List<T>> run = runAsync(pipeline, elementClass, (Class<List<T>>) (Class) List.class, parameters);
+        run.whenComplete((result, error) -> permits.release());
+        runs.add(run);
+        if (run.isCompletedExceptionally()) {
+          break; // No need to start the rest, the error is thrown below.
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      runs.forEach(run -> run.cancel(false));
+      throw new MongoPipeRunException("Interrupted while running pipeline: " + pipelineId, e);
+    }
+    List<List<T>> results = new ArrayList<>(runs.size());
+    for (CompletableFuture<List<T>> run : runs) {
+      try {
+        results.add(run.join());
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+      }
+    }
+    return results;
+  }
+
+  public List<List<Document>> runAll(String pipelineId, List<Map<String, ?>> paramSets, int parallelism) {
+    return runAll(pipelineId, Document.class, paramSets, parallelism);
+  }
+
+  /**
+   * Same as {@link PipelineRunner#runAll(String, Class, List, int)} but merges the results, keeping the order of the parameter sets.
+   */
+  public <T> Stream<T> runAllAndStream(String pipelineId, Class<T> elementClass, List<Map<String, ?>> paramSets, int parallelism) {
+    return runAll(pipelineId, elementClass, paramSets, parallelism).stream().flatMap(List::stream);
+  }
+
+  /**
+   * Runs an updateOne/updateMany pipeline for each parameter set, sending the updates in unordered bulk writes instead of one round trip
+   * per update.
+   * E.g.: <code>
+   *   runner.runBatch("updatePizzaPrice", Arrays.asList(Maps.of("name", "Cheese", "price", 12), Maps.of("name", "Vegan", "price", 16)))
+   * </code>
+   */
+  public BatchUpdateResult runBatch(String pipelineId, List<? extends Map<String, ?>> paramSets) {
+    return runBatch(pipelineId, paramSets, BatchUpdateCommand.DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * @param batchSize maximum number of updates sent in one bulk write.
+   * @see PipelineRunner#runBatch(String, List)
+   */
+  public BatchUpdateResult runBatch(String pipelineId, List<? extends Map<String, ?>> paramSets, int batchSize) {
+    return runBatch(getPipeline(pipelineId), paramSets, batchSize);
+  }
+
+  public BatchUpdateResult runBatch(Pipeline pipeline, List<? extends Map<String, ?>> paramSets, int batchSize) {
+    validate(pipeline);
+    return new BatchUpdateCommand(pipeline, runContext, paramSets, batchSize).run();
+  }
+
+  /**
+   * Runs an updateOne/updateMany pipeline together with the other concurrent calls of the same pipeline, in a single bulkWrite.
+   * @return a future completed when the update was written, or failed with the error of this update.
+   * @see MicroBatcher
+   */
+  public CompletableFuture<Void> runMicroBatched(Pipeline pipeline, Map<String, ?> parameters) {
+    validate(pipeline);
+    return runContext.getMicroBatcher(pipeline.getId()).submit(pipeline, parameters == null ? Collections.emptyMap() : parameters);
+  }
+
+  public CompletableFuture<Void> runMicroBatched(String pipelineId, Map<String, ?> parameters) {
+    return runMicroBatched(getPipeline(pipelineId), parameters);
+  }
+
+  private Pipeline getPipeline(String pipelineId) {
+    Pipeline pipeline = pipelineStore.getPipeline(pipelineId);
+    if (pipeline == null) {
+      throw new MongoPipeRunException("Pipeline not found in store(database) for id: " + pipelineId);
+    }
+    return pipeline;
+  }
+
   private void validate(Pipeline pipeline) {
     // Allow running pipelines without an id, to make the api easier to use, and for pipelines not previously saved in db.
     if (pipeline.getCollection() == null) {
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.batch;
+
+import org.bson.Document;
+import org.mongopipe.core.Pipelines;
+import org.mongopipe.core.annotation.Batchable;
+import org.mongopipe.core.exception.MongoPipeConfigException;
+import org.mongopipe.core.model.Pipeline;
+import org.mongopipe.core.runner.context.RunContext;
+import org.mongopipe.core.util.BsonUtil;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mongopipe.core.util.ReflectionUtil.getAsyncResultType;
+import static org.mongopipe.core.util.ReflectionUtil.getRawClass;
+import static org.mongopipe.core.util.ReflectionUtil.getTypeArgumentClass;
+import static org.mongopipe.core.util.ReflectionUtil.isAsyncReturnType;
+
+/**
+ * Collects the calls of @Batchable methods made by the current thread and runs each pipeline once for all the requested keys when the
+ * scope is dispatched or closed. Scopes are per thread and can be nested, the inner scope collecting the calls until it is closed.
+ * @see Batchable
+ */
+public class BatchScope implements AutoCloseable {
+  private static final ThreadLocal<BatchScope> CURRENT = new ThreadLocal<>();
+
+  private final BatchScope parent;
+  // Calls grouped by the pipeline run they can share.
+  private Map<BatchKey, List<PendingLoad>> pendingLoads = new LinkedHashMap<>();
+
+  private BatchScope(BatchScope parent) {
+    this.parent = parent;
+  }
+
+  /**
+   * Opens a scope on the current thread, to be closed (e.g. by try-with-resources) on the same thread.
+   */
+  public static BatchScope open() {
+    BatchScope scope = new BatchScope(CURRENT.get());
+    CURRENT.set(scope);
+    return scope;
+  }
+
+  /**
+   * Called for a @Batchable method call, defers the call if a scope is open on the current thread or runs it immediately otherwise.
+   * @return the future result of the call.
+   */
+  public static CompletableFuture<Object> load(RunContext runContext, Pipeline pipeline, Method method, Map<String, Object> params) {
+    if (!isAsyncReturnType(method)) {
+      throw new MongoPipeConfigException("@Batchable method '" + method + "' needs to return a CompletableFuture or a CompletionStage");
+    }
+    Batchable batchable = method.getAnnotation(Batchable.class);
+    if (!params.containsKey(batchable.value())) {
+      throw new MongoPipeConfigException("@Batchable key parameter '" + batchable.value() + "' not found on method '" + method + "'");
+    }
+    Map<String, Object> otherParams = new HashMap<>(params);
+    Object key = otherParams.remove(batchable.value());
+    PendingLoad pendingLoad = new PendingLoad(key);
+    BatchScope scope = CURRENT.get();
+    if (scope != null) {
+      scope.pendingLoads.computeIfAbsent(new BatchKey(runContext, pipeline, method, otherParams), batchKey -> new ArrayList<>())
+          .add(pendingLoad);
+    } else {
+      run(new BatchKey(runContext, pipeline, method, otherParams), Collections.singletonList(pendingLoad));
+    }
+    return pendingLoad.result;
+  }
+
+  /**
+   * Runs the pipelines for the calls collected so far, completing their futures.
+   */
+  public void dispatch() {
+    while (!pendingLoads.isEmpty()) {
+      Map<BatchKey, List<PendingLoad>> loads = pendingLoads;
+      pendingLoads = new LinkedHashMap<>(); // Calls made from the completion callbacks go into the next round.
+      loads.forEach(BatchScope::run);
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      dispatch();
+    } finally {
+      if (parent != null) {
+        CURRENT.set(parent);
+      } else {
+        CURRENT.remove();
+      }
+    }
+  }
+
+  private static void run(BatchKey batchKey, List<PendingLoad> loads) {
+    Batchable batchable = batchKey.method.getAnnotation(Batchable.class);
+    Set<Object> keys = new LinkedHashSet<>();
+    loads.forEach(load -> keys.add(load.key));
+    Map<String, Object> params = new HashMap<>(batchKey.otherParams);
+    params.put(batchable.value(), new ArrayList<>(keys));
+
+    Type resultType = getAsyncResultType(batchKey.method);
+    boolean listResult = List.class.equals(getRawClass(resultType));
+    Class elementClass = listResult ? getTypeArgumentClass(resultType) : getRawClass(resultType);
+    List<Document> documents;
+    try {
+      documents = Pipelines.getRunner(batchKey.runContext.getId()).run(batchKey.pipeline, Document.class, List.class, params);
+    } catch (RuntimeException e) {
+      loads.forEach(load -> load.result.completeExceptionally(e));
+      return;
+    }
+
+    Map<Object, List<Object>> resultsByKey = new HashMap<>();
+    for (Document document : documents) {
+      Object result = Document.class.equals(elementClass) || Object.class.equals(elementClass) ? document
+          : BsonUtil.toPojo(document.toBsonDocument(), elementClass);
+      resultsByKey.computeIfAbsent(normalize(document.get(batchable.resultKey())), key -> new ArrayList<>()).add(result);
+    }
+    for (PendingLoad load : loads) {
+      List<Object> results = resultsByKey.getOrDefault(normalize(load.key), Collections.emptyList());
+      load.result.complete(listResult ? results : results.isEmpty() ? null : results.get(0));
+    }
+  }
+
+  /**
+   * Numbers are compared by value since the key type may differ from the stored one (e.g. Integer key and Double field).
+   */
+  private static Object normalize(Object key) {
+    if (key instanceof Number) {
+      return new BigDecimal(key.toString()).stripTrailingZeros();
+    }
+    return key;
+  }
+
+  private static class PendingLoad {
+    final Object key;
+    final CompletableFuture<Object> result = new CompletableFuture<>();
+
+    PendingLoad(Object key) {
+      this.key = key;
+    }
+  }
+
+  private static class BatchKey {
+    final RunContext runContext;
+    final Pipeline pipeline;
+    final Method method;
+    final Map<String, Object> otherParams;
+
+    BatchKey(RunContext runContext, Pipeline pipeline, Method method, Map<String, Object> otherParams) {
+      this.runContext = runContext;
+      this.pipeline = pipeline;
+      this.method = method;
+      this.otherParams = otherParams;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof BatchKey)) {
+        return false;
+      }
+      BatchKey batchKey = (BatchKey) o;
+      return runContext == batchKey.runContext && pipeline.getId().equals(batchKey.pipeline.getId()) && method.equals(batchKey.method)
+          && otherParams.equals(batchKey.otherParams);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(pipeline.getId(), method, otherParams);
+    }
+  }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.cache;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.mongopipe.core.runner.local.DocumentMatcher;
+import org.mongopipe.core.runner.local.LocalAggregation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mongopipe.core.runner.local.BsonComparison.compare;
+import static org.mongopipe.core.runner.local.BsonComparison.getBracket;
+import static org.mongopipe.core.runner.local.BsonComparison.isEqual;
+import static org.mongopipe.core.runner.local.BsonComparison.isNullOrMissing;
+import static org.mongopipe.core.runner.local.DocumentMatcher.isOperatorDocument;
+
+/**
+ * Decides if a run can be answered from the cached results of a broader run of the same pipeline. The cached run must be
+ * <code>[{$match: broader}, ...cachedTail]</code> and the new one <code>[{$match: narrower}, ...cachedTail, ...rest]</code> where:
+ * <ul>
+ *   <li>every document matching "narrower" also matches "broader", checked conservatively per field (equal values, $in subsets, narrower
+ *   ranges) so that a false "true" is never returned,</li>
+ *   <li>the cached tail has only $sort and field inclusion/exclusion $project stages keeping the fields filtered by "narrower",</li>
+ *   <li>"narrower" and the rest of the stages can be run locally (see LocalAggregation).</li>
+ * </ul>
+ * The new results are then <code>[{$match: narrower}, ...rest]</code> run over the cached results.
+ */
+public class CacheSubsumption {
+  private static final Set<String> RANGE_OPERATORS = new HashSet<>(Arrays.asList("$gt", "$gte", "$lt", "$lte"));
+
+  private CacheSubsumption() {
+  }
+
+  /**
+   * @param cachedStages the evaluated stages of the cached run.
+   * @param stages the evaluated stages of the new run.
+   * @return the stages to run locally over the cached results, or null if the new run is not subsumed by the cached one.
+   */
+  public static List<BsonDocument> getLocalStages(List<BsonDocument> cachedStages, List<BsonDocument> stages) {
+    BsonDocument broader = getLeadingMatch(cachedStages);
+    List<BsonDocument> cachedTail = cachedStages.subList(broader.isEmpty() && !startsWithMatch(cachedStages) ? 0 : 1, cachedStages.size());
+    BsonDocument narrower = getLeadingMatch(stages);
+    List<BsonDocument> tail = stages.subList(narrower.isEmpty() && !startsWithMatch(stages) ? 0 : 1, stages.size());
+
+    if (tail.size() < cachedTail.size() || !tail.subList(0, cachedTail.size()).equals(cachedTail)
+        || !DocumentMatcher.isSupported(narrower)) {
+      return null;
+    }
+    Set<String> filteredPaths = new HashSet<>();
+    addFilteredPaths(narrower, filteredPaths);
+    for (BsonDocument stage : cachedTail) {
+      if (!isFilterPreserving(stage, filteredPaths)) {
+        return null;
+      }
+    }
+    List<BsonDocument> localStages = new ArrayList<>();
+    if (!narrower.isEmpty()) {
+      localStages.add(new BsonDocument("$match", narrower));
+    }
+    localStages.addAll(tail.subList(cachedTail.size(), tail.size()));
+    return LocalAggregation.isSupported(localStages) && implies(narrower, broader) ? localStages : null;
+  }
+
+  private static boolean startsWithMatch(List<BsonDocument> stages) {
+    return !stages.isEmpty() && stages.get(0).size() == 1 && stages.get(0).containsKey("$match")
+        && stages.get(0).get("$match").isDocument();
+  }
+
+  private static BsonDocument getLeadingMatch(List<BsonDocument> stages) {
+    return startsWithMatch(stages) ? stages.get(0).getDocument("$match") : new BsonDocument();
+  }
+
+  private static void addFilteredPaths(BsonDocument filter, Set<String> paths) {
+    filter.forEach((key, value) -> {
+      if (("$and".equals(key) || "$or".equals(key) || "$nor".equals(key)) && value.isArray()) {
+        value.asArray().stream().filter(BsonValue::isDocument).forEach(clause -> addFilteredPaths(clause.asDocument(), paths));
+      } else if (!key.startsWith("$") || "$expr".equals(key)) {
+        paths.add(key);
+      }
+    });
+  }
+
+  /**
+   * @return true if filtering after the stage gives the same documents as filtering before it.
+   */
+  private static boolean isFilterPreserving(BsonDocument stage, Set<String> filteredPaths) {
+    if (stage.size() != 1) {
+      return false;
+    }
+    if (stage.containsKey("$sort")) {
+      return true;
+    }
+    BsonValue projection = stage.get("$project");
+    // The fields used by an $expr are not known.
+    return projection != null && projection.isDocument() && LocalAggregation.isFieldProjection(projection.asDocument())
+        && !filteredPaths.contains("$expr") && filteredPaths.stream().allMatch(path -> isKept(path, projection.asDocument()));
+  }
+
+  private static boolean isKept(String path, BsonDocument projection) {
+    boolean inclusion = LocalAggregation.isInclusion(projection);
+    if (inclusion && (path.equals("_id") || path.startsWith("_id."))) {
+      BsonValue id = projection.get("_id");
+      return id == null || isTrue(id);
+    }
+    boolean covered = false;
+    for (Map.Entry<String, BsonValue> entry : projection.entrySet()) {
+      String projected = entry.getKey();
+      if (projected.startsWith(path + ".")) {
+        return false; // Only part of the filtered value is kept or removed.
+      }
+      if ((projected.equals(path) || path.startsWith(projected + ".")) && (!inclusion || isTrue(entry.getValue()))) {
+        covered = true;
+      }
+    }
+    return inclusion == covered;
+  }
+
+  private static boolean isTrue(BsonValue value) {
+    return value.isBoolean() ? value.asBoolean().getValue() : value.asNumber().doubleValue() != 0;
+  }
+
+  /**
+   * @return true if every document matching the narrower filter matches also the broader one. False is returned when not sure.
+   */
+  public static boolean implies(BsonDocument narrower, BsonDocument broader) {
+    Map<String, List<BsonValue>> narrowerFields = new LinkedHashMap<>();
+    List<BsonDocument> narrowerClauses = new ArrayList<>();
+    addConjuncts(narrower, narrowerFields, narrowerClauses);
+    Map<String, List<BsonValue>> broaderFields = new LinkedHashMap<>();
+    List<BsonDocument> broaderClauses = new ArrayList<>();
+    addConjuncts(broader, broaderFields, broaderClauses);
+
+    if (!narrowerClauses.containsAll(broaderClauses)) {
+      return false; // Other logical operators ($or, $nor) must be the same.
+    }
+    for (Map.Entry<String, List<BsonValue>> field : broaderFields.entrySet()) {
+      List<BsonValue> conditions = narrowerFields.getOrDefault(field.getKey(), Collections.emptyList());
+      for (BsonValue broaderCondition : field.getValue()) {
+        if (!implies(conditions, broaderCondition)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static void addConjuncts(BsonDocument filter, Map<String, List<BsonValue>> fields, List<BsonDocument> clauses) {
+    filter.forEach((key, value) -> {
+      if ("$and".equals(key) && value.isArray() && value.asArray().stream().allMatch(BsonValue::isDocument)) {
+        value.asArray().forEach(clause -> addConjuncts(clause.asDocument(), fields, clauses));
+      } else if ("$comment".equals(key)) {
+        return;
+      } else if (key.startsWith("$")) {
+        clauses.add(new BsonDocument(key, value));
+      } else {
+        fields.computeIfAbsent(key, path -> new ArrayList<>()).add(value);
+      }
+    });
+  }
+
+  private static boolean implies(List<BsonValue> narrowerConditions, BsonValue broaderCondition) {
+    if (narrowerConditions.contains(broaderCondition)) {
+      return true;
+    }
+    if (!isOperatorDocument(broaderCondition)) {
+      return !broaderCondition.isRegularExpression() && impliesOperator(narrowerConditions, "$eq", broaderCondition);
+    }
+    BsonDocument operators = broaderCondition.asDocument();
+    if (operators.containsKey("$regex") || operators.containsKey("$options")) {
+      return false; // Only the same condition.
+    }
+    return operators.entrySet().stream().allMatch(operator -> impliesOperator(narrowerConditions, operator.getKey(), operator.getValue()));
+  }
+
+  private static boolean impliesOperator(List<BsonValue> narrowerConditions, String operator, BsonValue argument) {
+    for (BsonValue condition : narrowerConditions) {
+      BsonDocument narrowerOperators = isOperatorDocument(condition) ? condition.asDocument()
+          : condition.isRegularExpression() ? new BsonDocument() : new BsonDocument("$eq", condition);
+      for (Map.Entry<String, BsonValue> narrowerOperator : narrowerOperators.entrySet()) {
+        if (impliesOperator(narrowerOperator.getKey(), narrowerOperator.getValue(), operator, argument)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return true if a value matching the narrower operator matches also the broader one.
+   */
+  private static boolean impliesOperator(String narrowerOperator, BsonValue narrowerArgument, String operator, BsonValue argument) {
+    if (narrowerOperator.equals(operator) && narrowerArgument.equals(argument)) {
+      return true;
+    }
+    List<BsonValue> narrowerValues = "$eq".equals(narrowerOperator) ? Collections.singletonList(narrowerArgument)
+        : "$in".equals(narrowerOperator) && narrowerArgument.isArray() ? narrowerArgument.asArray().getValues() : null;
+    switch (operator) {
+      case "$eq":
+        return !isNullOrMissing(argument) && narrowerValues != null && !narrowerValues.isEmpty()
+            && narrowerValues.stream().allMatch(value -> isEqual(value, argument));
+      case "$in":
+        return argument.isArray() && narrowerValues != null
+            && narrowerValues.stream().allMatch(value -> !value.isRegularExpression() && isIn(value, argument.asArray()));
+      case "$gt":
+      case "$gte":
+      case "$lt":
+      case "$lte":
+        if (isNullOrMissing(argument)) {
+          return false;
+        }
+        if (narrowerValues != null) {
+          return !narrowerValues.isEmpty() && narrowerValues.stream().allMatch(value -> !value.isRegularExpression()
+              && getBracket(value) == getBracket(argument) && isInRange(compare(value, argument), operator));
+        }
+        return RANGE_OPERATORS.contains(narrowerOperator) && getBracket(narrowerArgument) == getBracket(argument)
+            && impliesRange(narrowerOperator, compare(narrowerArgument, argument), operator);
+      case "$exists":
+        boolean exists = argument.isBoolean() ? argument.asBoolean().getValue()
+            : argument.isNumber() && argument.asNumber().doubleValue() != 0;
+        if (narrowerValues != null) {
+          return exists && !narrowerValues.isEmpty()
+              && narrowerValues.stream().noneMatch(value -> isNullOrMissing(value) || value.isRegularExpression());
+        }
+        return exists && RANGE_OPERATORS.contains(narrowerOperator) && !isNullOrMissing(narrowerArgument);
+      default:
+        return false; // Only the same operator and argument.
+    }
+  }
+
+  private static boolean isIn(BsonValue value, BsonArray values) {
+    return values.stream().anyMatch(candidate -> !candidate.isRegularExpression() && isEqual(value, candidate));
+  }
+
+  private static boolean isInRange(int comparison, String operator) {
+    switch (operator) {
+      case "$gt":
+        return comparison > 0;
+      case "$gte":
+        return comparison >= 0;
+      case "$lt":
+        return comparison < 0;
+      default:
+        return comparison <= 0;
+    }
+  }
+
+  /**
+   * @param comparison the narrower bound compared to the broader bound.
+   */
+  private static boolean impliesRange(String narrowerOperator, int comparison, String operator) {
+    boolean narrowerLower = narrowerOperator.startsWith("$g");
+    if (narrowerLower != operator.startsWith("$g")) {
+      return false;
+    }
+    // An exclusive narrower bound equal to the broader bound is still inside it, an inclusive one only for an inclusive broader bound.
+    boolean sameBoundAllowed = narrowerOperator.length() == 3 || operator.length() == 4;
+    return narrowerLower ? comparison > 0 || comparison == 0 && sameBoundAllowed : comparison < 0 || comparison == 0 && sameBoundAllowed;
+  }
+}
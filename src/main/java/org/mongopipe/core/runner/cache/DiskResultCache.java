@@ -0,0 +1,386 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.cache;
+
+import org.bson.BsonArray;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.bson.BsonNull;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.mongopipe.core.logging.CustomLogFactory;
+import org.mongopipe.core.logging.Log;
+import org.mongopipe.core.util.BsonUtil;
+import org.mongopipe.core.util.PipelineUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Second level of the ResultCache, for expensive pipelines whose results stay valid for a long time (AggregateParams#cacheOnDisk).
+ * The results are kept as raw BSON in append-only segment files of ResultCacheConfig#diskDirectory, so that they survive restarts:
+ * <ul>
+ *   <li>Each record is a BSON document with the key, the read collections, the expiration and the results. A removal appends a tombstone
+ *   record with only the key.</li>
+ *   <li>On startup the segments are scanned in order to rebuild the in memory index, a record partially written on a crash ends the
+ *   scan of its segment.</li>
+ *   <li>When the segments exceed ResultCacheConfig#diskQuotaBytes the oldest segment is deleted with all its records.</li>
+ * </ul>
+ * The directory should be used by a single process.
+ */
+public class DiskResultCache {
+  private static final Log LOG = CustomLogFactory.getLogger(DiskResultCache.class);
+  private static final Pattern SEGMENT_NAME = Pattern.compile("results-(\\d+)\\.bson");
+  private static final int MIN_SEGMENTS = 4;
+
+  private final Path directory;
+  private final long quotaBytes;
+  private final long maxSegmentBytes;
+  private final ReentrantLock lock = new ReentrantLock();
+  // Segments by id, the last one is the one appended to.
+  private final TreeMap<Long, Segment> segments = new TreeMap<>();
+  private final Map<ResultCache.Key, Location> index = new HashMap<>();
+  private long totalBytes;
+
+  private static final class Segment {
+    final long id;
+    final Path path;
+    final FileChannel channel;
+    long size;
+
+    Segment(long id, Path path, FileChannel channel, long size) {
+      this.id = id;
+      this.path = path;
+      this.channel = channel;
+      this.size = size;
+    }
+  }
+
+  private static final class Location {
+    final Segment segment;
+    final long offset;
+    final int length;
+    final long expiresAt;
+    final Set<String> collections;
+
+    Location(Segment segment, long offset, int length, long expiresAt, Set<String> collections) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+      this.expiresAt = expiresAt;
+      this.collections = collections;
+    }
+  }
+
+  /**
+   * Opens the segments of the directory, creating it if missing.
+   */
+  public DiskResultCache(Path directory, long quotaBytes) throws IOException {
+    this.directory = directory;
+    this.quotaBytes = quotaBytes;
+    this.maxSegmentBytes = Math.max(1, quotaBytes / MIN_SEGMENTS);
+    Files.createDirectories(directory);
+    List<Path> paths = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "results-*.bson")) {
+      stream.forEach(paths::add);
+    }
+    for (Path path : paths) {
+      Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+      if (matcher.matches()) {
+        long id = Long.parseLong(matcher.group(1));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segments.put(id, new Segment(id, path, channel, channel.size()));
+      }
+    }
+    for (Segment segment : segments.values()) {
+      load(segment);
+      totalBytes += segment.size;
+    }
+    if (segments.isEmpty()) {
+      newSegment();
+    }
+  }
+
+  private void load(Segment segment) throws IOException {
+    ByteBuffer lengthBuffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+    long offset = 0;
+    while (offset + 4 <= segment.size) {
+      lengthBuffer.clear();
+      segment.channel.read(lengthBuffer, offset);
+      int length = lengthBuffer.getInt(0);
+      BsonDocument record = length >= 5 && offset + length <= segment.size ? read(segment, offset, length) : null;
+      if (record == null) {
+        break;
+      }
+      apply(record, segment, offset, length);
+      offset += length;
+    }
+    if (offset < segment.size) {
+      LOG.warn("Truncating the incomplete result cache segment {} at {} bytes", segment.path, offset);
+      segment.channel.truncate(offset);
+      segment.size = offset;
+    }
+  }
+
+  private void apply(BsonDocument record, Segment segment, long offset, int length) {
+    ResultCache.Key key = toKey(record.getDocument("key"));
+    if (!record.containsKey("results")) {
+      index.remove(key); // Tombstone.
+      return;
+    }
+    Set<String> collections = new LinkedHashSet<>();
+    record.getArray("collections").forEach(collection -> collections.add(collection.asString().getValue()));
+    index.put(key, new Location(segment, offset, length, record.getInt64("expiresAt").getValue(), collections));
+  }
+
+  private static BsonDocument read(Segment segment, long offset, int length) {
+    try {
+      ByteBuffer buffer = ByteBuffer.allocate(length);
+      while (buffer.hasRemaining()) {
+        if (segment.channel.read(buffer, offset + buffer.position()) < 0) {
+          return null;
+        }
+      }
+      buffer.flip();
+      return new BsonDocumentCodec().decode(new BsonBinaryReader(buffer), DecoderContext.builder().build());
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  private static BsonDocument toBson(ResultCache.Key key) {
+    return new BsonDocument("pipelineId", new BsonString(key.pipelineId))
+        .append("version", key.version == null ? BsonNull.VALUE : new BsonInt64(key.version))
+        .append("parametersHash", new BsonString(key.parametersHash))
+        .append("resultClass", new BsonString(key.resultClass));
+  }
+
+  private static ResultCache.Key toKey(BsonDocument key) {
+    BsonValue version = key.get("version");
+    return new ResultCache.Key(key.getString("pipelineId").getValue(), version.isNull() ? null : version.asInt64().getValue(),
+        key.getString("parametersHash").getValue(), key.getString("resultClass").getValue());
+  }
+
+  /**
+   * @return the results decoded as the given class, or null if missing or expired.
+   */
+  public <T> List<T> get(ResultCache.Key key, Class<T> resultClass) {
+    Location location;
+    lock.lock();
+    try {
+      location = index.get(key);
+      if (location != null && location.expiresAt > 0 && location.expiresAt <= System.currentTimeMillis()) {
+        remove(key);
+        location = null;
+      }
+    } finally {
+      lock.unlock();
+    }
+    // Read without the lock, the segment is only closed when deleted and then the read fails as a miss.
+    BsonDocument record = location == null ? null : read(location.segment, location.offset, location.length);
+    if (record == null) {
+      return null;
+    }
+    List<T> results = new ArrayList<>();
+    for (BsonValue result : record.getArray("results")) {
+      results.add(BsonUtil.toPojo(result.asDocument(), resultClass));
+    }
+    return results;
+  }
+
+  /**
+   * Appends the results, encoded as BSON documents.
+   * @param expiresAt the expiration time in milliseconds, 0 for no expiration.
+   */
+  public void put(ResultCache.Key key, Set<String> collections, List<Object> results, long expiresAt) {
+    BsonArray bsonResults = new BsonArray();
+    results.forEach(result -> bsonResults.add(BsonUtil.toBsonDocument(result)));
+    BsonArray bsonCollections = new BsonArray();
+    collections.forEach(collection -> bsonCollections.add(new BsonString(collection)));
+    BsonDocument record = new BsonDocument("key", toBson(key))
+        .append("collections", bsonCollections)
+        .append("expiresAt", new BsonInt64(expiresAt))
+        .append("results", bsonResults);
+    byte[] bytes = encode(record);
+    if (bytes.length > maxSegmentBytes) {
+      return; // Would not fit the quota.
+    }
+    lock.lock();
+    try {
+      Location location = append(bytes);
+      index.put(key, new Location(location.segment, location.offset, location.length, expiresAt, collections));
+    } catch (IOException e) {
+      LOG.warn("Could not write the results of pipeline '{}' to the disk cache: {}", key.pipelineId, e.getMessage());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static byte[] encode(BsonDocument record) {
+    BasicOutputBuffer buffer = new BasicOutputBuffer();
+    new BsonDocumentCodec().encode(new BsonBinaryWriter(buffer), record, EncoderContext.builder().build());
+    return buffer.toByteArray();
+  }
+
+  private Location append(byte[] bytes) throws IOException {
+    Segment segment = segments.lastEntry().getValue();
+    if (segment.size > 0 && segment.size + bytes.length > maxSegmentBytes) {
+      segment = newSegment();
+    }
+    long offset = segment.size;
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    while (buffer.hasRemaining()) {
+      segment.channel.write(buffer, offset + buffer.position());
+    }
+    segment.size += bytes.length;
+    totalBytes += bytes.length;
+    while (totalBytes > quotaBytes && segments.size() > 1) {
+      deleteOldestSegment();
+    }
+    return new Location(segment, offset, bytes.length, 0, Collections.emptySet());
+  }
+
+  private Segment newSegment() throws IOException {
+    long id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+    Path path = directory.resolve("results-" + id + ".bson");
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    Segment segment = new Segment(id, path, channel, channel.size());
+    segments.put(id, segment);
+    return segment;
+  }
+
+  private void deleteOldestSegment() throws IOException {
+    Segment oldest = segments.pollFirstEntry().getValue();
+    index.values().removeIf(location -> location.segment == oldest);
+    totalBytes -= oldest.size;
+    oldest.channel.close();
+    Files.deleteIfExists(oldest.path);
+  }
+
+  private void remove(ResultCache.Key key) {
+    if (index.remove(key) != null) {
+      try {
+        append(encode(new BsonDocument("key", toBson(key))));
+      } catch (IOException e) {
+        LOG.warn("Could not write the removal of a pipeline '{}' result to the disk cache: {}", key.pipelineId, e.getMessage());
+      }
+    }
+  }
+
+  private void removeIf(Predicate<Map.Entry<ResultCache.Key, Location>> predicate) {
+    lock.lock();
+    try {
+      List<ResultCache.Key> removed = new ArrayList<>();
+      for (Iterator<Map.Entry<ResultCache.Key, Location>> iterator = index.entrySet().iterator(); iterator.hasNext(); ) {
+        Map.Entry<ResultCache.Key, Location> entry = iterator.next();
+        if (predicate.test(entry)) {
+          removed.add(entry.getKey());
+        }
+      }
+      removed.forEach(this::remove);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void invalidate(String pipelineId) {
+    removeIf(entry -> entry.getKey().pipelineId.equals(pipelineId));
+  }
+
+  public void invalidateCollection(String collection) {
+    removeIf(entry -> entry.getValue().collections.contains(collection)
+        || entry.getValue().collections.contains(PipelineUtil.ANY_COLLECTION));
+  }
+
+  /**
+   * Deletes all the segments.
+   */
+  public void invalidateAll() {
+    lock.lock();
+    try {
+      index.clear();
+      while (!segments.isEmpty()) {
+        deleteOldestSegment();
+      }
+      newSegment();
+    } catch (IOException e) {
+      LOG.warn("Could not clear the disk cache {}: {}", directory, e.getMessage());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int size() {
+    lock.lock();
+    try {
+      return index.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getTotalBytes() {
+    lock.lock();
+    try {
+      return totalBytes;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Closes the segment files, the cached results stay on disk.
+   */
+  public void close() {
+    lock.lock();
+    try {
+      for (Segment segment : segments.values()) {
+        segment.channel.close();
+      }
+    } catch (IOException e) {
+      LOG.warn("Could not close the disk cache {}: {}", directory, e.getMessage());
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,457 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.cache;
+
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.mongopipe.core.config.ResultCacheConfig;
+import org.mongopipe.core.logging.CustomLogFactory;
+import org.mongopipe.core.logging.Log;
+import org.mongopipe.core.model.Pipeline;
+import org.mongopipe.core.runner.local.LocalAggregation;
+import org.mongopipe.core.util.BsonUtil;
+import org.mongopipe.core.util.MigrationUtil;
+import org.mongopipe.core.util.PipelineUtil;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.mongopipe.core.config.PojoCodecConfig.getCodecRegistry;
+
+/**
+ * In memory LRU cache of pipeline results, keyed by (pipelineId, version, hash of the parameters, result class). Entries expire after
+ * ResultCacheConfig#ttlMs and are removed when the pipeline is updated or deleted through the PipelineStore, or when one of the
+ * collections read by the pipeline is written through mongopipe (update commands and CrudStore methods). Writes made by other
+ * processes are not seen, for those rely on the TTL or call PipelineStore#refresh. The invalidations apply also to the second level
+ * DiskResultCache.<p>
+ * With ResultCacheConfig#subsumptionEnabled a missing document result can be computed from a broader cached result of the same pipeline,
+ * see CacheSubsumption.<p>
+ * NOTE: The cached result elements are shared between the callers, they should not be modified.
+ */
+public class ResultCache {
+  private static final Log LOG = CustomLogFactory.getLogger(ResultCache.class);
+  private final ResultCacheConfig config;
+  private final DiskResultCache diskCache;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // Access order for LRU.
+  // The entries kept for the subsumption, by their key without the parameters hash, see Key#withoutParameters.
+  private final Map<Key, Map<Key, Entry>> subsumableEntries = new HashMap<>();
+  private long weight;
+  // Incremented on each invalidation, so that a result computed before an invalidation is not cached after it. Per pipeline and per
+  // collection the generation of their last invalidation is kept, so that unrelated invalidations do not prevent caching.
+  private final AtomicLong generation = new AtomicLong();
+  private final Map<String, Long> pipelineInvalidations = new HashMap<>();
+  private final Map<String, Long> collectionInvalidations = new HashMap<>();
+  private long allInvalidation;
+  private final Set<Key> refreshing = ConcurrentHashMap.newKeySet();
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong subsumedCount = new AtomicLong();
+  private final List<Consumer<String>> collectionListeners = new CopyOnWriteArrayList<>();
+
+  public ResultCache(ResultCacheConfig config) {
+    this.config = config;
+    this.diskCache = createDiskCache(config);
+  }
+
+  private static DiskResultCache createDiskCache(ResultCacheConfig config) {
+    if (config.getDiskDirectory() == null) {
+      return null;
+    }
+    try {
+      return new DiskResultCache(Paths.get(config.getDiskDirectory()), config.getDiskQuotaBytes());
+    } catch (IOException e) {
+      LOG.warn("Disk result cache disabled, can not open {}: {}", config.getDiskDirectory(), e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * @return the second level cache on disk, or null if ResultCacheConfig#diskDirectory is not provided.
+   */
+  public DiskResultCache getDiskCache() {
+    return diskCache;
+  }
+
+  public static final class Key {
+    final String pipelineId;
+    final Long version;
+    final String parametersHash;
+    final String resultClass;
+
+    Key(String pipelineId, Long version, String parametersHash, String resultClass) {
+      this.pipelineId = pipelineId;
+      this.version = version;
+      this.parametersHash = parametersHash;
+      this.resultClass = resultClass;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) o;
+      return Objects.equals(pipelineId, key.pipelineId) && Objects.equals(version, key.version)
+          && parametersHash.equals(key.parametersHash) && resultClass.equals(key.resultClass);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(pipelineId, version, parametersHash, resultClass);
+    }
+
+    /**
+     * @return the key of all the runs of the same pipeline, version and result class.
+     */
+    Key withoutParameters() {
+      return new Key(pipelineId, version, "", resultClass);
+    }
+  }
+
+  private static final class Entry {
+    final List<Object> results;
+    final Set<String> collections;
+    final List<BsonDocument> stages; // The evaluated stages, kept only for the subsumption.
+    final long expiresAt;
+
+    Entry(List<Object> results, Set<String> collections, List<BsonDocument> stages, long expiresAt) {
+      this.results = results;
+      this.collections = collections;
+      this.stages = stages;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  /**
+   * @return the cache key, the parameters are sorted by name before hashing so that their order does not matter. Pipelines without an id
+   * (not stored) are identified by the hash of their collection and stages.
+   */
+  public static Key key(Pipeline pipeline, Map<String, ?> parameters, Class resultClass) {
+    String parametersHash = parameters == null || parameters.isEmpty() ? ""
+        : MigrationUtil.getHash(BsonUtil.toBsonDocument(new TreeMap<>(parameters)).toJson());
+    String pipelineId = pipeline.getId() != null ? pipeline.getId()
+        : MigrationUtil.getHash(pipeline.getCollection() + pipeline.getPipeline());
+    return new Key(pipelineId, pipeline.getVersion(), parametersHash, resultClass == null ? "" : resultClass.getName());
+  }
+
+  /**
+   * @return the current generation, to be passed to {@link #put} after computing a missing result.
+   */
+  public long getGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * @return the cached results or null if missing or expired.
+   */
+  public List<Object> get(Key key) {
+    List<Object> results = getStale(key, 0);
+    (results == null ? missCount : hitCount).incrementAndGet();
+    return results;
+  }
+
+  /**
+   * @param maxStalenessMs how long after their expiration the results are still returned.
+   * @return the cached results or null if missing or expired since more than maxStalenessMs.
+   */
+  public List<Object> getStale(Key key, long maxStalenessMs) {
+    lock.lock();
+    try {
+      Entry entry = entries.get(key);
+      if (entry == null || entry.expiresAt <= 0) {
+        return entry == null ? null : entry.results;
+      }
+      long now = System.currentTimeMillis();
+      // Expired entries are kept for the stale reads (ResultCacheConfig#staleWhileRevalidateMs and #staleIfErrorMs).
+      if (entry.expiresAt + Math.max(config.getStaleWhileRevalidateMs(), config.getStaleIfErrorMs()) <= now) {
+        remove(key);
+        return null;
+      }
+      return entry.expiresAt + maxStalenessMs > now ? entry.results : null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Marks the start of a background refresh of an expired result.
+   * @return false if a refresh of the key is already in progress.
+   */
+  public boolean startRefresh(Key key) {
+    return refreshing.add(key);
+  }
+
+  public void endRefresh(Key key) {
+    refreshing.remove(key);
+  }
+
+  public ResultCacheConfig getConfig() {
+    return config;
+  }
+
+  /**
+   * Caches the results unless the pipeline or one of its collections was invalidated since the given generation was read.
+   * @param collections the collections read by the pipeline, see PipelineUtil#getReadCollections.
+   */
+  public void put(Key key, Set<String> collections, List<Object> results, long generationBeforeRun) {
+    put(key, collections, null, results, generationBeforeRun);
+  }
+
+  /**
+   * @param stages the evaluated stages of the run, so that narrower runs can be answered from these results. Null if not needed.
+   * @see #put(Key, Set, List, long)
+   */
+  public void put(Key key, Set<String> collections, List<BsonDocument> stages, List<Object> results, long generationBeforeRun) {
+    long maxWeight = config.getMaxWeight();
+    if (maxWeight > 0 && results.size() > maxWeight) {
+      return;
+    }
+    long expiresAt = config.getTtlMs() > 0 ? System.currentTimeMillis() + config.getTtlMs() : 0;
+    lock.lock();
+    try {
+      if (isInvalidatedAfterLocked(key, collections, generationBeforeRun)) {
+        return;
+      }
+      remove(key);
+      Entry entry = new Entry(results, collections, stages, expiresAt);
+      entries.put(key, entry);
+      weight += results.size();
+      if (stages != null) {
+        subsumableEntries.computeIfAbsent(key.withoutParameters(), k -> new HashMap<>()).put(key, entry);
+      }
+      // Evict the least recently used.
+      Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+      while (iterator.hasNext() && (entries.size() > config.getMaxEntries() || (maxWeight > 0 && weight > maxWeight))) {
+        Map.Entry<Key, Entry> evicted = iterator.next();
+        iterator.remove();
+        removed(evicted.getKey(), evicted.getValue());
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Computes the results of a run from the cached results of a broader run of the same pipeline, version and result class, see
+   * CacheSubsumption. The cached results must be documents (Document or BsonDocument).
+   * @param stages the evaluated stages of the run.
+   * @return the result documents or null if no cached result subsumes the run.
+   */
+  public List<BsonDocument> getSubsumed(Key key, List<BsonDocument> stages) {
+    List<Map.Entry<Key, Entry>> candidates;
+    lock.lock();
+    try {
+      Map<Key, Entry> subsumable = subsumableEntries.get(key.withoutParameters());
+      if (subsumable == null) {
+        return null;
+      }
+      candidates = new ArrayList<>(subsumable.entrySet());
+    } finally {
+      lock.unlock();
+    }
+    // Matched outside the lock, the entries are not modified once cached.
+    long now = System.currentTimeMillis();
+    for (Map.Entry<Key, Entry> candidate : candidates) {
+      Entry entry = candidate.getValue();
+      if (entry.expiresAt > 0 && entry.expiresAt <= now) {
+        continue;
+      }
+      List<BsonDocument> localStages = CacheSubsumption.getLocalStages(entry.stages, stages);
+      if (localStages != null && touch(candidate.getKey(), entry)) {
+        List<BsonDocument> documents = entry.results.stream().map(ResultCache::toBsonDocument).collect(Collectors.toList());
+        subsumedCount.incrementAndGet();
+        return LocalAggregation.run(localStages, documents);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Marks the entry as used, for the LRU.
+   * @return false if the entry was removed or replaced meanwhile.
+   */
+  private boolean touch(Key key, Entry entry) {
+    lock.lock();
+    try {
+      return entries.get(key) == entry;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static BsonDocument toBsonDocument(Object result) {
+    if (result instanceof BsonDocument) {
+      return (BsonDocument) result;
+    }
+    return ((Document) result).toBsonDocument(BsonDocument.class, getCodecRegistry());
+  }
+
+  /**
+   * @return true if the pipeline or one of its collections was invalidated since the given generation was read.
+   */
+  public boolean isInvalidatedAfter(Key key, Set<String> collections, long generation) {
+    lock.lock();
+    try {
+      return isInvalidatedAfterLocked(key, collections, generation);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private boolean isInvalidatedAfterLocked(Key key, Set<String> collections, long generation) {
+    if (allInvalidation > generation || pipelineInvalidations.getOrDefault(key.pipelineId, 0L) > generation) {
+      return true;
+    }
+    for (String collection : collections) {
+      if (collectionInvalidations.getOrDefault(collection, 0L) > generation) {
+        return true;
+      }
+    }
+    // A result reading a collection given by a parameter depends on all the writes.
+    return collections.contains(PipelineUtil.ANY_COLLECTION)
+        && collectionInvalidations.values().stream().anyMatch(invalidation -> invalidation > generation);
+  }
+
+  private void remove(Key key) {
+    Entry removed = entries.remove(key);
+    if (removed != null) {
+      removed(key, removed);
+    }
+  }
+
+  private void removed(Key key, Entry entry) {
+    weight -= entry.results.size();
+    if (entry.stages != null) {
+      Key subsumableKey = key.withoutParameters();
+      Map<Key, Entry> subsumable = subsumableEntries.get(subsumableKey);
+      if (subsumable != null && subsumable.remove(key, entry) && subsumable.isEmpty()) {
+        subsumableEntries.remove(subsumableKey);
+      }
+    }
+  }
+
+  /**
+   * Removes all the cached results of a pipeline.
+   */
+  public void invalidate(String pipelineId) {
+    lock.lock();
+    try {
+      pipelineInvalidations.put(pipelineId, generation.incrementAndGet());
+      removeIf(entry -> Objects.equals(entry.getKey().pipelineId, pipelineId));
+    } finally {
+      lock.unlock();
+    }
+    if (diskCache != null) {
+      diskCache.invalidate(pipelineId);
+    }
+  }
+
+  /**
+   * Removes the cached results of all the pipelines reading the collection, to be called after writing to the collection.
+   */
+  public void invalidateCollection(String collection) {
+    lock.lock();
+    try {
+      collectionInvalidations.put(collection, generation.incrementAndGet());
+      removeIf(entry -> entry.getValue().collections.contains(collection)
+          || entry.getValue().collections.contains(PipelineUtil.ANY_COLLECTION));
+    } finally {
+      lock.unlock();
+    }
+    if (diskCache != null) {
+      diskCache.invalidateCollection(collection);
+    }
+    collectionListeners.forEach(listener -> listener.accept(collection));
+  }
+
+  /**
+   * @param listener called with the collection name on each {@link #invalidateCollection(String)}, i.e. after the writes through mongopipe.
+   */
+  public void addCollectionListener(Consumer<String> listener) {
+    collectionListeners.add(listener);
+  }
+
+  private void removeIf(Predicate<Map.Entry<Key, Entry>> predicate) {
+    entries.entrySet().removeIf(entry -> {
+      boolean matches = predicate.test(entry);
+      if (matches) {
+        removed(entry.getKey(), entry.getValue());
+      }
+      return matches;
+    });
+  }
+
+  public void invalidateAll() {
+    lock.lock();
+    try {
+      allInvalidation = generation.incrementAndGet();
+      entries.clear();
+      subsumableEntries.clear();
+      weight = 0;
+    } finally {
+      lock.unlock();
+    }
+    if (diskCache != null) {
+      diskCache.invalidateAll();
+    }
+  }
+
+  public int size() {
+    lock.lock();
+    try {
+      return entries.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * @return the number of results computed from broader cached results.
+   */
+  public long getSubsumedCount() {
+    return subsumedCount.get();
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.cache;
+
+import org.mongopipe.core.exception.MongoPipeRunException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+/**
+ * Deduplicates identical concurrent pipeline runs: while a run for a key (pipeline, version, parameters, result class) is in progress, the
+ * other callers with the same key wait for its result instead of sending the same query to the database. The results are materialized, so
+ * only List, Iterable and Stream results are deduplicated.<p>
+ * A caller does not join a run started before a write to one of the pipeline collections (see ResultCache#invalidateCollection), so that it
+ * still reads its own writes.<p>
+ * NOTE: The result elements are shared between the callers, they should not be modified.
+ */
+public class SingleFlight {
+  private final ResultCache resultCache;
+  private final Map<ResultCache.Key, Flight> flights = new ConcurrentHashMap<>();
+  private final AtomicLong deduplicatedCount = new AtomicLong();
+
+  public SingleFlight(ResultCache resultCache) {
+    this.resultCache = resultCache;
+  }
+
+  private static final class Flight {
+    final long generation;
+    final CompletableFuture<List<Object>> result = new CompletableFuture<>();
+
+    Flight(long generation) {
+      this.generation = generation;
+    }
+  }
+
+  /**
+   * @param collections the collections read by the pipeline, see PipelineUtil#getReadCollections.
+   * @param run runs the pipeline, receives the ResultCache generation read before the run.
+   * @return the results of the run in progress for the key, or of a new run.
+   */
+  public List<Object> run(ResultCache.Key key, Set<String> collections, LongFunction<List<Object>> run) {
+    Flight flight = new Flight(resultCache.getGeneration());
+    Flight inProgress = flights.putIfAbsent(key, flight);
+    if (inProgress != null) {
+      if (resultCache.isInvalidatedAfter(key, collections, inProgress.generation)) {
+        return run.apply(flight.generation); // Not shared, the run in progress might not see the latest writes.
+      }
+      deduplicatedCount.incrementAndGet();
+      return join(inProgress);
+    }
+    try {
+      List<Object> results = run.apply(flight.generation);
+      flight.result.complete(results);
+      return results;
+    } catch (RuntimeException | Error e) {
+      flight.result.completeExceptionally(e);
+      throw e;
+    } finally {
+      flights.remove(key, flight);
+    }
+  }
+
+  private static List<Object> join(Flight flight) {
+    try {
+      return flight.result.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new MongoPipeRunException(e.getCause().getMessage(), e.getCause());
+    }
+  }
+
+  /**
+   * @return the number of calls that got the result of an identical run in progress.
+   */
+  public long getDeduplicatedCount() {
+    return deduplicatedCount.get();
+  }
+}
@@ -18,12 +18,21 @@ package org.mongopipe.core.runner.command;
 
 import com.mongodb.client.AggregateIterable;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoIterable;
 import com.mongodb.client.model.Collation;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
 import org.mongopipe.core.runner.context.RunContext;
 import org.mongopipe.core.model.Pipeline;
 import org.mongopipe.core.runner.command.param.AggregateParams;
+import org.mongopipe.core.runner.cursor.TransformingIterable;
 import org.mongopipe.core.runner.evaluation.BsonParameterEvaluator;
+import org.mongopipe.core.runner.local.LocalAggregation;
+import org.mongopipe.core.runner.replication.ReplicatedCollections;
+import org.mongopipe.core.util.BsonUtil;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -48,7 +57,13 @@ public class AggregateCommand implements MongoCommand {
     MongoCollection mongoCollection = runContext.getMongoDatabase().getCollection(pipeline.getCollection());
     AggregateParams aggregateParams = pipeline.getCommandOptionsAs(AggregateParams.class);
 
-    List actualPipeline = bsonParameterEvaluator.evaluate(pipeline.getPipeline());
+    List<BsonDocument> actualPipeline = bsonParameterEvaluator.evaluate(pipeline.getPipeline());
+    ReplicatedCollections replicatedCollections = runContext.getReplicatedCollections();
+    boolean explain = aggregateParams != null && aggregateParams.getExplainVerbosity() != null;
+    int localStart = replicatedCollections == null || explain ? -1 : getLocalStart(actualPipeline, replicatedCollections);
+    if (localStart >= 0) {
+      return runWithLocalJoins(mongoCollection, aggregateParams, actualPipeline, localStart, replicatedCollections);
+    }
     AggregateIterable aggregateIterable = mongoCollection.aggregate(actualPipeline, returnPojoClass);
     if (aggregateParams != null) {
       setAggregationOptions(aggregateIterable, aggregateParams);
@@ -56,6 +71,43 @@ public class AggregateCommand implements MongoCommand {
     return aggregateIterable;
   }
 
+  /**
+   * Blocking stages (e.g. $sort, $limit, $group) after the $lookup keep the pipeline on the database, otherwise all the documents before
+   * the $lookup would be sent and buffered instead of only the reduced results.
+   * @return the index of the first $lookup against a replicated collection from which all the stages can run locally per document, or -1
+   * if none.
+   */
+  private static int getLocalStart(List<BsonDocument> stages, ReplicatedCollections replicatedCollections) {
+    for (int i = 0; i < stages.size(); i++) {
+      BsonValue lookup = stages.get(i).get("$lookup");
+      if (lookup != null && LocalAggregation.isEqualityLookup(lookup)
+          && LocalAggregation.isPerDocument(stages.subList(i, stages.size()))
+          && replicatedCollections.isReplicated(lookup.asDocument().getString("from").getValue())
+          && LocalAggregation.isSupported(stages.subList(i, stages.size()), replicatedCollections)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Runs the stages before the replicated $lookup on the database and the rest, all per document stages (e.g. $lookup, $unwind, $match,
+   * $project), in the JVM, joining each document with the replicated collection while the database cursor is read.
+   * @return the results, a lazy MongoIterable like for the database only runs.
+   */
+  private MongoIterable<Object> runWithLocalJoins(MongoCollection mongoCollection, AggregateParams aggregateParams,
+      List<BsonDocument> stages, int localStart, ReplicatedCollections replicatedCollections) {
+    AggregateIterable<BsonDocument> aggregateIterable = mongoCollection.aggregate(stages.subList(0, localStart), BsonDocument.class);
+    if (aggregateParams != null) {
+      setAggregationOptions(aggregateIterable, aggregateParams);
+    }
+    List<BsonDocument> localStages = stages.subList(localStart, stages.size());
+    Class resultClass = returnPojoClass != null ? returnPojoClass : Document.class;
+    return new TransformingIterable<>(aggregateIterable,
+        (Iterator<BsonDocument> documents) -> LocalAggregation.runPerDocument(localStages, documents, replicatedCollections))
+        .map(document -> BsonDocument.class.equals(resultClass) ? document : BsonUtil.toPojo(document, resultClass));
+  }
+
   private void setAggregationOptions(AggregateIterable aggregateIterable, AggregateParams aggregateParams) {
     aggregateIterable.allowDiskUse(aggregateParams.getAllowDiskUse());
     aggregateIterable.comment(aggregateParams.getComment());
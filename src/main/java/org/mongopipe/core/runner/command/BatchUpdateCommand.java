@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.command;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.WriteModel;
+import org.mongopipe.core.exception.MongoPipeConfigException;
+import org.mongopipe.core.model.Pipeline;
+import org.mongopipe.core.runner.command.param.UpdateManyOptions;
+import org.mongopipe.core.runner.command.param.UpdateOneOptions;
+import org.mongopipe.core.runner.context.RunContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs an updateOne/updateMany pipeline for many parameter sets. Each parameter set becomes an update model and the models are sent in
+ * unordered bulk writes of at most "batchSize" updates, instead of one round trip per update.
+ */
+public class BatchUpdateCommand implements MongoCommand {
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+  private final Pipeline pipeline;
+  private final RunContext runContext;
+  private final List<? extends Map<String, ?>> paramSets;
+  private final int batchSize;
+
+  public BatchUpdateCommand(Pipeline pipeline, RunContext runContext, List<? extends Map<String, ?>> paramSets, int batchSize) {
+    validateBatchable(pipeline);
+    if (batchSize <= 0) {
+      throw new MongoPipeConfigException("Batch size must be positive: " + batchSize);
+    }
+    this.pipeline = pipeline;
+    this.runContext = runContext;
+    this.paramSets = paramSets;
+    this.batchSize = batchSize;
+  }
+
+  static void validateBatchable(Pipeline pipeline) {
+    String type = pipeline.getCommandOptions() == null ? null : pipeline.getCommandOptions().getType();
+    if (!UpdateOneOptions.TYPE.equals(type) && !UpdateManyOptions.TYPE.equals(type)) {
+      throw new MongoPipeConfigException("Pipeline '" + pipeline.getId() + "' can not be run in batch, only '" + UpdateOneOptions.TYPE
+          + "' and '" + UpdateManyOptions.TYPE + "' pipelines can");
+    }
+  }
+
+  /**
+   * @return the update model of the pipeline for the given parameters.
+   */
+  static WriteModel toWriteModel(Pipeline pipeline, RunContext runContext, Map<String, ?> parameters) {
+    UpdateOneCommand command = UpdateManyOptions.TYPE.equals(pipeline.getCommandOptions().getType())
+        ? new UpdateManyCommand(pipeline, runContext, parameters, null) : new UpdateOneCommand(pipeline, runContext, parameters, null);
+    return command.toWriteModel();
+  }
+
+  @Override
+  public BatchUpdateResult run() {
+    MongoCollection mongoCollection = runContext.getMongoDatabase().getCollection(pipeline.getCollection());
+    BatchUpdateResult batchUpdateResult = new BatchUpdateResult();
+    List<WriteModel> writes = new ArrayList<>(Math.min(batchSize, paramSets.size()));
+    int offset = 0;
+    try {
+      for (Map<String, ?> parameters : paramSets) {
+        writes.add(toWriteModel(pipeline, runContext, parameters));
+        if (writes.size() == batchSize) {
+          write(mongoCollection, writes, offset, batchUpdateResult);
+          offset += writes.size();
+          writes.clear();
+        }
+      }
+      if (!writes.isEmpty()) {
+        write(mongoCollection, writes, offset, batchUpdateResult);
+      }
+    } finally {
+      runContext.getResultCache().invalidateCollection(pipeline.getCollection());
+    }
+    return batchUpdateResult;
+  }
+
+  private void write(MongoCollection mongoCollection, List<WriteModel> writes, int offset, BatchUpdateResult batchUpdateResult) {
+    try {
+      batchUpdateResult.add(mongoCollection.bulkWrite(writes, new BulkWriteOptions().ordered(false)), offset);
+    } catch (MongoBulkWriteException e) {
+      batchUpdateResult.add(e, offset);
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.command;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import org.bson.BsonValue;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Result of running an update pipeline for many parameter sets (PipelineRunner#runBatch). The counts are summed over all the bulk writes.
+ * Upserted ids and errors are keyed by the index of the parameter set that produced them. Since the writes are unordered a failed update
+ * does not stop the others.
+ */
+public class BatchUpdateResult {
+  private long matchedCount;
+  private long modifiedCount;
+  private final Map<Integer, BsonValue> upsertedIds = new LinkedHashMap<>();
+  private final Map<Integer, String> errors = new LinkedHashMap<>();
+
+  /**
+   * Adds the result of a bulk write whose first update was created from the parameter set at "offset".
+   */
+  void add(BulkWriteResult bulkWriteResult, int offset) {
+    if (!bulkWriteResult.wasAcknowledged()) {
+      return;
+    }
+    matchedCount += bulkWriteResult.getMatchedCount();
+    modifiedCount += bulkWriteResult.getModifiedCount();
+    for (BulkWriteUpsert upsert : bulkWriteResult.getUpserts()) {
+      upsertedIds.put(offset + upsert.getIndex(), upsert.getId());
+    }
+  }
+
+  void add(MongoBulkWriteException bulkWriteException, int offset) {
+    add(bulkWriteException.getWriteResult(), offset);
+    for (BulkWriteError error : bulkWriteException.getWriteErrors()) {
+      errors.put(offset + error.getIndex(), error.getMessage());
+    }
+  }
+
+  public long getMatchedCount() {
+    return matchedCount;
+  }
+
+  public long getModifiedCount() {
+    return modifiedCount;
+  }
+
+  public long getUpsertedCount() {
+    return upsertedIds.size();
+  }
+
+  /**
+   * @return the upserted document ids by parameter set index.
+   */
+  public Map<Integer, BsonValue> getUpsertedIds() {
+    return Collections.unmodifiableMap(upsertedIds);
+  }
+
+  /**
+   * @return the error messages by parameter set index.
+   */
+  public Map<Integer, String> getErrors() {
+    return Collections.unmodifiableMap(errors);
+  }
+
+  public boolean hasErrors() {
+    return !errors.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return "BatchUpdateResult{matchedCount=" + matchedCount + ", modifiedCount=" + modifiedCount + ", upsertedCount="
+        + upsertedIds.size() + ", errors=" + errors + '}';
+  }
+}
@@ -69,11 +69,15 @@ public class FindOneAndUpdateCommand implements MongoCommand {
 
     FindOneAndUpdateOptions updateOptions = buildUpdateOptions(baseFindUpdateParams);
     Object updateResult;
-    if (baseFindUpdateParams.getUpdateDocument() != null) {
-      updateResult = run(mongoCollection, filter, baseFindUpdateParams.getUpdateDocument(), updateOptions);
-    } else {
-      List actualPipeline = bsonParameterEvaluator.evaluate(pipeline.getPipeline());
-      updateResult = run(mongoCollection, filter, actualPipeline, updateOptions);
+    try {
+      if (baseFindUpdateParams.getUpdateDocument() != null) {
+        updateResult = run(mongoCollection, filter, baseFindUpdateParams.getUpdateDocument(), updateOptions);
+      } else {
+        List actualPipeline = bsonParameterEvaluator.evaluate(pipeline.getPipeline());
+        updateResult = run(mongoCollection, filter, actualPipeline, updateOptions);
+      }
+    } finally {
+      runContext.getResultCache().invalidateCollection(pipeline.getCollection());
     }
 
     return updateResult;
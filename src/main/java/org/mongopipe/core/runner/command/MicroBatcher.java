@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.command;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.WriteModel;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.mongopipe.core.exception.MongoPipeRunException;
+import org.mongopipe.core.model.Pipeline;
+import org.mongopipe.core.runner.context.RunContext;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects the updateOne/updateMany pipeline runs submitted concurrently (e.g. from many threads) and sends them in a single unordered
+ * bulkWrite. A batch is sent when it reaches MongoPipeConfig#microBatchMaxSize updates or MongoPipeConfig#microBatchWindowMs after its
+ * first update, whichever comes first. Each caller gets its own future, failed only if its own update failed.<p>
+ * NOTE: A bulk write reports the matched/modified counts only for the whole batch, so the callers do not get their own counts.
+ */
+public class MicroBatcher {
+  private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "mongopipe-micro-batch-timer");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final RunContext runContext;
+  private final int maxSize;
+  private final long windowMs;
+  private final ReentrantLock lock = new ReentrantLock();
+  private List<PendingUpdate> batch = new ArrayList<>();
+  private ScheduledFuture<?> scheduledFlush;
+
+  private static class PendingUpdate {
+    final String collection;
+    final WriteModel writeModel;
+    final CompletableFuture<Void> result = new CompletableFuture<>();
+
+    PendingUpdate(String collection, WriteModel writeModel) {
+      this.collection = collection;
+      this.writeModel = writeModel;
+    }
+  }
+
+  public MicroBatcher(RunContext runContext) {
+    MongoPipeConfig mongoPipeConfig = runContext.getMongoPipeConfig();
+    this.runContext = runContext;
+    this.maxSize = Math.max(1, mongoPipeConfig.getMicroBatchMaxSize());
+    this.windowMs = mongoPipeConfig.getMicroBatchWindowMs();
+  }
+
+  /**
+   * Adds the update of the given pipeline and parameters to the current batch.
+   * @return a future completed when the batch containing the update was written.
+   */
+  public CompletableFuture<Void> submit(Pipeline pipeline, Map<String, ?> parameters) {
+    BatchUpdateCommand.validateBatchable(pipeline);
+    PendingUpdate pendingUpdate = new PendingUpdate(pipeline.getCollection(),
+        BatchUpdateCommand.toWriteModel(pipeline, runContext, parameters));
+    List<PendingUpdate> fullBatch = null;
+    lock.lock();
+    try {
+      batch.add(pendingUpdate);
+      if (batch.size() >= maxSize || windowMs <= 0) {
+        fullBatch = takeBatch();
+      } else if (scheduledFlush == null) {
+        scheduledFlush = TIMER.schedule(this::flush, windowMs, TimeUnit.MILLISECONDS);
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (fullBatch != null) {
+      write(fullBatch);
+    }
+    return pendingUpdate.result;
+  }
+
+  private List<PendingUpdate> takeBatch() {
+    List<PendingUpdate> taken = batch;
+    batch = new ArrayList<>();
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+    return taken;
+  }
+
+  /**
+   * Sends the current batch, called when the window of its first update elapsed.
+   */
+  void flush() {
+    List<PendingUpdate> taken;
+    lock.lock();
+    try {
+      taken = takeBatch();
+    } finally {
+      lock.unlock();
+    }
+    if (taken.isEmpty()) {
+      return;
+    }
+    try {
+      // Not on the timer thread, so that the batches of other pipelines are not delayed.
+      runContext.getAsyncExecutor().execute(() -> write(taken));
+    } catch (RejectedExecutionException e) {
+      write(taken);
+    }
+  }
+
+  private void write(List<PendingUpdate> updates) {
+    Map<String, List<PendingUpdate>> byCollection = new LinkedHashMap<>();
+    updates.forEach(update -> byCollection.computeIfAbsent(update.collection, collection -> new ArrayList<>()).add(update));
+    byCollection.forEach((collection, collectionUpdates) -> {
+      List<WriteModel> writes = new ArrayList<>(collectionUpdates.size());
+      collectionUpdates.forEach(update -> writes.add(update.writeModel));
+      try {
+        MongoCollection mongoCollection = runContext.getMongoDatabase().getCollection(collection);
+        try {
+          mongoCollection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        } finally {
+          // Before completing the callers, so that they do not read the cached results from before their update.
+          runContext.getResultCache().invalidateCollection(collection);
+        }
+        collectionUpdates.forEach(update -> update.result.complete(null));
+      } catch (MongoBulkWriteException e) {
+        for (BulkWriteError error : e.getWriteErrors()) {
+          collectionUpdates.get(error.getIndex()).result.completeExceptionally(new MongoPipeRunException(error.getMessage()));
+        }
+        collectionUpdates.forEach(update -> update.result.complete(null)); // No effect on the failed ones.
+      } catch (RuntimeException e) {
+        collectionUpdates.forEach(update -> update.result.completeExceptionally(e));
+      }
+    });
+  }
+}
@@ -17,7 +17,9 @@
 package org.mongopipe.core.runner.command;
 
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.UpdateManyModel;
 import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.UpdateResult;
 import org.bson.conversions.Bson;
 import org.mongopipe.core.runner.context.RunContext;
@@ -35,4 +37,9 @@ public class UpdateManyCommand extends UpdateOneCommand { // Add common base cla
   public UpdateResult run(MongoCollection mongoCollection, Bson filter, List<Bson> actualPipeline,UpdateOptions updateOptions) {
     return mongoCollection.updateMany(filter, actualPipeline, updateOptions);
   }
+
+  @Override
+  protected WriteModel toWriteModel(Bson filter, List<Bson> actualPipeline, UpdateOptions updateOptions) {
+    return new UpdateManyModel(filter, actualPipeline, updateOptions);
+  }
 }
@@ -18,7 +18,9 @@ package org.mongopipe.core.runner.command;
 
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Collation;
+import com.mongodb.client.model.UpdateOneModel;
 import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.UpdateResult;
 import org.bson.BsonDocument;
 import org.bson.conversions.Bson;
@@ -64,13 +66,18 @@ public class UpdateOneCommand implements MongoCommand {
     List actualPipeline = bsonParameterEvaluator.evaluate(pipeline.getPipeline());
 
     UpdateOptions updateOptions = buildUpdateOptions(baseUpdateParams);
-    UpdateResult updateResult = run(mongoCollection, filter, actualPipeline, updateOptions);
+    UpdateResult updateResult;
+    try {
+      updateResult = run(mongoCollection, filter, actualPipeline, updateOptions);
+    } finally {
+      runContext.getResultCache().invalidateCollection(pipeline.getCollection());
+    }
 
     if (Boolean.class.equals(returnPojoClass)) {
       return updateResult.wasAcknowledged();
     } else if (Long.class.equals(returnPojoClass) || Integer.class.equals(returnPojoClass)) {
       return updateResult.getModifiedCount();
-    } else if (Boolean.class.equals(returnPojoClass)) {
+    } else if (UpdateResult.class.equals(returnPojoClass)) {
       return updateResult;
     } else {
       throw new MongoPipeConfigException("Pipeline '" + pipeline.getId() + "' result can not be mapped to '"
@@ -79,6 +86,20 @@ public class UpdateOneCommand implements MongoCommand {
     }
   }
 
+  /**
+   * @return the update as a bulk write model, allowing to send the updates of many parameter sets in a single bulkWrite.
+   */
+  public WriteModel toWriteModel() {
+    BaseUpdateParams baseUpdateParams = pipeline.getCommandOptionsAs(BaseUpdateParams.class);
+    BsonDocument filter = buildFilter(baseUpdateParams);
+    List actualPipeline = bsonParameterEvaluator.evaluate(pipeline.getPipeline());
+    return toWriteModel(filter, actualPipeline, buildUpdateOptions(baseUpdateParams));
+  }
+
+  protected WriteModel toWriteModel(Bson filter, List<Bson> actualPipeline, UpdateOptions updateOptions) {
+    return new UpdateOneModel(filter, actualPipeline, updateOptions);
+  }
+
   private BsonDocument buildFilter(BaseUpdateParams updateOneParams) {
     if (updateOneParams == null || updateOneParams.getFilter() == null) {
       throw new MongoPipeConfigException("At least 'filter' parameter needs to provided for the 'updateOne' command");
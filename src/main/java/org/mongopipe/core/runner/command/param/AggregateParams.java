@@ -39,6 +39,9 @@ public class AggregateParams extends CommandOptions {
   private Long maxAwaitTime;
   private Collation collation;
   private Document let;
+  private Boolean cacheResults;
+  private Boolean fallbackSafe;
+  private Boolean cacheOnDisk;
 
   public AggregateParams() {
   }
@@ -54,6 +57,9 @@ public class AggregateParams extends CommandOptions {
     setMaxAwaitTime(builder.maxAwaitTime);
     setCollation(builder.collation);
     setLet(builder.let);
+    setCacheResults(builder.cacheResults);
+    setFallbackSafe(builder.fallbackSafe);
+    setCacheOnDisk(builder.cacheOnDisk);
   }
 
   public static Builder builder() {
@@ -140,6 +146,42 @@ public class AggregateParams extends CommandOptions {
     this.let = let;
   }
 
+  public Boolean getCacheResults() {
+    return cacheResults;
+  }
+
+  /**
+   * If true the results are cached in memory by parameters, see MongoPipeConfig#resultCacheConfig for the limits. The cached results of a
+   * pipeline are removed when it is updated or deleted through the PipelineStore.
+   */
+  public void setCacheResults(Boolean cacheResults) {
+    this.cacheResults = cacheResults;
+  }
+
+  public Boolean getFallbackSafe() {
+    return fallbackSafe;
+  }
+
+  /**
+   * If true the pipeline can be served from its last known results when the database fails or the circuit breaker is open, see
+   * ResultCacheConfig#staleIfErrorMs. The results are cached, as with "cacheResults".
+   */
+  public void setFallbackSafe(Boolean fallbackSafe) {
+    this.fallbackSafe = fallbackSafe;
+  }
+
+  public Boolean getCacheOnDisk() {
+    return cacheOnDisk;
+  }
+
+  /**
+   * If true the results are cached also on disk, for expensive pipelines whose results stay valid for a long time. Requires
+   * ResultCacheConfig#diskDirectory. The results are cached in memory too, as with "cacheResults".
+   */
+  public void setCacheOnDisk(Boolean cacheOnDisk) {
+    this.cacheOnDisk = cacheOnDisk;
+  }
+
   @Override
   public String getType() {
     return type;
@@ -156,6 +198,9 @@ public class AggregateParams extends CommandOptions {
     private Long maxAwaitTime;
     private Collation collation;
     private Document let;
+    private Boolean cacheResults;
+    private Boolean fallbackSafe;
+    private Boolean cacheOnDisk;
 
     private Builder() {
     }
@@ -210,6 +255,21 @@ public class AggregateParams extends CommandOptions {
       return this;
     }
 
+    public Builder cacheResults(Boolean val) {
+      cacheResults = val;
+      return this;
+    }
+
+    public Builder fallbackSafe(Boolean val) {
+      fallbackSafe = val;
+      return this;
+    }
+
+    public Builder cacheOnDisk(Boolean val) {
+      cacheOnDisk = val;
+      return this;
+    }
+
     public AggregateParams build() {
       return new AggregateParams(this);
     }
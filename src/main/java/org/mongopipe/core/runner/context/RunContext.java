@@ -25,16 +25,35 @@ import org.mongopipe.core.Pipelines;
 import org.mongopipe.core.Stores;
 import org.mongopipe.core.config.MongoPipeConfig;
 import org.mongopipe.core.config.PojoCodecConfig;
+import org.mongopipe.core.config.ResultCacheConfig;
 import org.mongopipe.core.exception.MongoPipeConfigException;
+import org.mongopipe.core.logging.CustomLogFactory;
+import org.mongopipe.core.logging.Log;
+import org.mongopipe.core.migration.PipelineFileWatcher;
 import org.mongopipe.core.migration.PipelineMigrationSourceImpl;
 import org.mongopipe.core.migration.PipelineMigrationSource;
 import org.mongopipe.core.runner.PipelineRunner;
+import org.mongopipe.core.runner.cache.ResultCache;
+import org.mongopipe.core.runner.cache.SingleFlight;
+import org.mongopipe.core.runner.command.MicroBatcher;
+import org.mongopipe.core.runner.replication.ReplicatedCollections;
+import org.mongopipe.core.runner.resilience.CircuitBreaker;
+import org.mongopipe.core.store.PipelineHistoryWriter;
 import org.mongopipe.core.store.PipelineStore;
 
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Context keeps not only user provided configuration but also db connection, migration source, etc.
  */
-public class RunContext {
+public class RunContext implements Closeable {
+  private static final Log LOG = CustomLogFactory.getLogger(RunContext.class);
 
   /**
    * The {@link MongoClient} can be also by the user accordingly.
@@ -47,6 +66,19 @@ public class RunContext {
   protected final MongoPipeConfig mongoPipeConfig;
   // The source implementation providing the pipelines for migration.
   protected PipelineMigrationSource pipelineMigrationSource;
+  // Started by the migration if MigrationConfig#watchEnabled.
+  protected PipelineFileWatcher pipelineFileWatcher;
+  // Shared by all the stores of this context, so that history writes are batched together.
+  protected PipelineHistoryWriter pipelineHistoryWriter;
+  // Used when the user did not provide MongoPipeConfig#asyncExecutor.
+  protected ExecutorService defaultAsyncExecutor;
+  // Micro batchers by pipeline id.
+  protected final Map<String, MicroBatcher> microBatchers = new ConcurrentHashMap<>();
+  // Created on first use, shared by all the stores and runners of this context.
+  protected ResultCache resultCache;
+  protected SingleFlight singleFlight;
+  protected CircuitBreaker circuitBreaker;
+  protected ReplicatedCollections replicatedCollections;
 
   public RunContext(MongoPipeConfig mongoPipeConfig) {
     id = mongoPipeConfig.getId(); // same as the mongoPipeConfig
@@ -111,6 +143,104 @@ public class RunContext {
     this.pipelineMigrationSource = pipelineMigrationSource;
   }
 
+  public synchronized PipelineFileWatcher getPipelineFileWatcher() {
+    return pipelineFileWatcher;
+  }
+
+  /**
+   * Replaces the watcher, closing the previous one.
+   */
+  public synchronized void setPipelineFileWatcher(PipelineFileWatcher pipelineFileWatcher) {
+    if (this.pipelineFileWatcher != null && this.pipelineFileWatcher != pipelineFileWatcher) {
+      this.pipelineFileWatcher.close();
+    }
+    this.pipelineFileWatcher = pipelineFileWatcher;
+  }
+
+  public synchronized PipelineHistoryWriter getPipelineHistoryWriter() {
+    if (pipelineHistoryWriter == null) {
+      pipelineHistoryWriter = new PipelineHistoryWriter(this);
+    }
+    return pipelineHistoryWriter;
+  }
+
+  /**
+   * @return the executor running the asynchronous pipeline calls.
+   */
+  public synchronized Executor getAsyncExecutor() {
+    if (mongoPipeConfig.getAsyncExecutor() != null) {
+      return mongoPipeConfig.getAsyncExecutor();
+    }
+    if (defaultAsyncExecutor == null) {
+      if (mongoPipeConfig.getAsyncExecutorMode() == MongoPipeConfig.ExecutorMode.VIRTUAL) {
+        defaultAsyncExecutor = createVirtualThreadExecutor();
+      }
+      if (defaultAsyncExecutor == null) {
+        AtomicInteger threadCount = new AtomicInteger();
+        // The calls mostly wait on the database, the number of concurrent calls is anyway limited by the driver connection pool.
+        defaultAsyncExecutor = Executors.newCachedThreadPool(runnable -> {
+          Thread thread = new Thread(runnable, "mongopipe-async-" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+      }
+    }
+    return defaultAsyncExecutor;
+  }
+
+  /**
+   * Looked up by reflection since the library is compiled for Java 8.
+   * @return a virtual thread per task executor or null if not running on Java 21+.
+   */
+  private static ExecutorService createVirtualThreadExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      LOG.warn("Virtual threads are not available on Java {}, using platform threads", System.getProperty("java.version"));
+      return null;
+    }
+  }
+
+  public MicroBatcher getMicroBatcher(String pipelineId) {
+    return microBatchers.computeIfAbsent(pipelineId, id -> new MicroBatcher(this));
+  }
+
+  public synchronized ResultCache getResultCache() {
+    if (resultCache == null) {
+      ResultCacheConfig resultCacheConfig = mongoPipeConfig.getResultCacheConfig();
+      resultCache = new ResultCache(resultCacheConfig != null ? resultCacheConfig : ResultCacheConfig.builder().build());
+    }
+    return resultCache;
+  }
+
+  public synchronized SingleFlight getSingleFlight() {
+    if (singleFlight == null) {
+      singleFlight = new SingleFlight(getResultCache());
+    }
+    return singleFlight;
+  }
+
+  /**
+   * @return the circuit breaker, or null if MongoPipeConfig#circuitBreakerConfig is not provided.
+   */
+  public synchronized CircuitBreaker getCircuitBreaker() {
+    if (circuitBreaker == null && mongoPipeConfig.getCircuitBreakerConfig() != null) {
+      circuitBreaker = new CircuitBreaker(mongoPipeConfig.getCircuitBreakerConfig());
+    }
+    return circuitBreaker;
+  }
+
+  /**
+   * @return the replicated collections, or null if MongoPipeConfig#replicationConfig is not provided.
+   */
+  public synchronized ReplicatedCollections getReplicatedCollections() {
+    if (replicatedCollections == null && mongoPipeConfig.getReplicationConfig() != null) {
+      replicatedCollections = new ReplicatedCollections(this, mongoPipeConfig.getReplicationConfig());
+      getResultCache().addCollectionListener(replicatedCollections::markStale);
+    }
+    return replicatedCollections;
+  }
+
   public PipelineRunner getRunner() {
     return Pipelines.getRunner(id);
   }
@@ -120,4 +250,21 @@ public class RunContext {
   }
 
 
+
+  /**
+   * Stops the background threads of this context: the pipeline file watcher and the replicated collections change streams. Called when
+   * the context is replaced by a configuration registered again with the same id, or on Pipelines#shutdown.
+   * The MongoClient is not closed, it might be provided by the user.
+   */
+  @Override
+  public synchronized void close() {
+    if (pipelineFileWatcher != null) {
+      pipelineFileWatcher.close();
+      pipelineFileWatcher = null;
+    }
+    if (replicatedCollections != null) {
+      replicatedCollections.close();
+      replicatedCollections = null;
+    }
+  }
 }
@@ -58,7 +58,20 @@ public class RunContextProvider {
       LOG.warn("Overwriting existing configuration with the same id.");
     }
     RunContext runContext = new RunContext(mongoPipeConfig);
-    RUN_CONTEXT.put(mongoPipeConfig.getId(), runContext);
+    RunContext previous = RUN_CONTEXT.put(mongoPipeConfig.getId(), runContext);
+    if (previous != null) {
+      // Stops e.g. the previous pipeline file watcher, otherwise left running against the replaced context.
+      previous.close();
+    }
     return runContext;
   }
+
+  /**
+   * Closes all the registered contexts, see RunContext#close.
+   */
+  public static void closeAll() {
+    synchronized (RUN_CONTEXT) {
+      RUN_CONTEXT.values().forEach(RunContext::close);
+    }
+  }
 }
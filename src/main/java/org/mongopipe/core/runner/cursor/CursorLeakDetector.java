@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.cursor;
+
+import com.mongodb.client.MongoCursor;
+import org.mongopipe.core.logging.CustomLogFactory;
+import org.mongopipe.core.logging.Log;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Internal class.
+ * Finds the cursors whose owner (the stream spliterator) was garbage collected without the cursor being exhausted or closed, logs them
+ * and closes them, so the server cursor is killed instead of being kept until the server side cursor timeout (10 minutes by default).
+ * A leak is found only after a garbage collection, so the streams should still be closed (e.g. with try-with-resources).
+ */
+final class CursorLeakDetector {
+  private static final Log LOG = CustomLogFactory.getLogger(CursorLeakDetector.class);
+  private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<>();
+  // Keeps the trackers reachable until their owner is collected, otherwise they would not be enqueued.
+  private static final Set<Tracker> TRACKERS = ConcurrentHashMap.newKeySet();
+  private static final AtomicLong LEAK_COUNT = new AtomicLong();
+
+  static {
+    Thread thread = new Thread(CursorLeakDetector::closeLeaked, "mongopipe-cursor-leak-detector");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private CursorLeakDetector() {
+  }
+
+  /**
+   * @param owner when it becomes unreachable while the cursor is still open the cursor is considered leaked. The owner must not be
+   *              referenced by the cursor.
+   */
+  static Tracker track(Object owner, MongoCursor<?> cursor, String pipelineId) {
+    Tracker tracker = new Tracker(owner, cursor, pipelineId);
+    TRACKERS.add(tracker);
+    return tracker;
+  }
+
+  static long getLeakCount() {
+    return LEAK_COUNT.get();
+  }
+
+  private static void closeLeaked() {
+    while (true) {
+      try {
+        ((Tracker) QUEUE.remove()).leaked();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (RuntimeException e) {
+        LOG.error("Failed closing leaked cursor", e);
+      }
+    }
+  }
+
+  static final class Tracker extends PhantomReference<Object> {
+    private final MongoCursor<?> cursor;
+    private final String pipelineId;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private Tracker(Object owner, MongoCursor<?> cursor, String pipelineId) {
+      super(owner, QUEUE);
+      this.cursor = cursor;
+      this.pipelineId = pipelineId;
+    }
+
+    boolean isClosed() {
+      return closed.get();
+    }
+
+    /**
+     * Closes the cursor, killing it on the server if not exhausted. Safe to call more than once.
+     */
+    void close() {
+      if (closed.compareAndSet(false, true)) {
+        TRACKERS.remove(this);
+        clear();
+        cursor.close();
+      }
+    }
+
+    private void leaked() {
+      if (closed.compareAndSet(false, true)) {
+        TRACKERS.remove(this);
+        LEAK_COUNT.incrementAndGet();
+        LOG.warn("Cursor of pipeline '{}' leaked: the result stream was neither fully read nor closed, closing it now. "
+            + "Close the returned Stream, e.g. with try-with-resources.", pipelineId);
+        cursor.close();
+      } else {
+        TRACKERS.remove(this);
+      }
+    }
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.cursor;
+
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoIterable;
+import org.mongopipe.core.exception.MongoPipeConfigException;
+import org.mongopipe.core.exception.MongoPipeRunException;
+import org.mongopipe.core.logging.CustomLogFactory;
+import org.mongopipe.core.logging.Log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Reads a cursor in batches one batch ahead of the consumer: while the consumer processes a batch, the next one is fetched (getMore) and
+ * decoded on the executor, overlapping the database round trips with the processing. At most one batch waits for the consumer.<p>
+ * The cursor batch size is set to the consumer batch size so that each getMore brings exactly one batch.
+ */
+public class CursorPrefetcher<T> {
+  private static final Log LOG = CustomLogFactory.getLogger(CursorPrefetcher.class);
+  private static final Object END = new Object();
+  // How often a blocked reader checks if the consumer stopped.
+  private static final long OFFER_TIMEOUT_MS = 100;
+
+  private final Iterable<T> iterable;
+  private final int batchSize;
+  private final Executor executor;
+  private final SynchronousQueue<Object> queue = new SynchronousQueue<>();
+  private volatile boolean stopped;
+  // Set when the background reading ended, also when it could not hand over its last item (e.g. interrupted).
+  private volatile boolean finished;
+
+  public CursorPrefetcher(Iterable<T> iterable, int batchSize, Executor executor) {
+    if (batchSize <= 0) {
+      throw new MongoPipeConfigException("Batch size must be positive, got: " + batchSize);
+    }
+    if (!(iterable instanceof MongoIterable)) {
+      LOG.warn("Results already read, the batches of {} are not prefetched from a cursor", batchSize);
+    }
+    this.iterable = iterable;
+    this.batchSize = batchSize;
+    this.executor = executor;
+  }
+
+  /**
+   * Calls the consumer on the calling thread for each batch, the last one may be smaller. Can be called only once.
+   * If the consumer throws the reading stops and the cursor is closed.
+   * @return the number of documents read.
+   */
+  public long forEachBatch(Consumer<List<T>> consumer) {
+    try {
+      executor.execute(this::prefetch);
+    } catch (RejectedExecutionException e) {
+      LOG.warn("Executor rejected the cursor prefetch, reading on the calling thread");
+      long[] count = {0};
+      read(batch -> {
+        count[0] += batch.size();
+        consumer.accept(batch);
+        return true;
+      });
+      return count[0];
+    }
+
+    long count = 0;
+    try {
+      while (true) {
+        Object item = queue.poll(OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        if (item == null) {
+          if (finished) {
+            throw new MongoPipeRunException("Cursor prefetch stopped before reading all the results");
+          }
+          continue;
+        }
+        if (item == END) {
+          return count;
+        }
+        if (item instanceof Failure) {
+          throw ((Failure) item).rethrow();
+        }
+        List<T> batch = (List<T>) item;
+        count += batch.size();
+        consumer.accept(batch);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MongoPipeRunException("Interrupted while waiting for the next batch", e);
+    } finally {
+      stopped = true;
+    }
+  }
+
+  private void prefetch() {
+    try {
+      if (read(this::handOver)) {
+        handOver(END);
+      }
+    } catch (RuntimeException | Error e) {
+      handOver(new Failure(e));
+    } finally {
+      finished = true;
+    }
+  }
+
+  /**
+   * @return true if the cursor was read to the end, false if the sink stopped the reading.
+   */
+  private boolean read(Predicate<List<T>> sink) {
+    Iterator<T> cursor = null;
+    try {
+      if (iterable instanceof MongoIterable) {
+        cursor = ((MongoIterable<T>) iterable).batchSize(batchSize).cursor();
+      } else {
+        cursor = iterable.iterator();
+      }
+      List<T> batch = new ArrayList<>(batchSize);
+      while (!stopped && cursor.hasNext()) {
+        batch.add(cursor.next());
+        if (batch.size() == batchSize) {
+          if (!sink.test(batch)) {
+            return false;
+          }
+          batch = new ArrayList<>(batchSize);
+        }
+      }
+      return !stopped && (batch.isEmpty() || sink.test(batch));
+    } finally {
+      if (cursor instanceof MongoCursor) {
+        ((MongoCursor<T>) cursor).close();
+      }
+    }
+  }
+
+  /**
+   * Waits for the consumer to take the item.
+   * @return false if the consumer stopped before taking it.
+   */
+  private boolean handOver(Object item) {
+    try {
+      while (!stopped) {
+        if (queue.offer(item, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+          return true;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return false;
+  }
+
+  private static class Failure {
+    private final Throwable error;
+
+    Failure(Throwable error) {
+      this.error = error;
+    }
+
+    RuntimeException rethrow() {
+      if (error instanceof Error) {
+        throw (Error) error;
+      }
+      return (RuntimeException) error;
+    }
+  }
+}
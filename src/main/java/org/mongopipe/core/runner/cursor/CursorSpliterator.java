@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.cursor;
+
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoIterable;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads a pipeline cursor as a Stream.<p>
+ * The cursor is closed (killed on the server) when it is exhausted or when the stream is closed. A stream abandoned without being read
+ * to the end or closed is detected after garbage collection, logged and its cursor closed (see CursorLeakDetector).<p>
+ * For parallel streams each split takes the next batch of documents from the cursor (read by the splitting thread, the cursor is not
+ * thread safe) and the batches are then processed concurrently.
+ */
+public class CursorSpliterator<T> implements Spliterator<T> {
+  // Split size used when the aggregation has no batch size configured.
+  static final int DEFAULT_SPLIT_SIZE = 1024;
+
+  private final MongoCursor<T> cursor;
+  private final int splitSize;
+  private final CursorLeakDetector.Tracker tracker;
+
+  CursorSpliterator(MongoCursor<T> cursor, int splitSize, String pipelineId) {
+    this.cursor = cursor;
+    this.splitSize = splitSize;
+    this.tracker = CursorLeakDetector.track(this, cursor, pipelineId);
+  }
+
+  /**
+   * Opens the cursor and returns a stream that closes it on Stream#close.
+   * @param batchSize the documents taken on each split, by default the aggregation batch size.
+   */
+  public static <T> Stream<T> stream(MongoIterable<T> iterable, Integer batchSize, String pipelineId) {
+    CursorSpliterator<T> spliterator = new CursorSpliterator<>(iterable.cursor(),
+        batchSize == null || batchSize <= 0 ? DEFAULT_SPLIT_SIZE : batchSize, pipelineId);
+    return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+  }
+
+  /**
+   * @return the number of cursors found leaked since start.
+   */
+  public static long getLeakCount() {
+    return CursorLeakDetector.getLeakCount();
+  }
+
+  public void close() {
+    tracker.close();
+  }
+
+  private boolean hasNext() {
+    if (tracker.isClosed()) {
+      return false;
+    }
+    try {
+      if (cursor.hasNext()) {
+        return true;
+      }
+    } catch (RuntimeException e) {
+      close();
+      throw e;
+    }
+    close();
+    return false;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super T> action) {
+    if (!hasNext()) {
+      return false;
+    }
+    action.accept(cursor.next());
+    return true;
+  }
+
+  @Override
+  public void forEachRemaining(Consumer<? super T> action) {
+    while (hasNext()) {
+      action.accept(cursor.next());
+    }
+  }
+
+  @Override
+  public Spliterator<T> trySplit() {
+    if (!hasNext()) {
+      return null;
+    }
+    Object[] batch = new Object[splitSize];
+    int size = 0;
+    do {
+      batch[size++] = cursor.next();
+    } while (size < splitSize && hasNext());
+    return Spliterators.spliterator(batch, 0, size, characteristics());
+  }
+
+  /**
+   * The result size is not known in advance, the server does not return it.
+   */
+  @Override
+  public long estimateSize() {
+    return Long.MAX_VALUE;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | NONNULL;
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.cursor;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.ServerCursor;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoIterable;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.function.Function;
+
+/**
+ * A MongoIterable whose results are computed from the cursor of another MongoIterable, e.g. by running aggregation stages in the JVM over
+ * the database results. The source cursor is opened on each iteration and closed with the returned cursor, so the results stay as lazy
+ * as the transformation allows.
+ */
+public class TransformingIterable<S, T> implements MongoIterable<T> {
+  private final MongoIterable<S> source;
+  private final Function<Iterator<S>, Iterator<T>> transformation;
+
+  /**
+   * @param transformation returns the results read from the source cursor, called once per iteration.
+   */
+  public TransformingIterable(MongoIterable<S> source, Function<Iterator<S>, Iterator<T>> transformation) {
+    this.source = source;
+    this.transformation = transformation;
+  }
+
+  @Override
+  public MongoCursor<T> iterator() {
+    return cursor();
+  }
+
+  @Override
+  public MongoCursor<T> cursor() {
+    MongoCursor<S> cursor = source.cursor();
+    try {
+      return new TransformingCursor<>(cursor, transformation.apply(cursor));
+    } catch (RuntimeException | Error e) {
+      cursor.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public T first() {
+    try (MongoCursor<T> cursor = cursor()) {
+      return cursor.hasNext() ? cursor.next() : null;
+    }
+  }
+
+  @Override
+  public <U> MongoIterable<U> map(com.mongodb.Function<T, U> mapper) {
+    return new TransformingIterable<>(this, results -> new Iterator<U>() {
+      @Override
+      public boolean hasNext() {
+        return results.hasNext();
+      }
+
+      @Override
+      public U next() {
+        return mapper.apply(results.next());
+      }
+    });
+  }
+
+  @Override
+  public <A extends Collection<? super T>> A into(A target) {
+    try (MongoCursor<T> cursor = cursor()) {
+      cursor.forEachRemaining(target::add);
+    }
+    return target;
+  }
+
+  /**
+   * Sets the batch size of the source cursor.
+   */
+  @Override
+  public MongoIterable<T> batchSize(int batchSize) {
+    source.batchSize(batchSize);
+    return this;
+  }
+
+  private static class TransformingCursor<S, T> implements MongoCursor<T> {
+    private final MongoCursor<S> source;
+    private final Iterator<T> results;
+
+    TransformingCursor(MongoCursor<S> source, Iterator<T> results) {
+      this.source = source;
+      this.results = results;
+    }
+
+    @Override
+    public void close() {
+      source.close();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return results.hasNext();
+    }
+
+    @Override
+    public T next() {
+      return results.next();
+    }
+
+    /**
+     * Not known without computing the results, so always 0.
+     */
+    @Override
+    public int available() {
+      return 0;
+    }
+
+    /**
+     * Can block, the results are computed from the source as needed.
+     */
+    @Override
+    public T tryNext() {
+      return results.hasNext() ? results.next() : null;
+    }
+
+    @Override
+    public ServerCursor getServerCursor() {
+      return source.getServerCursor();
+    }
+
+    @Override
+    public ServerAddress getServerAddress() {
+      return source.getServerAddress();
+    }
+  }
+}
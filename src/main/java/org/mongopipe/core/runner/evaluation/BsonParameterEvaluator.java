@@ -179,10 +179,19 @@ public class BsonParameterEvaluator {
     LOG.debug("bson {}", bson);
   }
 
+  /**
+   * Evaluates a copy of the given documents, leaving the stored pipeline unchanged so that it can be run again (also concurrently) with
+   * other parameters.
+   */
   public List<BsonDocument> evaluate(List<BsonDocument> bsonDocumentList) {
-    bsonDocumentList.forEach(bsonDocument -> evaluate(bsonDocument));
-    LOG.debug("bsonList {}", bsonDocumentList);
-    return bsonDocumentList;
+    List<BsonDocument> evaluatedList = new ArrayList<>(bsonDocumentList.size());
+    bsonDocumentList.forEach(bsonDocument -> {
+      BsonDocument copy = bsonDocument.clone();
+      evaluate(copy);
+      evaluatedList.add(copy);
+    });
+    LOG.debug("bsonList {}", evaluatedList);
+    return evaluatedList;
   }
 
 }
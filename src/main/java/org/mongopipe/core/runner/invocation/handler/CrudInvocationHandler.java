@@ -22,8 +22,15 @@ import org.mongopipe.core.logging.Log;
 import org.mongopipe.core.runner.context.RunContext;
 import org.mongopipe.core.store.MongoCrudStore;
 
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.mongopipe.core.util.ReflectionUtil.getAsyncResultType;
+import static org.mongopipe.core.util.ReflectionUtil.getRawClass;
+import static org.mongopipe.core.util.ReflectionUtil.isAsyncReturnType;
 
 /**
  * Calls methods on MongoCrudStore for methods that match to a MongoCrudStore method.
@@ -32,18 +39,35 @@ public class CrudInvocationHandler implements StoreMethodHandler {
   private static final Log LOG = CustomLogFactory.getLogger(CrudInvocationHandler.class);
   private final Method mongoCrudMethod;
   private final MongoCrudStore mongoCrudStore;
+  private final RunContext runContext;
 
   public CrudInvocationHandler(Method matchingCrudMethod, Class storeClass, RunContext runContext) {
     this.mongoCrudMethod = matchingCrudMethod;
     this.mongoCrudStore = new MongoCrudStore(runContext, storeClass);
+    this.runContext = runContext;
   }
 
   @Override
   public Object run(Object proxy, Method method, Object[] args) throws Throwable {
-    Object result = mongoCrudMethod.invoke(mongoCrudStore, args);
+    if (isAsyncReturnType(method)) {
+      Class resultClass = getRawClass(getAsyncResultType(method));
+      return CompletableFuture.supplyAsync(() -> {
+        try {
+          return mapResult(mongoCrudMethod.invoke(mongoCrudStore, args), resultClass);
+        } catch (Exception e) {
+          throw new CompletionException(e instanceof InvocationTargetException ? e.getCause() : e);
+        }
+      }, runContext.getAsyncExecutor());
+    }
+    return mapResult(mongoCrudMethod.invoke(mongoCrudStore, args), method.getReturnType());
+  }
 
-    // Result default mappings
-    if (method.getReturnType() != mongoCrudMethod.getReturnType()) {
+  /**
+   * Result default mappings.
+   * @param resultClass the store method result type, for async methods the type wrapped by the CompletableFuture.
+   */
+  private Object mapResult(Object result, Class resultClass) {
+    if (resultClass != mongoCrudMethod.getReturnType()) {
       if (result instanceof Optional) {
         return ((Optional)result).get();
       }
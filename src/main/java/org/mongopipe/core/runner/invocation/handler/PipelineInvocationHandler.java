@@ -17,6 +17,7 @@
 package org.mongopipe.core.runner.invocation.handler;
 
 import org.mongopipe.core.Pipelines;
+import org.mongopipe.core.annotation.Batchable;
 import org.mongopipe.core.annotation.Param;
 import org.mongopipe.core.annotation.PipelineRun;
 import org.mongopipe.core.exception.MongoPipeConfigException;
@@ -24,20 +25,38 @@ import org.mongopipe.core.exception.PipelineNotFoundException;
 import org.mongopipe.core.logging.CustomLogFactory;
 import org.mongopipe.core.logging.Log;
 import org.mongopipe.core.model.Pipeline;
+import org.mongopipe.core.runner.batch.BatchScope;
+import org.mongopipe.core.runner.command.BatchUpdateCommand;
+import org.mongopipe.core.runner.command.BatchUpdateResult;
 import org.mongopipe.core.runner.context.RunContext;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+import static org.mongopipe.core.util.ReflectionUtil.getAsyncResultType;
 import static org.mongopipe.core.util.ReflectionUtil.getMethodGenericType;
+import static org.mongopipe.core.util.ReflectionUtil.getRawClass;
+import static org.mongopipe.core.util.ReflectionUtil.getTypeArgumentClass;
+import static org.mongopipe.core.util.ReflectionUtil.isAsyncReturnType;
 
 /**
  * Calls a database stored pipeline. Called on any methods that:
  * - are annotated with @PipelineRun
  * - are not annotated with @PipelineRun and they do not match any possible CRUD method but a pipeline exists with the pipeline id being
  *   "storeClassName.methodName".
+ * Methods returning BatchUpdateResult and taking a List of argument tuples run an update pipeline in batch (bulkWrite).
+ * Methods annotated with @Batchable are merged with the other calls made in the same BatchScope into a single run.
+ * Methods annotated with @PipelineRun(microBatch = true) are written together with the concurrent calls (see MicroBatcher).
+ * Methods returning CompletableFuture or CompletionStage (e.g. CompletableFuture&lt;List&lt;Pizza&gt;&gt;) are run asynchronously.
  */
 public class PipelineInvocationHandler implements StoreMethodHandler {
   private static final Log LOG = CustomLogFactory.getLogger(PipelineInvocationHandler.class);
@@ -49,6 +68,9 @@ public class PipelineInvocationHandler implements StoreMethodHandler {
     this.storeClass = storeClass;
     this.runContext = runContext;
     this.method = method;
+    if (method.isAnnotationPresent(PipelineRun.class) && method.getAnnotation(PipelineRun.class).microBatch()) {
+      validateMicroBatchReturnType(method); // When the store is created, so that a wrongly declared method never writes.
+    }
   }
 
   @Override
@@ -68,6 +90,11 @@ public class PipelineInvocationHandler implements StoreMethodHandler {
       }
     }
 
+    if (isBatchMethod(method)) {
+      return Pipelines.getRunner(runContext.getId()).runBatch(pipeline, toParamSets((Iterable) args[0]),
+          BatchUpdateCommand.DEFAULT_BATCH_SIZE);
+    }
+
     Map<String, Object> params = new HashMap<>();
     int argsIndex = 0, totalAnnotatedParams = 0;
     for (Parameter parameter : method.getParameters()) {
@@ -82,8 +109,84 @@ public class PipelineInvocationHandler implements StoreMethodHandler {
       throw new MongoPipeConfigException("All method parameters should use @Param annotation or no parameter at all");
     }
 
+    if (method.isAnnotationPresent(Batchable.class)) {
+      return BatchScope.load(runContext, pipeline, method, params);
+    }
+    if (isAnnotationPresent && method.getAnnotation(PipelineRun.class).microBatch()) {
+      return runMicroBatched(pipeline, params);
+    }
+    PipelineRun pipelineRun = isAnnotationPresent ? method.getAnnotation(PipelineRun.class) : null;
+    boolean cached = pipelineRun != null && (pipelineRun.cacheResults() || pipelineRun.fallbackSafe());
+    if (isAsyncReturnType(method)) {
+      Type resultType = getAsyncResultType(method);
+      if (cached) {
+        return Pipelines.getRunner(runContext.getId()).runCachedAsync(pipeline, getTypeArgumentClass(resultType), getRawClass(resultType),
+            params, pipelineRun.fallbackSafe());
+      }
+      return Pipelines.getRunner(runContext.getId()).runAsync(pipeline, getTypeArgumentClass(resultType), getRawClass(resultType), params);
+    }
     Class returnPojoClass = getMethodGenericType(method);
 
+    if (cached) {
+      return Pipelines.getRunner(runContext.getId()).runCached(pipeline, returnPojoClass, method.getReturnType(), params,
+          pipelineRun.fallbackSafe());
+    }
     return Pipelines.getRunner(runContext.getId()).run(pipeline, returnPojoClass, method.getReturnType(), params);
   }
+
+  private Object runMicroBatched(Pipeline pipeline, Map<String, Object> params) throws Throwable {
+    CompletableFuture<Void> result = Pipelines.getRunner(runContext.getId()).runMicroBatched(pipeline, params);
+    Class returnClass = getMicroBatchReturnClass(method);
+    boolean returnsBoolean = !Void.class.equals(returnClass) && !void.class.equals(returnClass);
+    if (isAsyncReturnType(method)) {
+      return returnsBoolean ? result.thenApply(ignored -> Boolean.TRUE) : result;
+    }
+    try {
+      result.join();
+    } catch (CompletionException e) {
+      throw e.getCause();
+    }
+    return returnsBoolean ? Boolean.TRUE : null;
+  }
+
+  private static Class getMicroBatchReturnClass(Method method) {
+    return isAsyncReturnType(method) ? getRawClass(getAsyncResultType(method)) : method.getReturnType();
+  }
+
+  private static void validateMicroBatchReturnType(Method method) {
+    Class returnClass = getMicroBatchReturnClass(method);
+    if (!Void.class.equals(returnClass) && !void.class.equals(returnClass) && !Boolean.class.equals(returnClass)
+        && !boolean.class.equals(returnClass)) {
+      throw new MongoPipeConfigException("Micro batched method '" + method + "' needs to return void, Boolean or a CompletableFuture of them");
+    }
+  }
+
+  /**
+   * A batch method returns BatchUpdateResult and takes a single List (Iterable) of argument tuples.
+   */
+  private static boolean isBatchMethod(Method method) {
+    return BatchUpdateResult.class.equals(method.getReturnType()) && method.getParameterCount() == 1
+        && Iterable.class.isAssignableFrom(method.getParameterTypes()[0]);
+  }
+
+  /**
+   * Each element is a Map of named parameters, or a tuple (array or List) of positional parameters, or a single positional parameter.
+   */
+  private static List<Map<String, ?>> toParamSets(Iterable tuples) {
+    List<Map<String, ?>> paramSets = new ArrayList<>();
+    for (Object tuple : tuples) {
+      if (tuple instanceof Map) {
+        paramSets.add((Map<String, ?>) tuple);
+        continue;
+      }
+      List values = tuple instanceof Object[] ? Arrays.asList((Object[]) tuple)
+          : tuple instanceof List ? (List) tuple : Collections.singletonList(tuple);
+      Map<String, Object> params = new HashMap<>();
+      for (int i = 0; i < values.size(); i++) {
+        params.put(String.valueOf(i + 1), values.get(i));
+      }
+      paramSets.add(params);
+    }
+    return paramSets;
+  }
 }
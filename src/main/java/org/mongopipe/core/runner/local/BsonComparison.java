@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.local;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Compares BSON values in the MongoDB sort order: MinKey, Null, Numbers, String, Document, Array, Binary, ObjectId, Boolean, Date,
+ * Timestamp, Regex, MaxKey. Numbers of different types are compared by value, so that 1 equals 1.0 as on the server.
+ */
+public class BsonComparison {
+
+  private BsonComparison() {
+  }
+
+  /**
+   * @return the position of the value type in the sort order, values of the same bracket are comparable by the query operators.
+   */
+  public static int getBracket(BsonValue value) {
+    switch (value.getBsonType()) {
+      case MIN_KEY:
+        return 0;
+      case UNDEFINED:
+      case NULL:
+        return 1;
+      case INT32:
+      case INT64:
+      case DOUBLE:
+      case DECIMAL128:
+        return 2;
+      case STRING:
+      case SYMBOL:
+        return 3;
+      case DOCUMENT:
+        return 4;
+      case ARRAY:
+        return 5;
+      case BINARY:
+        return 6;
+      case OBJECT_ID:
+        return 7;
+      case BOOLEAN:
+        return 8;
+      case DATE_TIME:
+        return 9;
+      case TIMESTAMP:
+        return 10;
+      case REGULAR_EXPRESSION:
+        return 11;
+      case MAX_KEY:
+        return 13;
+      default:
+        return 12;
+    }
+  }
+
+  public static int compare(BsonValue first, BsonValue second) {
+    int bracketComparison = Integer.compare(getBracket(first), getBracket(second));
+    if (bracketComparison != 0) {
+      return bracketComparison;
+    }
+    switch (first.getBsonType()) {
+      case INT32:
+      case INT64:
+      case DOUBLE:
+      case DECIMAL128:
+        return compareNumbers(first, second);
+      case STRING:
+      case SYMBOL:
+        return toString(first).compareTo(toString(second));
+      case DOCUMENT:
+        return compareDocuments(first.asDocument(), second.asDocument());
+      case ARRAY:
+        return compareArrays(first.asArray(), second.asArray());
+      case OBJECT_ID:
+        return first.asObjectId().getValue().compareTo(second.asObjectId().getValue());
+      case BOOLEAN:
+        return Boolean.compare(first.asBoolean().getValue(), second.asBoolean().getValue());
+      case DATE_TIME:
+        return Long.compare(first.asDateTime().getValue(), second.asDateTime().getValue());
+      case TIMESTAMP:
+        return first.asTimestamp().compareTo(second.asTimestamp());
+      default:
+        return first.equals(second) ? 0 : first.toString().compareTo(second.toString());
+    }
+  }
+
+  /**
+   * @return true if the values are equal for a query, numbers are compared by value.
+   */
+  public static boolean isEqual(BsonValue first, BsonValue second) {
+    return compare(first, second) == 0;
+  }
+
+  private static String toString(BsonValue value) {
+    return value.isSymbol() ? value.asSymbol().getSymbol() : value.asString().getValue();
+  }
+
+  private static int compareNumbers(BsonValue first, BsonValue second) {
+    if ((first.isInt32() || first.isInt64()) && (second.isInt32() || second.isInt64())) {
+      return Long.compare(first.asNumber().longValue(), second.asNumber().longValue());
+    }
+    if (first.isDecimal128() || second.isDecimal128()) {
+      return toBigDecimal(first).compareTo(toBigDecimal(second));
+    }
+    return Double.compare(first.asNumber().doubleValue(), second.asNumber().doubleValue());
+  }
+
+  private static BigDecimal toBigDecimal(BsonValue value) {
+    if (value.isDecimal128()) {
+      return value.asDecimal128().getValue().bigDecimalValue();
+    }
+    return value.isDouble() ? BigDecimal.valueOf(value.asDouble().getValue()) : BigDecimal.valueOf(value.asNumber().longValue());
+  }
+
+  private static int compareDocuments(BsonDocument first, BsonDocument second) {
+    Iterator<Map.Entry<String, BsonValue>> firstIterator = first.entrySet().iterator();
+    Iterator<Map.Entry<String, BsonValue>> secondIterator = second.entrySet().iterator();
+    while (firstIterator.hasNext() && secondIterator.hasNext()) {
+      Map.Entry<String, BsonValue> firstEntry = firstIterator.next();
+      Map.Entry<String, BsonValue> secondEntry = secondIterator.next();
+      int comparison = Integer.compare(getBracket(firstEntry.getValue()), getBracket(secondEntry.getValue()));
+      if (comparison == 0) {
+        comparison = firstEntry.getKey().compareTo(secondEntry.getKey());
+      }
+      if (comparison == 0) {
+        comparison = compare(firstEntry.getValue(), secondEntry.getValue());
+      }
+      if (comparison != 0) {
+        return comparison;
+      }
+    }
+    return Boolean.compare(firstIterator.hasNext(), secondIterator.hasNext());
+  }
+
+  private static int compareArrays(BsonArray first, BsonArray second) {
+    for (int i = 0; i < first.size() && i < second.size(); i++) {
+      int comparison = compare(first.get(i), second.get(i));
+      if (comparison != 0) {
+        return comparison;
+      }
+    }
+    return Integer.compare(first.size(), second.size());
+  }
+
+  public static boolean isNullOrMissing(BsonValue value) {
+    return value == null || value.getBsonType() == BsonType.NULL || value.getBsonType() == BsonType.UNDEFINED;
+  }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.local;
+
+import org.bson.BsonDocument;
+import org.bson.BsonRegularExpression;
+import org.bson.BsonValue;
+import org.mongopipe.core.exception.MongoPipeRunException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.mongopipe.core.runner.local.BsonComparison.compare;
+import static org.mongopipe.core.runner.local.BsonComparison.getBracket;
+import static org.mongopipe.core.runner.local.BsonComparison.isEqual;
+import static org.mongopipe.core.runner.local.BsonComparison.isNullOrMissing;
+
+/**
+ * Evaluates a $match query filter on a document in the JVM, with the server semantics for dotted paths, arrays and type brackets.
+ * Only the operators in {@link #FIELD_OPERATORS}, the $and, $or, $nor logical operators and $expr (see ExpressionEvaluator) are supported,
+ * check with {@link #isSupported(BsonDocument)} before matching.
+ */
+public class DocumentMatcher {
+  public static final Set<String> FIELD_OPERATORS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+      "$eq", "$ne", "$gt", "$gte", "$lt", "$lte", "$in", "$nin", "$exists", "$not", "$regex", "$options", "$size", "$all",
+      "$elemMatch")));
+
+  private DocumentMatcher() {
+  }
+
+  /**
+   * @return true if the filter uses only operators that can be evaluated locally.
+   */
+  public static boolean isSupported(BsonDocument filter) {
+    for (Map.Entry<String, BsonValue> entry : filter.entrySet()) {
+      String key = entry.getKey();
+      BsonValue value = entry.getValue();
+      if ("$and".equals(key) || "$or".equals(key) || "$nor".equals(key)) {
+        if (!value.isArray() || !value.asArray().stream().allMatch(clause -> clause.isDocument() && isSupported(clause.asDocument()))) {
+          return false;
+        }
+      } else if ("$expr".equals(key)) {
+        if (!ExpressionEvaluator.isSupported(value)) {
+          return false;
+        }
+      } else if (key.startsWith("$")) {
+        if (!"$comment".equals(key)) {
+          return false;
+        }
+      } else if (!isSupportedCondition(value)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isSupportedCondition(BsonValue condition) {
+    if (!isOperatorDocument(condition)) {
+      return true;
+    }
+    for (Map.Entry<String, BsonValue> entry : condition.asDocument().entrySet()) {
+      String operator = entry.getKey();
+      BsonValue argument = entry.getValue();
+      if (!FIELD_OPERATORS.contains(operator)) {
+        return false;
+      }
+      if ("$not".equals(operator) && !argument.isRegularExpression() && !(isOperatorDocument(argument) && isSupportedCondition(argument))) {
+        return false;
+      }
+      if ("$elemMatch".equals(operator) && (!argument.isDocument()
+          || !(isOperatorDocument(argument) ? isSupportedCondition(argument) : isSupported(argument.asDocument())))) {
+        return false;
+      }
+      if (("$in".equals(operator) || "$nin".equals(operator) || "$all".equals(operator)) && !argument.isArray()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return true if the condition of a field is given with query operators, e.g. <code>{$gte: 10}</code> instead of a value.
+   */
+  public static boolean isOperatorDocument(BsonValue condition) {
+    return condition.isDocument() && !condition.asDocument().isEmpty() && condition.asDocument().getFirstKey().startsWith("$");
+  }
+
+  public static boolean matches(BsonDocument document, BsonDocument filter) {
+    for (Map.Entry<String, BsonValue> entry : filter.entrySet()) {
+      String key = entry.getKey();
+      BsonValue value = entry.getValue();
+      switch (key) {
+        case "$and":
+          if (!value.asArray().stream().allMatch(clause -> matches(document, clause.asDocument()))) {
+            return false;
+          }
+          break;
+        case "$or":
+          if (value.asArray().stream().noneMatch(clause -> matches(document, clause.asDocument()))) {
+            return false;
+          }
+          break;
+        case "$nor":
+          if (value.asArray().stream().anyMatch(clause -> matches(document, clause.asDocument()))) {
+            return false;
+          }
+          break;
+        case "$expr":
+          if (!ExpressionEvaluator.isTrue(ExpressionEvaluator.evaluate(value, document))) {
+            return false;
+          }
+          break;
+        case "$comment":
+          break;
+        default:
+          if (key.startsWith("$")) {
+            throw new MongoPipeRunException("Query operator not supported locally: " + key);
+          }
+          if (!matchesCondition(getValues(document, key), value)) {
+            return false;
+          }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the values found at the dotted path, the arrays on the path are traversed. A final array is returned together with its
+   * elements, as the query operators match either the array or any of its elements.
+   */
+  public static List<BsonValue> getValues(BsonDocument document, String path) {
+    List<BsonValue> values = new ArrayList<>();
+    addValues(document, path.split("\\."), 0, values);
+    return values;
+  }
+
+  private static void addValues(BsonValue current, String[] path, int index, List<BsonValue> values) {
+    if (index == path.length) {
+      values.add(current);
+      if (current.isArray()) {
+        values.addAll(current.asArray().getValues());
+      }
+    } else if (current.isDocument()) {
+      BsonValue child = current.asDocument().get(path[index]);
+      if (child != null) {
+        addValues(child, path, index + 1, values);
+      }
+    } else if (current.isArray()) {
+      List<BsonValue> elements = current.asArray().getValues();
+      if (path[index].matches("\\d+")) {
+        int position = Integer.parseInt(path[index]);
+        if (position < elements.size()) {
+          addValues(elements.get(position), path, index + 1, values);
+        }
+      }
+      for (BsonValue element : elements) {
+        if (element.isDocument()) {
+          addValues(element, path, index, values);
+        }
+      }
+    }
+  }
+
+  private static boolean matchesCondition(List<BsonValue> values, BsonValue condition) {
+    if (condition.isRegularExpression()) {
+      return matchesRegex(values, condition.asRegularExpression());
+    }
+    if (!isOperatorDocument(condition)) {
+      return matchesEquality(values, condition);
+    }
+    BsonDocument operators = condition.asDocument();
+    for (Map.Entry<String, BsonValue> entry : operators.entrySet()) {
+      if (!matchesOperator(values, entry.getKey(), entry.getValue(), operators)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean matchesOperator(List<BsonValue> values, String operator, BsonValue argument, BsonDocument operators) {
+    switch (operator) {
+      case "$eq":
+        return matchesEquality(values, argument);
+      case "$ne":
+        return !matchesEquality(values, argument);
+      case "$gt":
+      case "$gte":
+      case "$lt":
+      case "$lte":
+        return matchesComparison(values, operator, argument);
+      case "$in":
+        return matchesIn(values, argument.asArray().getValues());
+      case "$nin":
+        return !matchesIn(values, argument.asArray().getValues());
+      case "$exists":
+        return isTrue(argument) != values.isEmpty();
+      case "$not":
+        return !matchesCondition(values, argument);
+      case "$regex":
+        return matchesRegex(values, toRegex(argument, operators.get("$options")));
+      case "$options":
+        return true; // Used by $regex.
+      case "$size":
+        return values.stream().anyMatch(value -> value.isArray() && argument.isNumber()
+            && value.asArray().size() == argument.asNumber().intValue());
+      case "$all":
+        return argument.asArray().stream().allMatch(element -> matchesEquality(values, element));
+      case "$elemMatch":
+        return values.stream().filter(BsonValue::isArray).anyMatch(array -> array.asArray().stream().anyMatch(element ->
+            isOperatorDocument(argument) ? matchesCondition(Collections.singletonList(element), argument)
+                : element.isDocument() && matches(element.asDocument(), argument.asDocument())));
+      default:
+        throw new MongoPipeRunException("Query operator not supported locally: " + operator);
+    }
+  }
+
+  private static boolean matchesEquality(List<BsonValue> values, BsonValue expected) {
+    if (isNullOrMissing(expected)) {
+      return values.isEmpty() || values.stream().anyMatch(BsonComparison::isNullOrMissing);
+    }
+    return values.stream().anyMatch(value -> isEqual(value, expected));
+  }
+
+  private static boolean matchesComparison(List<BsonValue> values, String operator, BsonValue bound) {
+    if (isNullOrMissing(bound)) {
+      // Only the inclusive comparisons match null, as equality.
+      return ("$gte".equals(operator) || "$lte".equals(operator)) && matchesEquality(values, bound);
+    }
+    for (BsonValue value : values) {
+      if (getBracket(value) != getBracket(bound)) {
+        continue; // Values of other types never match a comparison.
+      }
+      int comparison = compare(value, bound);
+      if ("$gt".equals(operator) ? comparison > 0 : "$gte".equals(operator) ? comparison >= 0
+          : "$lt".equals(operator) ? comparison < 0 : comparison <= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean matchesIn(List<BsonValue> values, List<BsonValue> candidates) {
+    return candidates.stream().anyMatch(candidate -> candidate.isRegularExpression() ? matchesRegex(values, candidate.asRegularExpression())
+        : matchesEquality(values, candidate));
+  }
+
+  private static BsonRegularExpression toRegex(BsonValue pattern, BsonValue options) {
+    String extraOptions = options != null && options.isString() ? options.asString().getValue() : "";
+    if (pattern.isRegularExpression()) {
+      BsonRegularExpression regex = pattern.asRegularExpression();
+      return new BsonRegularExpression(regex.getPattern(), regex.getOptions() + extraOptions);
+    }
+    return new BsonRegularExpression(pattern.asString().getValue(), extraOptions);
+  }
+
+  private static boolean matchesRegex(List<BsonValue> values, BsonRegularExpression regex) {
+    int flags = 0;
+    for (char option : regex.getOptions().toCharArray()) {
+      flags |= option == 'i' ? Pattern.CASE_INSENSITIVE : option == 'm' ? Pattern.MULTILINE : option == 's' ? Pattern.DOTALL
+          : option == 'x' ? Pattern.COMMENTS : 0;
+    }
+    Pattern pattern = Pattern.compile(regex.getPattern(), flags);
+    return values.stream().anyMatch(value -> value.isString() && pattern.matcher(value.asString().getValue()).find());
+  }
+
+  private static boolean isTrue(BsonValue value) {
+    if (value.isBoolean()) {
+      return value.asBoolean().getValue();
+    }
+    return value.isNumber() ? value.asNumber().doubleValue() != 0 : !isNullOrMissing(value);
+  }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.local;
+
+import org.bson.BsonArray;
+import org.bson.BsonBoolean;
+import org.bson.BsonDateTime;
+import org.bson.BsonDecimal128;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonNull;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.types.Decimal128;
+import org.mongopipe.core.exception.MongoPipeRunException;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Evaluates aggregation expressions on a document in the JVM: field paths ("$a.b"), the $$ROOT, $$CURRENT and $$REMOVE variables,
+ * literals, object and array expressions and the operators in {@link #OPERATORS}. A missing value is returned as null.
+ */
+public class ExpressionEvaluator {
+  public static final Set<String> OPERATORS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+      "$add", "$subtract", "$multiply", "$divide", "$mod", "$abs",
+      "$eq", "$ne", "$gt", "$gte", "$lt", "$lte", "$cmp",
+      "$and", "$or", "$not", "$cond", "$ifNull",
+      "$concat", "$toUpper", "$toLower", "$literal",
+      "$size", "$arrayElemAt", "$in")));
+  private static final Set<String> VARIABLES = new HashSet<>(Arrays.asList("$$ROOT", "$$CURRENT", "$$REMOVE"));
+
+  private ExpressionEvaluator() {
+  }
+
+  /**
+   * @return true if the expression uses only field paths, variables and operators that can be evaluated locally.
+   */
+  public static boolean isSupported(BsonValue expression) {
+    if (expression.isString()) {
+      String value = expression.asString().getValue();
+      return !value.startsWith("$$") || VARIABLES.contains(value.split("\\.")[0]);
+    }
+    if (expression.isArray()) {
+      return expression.asArray().stream().allMatch(ExpressionEvaluator::isSupported);
+    }
+    if (expression.isDocument()) {
+      BsonDocument document = expression.asDocument();
+      if (isOperator(document)) {
+        String operator = document.getFirstKey();
+        return OPERATORS.contains(operator) && ("$literal".equals(operator) || isSupported(document.get(operator)));
+      }
+      return document.values().stream().allMatch(ExpressionEvaluator::isSupported);
+    }
+    return true;
+  }
+
+  private static boolean isOperator(BsonDocument document) {
+    return document.size() == 1 && document.getFirstKey().startsWith("$");
+  }
+
+  /**
+   * @return the value of the expression for the document, null if missing.
+   */
+  public static BsonValue evaluate(BsonValue expression, BsonDocument root) {
+    if (expression.isString()) {
+      String value = expression.asString().getValue();
+      if (value.startsWith("$$")) {
+        String[] path = value.split("\\.", 2);
+        if ("$$REMOVE".equals(path[0])) {
+          return null;
+        }
+        if (!VARIABLES.contains(path[0])) {
+          throw new MongoPipeRunException("Variable not supported locally: " + value);
+        }
+        return path.length == 1 ? root : getPath(root, path[1].split("\\."), 0);
+      }
+      return value.startsWith("$") ? getPath(root, value.substring(1).split("\\."), 0) : expression;
+    }
+    if (expression.isArray()) {
+      BsonArray array = new BsonArray();
+      expression.asArray().forEach(element -> array.add(orNull(evaluate(element, root))));
+      return array;
+    }
+    if (expression.isDocument()) {
+      BsonDocument document = expression.asDocument();
+      if (isOperator(document)) {
+        return evaluateOperator(document.getFirstKey(), document.get(document.getFirstKey()), root);
+      }
+      BsonDocument result = new BsonDocument();
+      document.forEach((field, fieldExpression) -> {
+        BsonValue value = evaluate(fieldExpression, root);
+        if (value != null) {
+          result.put(field, value);
+        }
+      });
+      return result;
+    }
+    return expression;
+  }
+
+  /**
+   * @return the value at the path, for arrays on the path the array of the values found in its elements.
+   */
+  static BsonValue getPath(BsonValue current, String[] path, int index) {
+    if (index == path.length) {
+      return current;
+    }
+    if (current.isDocument()) {
+      BsonValue child = current.asDocument().get(path[index]);
+      return child == null ? null : getPath(child, path, index + 1);
+    }
+    if (current.isArray()) {
+      BsonArray values = new BsonArray();
+      for (BsonValue element : current.asArray()) {
+        BsonValue value = element.isDocument() || element.isArray() ? getPath(element, path, index) : null;
+        if (value != null) {
+          values.add(value);
+        }
+      }
+      return values;
+    }
+    return null;
+  }
+
+  /**
+   * @return false for false, null, missing and zero values, as the server.
+   */
+  public static boolean isTrue(BsonValue value) {
+    if (value == null || value.isNull()) {
+      return false;
+    }
+    if (value.isBoolean()) {
+      return value.asBoolean().getValue();
+    }
+    return !value.isNumber() && !value.isDecimal128() || toBigDecimal(value).signum() != 0;
+  }
+
+  private static BsonValue orNull(BsonValue value) {
+    return value == null ? BsonNull.VALUE : value;
+  }
+
+  private static List<BsonValue> evaluateArguments(BsonValue arguments, BsonDocument root) {
+    List<BsonValue> values = new ArrayList<>();
+    if (arguments.isArray()) {
+      arguments.asArray().forEach(argument -> values.add(evaluate(argument, root)));
+    } else {
+      values.add(evaluate(arguments, root));
+    }
+    return values;
+  }
+
+  private static BsonValue evaluateOperator(String operator, BsonValue arguments, BsonDocument root) {
+    switch (operator) {
+      case "$literal":
+        return arguments;
+      case "$cond":
+        return evaluateCondition(arguments, root);
+      case "$ifNull": {
+        List<BsonValue> values = evaluateArguments(arguments, root);
+        for (int i = 0; i < values.size() - 1; i++) {
+          if (!BsonComparison.isNullOrMissing(values.get(i))) {
+            return values.get(i);
+          }
+        }
+        return values.get(values.size() - 1);
+      }
+      case "$and":
+        return BsonBoolean.valueOf(evaluateArguments(arguments, root).stream().allMatch(ExpressionEvaluator::isTrue));
+      case "$or":
+        return BsonBoolean.valueOf(evaluateArguments(arguments, root).stream().anyMatch(ExpressionEvaluator::isTrue));
+      case "$not":
+        return BsonBoolean.valueOf(!isTrue(evaluateArguments(arguments, root).get(0)));
+      default:
+    }
+    List<BsonValue> values = evaluateArguments(arguments, root);
+    switch (operator) {
+      case "$eq":
+        return BsonBoolean.valueOf(compare(values.get(0), values.get(1)) == 0);
+      case "$ne":
+        return BsonBoolean.valueOf(compare(values.get(0), values.get(1)) != 0);
+      case "$gt":
+        return BsonBoolean.valueOf(compare(values.get(0), values.get(1)) > 0);
+      case "$gte":
+        return BsonBoolean.valueOf(compare(values.get(0), values.get(1)) >= 0);
+      case "$lt":
+        return BsonBoolean.valueOf(compare(values.get(0), values.get(1)) < 0);
+      case "$lte":
+        return BsonBoolean.valueOf(compare(values.get(0), values.get(1)) <= 0);
+      case "$cmp":
+        return new BsonInt32(Integer.signum(compare(values.get(0), values.get(1))));
+      case "$in":
+        if (values.get(1) == null || !values.get(1).isArray()) {
+          throw new MongoPipeRunException("$in requires an array as second argument");
+        }
+        return BsonBoolean.valueOf(values.get(1).asArray().stream().anyMatch(element -> compare(values.get(0), element) == 0));
+      default:
+    }
+    if (values.stream().anyMatch(BsonComparison::isNullOrMissing)) {
+      return BsonNull.VALUE; // The other operators give null for a null argument.
+    }
+    switch (operator) {
+      case "$add":
+        return values.stream().reduce((sum, value) -> arithmetic(sum, value, '+')).orElse(new BsonInt32(0));
+      case "$subtract":
+        return arithmetic(values.get(0), values.get(1), '-');
+      case "$multiply":
+        return values.stream().reduce((product, value) -> arithmetic(product, value, '*')).orElse(new BsonInt32(1));
+      case "$divide":
+        return arithmetic(values.get(0), values.get(1), '/');
+      case "$mod":
+        return arithmetic(values.get(0), values.get(1), '%');
+      case "$abs":
+        return toBigDecimal(values.get(0)).signum() < 0 ? arithmetic(values.get(0), new BsonInt32(-1), '*') : values.get(0);
+      case "$concat": {
+        StringBuilder concatenated = new StringBuilder();
+        values.forEach(value -> concatenated.append(value.asString().getValue()));
+        return new BsonString(concatenated.toString());
+      }
+      case "$toUpper":
+        return new BsonString(toText(values.get(0)).toUpperCase());
+      case "$toLower":
+        return new BsonString(toText(values.get(0)).toLowerCase());
+      case "$size":
+        return new BsonInt32(values.get(0).asArray().size());
+      case "$arrayElemAt": {
+        List<BsonValue> elements = values.get(0).asArray().getValues();
+        int position = values.get(1).asNumber().intValue();
+        position = position < 0 ? elements.size() + position : position;
+        return position >= 0 && position < elements.size() ? elements.get(position) : null;
+      }
+      default:
+        throw new MongoPipeRunException("Expression operator not supported locally: " + operator);
+    }
+  }
+
+  private static BsonValue evaluateCondition(BsonValue arguments, BsonDocument root) {
+    BsonValue condition;
+    BsonValue then;
+    BsonValue otherwise;
+    if (arguments.isArray()) {
+      condition = arguments.asArray().get(0);
+      then = arguments.asArray().get(1);
+      otherwise = arguments.asArray().get(2);
+    } else {
+      condition = arguments.asDocument().get("if");
+      then = arguments.asDocument().get("then");
+      otherwise = arguments.asDocument().get("else");
+    }
+    return evaluate(isTrue(evaluate(condition, root)) ? then : otherwise, root);
+  }
+
+  private static String toText(BsonValue value) {
+    return value.isString() ? value.asString().getValue() : value.isNumber() ? String.valueOf(value.asNumber().doubleValue())
+        : value.toString();
+  }
+
+  /**
+   * Compares as the aggregation comparison operators: a missing value is lower than null.
+   */
+  private static int compare(BsonValue first, BsonValue second) {
+    if (first == null || second == null) {
+      return Boolean.compare(first != null, second != null);
+    }
+    return BsonComparison.compare(first, second);
+  }
+
+  static BigDecimal toBigDecimal(BsonValue value) {
+    if (value.isDecimal128()) {
+      return value.asDecimal128().getValue().bigDecimalValue();
+    }
+    if (value.isDouble()) {
+      return BigDecimal.valueOf(value.asDouble().getValue());
+    }
+    if (value.isInt32() || value.isInt64()) {
+      return BigDecimal.valueOf(value.asNumber().longValue());
+    }
+    throw new MongoPipeRunException("Not a number: " + value);
+  }
+
+  /**
+   * Applies the arithmetic operation keeping the widest type of the operands (int, long, double, decimal), an int overflow gives a long.
+   * A date plus or minus a number of milliseconds gives a date, the difference of two dates the milliseconds between them.
+   */
+  public static BsonValue arithmetic(BsonValue first, BsonValue second, char operation) {
+    if (first.isDateTime() || second.isDateTime()) {
+      return dateArithmetic(first, second, operation);
+    }
+    if (first.isDecimal128() || second.isDecimal128()) {
+      BigDecimal a = toBigDecimal(first);
+      BigDecimal b = toBigDecimal(second);
+      BigDecimal result = operation == '+' ? a.add(b) : operation == '-' ? a.subtract(b) : operation == '*' ? a.multiply(b)
+          : operation == '/' ? a.divide(b, MathContext.DECIMAL128) : a.remainder(b);
+      return new BsonDecimal128(new Decimal128(result));
+    }
+    if (first.isDouble() || second.isDouble() || operation == '/') {
+      double a = first.asNumber().doubleValue();
+      double b = second.asNumber().doubleValue();
+      return new BsonDouble(operation == '+' ? a + b : operation == '-' ? a - b : operation == '*' ? a * b : operation == '/' ? a / b
+          : a % b);
+    }
+    long a = first.asNumber().longValue();
+    long b = second.asNumber().longValue();
+    long result;
+    try {
+      result = operation == '+' ? Math.addExact(a, b) : operation == '-' ? Math.subtractExact(a, b)
+          : operation == '*' ? Math.multiplyExact(a, b) : a % b;
+    } catch (ArithmeticException e) {
+      return arithmetic(new BsonDouble(a), new BsonDouble(b), operation);
+    }
+    return first.isInt32() && second.isInt32() && result == (int) result ? new BsonInt32((int) result) : new BsonInt64(result);
+  }
+
+  private static BsonValue dateArithmetic(BsonValue first, BsonValue second, char operation) {
+    if (first.isDateTime() && second.isDateTime() && operation == '-') {
+      return new BsonInt64(first.asDateTime().getValue() - second.asDateTime().getValue());
+    }
+    if (first.isDateTime() && second.isNumber() && (operation == '+' || operation == '-')) {
+      long milliseconds = second.asNumber().longValue();
+      return new BsonDateTime(first.asDateTime().getValue() + (operation == '+' ? milliseconds : -milliseconds));
+    }
+    if (second.isDateTime() && first.isNumber() && operation == '+') {
+      return new BsonDateTime(second.asDateTime().getValue() + first.asNumber().longValue());
+    }
+    throw new MongoPipeRunException("Unsupported date arithmetic: " + first + " " + operation + " " + second);
+  }
+}
@@ -0,0 +1,535 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.local;
+
+import org.bson.BsonArray;
+import org.bson.BsonBoolean;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonNull;
+import org.bson.BsonValue;
+import org.mongopipe.core.exception.MongoPipeRunException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Runs aggregation stages in the JVM over already loaded documents. Supported stages: $match (see DocumentMatcher), $project, $addFields
+ * (or $set), $unset, $sort, $skip, $limit, $group with the {@link #ACCUMULATORS}, $unwind and $count. The expressions are evaluated with
+ * the ExpressionEvaluator. A $lookup with localField and foreignField is supported if its collection is available in the given
+ * LookupSource.
+ */
+public class LocalAggregation {
+  public static final Set<String> ACCUMULATORS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+      "$sum", "$avg", "$min", "$max", "$first", "$last", "$push", "$addToSet", "$count")));
+  // Stages whose results for a document do not depend on the other documents.
+  public static final Set<String> PER_DOCUMENT_STAGES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+      "$match", "$project", "$addFields", "$set", "$unset", "$unwind", "$lookup")));
+
+  private LocalAggregation() {
+  }
+
+  /**
+   * @return true if all the stages can be run locally.
+   */
+  public static boolean isSupported(List<BsonDocument> stages) {
+    return isSupported(stages, null);
+  }
+
+  /**
+   * @param lookupSource the collections available to $lookup, null for none.
+   */
+  public static boolean isSupported(List<BsonDocument> stages, LookupSource lookupSource) {
+    return stages.stream().allMatch(stage -> isSupported(stage, lookupSource));
+  }
+
+  public static boolean isSupported(BsonDocument stage) {
+    return isSupported(stage, null);
+  }
+
+  public static boolean isSupported(BsonDocument stage, LookupSource lookupSource) {
+    if (stage.size() != 1) {
+      return false;
+    }
+    String operator = stage.getFirstKey();
+    BsonValue spec = stage.get(operator);
+    switch (operator) {
+      case "$match":
+        return spec.isDocument() && DocumentMatcher.isSupported(spec.asDocument());
+      case "$project":
+      case "$addFields":
+      case "$set":
+        return spec.isDocument() && ExpressionEvaluator.isSupported(spec);
+      case "$unset":
+        return spec.isString() || spec.isArray() && spec.asArray().stream().allMatch(BsonValue::isString);
+      case "$sort":
+        return spec.isDocument() && spec.asDocument().values().stream().allMatch(BsonValue::isNumber);
+      case "$skip":
+      case "$limit":
+        return spec.isNumber();
+      case "$group":
+        return spec.isDocument() && spec.asDocument().containsKey("_id") && isSupportedGroup(spec.asDocument());
+      case "$unwind":
+        BsonValue path = spec.isDocument() ? spec.asDocument().get("path") : spec;
+        return path != null && path.isString() && path.asString().getValue().startsWith("$");
+      case "$count":
+        return spec.isString() && !spec.asString().getValue().isEmpty() && !spec.asString().getValue().startsWith("$")
+            && !spec.asString().getValue().contains(".");
+      case "$lookup":
+        return lookupSource != null && isEqualityLookup(spec) && lookupSource.isAvailable(spec.asDocument().getString("from").getValue());
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * @return true for a $lookup joining on localField and foreignField, without a pipeline.
+   */
+  public static boolean isEqualityLookup(BsonValue spec) {
+    return spec.isDocument() && spec.asDocument().size() == 4 && spec.asDocument().isString("from")
+        && spec.asDocument().isString("localField") && spec.asDocument().isString("foreignField") && spec.asDocument().isString("as");
+  }
+
+  private static boolean isSupportedGroup(BsonDocument group) {
+    for (Map.Entry<String, BsonValue> field : group.entrySet()) {
+      BsonValue value = field.getValue();
+      if ("_id".equals(field.getKey())) {
+        if (!ExpressionEvaluator.isSupported(value)) {
+          return false;
+        }
+      } else if (!value.isDocument() || value.asDocument().size() != 1 || !ACCUMULATORS.contains(value.asDocument().getFirstKey())
+          || !ExpressionEvaluator.isSupported(value.asDocument().get(value.asDocument().getFirstKey()))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return true if the projection only includes or excludes fields, without computed fields.
+   */
+  public static boolean isFieldProjection(BsonDocument projection) {
+    return projection.values().stream().allMatch(LocalAggregation::isFlag);
+  }
+
+  private static boolean isFlag(BsonValue value) {
+    return value.isNumber() || value.isBoolean();
+  }
+
+  /**
+   * @return true if the stages can be run on each document separately, i.e. without $sort, $group, $count, $skip or $limit.
+   */
+  public static boolean isPerDocument(List<BsonDocument> stages) {
+    return stages.stream().allMatch(stage -> stage.size() == 1 && PER_DOCUMENT_STAGES.contains(stage.getFirstKey()));
+  }
+
+  /**
+   * Runs per document stages (see {@link #isPerDocument(List)}) lazily, a document is read only when its results are needed.
+   * @param lookupSource the collections available to $lookup, null for none.
+   * @return the stages results, the given documents are not modified.
+   */
+  public static Iterator<BsonDocument> runPerDocument(List<BsonDocument> stages, Iterator<BsonDocument> documents,
+      LookupSource lookupSource) {
+    if (!isPerDocument(stages)) {
+      throw new MongoPipeRunException("Stages can not be run per document: " + stages);
+    }
+    return new Iterator<BsonDocument>() {
+      private Iterator<BsonDocument> results = Collections.emptyIterator();
+
+      @Override
+      public boolean hasNext() {
+        while (!results.hasNext() && documents.hasNext()) {
+          results = run(stages, Collections.singletonList(documents.next()), lookupSource).iterator();
+        }
+        return results.hasNext();
+      }
+
+      @Override
+      public BsonDocument next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return results.next();
+      }
+    };
+  }
+
+  /**
+   * @return the stages results, the given documents are not modified.
+   */
+  public static List<BsonDocument> run(List<BsonDocument> stages, Iterable<BsonDocument> documents) {
+    return run(stages, documents, null);
+  }
+
+  /**
+   * @param lookupSource the collections available to $lookup, null for none.
+   * @return the stages results, the given documents are not modified.
+   */
+  public static List<BsonDocument> run(List<BsonDocument> stages, Iterable<BsonDocument> documents, LookupSource lookupSource) {
+    List<BsonDocument> results = new ArrayList<>();
+    documents.forEach(results::add);
+    for (BsonDocument stage : stages) {
+      if (!isSupported(stage, lookupSource)) {
+        throw new MongoPipeRunException("Stage not supported locally: " + stage.toJson());
+      }
+      String operator = stage.getFirstKey();
+      BsonValue spec = stage.get(operator);
+      switch (operator) {
+        case "$match":
+          results = results.stream().filter(document -> DocumentMatcher.matches(document, spec.asDocument()))
+              .collect(Collectors.toList());
+          break;
+        case "$project":
+          results = results.stream().map(document -> project(document, spec.asDocument())).collect(Collectors.toList());
+          break;
+        case "$addFields":
+        case "$set":
+          results = results.stream().map(document -> addFields(document, spec.asDocument())).collect(Collectors.toList());
+          break;
+        case "$unset":
+          BsonDocument exclusion = new BsonDocument();
+          (spec.isString() ? Collections.singletonList(spec) : spec.asArray().getValues())
+              .forEach(field -> exclusion.put(field.asString().getValue(), new BsonInt32(0)));
+          results = results.stream().map(document -> project(document, exclusion)).collect(Collectors.toList());
+          break;
+        case "$sort":
+          results.sort(getSortComparator(spec.asDocument()));
+          break;
+        case "$skip":
+          results = new ArrayList<>(results.subList(Math.min(spec.asNumber().intValue(), results.size()), results.size()));
+          break;
+        case "$limit":
+          results = new ArrayList<>(results.subList(0, Math.min(spec.asNumber().intValue(), results.size())));
+          break;
+        case "$group":
+          results = group(results, spec.asDocument());
+          break;
+        case "$unwind":
+          results = unwind(results, spec);
+          break;
+        case "$lookup":
+          results = lookup(results, spec.asDocument(), lookupSource);
+          break;
+        default: // $count
+          results = results.isEmpty() ? new ArrayList<>()
+              : new ArrayList<>(Collections.singletonList(new BsonDocument(spec.asString().getValue(), new BsonInt32(results.size()))));
+      }
+    }
+    return results;
+  }
+
+  private static boolean isTrue(BsonValue value) {
+    return value.isBoolean() ? value.asBoolean().getValue() : value.asNumber().doubleValue() != 0;
+  }
+
+  // Embedded specifications are the same as the dotted paths, e.g. {a: {b: 1}} is {"a.b": 1}.
+  private static void flatten(BsonDocument spec, String prefix, Map<String, BsonValue> paths) {
+    spec.forEach((field, value) -> {
+      if (value.isDocument() && !value.asDocument().isEmpty() && !value.asDocument().getFirstKey().startsWith("$")) {
+        flatten(value.asDocument(), prefix + field + ".", paths);
+      } else {
+        paths.put(prefix + field, value);
+      }
+    });
+  }
+
+  /**
+   * @return true if the projection includes or computes fields, {_id: 1} alone is also an inclusion.
+   */
+  public static boolean isInclusion(Map<String, BsonValue> projection) {
+    BsonValue id = projection.get("_id");
+    return projection.entrySet().stream().anyMatch(entry -> !isFlag(entry.getValue())
+        || !"_id".equals(entry.getKey()) && isTrue(entry.getValue()))
+        || projection.size() == 1 && id != null && isTrue(id);
+  }
+
+  /**
+   * @return the document with the included and computed fields (and the _id unless excluded) or without the excluded ones.
+   */
+  public static BsonDocument project(BsonDocument document, BsonDocument projection) {
+    Map<String, BsonValue> paths = new LinkedHashMap<>();
+    flatten(projection, "", paths);
+    boolean inclusion = isInclusion(paths);
+    BsonDocument tree = new BsonDocument();
+    paths.forEach((path, value) -> {
+      if (isFlag(value) && (!inclusion || isTrue(value))) {
+        addPath(tree, path.split("\\."), 0);
+      }
+    });
+    if (!inclusion) {
+      return exclude(document, tree);
+    }
+    if (!paths.containsKey("_id")) {
+      tree.put("_id", BsonNull.VALUE);
+    }
+    BsonDocument result = include(document, tree);
+    paths.forEach((path, expression) -> {
+      if (!isFlag(expression)) {
+        setPath(result, path.split("\\."), 0, ExpressionEvaluator.evaluate(expression, document));
+      }
+    });
+    return result;
+  }
+
+  /**
+   * @return a copy of the document with the computed fields added or replaced.
+   */
+  public static BsonDocument addFields(BsonDocument document, BsonDocument fields) {
+    Map<String, BsonValue> paths = new LinkedHashMap<>();
+    flatten(fields, "", paths);
+    BsonDocument result = document.clone();
+    paths.forEach((path, expression) -> setPath(result, path.split("\\."), 0, ExpressionEvaluator.evaluate(expression, document)));
+    return result;
+  }
+
+  // Sets the value creating the missing embedded documents, in the arrays on the path it is set in each document element. A null value
+  // (missing) removes the field.
+  private static void setPath(BsonDocument document, String[] path, int index, BsonValue value) {
+    String field = path[index];
+    if (index == path.length - 1) {
+      if (value == null) {
+        document.remove(field);
+      } else {
+        document.put(field, value);
+      }
+      return;
+    }
+    BsonValue child = document.get(field);
+    if (child != null && child.isArray()) {
+      child.asArray().stream().filter(BsonValue::isDocument).forEach(element -> setPath(element.asDocument(), path, index + 1, value));
+      return;
+    }
+    if (child == null || !child.isDocument()) {
+      if (value == null) {
+        return;
+      }
+      child = new BsonDocument();
+      document.put(field, child);
+    }
+    setPath(child.asDocument(), path, index + 1, value);
+  }
+
+  // The paths tree has null leaves, e.g. "a.b" and "c" are {a: {b: null}, c: null}.
+  private static void addPath(BsonDocument paths, String[] path, int index) {
+    if (index == path.length - 1) {
+      paths.put(path[index], BsonNull.VALUE);
+      return;
+    }
+    BsonValue child = paths.get(path[index]);
+    if (child == null) {
+      child = new BsonDocument();
+      paths.put(path[index], child);
+    }
+    if (child.isDocument()) { // A parent already fully included stays included.
+      addPath(child.asDocument(), path, index + 1);
+    }
+  }
+
+  private static BsonDocument include(BsonDocument document, BsonDocument paths) {
+    BsonDocument result = new BsonDocument();
+    document.forEach((field, value) -> {
+      BsonValue subPaths = paths.get(field);
+      if (subPaths == null) {
+        return;
+      }
+      if (subPaths.isNull()) {
+        result.put(field, value);
+      } else if (value.isDocument()) {
+        result.put(field, include(value.asDocument(), subPaths.asDocument()));
+      } else if (value.isArray()) {
+        result.put(field, new BsonArray(value.asArray().stream().filter(BsonValue::isDocument)
+            .map(element -> include(element.asDocument(), subPaths.asDocument())).collect(Collectors.toList())));
+      }
+    });
+    return result;
+  }
+
+  private static BsonDocument exclude(BsonDocument document, BsonDocument paths) {
+    BsonDocument result = new BsonDocument();
+    document.forEach((field, value) -> {
+      BsonValue subPaths = paths.get(field);
+      if (subPaths == null) {
+        result.put(field, value);
+      } else if (subPaths.isDocument() && value.isDocument()) {
+        result.put(field, exclude(value.asDocument(), subPaths.asDocument()));
+      } else if (subPaths.isDocument() && value.isArray()) {
+        result.put(field, new BsonArray(value.asArray().stream()
+            .map(element -> element.isDocument() ? exclude(element.asDocument(), subPaths.asDocument()) : element)
+            .collect(Collectors.toList())));
+      } else if (subPaths.isDocument()) {
+        result.put(field, value);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Groups by the _id expression, the groups are returned in the _id order.
+   */
+  private static List<BsonDocument> group(List<BsonDocument> documents, BsonDocument spec) {
+    Map<BsonValue, List<BsonDocument>> groups = new TreeMap<>(BsonComparison::compare);
+    for (BsonDocument document : documents) {
+      BsonValue id = ExpressionEvaluator.evaluate(spec.get("_id"), document);
+      groups.computeIfAbsent(id == null ? BsonNull.VALUE : id, key -> new ArrayList<>()).add(document);
+    }
+    List<BsonDocument> results = new ArrayList<>();
+    groups.forEach((id, groupDocuments) -> {
+      BsonDocument result = new BsonDocument("_id", id);
+      spec.forEach((field, accumulator) -> {
+        if (!"_id".equals(field)) {
+          String operator = accumulator.asDocument().getFirstKey();
+          BsonValue expression = accumulator.asDocument().get(operator);
+          List<BsonValue> values = new ArrayList<>();
+          groupDocuments.forEach(document -> values.add(ExpressionEvaluator.evaluate(expression, document)));
+          result.put(field, accumulate(operator, values));
+        }
+      });
+      results.add(result);
+    });
+    return results;
+  }
+
+  /**
+   * @param values the values of the accumulated expression in the group documents, null for the missing ones.
+   */
+  private static BsonValue accumulate(String operator, List<BsonValue> values) {
+    List<BsonValue> present = values.stream().filter(value -> !BsonComparison.isNullOrMissing(value)).collect(Collectors.toList());
+    List<BsonValue> numbers = present.stream().filter(BsonValue::isNumber).collect(Collectors.toList());
+    switch (operator) {
+      case "$sum":
+        return numbers.stream().reduce((sum, value) -> ExpressionEvaluator.arithmetic(sum, value, '+')).orElse(new BsonInt32(0));
+      case "$avg":
+        return numbers.isEmpty() ? BsonNull.VALUE : ExpressionEvaluator.arithmetic(
+            numbers.stream().reduce((sum, value) -> ExpressionEvaluator.arithmetic(sum, value, '+')).get(),
+            new BsonInt64(numbers.size()), '/');
+      case "$min":
+        return present.stream().min(BsonComparison::compare).orElse(BsonNull.VALUE);
+      case "$max":
+        return present.stream().max(BsonComparison::compare).orElse(BsonNull.VALUE);
+      case "$first":
+        return values.isEmpty() || values.get(0) == null ? BsonNull.VALUE : values.get(0);
+      case "$last":
+        return values.isEmpty() || values.get(values.size() - 1) == null ? BsonNull.VALUE : values.get(values.size() - 1);
+      case "$push":
+        return new BsonArray(values.stream().filter(value -> value != null).collect(Collectors.toList()));
+      case "$addToSet":
+        BsonArray set = new BsonArray();
+        values.stream().filter(value -> value != null && set.stream().noneMatch(element -> BsonComparison.isEqual(element, value)))
+            .forEach(set::add);
+        return set;
+      default: // $count
+        return new BsonInt32(values.size());
+    }
+  }
+
+  private static List<BsonDocument> lookup(List<BsonDocument> documents, BsonDocument spec, LookupSource lookupSource) {
+    String from = spec.getString("from").getValue();
+    String localField = spec.getString("localField").getValue();
+    String foreignField = spec.getString("foreignField").getValue();
+    String[] as = spec.getString("as").getValue().split("\\.");
+    List<BsonDocument> results = new ArrayList<>(documents.size());
+    for (BsonDocument document : documents) {
+      // A local array matches by its elements.
+      List<BsonValue> localValues = DocumentMatcher.getValues(document, localField).stream().filter(value -> !value.isArray())
+          .collect(Collectors.toList());
+      BsonDocument result = document.clone();
+      setPath(result, as, 0, new BsonArray(new ArrayList<>(lookupSource.lookup(from, foreignField, localValues))));
+      results.add(result);
+    }
+    return results;
+  }
+
+  private static List<BsonDocument> unwind(List<BsonDocument> documents, BsonValue spec) {
+    String path = (spec.isDocument() ? spec.asDocument().getString("path") : spec.asString()).getValue().substring(1);
+    String indexField = spec.isDocument() && spec.asDocument().isString("includeArrayIndex")
+        ? spec.asDocument().getString("includeArrayIndex").getValue() : null;
+    boolean preserve = spec.isDocument() && spec.asDocument().getBoolean("preserveNullAndEmptyArrays", BsonBoolean.FALSE).getValue();
+    String[] fields = path.split("\\.");
+    List<BsonDocument> results = new ArrayList<>();
+    for (BsonDocument document : documents) {
+      BsonValue value = document;
+      for (int i = 0; i < fields.length && value != null; i++) {
+        value = value.isDocument() ? value.asDocument().get(fields[i]) : null;
+      }
+      if (value != null && value.isArray() && !value.asArray().isEmpty()) {
+        List<BsonValue> elements = value.asArray().getValues();
+        for (int i = 0; i < elements.size(); i++) {
+          BsonDocument result = document.clone();
+          setPath(result, fields, 0, elements.get(i));
+          if (indexField != null) {
+            result.put(indexField, new BsonInt64(i));
+          }
+          results.add(result);
+        }
+      } else if (value != null && !value.isNull() && !value.isArray() || preserve) {
+        BsonDocument result = document;
+        if (value != null && value.isArray()) { // Empty array.
+          result = document.clone();
+          setPath(result, fields, 0, null);
+        }
+        if (indexField != null) {
+          result = result == document ? document.clone() : result;
+          result.put(indexField, BsonNull.VALUE);
+        }
+        results.add(result);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Orders by the given fields, for an array field by its smallest element when ascending and its largest when descending, as the server.
+   */
+  public static Comparator<BsonDocument> getSortComparator(BsonDocument sort) {
+    Comparator<BsonDocument> comparator = (first, second) -> 0;
+    for (Map.Entry<String, BsonValue> entry : sort.entrySet()) {
+      String path = entry.getKey();
+      boolean ascending = entry.getValue().asNumber().intValue() >= 0;
+      Comparator<BsonDocument> fieldComparator = Comparator.comparing(document -> getSortKey(document, path, ascending),
+          BsonComparison::compare);
+      comparator = comparator.thenComparing(ascending ? fieldComparator : fieldComparator.reversed());
+    }
+    return comparator;
+  }
+
+  private static BsonValue getSortKey(BsonDocument document, String path, boolean ascending) {
+    List<BsonValue> values = DocumentMatcher.getValues(document, path);
+    BsonValue key = null;
+    for (BsonValue value : values) {
+      if (value.isArray() && !value.asArray().isEmpty()) {
+        continue; // Its elements are among the values.
+      }
+      if (key == null || (ascending ? BsonComparison.compare(value, key) < 0 : BsonComparison.compare(value, key) > 0)) {
+        key = value;
+      }
+    }
+    return key == null ? BsonNull.VALUE : key;
+  }
+}
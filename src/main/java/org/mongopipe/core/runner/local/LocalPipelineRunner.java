@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.local;
+
+import org.bson.BsonDocument;
+import org.mongopipe.core.exception.MongoPipeConfigException;
+import org.mongopipe.core.model.Pipeline;
+import org.mongopipe.core.runner.evaluation.BsonParameterEvaluator;
+import org.mongopipe.core.util.BsonUtil;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Runs pipelines in the JVM over the given documents instead of the pipeline collection, with no database round trip. E.g. over locally
+ * cached reference data, or as a fast in-process stand-in for the database in tests. The parameters are bound as for the database runs
+ * (BsonParameterEvaluator). The pipeline collection and command options are ignored.<p>
+ * Supported stages: $match, $project, $addFields, $set, $unset, $sort, $skip, $limit, $group, $unwind and $count, see LocalAggregation.
+ * E.g.: <code>
+ *   List&lt;Pizza&gt; pizzas = new LocalPipelineRunner().run(pipeline, Maps.of("pizzaSize", "medium"), documents, Pizza.class);
+ * </code>
+ */
+public class LocalPipelineRunner {
+
+  /**
+   * @return true if all the stages of the pipeline, with the parameters bound, can be run locally.
+   */
+  public boolean isSupported(Pipeline pipeline, Map<String, ?> parameters) {
+    return LocalAggregation.isSupported(evaluate(pipeline, parameters));
+  }
+
+  /**
+   * @param documents the input documents, in place of the collection ones. They are not modified.
+   * @return the result documents.
+   */
+  public List<BsonDocument> run(Pipeline pipeline, Map<String, ?> parameters, Iterable<BsonDocument> documents) {
+    return LocalAggregation.run(evaluate(pipeline, parameters), documents);
+  }
+
+  /**
+   * @return the results converted to the given class.
+   * @see #run(Pipeline, Map, Iterable)
+   */
+  public <T> List<T> run(Pipeline pipeline, Map<String, ?> parameters, Iterable<BsonDocument> documents, Class<T> resultClass) {
+    return run(pipeline, parameters, documents).stream()
+        .map(document -> BsonDocument.class.equals(resultClass) ? (T) document : BsonUtil.toPojo(document, resultClass))
+        .collect(Collectors.toList());
+  }
+
+  private static List<BsonDocument> evaluate(Pipeline pipeline, Map<String, ?> parameters) {
+    if (pipeline.getPipeline() == null) {
+      throw new MongoPipeConfigException("Pipeline stages can not be null");
+    }
+    return new BsonParameterEvaluator(parameters == null ? Collections.emptyMap() : parameters).evaluate(pipeline.getPipeline());
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.local;
+
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import java.util.List;
+
+/**
+ * Collections available in the JVM for the $lookup stages run by LocalAggregation, e.g. the ReplicatedCollections.
+ */
+public interface LookupSource {
+
+  /**
+   * @return true if the collection can be joined locally.
+   */
+  boolean isAvailable(String collection);
+
+  /**
+   * @param localValues the values of the local field, empty if missing.
+   * @return the documents whose foreignField equals one of the values (or is null or missing for an empty or null value), in the
+   * collection order.
+   */
+  List<BsonDocument> lookup(String collection, String foreignField, List<BsonValue> localValues);
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.reactive;
+
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoIterable;
+import org.mongopipe.core.logging.CustomLogFactory;
+import org.mongopipe.core.logging.Log;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Publishes the results of a pipeline cursor honoring the subscriber demand (backpressure).<p>
+ * Documents are read from the cursor only while there is outstanding demand, so the driver fetches the next batch (getMore) only when the
+ * subscriber asked for more. When there is no demand no thread is kept busy, the reading continues on the executor on the next request.
+ * Cancelling, or an exception thrown by the subscriber onNext, closes the cursor. Each subscriber gets its own cursor.
+ */
+public class CursorPublisher<T> implements Publisher<T> {
+  private static final Log LOG = CustomLogFactory.getLogger(CursorPublisher.class);
+  // Upper bound of the first batch size derived from the subscriber demand.
+  static final int MAX_BATCH_SIZE = 1000;
+
+  private final Supplier<? extends Iterable<T>> cursors;
+  private final Executor executor;
+  private final boolean batchSizeFromDemand;
+
+  /**
+   * @param cursors called on each subscription, usually returning a new lazy MongoIterable whose cursor is opened on the first request.
+   * @param executor runs the cursor reads.
+   * @param batchSizeFromDemand if true the cursor batch size is set from the first request, otherwise the configured one is used.
+   */
+  public CursorPublisher(Supplier<? extends Iterable<T>> cursors, Executor executor, boolean batchSizeFromDemand) {
+    this.cursors = cursors;
+    this.executor = executor;
+    this.batchSizeFromDemand = batchSizeFromDemand;
+  }
+
+  /**
+   * @param iterable the results, shared by all the subscribers so its batch size is not changed.
+   */
+  public CursorPublisher(Iterable<T> iterable, Executor executor) {
+    this(() -> iterable, executor, false);
+  }
+
+  @Override
+  public void subscribe(Subscriber<? super T> subscriber) {
+    Objects.requireNonNull(subscriber, "Subscriber can not be null");
+    subscriber.onSubscribe(new CursorSubscription(subscriber));
+  }
+
+  private class CursorSubscription implements Subscription, Runnable {
+    private final Subscriber<? super T> subscriber;
+    private final AtomicLong demand = new AtomicLong();
+    // Serializes the draining, only the thread incrementing from 0 drains.
+    private final AtomicInteger workInProgress = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile Throwable invalidRequest;
+    private Iterator<T> cursor;
+    private boolean done;
+
+    CursorSubscription(Subscriber<? super T> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        invalidRequest = new IllegalArgumentException("Requested number of elements must be positive (reactive streams rule 3.9): " + n);
+      } else {
+        demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+      }
+      schedule();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      schedule();
+    }
+
+    private void schedule() {
+      if (workInProgress.getAndIncrement() == 0) {
+        try {
+          executor.execute(this);
+        } catch (RejectedExecutionException e) {
+          workInProgress.set(0);
+          finish(e);
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      int missed = 1;
+      do {
+        drain();
+        missed = workInProgress.addAndGet(-missed);
+      } while (missed != 0);
+    }
+
+    private void drain() {
+      if (done) {
+        return;
+      }
+      if (cancelled) {
+        finish(null);
+        return;
+      }
+      if (invalidRequest != null) {
+        finish(invalidRequest);
+        return;
+      }
+      try {
+        if (cursor == null) {
+          cursor = open();
+        }
+        long emitted = 0;
+        long requested = demand.get();
+        while (!cancelled) {
+          if (emitted == requested) {
+            // Take the demand added meanwhile (e.g. from onNext), else stop until the next request.
+            requested = demand.addAndGet(-emitted);
+            emitted = 0;
+            if (requested == 0) {
+              return;
+            }
+          }
+          if (!cursor.hasNext()) {
+            finish(null);
+            subscriber.onComplete();
+            return;
+          }
+          T item = cursor.next();
+          try {
+            subscriber.onNext(item);
+          } catch (RuntimeException e) {
+            // The subscriber can not be signaled anymore, the subscription is considered cancelled (reactive streams rule 2.13).
+            LOG.warn("Subscriber onNext failed, cancelling the subscription: {}", e.getMessage());
+            cancelled = true;
+            finish(null);
+            return;
+          }
+          emitted++;
+        }
+        finish(null);
+      } catch (RuntimeException e) {
+        finish(e);
+      }
+    }
+
+    private Iterator<T> open() {
+      // Own iterable, so the batch size applies only to this subscription cursor.
+      Iterable<T> iterable = cursors.get();
+      if (batchSizeFromDemand && iterable instanceof MongoIterable) {
+        ((MongoIterable<T>) iterable).batchSize((int) Math.max(1, Math.min(demand.get(), MAX_BATCH_SIZE)));
+      }
+      return iterable.iterator();
+    }
+
+    private void finish(Throwable error) {
+      if (done) {
+        return;
+      }
+      done = true;
+      if (cursor instanceof MongoCursor) {
+        try {
+          ((MongoCursor<T>) cursor).close();
+        } catch (RuntimeException e) {
+          LOG.warn("Could not close the cursor: {}", e.getMessage());
+        }
+      }
+      if (error != null) {
+        subscriber.onError(error);
+      }
+    }
+  }
+}
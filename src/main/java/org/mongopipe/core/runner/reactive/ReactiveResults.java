@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.reactive;
+
+import org.mongopipe.core.model.Pipeline;
+import org.mongopipe.core.runner.command.param.AggregateParams;
+import org.mongopipe.core.runner.context.RunContext;
+import org.reactivestreams.Publisher;
+
+import java.util.Collections;
+import java.util.function.Supplier;
+
+/**
+ * Internal class.
+ * Maps a pipeline result to a reactive streams Publisher. Kept apart from the PipelineRunner so that the optional
+ * "org.reactivestreams:reactive-streams" dependency is needed only when a Publisher is returned.
+ */
+public class ReactiveResults {
+  // Compared by name to avoid loading the class when the dependency is missing.
+  public static final String PUBLISHER_CLASS_NAME = "org.reactivestreams.Publisher";
+
+  private ReactiveResults() {
+  }
+
+  /**
+   * @param result the command result, a single value (e.g. an update result) or results shared by all the subscribers.
+   */
+  public static <T> Publisher<T> toPublisher(Object result, Pipeline pipeline, RunContext runContext) {
+    Iterable<T> iterable;
+    if (result instanceof Iterable) {
+      iterable = (Iterable<T>) result;
+    } else {
+      iterable = result == null ? Collections.emptyList() : Collections.singletonList((T) result);
+    }
+    return new CursorPublisher<>(iterable, runContext.getAsyncExecutor());
+  }
+
+  /**
+   * @param cursors called on each subscription, returns the lazy aggregation results (a new cursor) for that subscriber.
+   */
+  public static <T> Publisher<T> toCursorPublisher(Supplier<? extends Iterable<T>> cursors, Pipeline pipeline, RunContext runContext) {
+    AggregateParams aggregateParams = pipeline.getCommandOptions() instanceof AggregateParams
+        ? (AggregateParams) pipeline.getCommandOptions() : null;
+    boolean batchSizeConfigured = aggregateParams != null && aggregateParams.getBatchSize() != null;
+    return new CursorPublisher<>(cursors, runContext.getAsyncExecutor(), !batchSizeConfigured);
+  }
+}
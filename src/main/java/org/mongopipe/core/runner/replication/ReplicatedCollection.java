@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.replication;
+
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.mongopipe.core.runner.local.BsonComparison;
+import org.mongopipe.core.runner.local.DocumentMatcher;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable in-memory copy of a collection, with hash indexes created on the first lookup by a field.
+ */
+public class ReplicatedCollection {
+  // Key of the documents where the field is null or missing.
+  private static final Object NULL_KEY = new Object();
+  private final List<BsonDocument> documents;
+  private final long loadedAt;
+  // Positions of the documents by field and value.
+  private final Map<String, Map<Object, List<Integer>>> indexes = new ConcurrentHashMap<>();
+
+  public ReplicatedCollection(List<BsonDocument> documents, long loadedAt) {
+    this.documents = Collections.unmodifiableList(documents);
+    this.loadedAt = loadedAt;
+  }
+
+  public List<BsonDocument> getDocuments() {
+    return documents;
+  }
+
+  public long getLoadedAt() {
+    return loadedAt;
+  }
+
+  /**
+   * @return the hash key of a value, numbers of different types with the same value have the same key as they are equal for the server.
+   */
+  private static Object toKey(BsonValue value) {
+    if (BsonComparison.isNullOrMissing(value)) {
+      return NULL_KEY;
+    }
+    if (value.isNumber() || value.isDecimal128()) {
+      BigDecimal number = value.isDecimal128() ? value.asDecimal128().getValue().bigDecimalValue()
+          : value.isDouble() ? BigDecimal.valueOf(value.asDouble().getValue()) : BigDecimal.valueOf(value.asNumber().longValue());
+      return number.stripTrailingZeros();
+    }
+    return value;
+  }
+
+  private Map<Object, List<Integer>> getIndex(String field) {
+    return indexes.computeIfAbsent(field, path -> {
+      Map<Object, List<Integer>> index = new HashMap<>();
+      for (int position = 0; position < documents.size(); position++) {
+        List<BsonValue> values = DocumentMatcher.getValues(documents.get(position), path);
+        if (values.isEmpty()) {
+          index.computeIfAbsent(NULL_KEY, key -> new ArrayList<>()).add(position);
+        }
+        for (BsonValue value : values) { // An array is indexed by itself and by its elements.
+          List<Integer> positions = index.computeIfAbsent(toKey(value), key -> new ArrayList<>());
+          if (positions.isEmpty() || positions.get(positions.size() - 1) != position) {
+            positions.add(position);
+          }
+        }
+      }
+      return index;
+    });
+  }
+
+  /**
+   * @return the documents whose field equals one of the values, for no values (missing) the documents where the field is null or missing.
+   */
+  public List<BsonDocument> findEqual(String field, List<BsonValue> values) {
+    Map<Object, List<Integer>> index = getIndex(field);
+    TreeSet<Integer> positions = new TreeSet<>(); // Sorted, in the collection order.
+    if (values.isEmpty()) {
+      positions.addAll(index.getOrDefault(NULL_KEY, Collections.emptyList()));
+    }
+    for (BsonValue value : values) {
+      positions.addAll(index.getOrDefault(toKey(value), Collections.emptyList()));
+    }
+    List<BsonDocument> matches = new ArrayList<>(positions.size());
+    positions.forEach(position -> matches.add(documents.get(position)));
+    return matches;
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.replication;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.mongopipe.core.config.ReplicationConfig;
+import org.mongopipe.core.exception.MongoPipeRunException;
+import org.mongopipe.core.logging.CustomLogFactory;
+import org.mongopipe.core.logging.Log;
+import org.mongopipe.core.runner.context.RunContext;
+import org.mongopipe.core.runner.local.LookupSource;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The in-memory copies of the collections of ReplicationConfig#collections, loaded on first use. A copy is reloaded on its next use after
+ * ReplicationConfig#refreshIntervalMs, after a write to the collection through mongopipe (see {@link #markStale(String)}) or after a change
+ * received on its change stream (ReplicationConfig#changeStreamEnabled).<p>
+ * The aggregate pipelines having a $lookup (localField/foreignField) against a replicated collection run on the database only up to that
+ * stage, the rest, including the join, runs in the JVM if supported by LocalAggregation. Otherwise the pipeline runs entirely on the
+ * database.
+ */
+public class ReplicatedCollections implements LookupSource, Closeable {
+  private static final Log LOG = CustomLogFactory.getLogger(ReplicatedCollections.class);
+  private final RunContext runContext;
+  private final ReplicationConfig config;
+  private final Map<String, ReplicatedCollection> copies = new ConcurrentHashMap<>();
+  private final Set<String> staleCollections = ConcurrentHashMap.newKeySet();
+  private final Set<String> oversizedCollections = ConcurrentHashMap.newKeySet();
+  private final Map<String, MongoChangeStreamCursor<?>> changeStreams = new ConcurrentHashMap<>();
+  private final AtomicLong loadCount = new AtomicLong();
+  private volatile boolean closed;
+
+  public ReplicatedCollections(RunContext runContext, ReplicationConfig config) {
+    this.runContext = runContext;
+    this.config = config;
+  }
+
+  /**
+   * @return true if the collection is configured as replicated and not larger than ReplicationConfig#maxDocuments.
+   */
+  public boolean isReplicated(String collection) {
+    return config.getCollections().contains(collection) && !oversizedCollections.contains(collection);
+  }
+
+  /**
+   * @return the up to date copy of the collection, loading it if needed, or null if the collection is not replicated.
+   */
+  public ReplicatedCollection get(String collection) {
+    if (!isReplicated(collection)) {
+      return null;
+    }
+    ReplicatedCollection copy = copies.get(collection);
+    if (copy != null && !staleCollections.contains(collection)
+        && copy.getLoadedAt() + config.getRefreshIntervalMs() > System.currentTimeMillis()) {
+      return copy;
+    }
+    synchronized (this) {
+      copy = copies.get(collection);
+      if (copy == null || staleCollections.contains(collection)
+          || copy.getLoadedAt() + config.getRefreshIntervalMs() <= System.currentTimeMillis()) {
+        copy = load(collection);
+      }
+      return copy;
+    }
+  }
+
+  private ReplicatedCollection load(String collection) {
+    // Cleared before reading, so that a change during the load marks it again.
+    staleCollections.remove(collection);
+    long loadedAt = System.currentTimeMillis();
+    List<BsonDocument> documents = runContext.getMongoDatabase().getCollection(collection, BsonDocument.class).find()
+        .limit(config.getMaxDocuments() + 1).into(new ArrayList<>());
+    if (documents.size() > config.getMaxDocuments()) {
+      LOG.warn("Collection {} has more than {} documents, it is not replicated", collection, config.getMaxDocuments());
+      oversizedCollections.add(collection);
+      copies.remove(collection);
+      return null;
+    }
+    if (config.isChangeStreamEnabled() && !changeStreams.containsKey(collection)) {
+      watch(collection);
+    }
+    ReplicatedCollection copy = new ReplicatedCollection(documents, loadedAt);
+    copies.put(collection, copy);
+    loadCount.incrementAndGet();
+    LOG.debug("Replicated collection {} loaded, {} documents", collection, documents.size());
+    return copy;
+  }
+
+  private void watch(String collection) {
+    MongoChangeStreamCursor<?> cursor;
+    try {
+      cursor = runContext.getMongoDatabase().getCollection(collection).watch().cursor();
+    } catch (MongoException e) {
+      LOG.warn("Can not watch replicated collection {}, reloading it every {} ms: {}", collection, config.getRefreshIntervalMs(),
+          e.getMessage());
+      return;
+    }
+    changeStreams.put(collection, cursor);
+    Thread thread = new Thread(() -> {
+      try {
+        while (!closed && cursor.hasNext()) {
+          cursor.next();
+          markStale(collection);
+        }
+      } catch (MongoException | IllegalStateException e) {
+        if (!closed) {
+          LOG.warn("Change stream of replicated collection {} stopped, reloading it every {} ms: {}", collection,
+              config.getRefreshIntervalMs(), e.getMessage());
+        }
+      } finally {
+        changeStreams.remove(collection, cursor);
+      }
+    }, "mongopipe-replication-" + collection);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Marks the copy of the collection as outdated, to be reloaded on its next use. Called after the writes through mongopipe.
+   */
+  public void markStale(String collection) {
+    if (config.getCollections().contains(collection)) {
+      staleCollections.add(collection);
+    }
+  }
+
+  /**
+   * @return the number of collection loads, initial and refreshes.
+   */
+  public long getLoadCount() {
+    return loadCount.get();
+  }
+
+  @Override
+  public boolean isAvailable(String collection) {
+    return get(collection) != null;
+  }
+
+  @Override
+  public List<BsonDocument> lookup(String collection, String foreignField, List<BsonValue> localValues) {
+    // The copy checked by isAvailable, not reloaded in the middle of a run.
+    ReplicatedCollection copy = copies.get(collection);
+    if (copy == null) {
+      copy = get(collection);
+    }
+    if (copy == null) {
+      throw new MongoPipeRunException("Collection is not replicated: " + collection);
+    }
+    return copy.findEqual(foreignField, localValues);
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    changeStreams.values().forEach(MongoChangeStreamCursor::close);
+  }
+}
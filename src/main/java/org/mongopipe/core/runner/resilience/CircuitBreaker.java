@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.resilience;
+
+import com.mongodb.MongoException;
+import com.mongodb.MongoExecutionTimeoutException;
+import com.mongodb.MongoNodeIsRecoveringException;
+import com.mongodb.MongoNotPrimaryException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import org.mongopipe.core.config.CircuitBreakerConfig;
+import org.mongopipe.core.exception.CircuitOpenException;
+import org.mongopipe.core.logging.CustomLogFactory;
+import org.mongopipe.core.logging.Log;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Stops calling the database while it is failing or too slow (e.g. during a primary election or a slow query storm), so that the callers
+ * fail fast instead of piling up blocked threads. Counts the failed and slow calls over a window of the most recent calls:
+ * <ul>
+ *   <li>CLOSED: calls go through. Opens when the failure rate reaches CircuitBreakerConfig#failureRateThreshold.</li>
+ *   <li>OPEN: calls fail with CircuitOpenException, until CircuitBreakerConfig#openDurationMs passed.</li>
+ *   <li>HALF_OPEN: a single probe call goes through, the circuit closes if it succeeds or opens again if not.</li>
+ * </ul>
+ */
+public class CircuitBreaker {
+  private static final Log LOG = CustomLogFactory.getLogger(CircuitBreaker.class);
+
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private final CircuitBreakerConfig config;
+  private final ReentrantLock lock = new ReentrantLock();
+  // Ring buffer with the outcomes of the last calls, true for failed or slow.
+  private final boolean[] window;
+  private int windowStart;
+  private int calls;
+  private int failures;
+  private volatile State state = State.CLOSED;
+  private long openUntil;
+  private boolean probeInProgress;
+
+  public CircuitBreaker(CircuitBreakerConfig config) {
+    this.config = config;
+    this.window = new boolean[Math.max(1, config.getWindowSize())];
+  }
+
+  /**
+   * Runs the database call if the circuit allows it and records its outcome, failed for an availability error (see
+   * {@link #isAvailabilityFailure(MongoException)}) or if slower than CircuitBreakerConfig#slowCallDurationMs.
+   * @throws CircuitOpenException if the circuit is open.
+   */
+  public <T> T call(String description, Supplier<T> call) {
+    if (!tryAcquire()) {
+      throw new CircuitOpenException("Circuit breaker is open, not running: " + description);
+    }
+    long start = System.nanoTime();
+    try {
+      T result = call.get();
+      record(isSlow(System.nanoTime() - start));
+      return result;
+    } catch (MongoException e) {
+      if (isAvailabilityFailure(e)) {
+        record(true);
+      } else {
+        release(); // E.g. an invalid pipeline or a duplicate key, the database is healthy.
+      }
+      throw e;
+    } catch (RuntimeException | Error e) {
+      release(); // Not a database failure, e.g. a result mapping error, so neither failed nor succeeded.
+      throw e;
+    }
+  }
+
+  /**
+   * @return true if a call can go through, for HALF_OPEN only the first caller gets to probe the database.
+   */
+  public boolean tryAcquire() {
+    if (state == State.CLOSED) {
+      return true;
+    }
+    lock.lock();
+    try {
+      if (state == State.OPEN && System.currentTimeMillis() >= openUntil) {
+        state = State.HALF_OPEN;
+        probeInProgress = false;
+      }
+      if (state == State.HALF_OPEN && !probeInProgress) {
+        probeInProgress = true;
+        return true;
+      }
+      return state == State.CLOSED;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Records the outcome of a call that was allowed by {@link #tryAcquire()}.
+   */
+  public void record(boolean failed) {
+    lock.lock();
+    try {
+      if (state == State.HALF_OPEN) {
+        if (failed) {
+          open("the probe call failed");
+        } else {
+          LOG.info("Circuit breaker closed");
+          state = State.CLOSED;
+          resetWindow();
+        }
+        return;
+      }
+      if (state == State.OPEN) {
+        return; // A call started before the circuit opened.
+      }
+      if (calls == window.length) {
+        failures -= window[windowStart] ? 1 : 0;
+        windowStart = (windowStart + 1) % window.length;
+        calls--;
+      }
+      window[(windowStart + calls) % window.length] = failed;
+      calls++;
+      failures += failed ? 1 : 0;
+      if (calls >= config.getMinimumCalls() && failures >= config.getFailureRateThreshold() * calls) {
+        open(failures + " failed or slow calls out of " + calls);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Ends a call allowed by {@link #tryAcquire()} without recording its outcome. A HALF_OPEN probe is released, the next call probes again.
+   */
+  public void release() {
+    lock.lock();
+    try {
+      if (state == State.HALF_OPEN) {
+        probeInProgress = false;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return true for the errors telling that the database is unreachable, unavailable or too slow, as opposed to errors of the call itself
+   * (e.g. an invalid stage, a duplicate key or a validation error), which would open the circuit for all the pipelines.
+   */
+  public static boolean isAvailabilityFailure(MongoException e) {
+    return e instanceof MongoSocketException || e instanceof MongoTimeoutException || e instanceof MongoNotPrimaryException
+        || e instanceof MongoNodeIsRecoveringException || e instanceof MongoExecutionTimeoutException;
+  }
+
+  private boolean isSlow(long durationNanos) {
+    return config.getSlowCallDurationMs() > 0 && durationNanos >= TimeUnit.MILLISECONDS.toNanos(config.getSlowCallDurationMs());
+  }
+
+  private void open(String reason) {
+    LOG.warn("Circuit breaker opened for {} ms, {}", config.getOpenDurationMs(), reason);
+    state = State.OPEN;
+    openUntil = System.currentTimeMillis() + config.getOpenDurationMs();
+    resetWindow();
+  }
+
+  private void resetWindow() {
+    windowStart = 0;
+    calls = 0;
+    failures = 0;
+  }
+
+  /**
+   * @return true while the calls are rejected, i.e. OPEN and the open duration did not pass yet.
+   */
+  public boolean isOpen() {
+    if (state != State.OPEN) {
+      return false;
+    }
+    lock.lock();
+    try {
+      return state == State.OPEN && System.currentTimeMillis() < openUntil;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public State getState() {
+    return state;
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.resilience;
+
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoIterable;
+
+import java.util.Collection;
+
+/**
+ * Runs the reads of a lazy pipeline result (e.g. a returned Stream, Iterable or Publisher) through the CircuitBreaker. Each iteration is
+ * a call allowed by the breaker, whose outcome is the one of opening the cursor and reading its first batch (the first hasNext).
+ */
+public class CircuitBreakingIterable<T> implements MongoIterable<T> {
+  private final MongoIterable<T> delegate;
+  private final CircuitBreaker circuitBreaker;
+  private final String description;
+
+  public CircuitBreakingIterable(MongoIterable<T> delegate, CircuitBreaker circuitBreaker, String description) {
+    this.delegate = delegate;
+    this.circuitBreaker = circuitBreaker;
+    this.description = description;
+  }
+
+  @Override
+  public MongoCursor<T> iterator() {
+    return cursor();
+  }
+
+  /**
+   * @throws org.mongopipe.core.exception.CircuitOpenException if the circuit is open.
+   */
+  @Override
+  public MongoCursor<T> cursor() {
+    return circuitBreaker.call(description, () -> {
+      MongoCursor<T> cursor = delegate.cursor();
+      try {
+        cursor.hasNext();
+        return cursor;
+      } catch (RuntimeException | Error e) {
+        cursor.close();
+        throw e;
+      }
+    });
+  }
+
+  @Override
+  public T first() {
+    return circuitBreaker.call(description, delegate::first);
+  }
+
+  @Override
+  public <U> MongoIterable<U> map(com.mongodb.Function<T, U> mapper) {
+    return new CircuitBreakingIterable<>(delegate.map(mapper), circuitBreaker, description);
+  }
+
+  @Override
+  public <A extends Collection<? super T>> A into(A target) {
+    return circuitBreaker.call(description, () -> delegate.into(target));
+  }
+
+  @Override
+  public MongoIterable<T> batchSize(int batchSize) {
+    delegate.batchSize(batchSize);
+    return this;
+  }
+}
@@ -195,8 +195,23 @@ public class MongoCrudStore<ItemType, Id> implements CrudStore<ItemType, Id> {
     return getCollection().find(eq("_id", insertOneResult.getInsertedId())).iterator().next();
   }
 
+  /**
+   * Cached aggregate results reading the collection are dropped after each write.
+   */
+  private void invalidateCachedResults() {
+    runContext.getResultCache().invalidateCollection(collectionName);
+  }
+
   @Override
   public ItemType save(ItemType item) {
+    try {
+      return saveItem(item);
+    } finally {
+      invalidateCachedResults();
+    }
+  }
+
+  private ItemType saveItem(ItemType item) {
     Id id = retrieveId(item);
     if (id == null) {
       return insertOne(item);
@@ -238,16 +253,19 @@ public class MongoCrudStore<ItemType, Id> implements CrudStore<ItemType, Id> {
   @Override
   public void deleteById(Id id) {
     getCollection().deleteOne(eq("_id", id));
+    invalidateCachedResults();
   }
 
   @Override
   public void delete(ItemType item) {
     getCollection().deleteOne(eq("_id", retrieveId(item)));
+    invalidateCachedResults();
   }
 
   @Override
   public void deleteAll() {
     getCollection().deleteMany(new Document());
+    invalidateCachedResults();
   }
 
   @Override
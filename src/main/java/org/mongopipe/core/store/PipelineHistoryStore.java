@@ -19,16 +19,26 @@ package org.mongopipe.core.store;
 import org.mongopipe.core.annotation.Item;
 import org.mongopipe.core.annotation.Store;
 import org.mongopipe.core.model.Pipeline;
+import org.mongopipe.core.model.PipelineHistory;
 
+import java.util.Optional;
+
+/**
+ * Read access to the archived pipeline versions. The versions are written asynchronously by the PipelineHistoryWriter, call
+ * PipelineStore#flushHistory() to wait for the pending ones.
+ */
 @Store(
     items = {
-        @Item(type = Pipeline.class, collection = "${mongoPipeConfig.storeHistoryCollection}")
+        @Item(type = PipelineHistory.class, collection = "${mongoPipeConfig.storeHistoryCollection}")
     }
 )
 public interface PipelineHistoryStore {
 
-  Pipeline save(Pipeline pipeline);
-  Pipeline findById(String id);
-  Iterable<Pipeline> findAll();
+  Optional<PipelineHistory> findById(String id);
+  Iterable<PipelineHistory> findAll();
   Long count();
+
+  default Optional<Pipeline> findVersion(String pipelineId, Long version) {
+    return findById(PipelineHistory.toId(pipelineId, version)).map(PipelineHistory::getPipeline);
+  }
 }
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.store;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoCommandException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertManyOptions;
+import org.bson.Document;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.mongopipe.core.logging.CustomLogFactory;
+import org.mongopipe.core.logging.Log;
+import org.mongopipe.core.model.Pipeline;
+import org.mongopipe.core.model.PipelineHistory;
+import org.mongopipe.core.runner.context.RunContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.lte;
+import static com.mongodb.client.model.Sorts.descending;
+
+/**
+ * Appends the archived pipeline versions to the history collection. By default (MongoPipeConfig#storeHistoryAsync) the versions are queued
+ * and written in batches by a background thread, so that a pipeline update does not wait for the history write.<p>
+ * Retention is enforced with indexes: a TTL index on "archivedAt" (MongoPipeConfig#storeHistoryTtlSeconds) and the (pipelineId, version)
+ * index used to remove the versions above MongoPipeConfig#storeHistoryMaxVersions.
+ */
+public class PipelineHistoryWriter {
+  private static final Log LOG = CustomLogFactory.getLogger(PipelineHistoryWriter.class);
+  public static final String PIPELINE_ID = "pipelineId";
+  public static final String VERSION = "version";
+  public static final String ARCHIVED_AT = "archivedAt";
+  static final String TTL_INDEX_NAME = "archivedAt_ttl";
+  private static final int QUEUE_CAPACITY = 10_000;
+  private static final int MAX_BATCH_SIZE = 100;
+  private static final long MAX_BATCH_WAIT_MS = 200;
+  private static final long SHUTDOWN_FLUSH_TIMEOUT_MS = 5_000;
+  private static final int INDEX_OPTIONS_CONFLICT_ERROR_CODE = 85;
+  private static final int INDEX_KEY_SPECS_CONFLICT_ERROR_CODE = 86;
+
+  private final RunContext runContext;
+  private final MongoPipeConfig mongoPipeConfig;
+  private final BlockingQueue<PipelineHistory> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+  private final AtomicLong pending = new AtomicLong();
+  private final Object flushMonitor = new Object();
+  private volatile boolean indexesCreated;
+  private Thread writerThread;
+
+  public PipelineHistoryWriter(RunContext runContext) {
+    this.runContext = runContext;
+    this.mongoPipeConfig = runContext.getMongoPipeConfig();
+  }
+
+  MongoCollection<PipelineHistory> getCollection() {
+    return runContext.getMongoDatabase().getCollection(mongoPipeConfig.getStoreHistoryCollection(), PipelineHistory.class);
+  }
+
+  /**
+   * Archives the given pipeline version. In async mode it blocks only if the queue is full (backpressure).
+   */
+  public void archive(Pipeline pipeline) {
+    PipelineHistory history = PipelineHistory.builder()
+        .pipelineId(pipeline.getId())
+        .version(pipeline.getVersion())
+        .archivedAt(LocalDateTime.now())
+        .pipeline(pipeline)
+        .build();
+    if (!mongoPipeConfig.isStoreHistoryAsync()) {
+      write(Collections.singletonList(history));
+      return;
+    }
+    startWriterThread();
+    pending.incrementAndGet();
+    try {
+      queue.put(history);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      done(1);
+      LOG.warn("Interrupted while archiving pipeline: {}", pipeline.getId());
+    }
+  }
+
+  /**
+   * Waits until all the queued versions are written.
+   */
+  public void flush() {
+    flush(0);
+  }
+
+  /**
+   * Waits until all the queued versions are written or the timeout elapses.
+   * @param timeoutMs maximum time to wait, 0 means no limit.
+   * @return true if everything was written.
+   */
+  public boolean flush(long timeoutMs) {
+    long deadline = System.currentTimeMillis() + timeoutMs;
+    synchronized (flushMonitor) {
+      while (pending.get() > 0) {
+        long wait = timeoutMs > 0 ? deadline - System.currentTimeMillis() : 0;
+        if (timeoutMs > 0 && wait <= 0) {
+          return false;
+        }
+        try {
+          flushMonitor.wait(wait);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private synchronized void startWriterThread() {
+    if (writerThread == null) {
+      writerThread = new Thread(this::drain, "mongopipe-history-writer");
+      writerThread.setDaemon(true);
+      writerThread.start();
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(SHUTDOWN_FLUSH_TIMEOUT_MS), "mongopipe-history-flush"));
+    }
+  }
+
+  private void drain() {
+    List<PipelineHistory> batch = new ArrayList<>(MAX_BATCH_SIZE);
+    while (true) {
+      try {
+        batch.add(queue.take());
+        // Give the following updates (e.g. a migration) a chance to join the same batch.
+        long deadline = System.currentTimeMillis() + MAX_BATCH_WAIT_MS;
+        while (batch.size() < MAX_BATCH_SIZE) {
+          PipelineHistory next = queue.poll(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      try {
+        write(batch);
+      } catch (RuntimeException e) {
+        LOG.error("Could not write the pipeline history", e);
+      } finally {
+        done(batch.size());
+        batch.clear();
+      }
+    }
+  }
+
+  private void done(int count) {
+    if (pending.addAndGet(-count) <= 0) {
+      synchronized (flushMonitor) {
+        flushMonitor.notifyAll();
+      }
+    }
+  }
+
+  private void write(List<PipelineHistory> batch) {
+    MongoCollection<PipelineHistory> collection = getCollection();
+    createIndexes(collection);
+    try {
+      // Plain inserts since the archived stages contain $ prefixed field names (see MongoCrudStore#save).
+      collection.insertMany(batch, new InsertManyOptions().ordered(false));
+    } catch (MongoBulkWriteException e) {
+      // A version already archived (e.g. a retried update) is not an error.
+      for (BulkWriteError error : e.getWriteErrors()) {
+        if (error.getCategory() != ErrorCategory.DUPLICATE_KEY) {
+          throw e;
+        }
+      }
+    }
+    applyMaxVersions(collection, batch);
+  }
+
+  /**
+   * Keeps only the latest MongoPipeConfig#storeHistoryMaxVersions versions of the pipelines in the batch.
+   */
+  private void applyMaxVersions(MongoCollection<PipelineHistory> collection, List<PipelineHistory> batch) {
+    int maxVersions = mongoPipeConfig.getStoreHistoryMaxVersions();
+    if (maxVersions <= 0) {
+      return;
+    }
+    Set<String> pipelineIds = new LinkedHashSet<>();
+    batch.forEach(history -> pipelineIds.add(history.getPipelineId()));
+    for (String pipelineId : pipelineIds) {
+      // Uses the (pipelineId, version) index, the first version above the limit is the newest one to remove.
+      Document firstExpired = collection.find(eq(PIPELINE_ID, pipelineId), Document.class)
+          .sort(descending(VERSION))
+          .projection(new Document(VERSION, 1))
+          .skip(maxVersions)
+          .limit(1)
+          .first();
+      if (firstExpired != null) {
+        collection.deleteMany(and(eq(PIPELINE_ID, pipelineId), lte(VERSION, firstExpired.get(VERSION))));
+      }
+    }
+  }
+
+  private void createIndexes(MongoCollection<PipelineHistory> collection) {
+    if (indexesCreated) {
+      return;
+    }
+    collection.createIndex(Indexes.compoundIndex(Indexes.ascending(PIPELINE_ID), Indexes.descending(VERSION)));
+    long ttlSeconds = mongoPipeConfig.getStoreHistoryTtlSeconds();
+    if (ttlSeconds > 0) {
+      try {
+        collection.createIndex(Indexes.ascending(ARCHIVED_AT),
+            new IndexOptions().name(TTL_INDEX_NAME).expireAfter(ttlSeconds, TimeUnit.SECONDS));
+      } catch (MongoCommandException e) {
+        if (e.getErrorCode() != INDEX_OPTIONS_CONFLICT_ERROR_CODE && e.getErrorCode() != INDEX_KEY_SPECS_CONFLICT_ERROR_CODE) {
+          throw e;
+        }
+        // The TTL was changed in the configuration.
+        runContext.getMongoDatabase().runCommand(new Document("collMod", mongoPipeConfig.getStoreHistoryCollection())
+            .append("index", new Document("name", TTL_INDEX_NAME).append("expireAfterSeconds", ttlSeconds)));
+      }
+    }
+    indexesCreated = true;
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.store;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import org.mongopipe.core.migration.model.PipelineMigrationStatus;
+import org.mongopipe.core.runner.context.RunContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+
+/**
+ * Keeps the migration status of each pipeline as a separate document, uniquely indexed by the pipeline id.
+ * This way a migration writes only the statuses of the changed pipelines and the statuses are not limited by the maximum size of a single
+ * document.
+ */
+public class PipelineMigrationStatusStore {
+  public static final String PIPELINE_ID = "pipelineId";
+  private final RunContext runContext;
+  private boolean indexCreated;
+
+  public PipelineMigrationStatusStore(RunContext runContext) {
+    this.runContext = runContext;
+  }
+
+  MongoCollection<PipelineMigrationStatus> getCollection() {
+    MongoCollection<PipelineMigrationStatus> collection = runContext.getMongoDatabase()
+        .getCollection(runContext.getMongoPipeConfig().getMigrationStatusCollection(), PipelineMigrationStatus.class);
+    if (!indexCreated) {
+      collection.createIndex(Indexes.ascending(PIPELINE_ID), new IndexOptions().unique(true));
+      indexCreated = true;
+    }
+    return collection;
+  }
+
+  public List<PipelineMigrationStatus> findAll() {
+    return getCollection().find().into(new ArrayList<>());
+  }
+
+  public long count() {
+    return getCollection().countDocuments();
+  }
+
+  /**
+   * Upserts the given statuses using a single unordered bulk write.
+   */
+  public void saveAll(Collection<PipelineMigrationStatus> statuses) {
+    if (statuses.isEmpty()) {
+      return;
+    }
+    ReplaceOptions upsert = new ReplaceOptions().upsert(true);
+    List<WriteModel<PipelineMigrationStatus>> writes = statuses.stream()
+        .map(status -> new ReplaceOneModel<>(eq(PIPELINE_ID, status.getPipelineId()), status, upsert))
+        .collect(Collectors.toList());
+    getCollection().bulkWrite(writes, new BulkWriteOptions().ordered(false));
+  }
+
+  public void deleteByPipelineIds(Collection<String> pipelineIds) {
+    if (!pipelineIds.isEmpty()) {
+      getCollection().deleteMany(in(PIPELINE_ID, pipelineIds));
+    }
+  }
+}
@@ -41,24 +41,42 @@ import static org.mongopipe.core.util.BsonUtil.toBsonList;
  */
 public class PipelineStore {
   private static final Log LOG = CustomLogFactory.getLogger(PipelineStore.class);
+  public static final String PIPELINE_UPDATED_EVENT = "pipelineUpdated";
+  public static final String PIPELINE_DELETED_EVENT = "pipelineDeleted";
   private MongoPipeConfig mongoPipeConfig;
   private final FetchPipeline fetchPipeline;
   private GenericChangeNotifier changeNotifier = new GenericChangeNotifier();
 
   private final PipelineCrudStore crudStore;
-  private final PipelineHistoryStore historyStore;
+  private final RunContext runContext;
 
   public PipelineStore(RunContext runContext) {
+    this.runContext = runContext;
     mongoPipeConfig = runContext.getMongoPipeConfig();
     crudStore = Stores.from(PipelineCrudStore.class);
-    historyStore = Stores.from(PipelineHistoryStore.class);
 
     //check to update or not cache
     FetchPipelineStore cachePipelineStore = new FetchPipelineStore(crudStore);
     this.fetchPipeline = runContext.getMongoPipeConfig().isStoreCacheEnabled()
         ? new FetchCachedPipeline(cachePipelineStore) : cachePipelineStore;
 
-    changeNotifier.addListener((event) -> fetchPipeline.update());
+    changeNotifier.addListener((event) -> {
+      // Single pipeline changes are applied in place, anything else reloads all.
+      if (PIPELINE_UPDATED_EVENT.equals(event.getPropertyName())) {
+        fetchPipeline.update((Pipeline) event.getNewValue());
+        runContext.getResultCache().invalidate(((Pipeline) event.getNewValue()).getId());
+      } else if (PIPELINE_DELETED_EVENT.equals(event.getPropertyName())) {
+        fetchPipeline.remove((String) event.getNewValue());
+        runContext.getResultCache().invalidate((String) event.getNewValue());
+      } else {
+        fetchPipeline.update();
+        runContext.getResultCache().invalidateAll();
+      }
+    });
+  }
+
+  public RunContext getRunContext() {
+    return runContext;
   }
 
   public Pipeline getPipeline(String pipelineId) {
@@ -71,7 +89,7 @@ public class PipelineStore {
     pipeline.setCreatedAt(LocalDateTime.now());
     pipeline.setUpdatedAt(pipeline.getCreatedAt());
     Pipeline createdPipeline = crudStore.save(pipeline);
-    changeNotifier.fire();
+    changeNotifier.fire(PIPELINE_UPDATED_EVENT, createdPipeline);
 
     LOG.info("Created pipeline: {}", pipeline.getId());
     return createdPipeline;
@@ -99,7 +117,7 @@ public class PipelineStore {
 
     Pipeline updatedPipeline = crudStore.save(pipeline);
 
-    changeNotifier.fire();
+    changeNotifier.fire(PIPELINE_UPDATED_EVENT, updatedPipeline);
     LOG.info("Updated pipeline: {}", pipeline.getId());
     return updatedPipeline;
   }
@@ -116,13 +134,22 @@ public class PipelineStore {
     }
     backup(pipeline);
     crudStore.deleteById(id);
-    changeNotifier.fire();
+    changeNotifier.fire(PIPELINE_DELETED_EVENT, id);
     LOG.info("Deleted pipeline: {}", id);
   }
 
   private void backup(Pipeline pipeline) {
     if (mongoPipeConfig.isStoreHistoryEnabled()) {
-      historyStore.save(pipeline);
+      runContext.getPipelineHistoryWriter().archive(pipeline);
+    }
+  }
+
+  /**
+   * Waits for the pending history writes. The history is written asynchronously when MongoPipeConfig#storeHistoryAsync is set.
+   */
+  public void flushHistory() {
+    if (mongoPipeConfig.isStoreHistoryEnabled()) {
+      runContext.getPipelineHistoryWriter().flush();
     }
   }
 
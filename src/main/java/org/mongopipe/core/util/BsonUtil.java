@@ -238,7 +238,7 @@ public class BsonUtil {
     } else if (value instanceof List) {
       Map map = new HashMap<>();
       map.put("key", value);
-      return toBsonDocument(value).get("key");
+      return toBsonDocument(map).get("key");
     } else {
       return toBsonDocument(value);
     }
@@ -16,31 +16,98 @@
 
 package org.mongopipe.core.util;
 
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
 import org.mongopipe.core.exception.MongoPipeConfigException;
+import org.mongopipe.core.migration.source.MigratablePipeline;
 import org.mongopipe.core.model.Pipeline;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
+import java.util.List;
+
+import static org.mongopipe.core.config.PojoCodecConfig.getCodecRegistry;
 
 public class MigrationUtil {
-  private static MessageDigest DIGEST;
-  static {
+  private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+  // MessageDigest is not thread safe, so every thread has its own. Same for the buffer used to encode the pipelines.
+  private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
     try {
-      DIGEST = MessageDigest.getInstance("SHA-256");
+      return MessageDigest.getInstance("SHA-256");
     } catch (NoSuchAlgorithmException e) {
       throw new MongoPipeConfigException(e.getMessage(), e);
     }
-  }
+  });
+  private static final ThreadLocal<BasicOutputBuffer> BUFFER = ThreadLocal.withInitial(BasicOutputBuffer::new);
 
   public static String getHash(String text) {
     // text.hashCode() has some small chance of collisions.
-    byte[] hash = DIGEST.digest(text.getBytes(StandardCharsets.UTF_8));
-    return Base64.getEncoder().encodeToString(hash);
+    return getHash(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public static String getHash(byte[] content) {
+    return getHash(content, 0, content.length);
   }
 
+  private static String getHash(byte[] content, int offset, int length) {
+    MessageDigest digest = DIGEST.get();
+    digest.reset();
+    digest.update(content, offset, length);
+    return Base64.getEncoder().encodeToString(digest.digest());
+  }
+
+  /**
+   * @return the pipeline checksum, cached on the pipeline until its version or content changes.
+   */
   public static String getChecksum(Pipeline pipeline) {
-    return getHash(BsonUtil.toBsonDocument(pipeline).toJson());
+    return pipeline.checksum();
+  }
+
+  /**
+   * Computes the checksum by hashing the raw BSON bytes of the pipeline content, as encoded by the codec.
+   * The fields managed by the store (version, createdAt, updatedAt) are not part of the checksum, neither is the pipelineAsString when the
+   * pipeline stages are present since it is generated from them on each save.
+   */
+  public static String computeChecksum(Pipeline pipeline) {
+    BasicOutputBuffer buffer = BUFFER.get();
+    try {
+      buffer.truncateToPosition(0);
+      try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+        getCodecRegistry().get(Pipeline.class).encode(writer, toChecksumContent(pipeline), EncoderContext.builder().build());
+      }
+      return getHash(buffer.getInternalBuffer(), 0, buffer.getPosition());
+    } finally {
+      if (buffer.getSize() > MAX_RETAINED_BUFFER_SIZE) {
+        BUFFER.remove(); // Do not retain large buffers for each thread.
+      }
+    }
+  }
+
+  private static Pipeline toChecksumContent(Pipeline pipeline) {
+    Pipeline content = new Pipeline();
+    content.setId(pipeline.getId());
+    content.setPipeline(pipeline.getPipeline());
+    content.setPipelineAsString(pipeline.getPipeline() != null ? null : pipeline.getPipelineAsString());
+    content.setCollection(pipeline.getCollection());
+    content.setDescription(pipeline.getDescription());
+    content.setCommandOptions(pipeline.getCommandOptions());
+    content.setExtra(pipeline.getExtra());
+    return content;
+  }
+
+  /**
+   * @return a checksum of the whole migration source computed from the source paths, sizes and content hashes. It does not use the last
+   *         modified times because those change on every rebuild of a jar even if the pipelines remain the same.
+   */
+  public static String getFastChecksum(List<MigratablePipeline> migratablePipelines) {
+    StringBuilder sb = new StringBuilder();
+    migratablePipelines.forEach(migratablePipeline -> sb.append(migratablePipeline.getSourcePath())
+        .append('|').append(migratablePipeline.getSize())
+        .append('|').append(migratablePipeline.getContentHash())
+        .append(';'));
+    return getHash(sb.toString());
   }
 }
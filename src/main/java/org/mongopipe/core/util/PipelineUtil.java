@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.util;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.mongopipe.core.model.Pipeline;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.mongopipe.core.runner.evaluation.BsonParameterEvaluator.PARAMETER_PATTERN;
+
+public class PipelineUtil {
+  /**
+   * Returned in the read collections when a source collection is given by a parameter, e.g. <code>{$lookup: {from: "${source}"}}</code>.
+   */
+  public static final String ANY_COLLECTION = "*";
+
+  /**
+   * @return the collections read by the pipeline: the pipeline collection plus the sources of the $lookup, $graphLookup and $unionWith
+   * stages, including the ones of nested pipelines ($lookup, $unionWith, $facet).
+   */
+  public static Set<String> getReadCollections(Pipeline pipeline) {
+    Set<String> collections = new LinkedHashSet<>();
+    if (pipeline.getCollection() != null) {
+      collections.add(pipeline.getCollection());
+    }
+    if (pipeline.getPipeline() != null) {
+      addReadCollections(pipeline.getPipeline(), collections);
+    }
+    return collections;
+  }
+
+  private static void addReadCollections(List<? extends BsonValue> stages, Set<String> collections) {
+    for (BsonValue stage : stages) {
+      if (!stage.isDocument()) {
+        continue;
+      }
+      BsonDocument stageDocument = stage.asDocument();
+      for (String operator : stageDocument.keySet()) {
+        BsonValue spec = stageDocument.get(operator);
+        switch (operator) {
+          case "$lookup":
+          case "$graphLookup":
+            if (spec.isDocument()) {
+              addCollection(spec.asDocument().get("from"), collections);
+              addNestedPipeline(spec.asDocument().get("pipeline"), collections);
+            }
+            break;
+          case "$unionWith":
+            if (spec.isDocument()) {
+              addCollection(spec.asDocument().get("coll"), collections);
+              addNestedPipeline(spec.asDocument().get("pipeline"), collections);
+            } else {
+              addCollection(spec, collections);
+            }
+            break;
+          case "$facet":
+            if (spec.isDocument()) {
+              spec.asDocument().values().forEach(facet -> addNestedPipeline(facet, collections));
+            }
+            break;
+          default:
+        }
+      }
+    }
+  }
+
+  private static void addNestedPipeline(BsonValue pipeline, Set<String> collections) {
+    if (pipeline != null && pipeline.isArray()) {
+      addReadCollections(((BsonArray) pipeline).getValues(), collections);
+    }
+  }
+
+  private static void addCollection(BsonValue collection, Set<String> collections) {
+    if (collection == null) {
+      return;
+    }
+    if (!collection.isString() || PARAMETER_PATTERN.matcher(collection.asString().getValue()).find()) {
+      collections.add(ANY_COLLECTION);
+    } else {
+      collections.add(collection.asString().getValue());
+    }
+  }
+}
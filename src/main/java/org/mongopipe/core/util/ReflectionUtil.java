@@ -26,6 +26,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.stream.Collectors;
 
 // Take a look also at https://github.com/spring-projects/spring-framework/blob/main/spring-core/src/main/java/org/springframework/util/ReflectionUtils.java
@@ -47,6 +49,49 @@ public class ReflectionUtil {
     return returnPojoClass;
   }
 
+  /**
+   * @return true if the method returns a CompletableFuture or a CompletionStage and thus needs to run asynchronously.
+   */
+  public static boolean isAsyncReturnType(Method method) {
+    return CompletableFuture.class.equals(method.getReturnType()) || CompletionStage.class.equals(method.getReturnType());
+  }
+
+  /**
+   * @return the type wrapped by an async return type, e.g. "List&lt;Pizza&gt;" for "CompletableFuture&lt;List&lt;Pizza&gt;&gt;".
+   */
+  public static Type getAsyncResultType(Method method) {
+    if (method.getGenericReturnType() instanceof ParameterizedType) {
+      return ((ParameterizedType) method.getGenericReturnType()).getActualTypeArguments()[0];
+    }
+    return Object.class;
+  }
+
+  /**
+   * @return the raw class of a type, e.g. "List" for "List&lt;Pizza&gt;".
+   */
+  public static Class getRawClass(Type type) {
+    if (type instanceof Class) {
+      return (Class) type;
+    }
+    if (type instanceof ParameterizedType) {
+      return (Class) ((ParameterizedType) type).getRawType();
+    }
+    return Object.class;
+  }
+
+  /**
+   * @return the first generic type argument class, e.g. "Pizza" for "List&lt;Pizza&gt;", or the type itself if not generic.
+   */
+  public static Class getTypeArgumentClass(Type type) {
+    if (type instanceof ParameterizedType) {
+      Type[] actualTypeArguments = ((ParameterizedType) type).getActualTypeArguments();
+      if (actualTypeArguments.length > 0 && actualTypeArguments[0] instanceof Class) {
+        return (Class) actualTypeArguments[0];
+      }
+    }
+    return getRawClass(type);
+  }
+
   /**
    * @return the class generic type.
    */
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.migration;
+
+import org.bson.Document;
+import org.junit.Test;
+import org.mongopipe.core.Stores;
+import org.mongopipe.core.config.MigrationConfig;
+import org.mongopipe.core.config.MigrationConfig.FollowerMode;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.mongopipe.core.exception.MongoPipeMigrationException;
+import org.mongopipe.core.migration.source.MigratablePipeline;
+import org.mongopipe.core.model.Pipeline;
+import org.mongopipe.core.runner.context.RunContext;
+import org.mongopipe.core.runner.context.RunContextProvider;
+import org.mongopipe.core.store.StatusStore;
+import org.mongopipe.core.util.AbstractMongoDBTest;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.mongopipe.core.util.BsonUtil.loadResourceIntoPojo;
+
+public class MigrationLockTest extends AbstractMongoDBTest {
+
+  private MigrationConfig lockConfig(long leaseMs) {
+    return MigrationConfig.builder().lockLeaseMs(leaseMs).build();
+  }
+
+  private Date getExpiresAt() {
+    return db.getCollection(MongoPipeConfig.DEFAULT_STATUS_COLLECTION).find(new Document("_id", MigrationLock.LOCK_ID)).first()
+        .getDate("expiresAt");
+  }
+
+  @Test
+  public void testOnlyOneOwnerAcquiresTheLock() {
+    // Given
+    RunContext runContext = RunContextProvider.getContext();
+    MigrationLock lock1 = new MigrationLock(runContext, lockConfig(60_000), "instance1");
+    MigrationLock lock2 = new MigrationLock(runContext, lockConfig(60_000), "instance2");
+
+    // When / Then
+    assertTrue(lock1.tryAcquire());
+    assertFalse(lock2.tryAcquire());
+    assertTrue(lock1.tryAcquire()); // Reentrant for the same owner.
+
+    lock1.release();
+    assertTrue(lock2.tryAcquire());
+    lock2.release();
+  }
+
+  @Test
+  public void testExpiredLeaseIsTakenOver() throws Exception {
+    // Given
+    RunContext runContext = RunContextProvider.getContext();
+    MigrationLock deadOwnerLock = new MigrationLock(runContext, lockConfig(60_000), "deadInstance");
+    assertTrue(deadOwnerLock.tryAcquire());
+    // Simulate an owner that died without releasing the lock and without renewing it.
+    db.getCollection(MongoPipeConfig.DEFAULT_STATUS_COLLECTION).updateOne(new Document("_id", MigrationLock.LOCK_ID),
+        new Document("$set", new Document("expiresAt", new Date(System.currentTimeMillis() - 1000))));
+
+    // When
+    MigrationLock lock = new MigrationLock(runContext, lockConfig(60_000), "instance");
+    boolean acquired = lock.tryAcquire();
+
+    // Then
+    assertTrue(acquired);
+    deadOwnerLock.renew();
+    assertFalse(deadOwnerLock.isHeld());
+    lock.release();
+  }
+
+  @Test
+  public void testHeartbeatRenewsTheLease() throws Exception {
+    // Given
+    MigrationLock lock = new MigrationLock(RunContextProvider.getContext(), lockConfig(300), "instance");
+    assertTrue(lock.tryAcquire());
+    Date initialExpiresAt = getExpiresAt();
+
+    // When
+    Thread.sleep(500);
+
+    // Then
+    assertTrue(getExpiresAt().after(initialExpiresAt));
+    assertTrue(lock.isHeld());
+    lock.release();
+  }
+
+  @Test
+  public void testFollowerSkipsOrTimesOutWhileAnotherInstanceMigrates() {
+    // Given
+    Pipeline pipeline = loadResourceIntoPojo("command/aggregate/pipeline.bson", Pipeline.class);
+    List<MigratablePipeline> migrationUnits = Arrays.asList(TestMigratablePipeline.builder().lastModifiedTime(1L).pipeline(pipeline).build());
+    MigrationLock otherInstanceLock = new MigrationLock(RunContextProvider.getContext(), lockConfig(60_000), "otherInstance");
+    assertTrue(otherInstanceLock.tryAcquire());
+
+    // When skipping
+    Stores.registerConfig(MongoPipeConfig.builder()
+        .uri("mongodb://localhost:" + PORT)
+        .databaseName("test")
+        .migrationConfig(MigrationConfig.builder().followerMode(FollowerMode.SKIP).build())
+        .build());
+    RunContextProvider.getContext().setPipelineMigrationSource(() -> migrationUnits.stream());
+    new MigrationRunner().run();
+
+    // Then
+    assertEquals(Long.valueOf(0L), Stores.getPipelineStore().count());
+
+    // When waiting
+    Stores.registerConfig(MongoPipeConfig.builder()
+        .uri("mongodb://localhost:" + PORT)
+        .databaseName("test")
+        .migrationConfig(MigrationConfig.builder().followerMode(FollowerMode.WAIT).lockWaitTimeoutMs(300).lockPollMs(50).build())
+        .build());
+    RunContextProvider.getContext().setPipelineMigrationSource(() -> migrationUnits.stream());
+    try {
+      new MigrationRunner().run();
+      fail("Expected to time out while the other instance holds the lock");
+    } catch (MongoPipeMigrationException e) {
+      // Then
+      assertEquals(Long.valueOf(0L), Stores.getPipelineStore().count());
+    }
+
+    // When the other instance is gone the follower takes over.
+    otherInstanceLock.release();
+    new MigrationRunner().run();
+
+    // Then
+    assertEquals(Long.valueOf(1L), Stores.getPipelineStore().count());
+    assertEquals(Long.valueOf(1L), Stores.from(StatusStore.class).getStatus().get().getVersion());
+  }
+}
@@ -27,6 +27,7 @@ import org.mongopipe.core.migration.model.Status;
 import org.mongopipe.core.migration.source.MigratablePipeline;
 import org.mongopipe.core.model.Pipeline;
 import org.mongopipe.core.runner.context.RunContextProvider;
+import org.mongopipe.core.store.PipelineMigrationStatusStore;
 import org.mongopipe.core.store.PipelineStore;
 import org.mongopipe.core.store.StatusStore;
 import org.mongopipe.core.util.AbstractMongoDBTest;
@@ -35,14 +36,19 @@ import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.junit.Assert.assertNotEquals;
 import static org.mongopipe.core.util.BsonUtil.loadResourceIntoPojo;
 import static org.mongopipe.core.util.MigrationUtil.getChecksum;
+import static org.mongopipe.core.util.MigrationUtil.getFastChecksum;
 
 public class MigrationRunnerTest extends AbstractMongoDBTest {
 
@@ -69,8 +75,9 @@ public class MigrationRunnerTest extends AbstractMongoDBTest {
     assertNotNull(status.getUpdatedAt());
     MigrationStatus migrationStatus = status.getMigrationStatus();
     assertNotNull(migrationStatus.getFastChecksum());
-    assertEquals(2, migrationStatus.getPipelineMigrationStatuses().size());
-    PipelineMigrationStatus pipelineMigrationStatus = migrationStatus.getPipelineMigrationStatuses().get(0);
+    Map<String, PipelineMigrationStatus> pipelineMigrationStatuses = findPipelineMigrationStatuses();
+    assertEquals(2, pipelineMigrationStatuses.size());
+    PipelineMigrationStatus pipelineMigrationStatus = pipelineMigrationStatuses.get(pipeline.getId());
     assertEquals(pipeline.getId(), pipelineMigrationStatus.getPipelineId());
     assertNotNull(pipelineMigrationStatus.getChecksum());
     assertNotNull(pipelineMigrationStatus.getUpdateTime());
@@ -81,17 +88,16 @@ public class MigrationRunnerTest extends AbstractMongoDBTest {
     // Given
     Pipeline pipeline = loadResourceIntoPojo("command/aggregate/pipeline.bson", Pipeline.class);
     Pipeline pipeline2 = loadResourceIntoPojo("command/aggregate/pipelinePizzasByPrice.bson", Pipeline.class);
-    Stream<MigratablePipeline> migrationUnitStream =
+    List<MigratablePipeline> migrationUnits =
         Arrays.asList(
             new MigratablePipeline[] {
               TestMigratablePipeline.builder().lastModifiedTime(1L).pipeline(pipeline).build(),
               TestMigratablePipeline.builder().lastModifiedTime(2L).pipeline(pipeline2).build()
-            })
-            .stream();
-    RunContextProvider.getContext().setPipelineMigrationSource(() -> migrationUnitStream);
+            });
+    RunContextProvider.getContext().setPipelineMigrationSource(() -> migrationUnits.stream());
 
     StatusStore statusStore = Stores.from(StatusStore.class);
-    statusStore.save(Status.builder().migrationStatus(MigrationStatus.builder().fastChecksum("06CemFwL4MdybFK0166GTQ9DsXkcqMqZBmpD2B39FMU=").build()).build());
+    statusStore.save(Status.builder().migrationStatus(MigrationStatus.builder().fastChecksum(getFastChecksum(migrationUnits)).build()).build());
 
     // When
     new MigrationRunner().run();
@@ -110,15 +116,14 @@ public class MigrationRunnerTest extends AbstractMongoDBTest {
     // Incoming migration source.
     Pipeline pipeline2Updated = loadResourceIntoPojo("command/aggregate/pipelinePizzasByPrice.bson", Pipeline.class);
     pipeline2Updated.setDescription("pipeline2Updated");
-    Stream<MigratablePipeline> migrationUnitStream =
+    List<MigratablePipeline> migrationUnits =
         Arrays.asList(
             new MigratablePipeline[] {
               TestMigratablePipeline.builder().lastModifiedTime(1L).pipeline(pipeline1).build(),
               TestMigratablePipeline.builder().lastModifiedTime(2L).pipeline(pipeline2Updated).build(),
               TestMigratablePipeline.builder().lastModifiedTime(3L).pipeline(pipeline3IsNew).build()
-            })
-            .stream();
-    RunContextProvider.getContext().setPipelineMigrationSource(() -> migrationUnitStream);
+            });
+    RunContextProvider.getContext().setPipelineMigrationSource(() -> migrationUnits.stream());
 
     List<PipelineMigrationStatus> dbStatuses = new ArrayList<>();
     PipelineStore pipelineStore = Stores.getPipelineStore();
@@ -137,6 +142,9 @@ public class MigrationRunnerTest extends AbstractMongoDBTest {
     statusStore.save(
         Status.builder().migrationStatus(MigrationStatus.builder().fastChecksum("not matching").pipelineMigrationStatuses(dbStatuses).build()).build());
 
+    // Source pipelines are the same instances that the migration saves, so take the expected source checksum before.
+    String sourceFastChecksum = getFastChecksum(migrationUnits);
+
     // When
     Pipelines.startMigration();
 
@@ -150,22 +158,94 @@ public class MigrationRunnerTest extends AbstractMongoDBTest {
 
     Status newStatus = Stores.from(StatusStore.class).findById(1L).get();
     assertNotNull(newStatus.getUpdatedAt());
-    assertEquals("DzlfWW+ikyM+XEnMxBUsluH0L3tE/ArBzFrsc+H2oTA=", newStatus.getMigrationStatus().getFastChecksum());
-    List<PipelineMigrationStatus> pipelineMigrationStatuses = newStatus.getMigrationStatus().getPipelineMigrationStatuses();
+    assertEquals(sourceFastChecksum, newStatus.getMigrationStatus().getFastChecksum());
+    // Legacy embedded statuses were moved to the per pipeline status collection.
+    assertNull(newStatus.getMigrationStatus().getPipelineMigrationStatuses());
+    Map<String, PipelineMigrationStatus> pipelineMigrationStatuses = findPipelineMigrationStatuses();
+    assertEquals(3, pipelineMigrationStatuses.size());
 
-    assertEquals(pipeline1.getId(), pipelineMigrationStatuses.get(0).getPipelineId());
-    assertEquals(getChecksum(pipeline1), pipelineMigrationStatuses.get(0).getChecksum());
-    assertEquals(pipeline1UpdateTime, pipelineMigrationStatuses.get(0).getUpdateTime());
+    assertEquals(getChecksum(pipeline1), pipelineMigrationStatuses.get(pipeline1.getId()).getChecksum());
+    assertEquals(pipeline1UpdateTime.truncatedTo(ChronoUnit.MILLIS),
+        pipelineMigrationStatuses.get(pipeline1.getId()).getUpdateTime().truncatedTo(ChronoUnit.MILLIS));
 
-    assertEquals(pipeline2WillBeUpdated.getId(), pipelineMigrationStatuses.get(1).getPipelineId());
     String pipeline2Checksum = getChecksum(Stores.getPipelineStore().getPipeline(pipeline2WillBeUpdated.getId()));
-    assertEquals(pipeline2Checksum, pipelineMigrationStatuses.get(1).getChecksum());
-    assertNotNull(pipelineMigrationStatuses.get(1).getUpdateTime());
+    assertEquals(pipeline2Checksum, pipelineMigrationStatuses.get(pipeline2WillBeUpdated.getId()).getChecksum());
+    assertNotNull(pipelineMigrationStatuses.get(pipeline2WillBeUpdated.getId()).getUpdateTime());
 
-    assertEquals(pipeline3IsNew.getId(), pipelineMigrationStatuses.get(2).getPipelineId());
     String pipeline3Checksum = getChecksum(Stores.getPipelineStore().getPipeline(pipeline3IsNew.getId()));
-    assertEquals(pipeline3Checksum, pipelineMigrationStatuses.get(2).getChecksum());
-    assertNotNull(pipelineMigrationStatuses.get(2).getUpdateTime());
+    assertEquals(pipeline3Checksum, pipelineMigrationStatuses.get(pipeline3IsNew.getId()).getChecksum());
+    assertNotNull(pipelineMigrationStatuses.get(pipeline3IsNew.getId()).getUpdateTime());
+  }
+
+  @Test
+  public void testOnlyChangedPipelineStatusesAreWrittenAndRemovedOnesDeleted() {
+    // Given
+    Pipeline pipeline1 = loadResourceIntoPojo("command/aggregate/pipeline.bson", Pipeline.class);
+    Pipeline pipeline2 = loadResourceIntoPojo("command/aggregate/pipelinePizzasByPrice.bson", Pipeline.class);
+    Pipeline pipeline3 = loadResourceIntoPojo("command/findOneAndUpdate/updateOneMatchingPizza.bson", Pipeline.class);
+    List<MigratablePipeline> firstRunUnits = Arrays.asList(
+        TestMigratablePipeline.builder().lastModifiedTime(1L).sourcePath("a.json").contentHash("hashA").pipeline(pipeline1).build(),
+        TestMigratablePipeline.builder().lastModifiedTime(1L).sourcePath("b.json").contentHash("hashB").pipeline(pipeline2).build(),
+        TestMigratablePipeline.builder().lastModifiedTime(1L).sourcePath("c.json").contentHash("hashC").pipeline(pipeline3).build());
+    RunContextProvider.getContext().setPipelineMigrationSource(() -> firstRunUnits.stream());
+    new MigrationRunner().run();
+    PipelineMigrationStatusStore pipelineMigrationStatusStore = new PipelineMigrationStatusStore(RunContextProvider.getContext());
+    assertEquals(3, pipelineMigrationStatusStore.count());
+    PipelineMigrationStatus pipeline1Status = findPipelineMigrationStatuses().get(pipeline1.getId());
+
+    // Second file changed and third file removed.
+    Pipeline pipeline2Updated = loadResourceIntoPojo("command/aggregate/pipelinePizzasByPrice.bson", Pipeline.class);
+    pipeline2Updated.setDescription("pipeline2Updated");
+    RunContextProvider.getContext().setPipelineMigrationSource(() -> Stream.of(
+        TestMigratablePipeline.builder().lastModifiedTime(2L).sourcePath("a.json").contentHash("hashA").pipeline(pipeline1).build(),
+        TestMigratablePipeline.builder().lastModifiedTime(2L).sourcePath("b.json").contentHash("hashB2").pipeline(pipeline2Updated).build()));
+
+    // When
+    new MigrationRunner().run();
+
+    // Then
+    Map<String, PipelineMigrationStatus> pipelineMigrationStatuses = findPipelineMigrationStatuses();
+    assertEquals(2, pipelineMigrationStatuses.size());
+    assertFalse(pipelineMigrationStatuses.containsKey(pipeline3.getId()));
+    // Unchanged source status is not rewritten.
+    assertEquals(Long.valueOf(1L), pipelineMigrationStatuses.get(pipeline1.getId()).getLastModifiedTime());
+    assertEquals(pipeline1Status.getChecksum(), pipelineMigrationStatuses.get(pipeline1.getId()).getChecksum());
+    assertEquals("hashB2", pipelineMigrationStatuses.get(pipeline2.getId()).getContentHash());
+    assertEquals(Long.valueOf(2L), pipelineMigrationStatuses.get(pipeline2.getId()).getLastModifiedTime());
+  }
+
+  private Map<String, PipelineMigrationStatus> findPipelineMigrationStatuses() {
+    return new PipelineMigrationStatusStore(RunContextProvider.getContext()).findAll().stream()
+        .collect(Collectors.toMap(PipelineMigrationStatus::getPipelineId, Function.identity()));
+  }
+
+  @Test
+  public void testUnchangedSourcesAreNotParsedEvenIfLastModifiedTimeChanged() {
+    // Given
+    Pipeline pipeline1 = loadResourceIntoPojo("command/aggregate/pipeline.bson", Pipeline.class);
+    Pipeline pipeline2 = loadResourceIntoPojo("command/aggregate/pipelinePizzasByPrice.bson", Pipeline.class);
+    List<MigratablePipeline> firstRunUnits = Arrays.asList(
+        TestMigratablePipeline.builder().lastModifiedTime(1L).sourcePath("a.json").contentHash("hashA").pipeline(pipeline1).build(),
+        TestMigratablePipeline.builder().lastModifiedTime(1L).sourcePath("b.json").contentHash("hashB").pipeline(pipeline2).build());
+    RunContextProvider.getContext().setPipelineMigrationSource(() -> firstRunUnits.stream());
+    new MigrationRunner().run();
+
+    // Rebuilt jar: all last modified times changed, only the second file content changed.
+    Pipeline pipeline2Updated = loadResourceIntoPojo("command/aggregate/pipelinePizzasByPrice.bson", Pipeline.class);
+    pipeline2Updated.setDescription("pipeline2Updated");
+    TestMigratablePipeline unchangedUnit =
+        TestMigratablePipeline.builder().lastModifiedTime(2L).sourcePath("a.json").contentHash("hashA").pipeline(pipeline1).build();
+    TestMigratablePipeline changedUnit =
+        TestMigratablePipeline.builder().lastModifiedTime(2L).sourcePath("b.json").contentHash("hashB2").pipeline(pipeline2Updated).build();
+    RunContextProvider.getContext().setPipelineMigrationSource(() -> Stream.of(unchangedUnit, changedUnit));
+
+    // When
+    new MigrationRunner().run();
+
+    // Then
+    assertEquals(0, unchangedUnit.getGetPipelineCalls());
+    assertTrue(changedUnit.getGetPipelineCalls() > 0);
+    assertEquals("pipeline2Updated", Stores.getPipelineStore().getPipeline(pipeline2.getId()).getDescription());
   }
 
   @Test
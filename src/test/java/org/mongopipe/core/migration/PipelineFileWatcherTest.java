@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.migration;
+
+import org.junit.Test;
+import org.mongopipe.core.Stores;
+import org.mongopipe.core.config.MigrationConfig;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.mongopipe.core.migration.source.FileMigratablePipelineScanner;
+import org.mongopipe.core.migration.source.MigratablePipeline;
+import org.mongopipe.core.runner.context.RunContext;
+import org.mongopipe.core.runner.context.RunContextProvider;
+import org.mongopipe.core.store.PipelineStore;
+import org.mongopipe.core.util.AbstractMongoDBTest;
+
+import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class PipelineFileWatcherTest extends AbstractMongoDBTest {
+  private static final String PIPELINE_ID = "matchingPizzasBySize";
+
+  private String waitForDescription(PipelineStore pipelineStore, String expected) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 20_000;
+    String description = pipelineStore.getPipeline(PIPELINE_ID).getDescription();
+    while (!expected.equals(description) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(100);
+      description = pipelineStore.getPipeline(PIPELINE_ID).getDescription();
+    }
+    return description;
+  }
+
+  @Test
+  public void testChangedPipelineFileIsMigratedAndCachedWithoutRestart() throws Exception {
+    // Given
+    Path directory = Files.createTempDirectory("pipelines");
+    Path pipelineFile = directory.resolve("pipeline.bson");
+    String content = new String(Files.readAllBytes(Paths.get(getClass().getClassLoader().getResource("command/aggregate/pipeline.bson").toURI())),
+        StandardCharsets.UTF_8);
+    Files.write(pipelineFile, content.getBytes(StandardCharsets.UTF_8));
+
+    MigrationConfig migrationConfig = MigrationConfig.builder().watchEnabled(true).watchDebounceMs(100).build();
+    Stores.registerConfig(MongoPipeConfig.builder()
+        .uri("mongodb://localhost:" + PORT)
+        .databaseName("test")
+        .storeCacheEnabled(true)
+        .migrationConfig(migrationConfig)
+        .build());
+    RunContext runContext = RunContextProvider.getContext();
+    runContext.setPipelineMigrationSource(new PipelineMigrationSource() {
+      @Override
+      public Stream<MigratablePipeline> getMigrablePipelines() {
+        try {
+          return new FileMigratablePipelineScanner().loadPipelinesFromLocation(directory.toUri().toURL(), migrationConfig).stream();
+        } catch (MalformedURLException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+
+      @Override
+      public List<Path> getWatchableDirectories() {
+        return Collections.singletonList(directory);
+      }
+    });
+    PipelineStore pipelineStore = Stores.getPipelineStore();
+    MigrationRunner migrationRunner = new MigrationRunner(runContext, pipelineStore);
+
+    try {
+      migrationRunner.run();
+      assertEquals("pizzas by size", pipelineStore.getPipeline(PIPELINE_ID).getDescription());
+
+      // When
+      Files.write(pipelineFile, content.replace("pizzas by size", "hot reloaded").getBytes(StandardCharsets.UTF_8));
+
+      // Then
+      assertEquals("hot reloaded", waitForDescription(pipelineStore, "hot reloaded"));
+      assertEquals(Long.valueOf(2L), pipelineStore.getPipeline(PIPELINE_ID).getVersion());
+    } finally {
+      runContext.getPipelineFileWatcher().close();
+      Files.deleteIfExists(pipelineFile);
+      Files.deleteIfExists(directory);
+    }
+  }
+}
@@ -22,6 +22,9 @@ import org.mongopipe.core.model.Pipeline;
 public class TestMigratablePipeline implements MigratablePipeline {
   private Long lastModifiedTime;
   private Pipeline pipeline;
+  private String sourcePath;
+  private String contentHash;
+  private int getPipelineCalls;
 
   public TestMigratablePipeline(Long lastModifiedTime, Pipeline pipeline) {
     this.lastModifiedTime = lastModifiedTime;
@@ -31,6 +34,8 @@ public class TestMigratablePipeline implements MigratablePipeline {
   private TestMigratablePipeline(Builder builder) {
     setLastModifiedTime(builder.lastModifiedTime);
     setPipeline(builder.pipeline);
+    sourcePath = builder.sourcePath;
+    contentHash = builder.contentHash;
   }
 
   public static Builder builder() {
@@ -44,6 +49,7 @@ public class TestMigratablePipeline implements MigratablePipeline {
 
   @Override
   public Pipeline getPipeline() {
+    getPipelineCalls++;
     return pipeline;
   }
 
@@ -52,9 +58,25 @@ public class TestMigratablePipeline implements MigratablePipeline {
     return null;
   }
 
+  @Override
+  public String getSourcePath() {
+    return sourcePath;
+  }
+
+  @Override
+  public String getContentHash() {
+    return contentHash != null ? contentHash : MigratablePipeline.super.getContentHash();
+  }
+
+  public int getGetPipelineCalls() {
+    return getPipelineCalls;
+  }
+
   public static final class Builder {
     private Long lastModifiedTime;
     private Pipeline pipeline;
+    private String sourcePath;
+    private String contentHash;
 
     private Builder() {
     }
@@ -69,6 +91,16 @@ public class TestMigratablePipeline implements MigratablePipeline {
       return this;
     }
 
+    public Builder sourcePath(String val) {
+      sourcePath = val;
+      return this;
+    }
+
+    public Builder contentHash(String val) {
+      contentHash = val;
+      return this;
+    }
+
     public TestMigratablePipeline build() {
       return new TestMigratablePipeline(this);
     }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.migration.bundle;
+
+import org.junit.Test;
+import org.mongopipe.core.migration.source.MigratablePipeline;
+import org.mongopipe.core.model.Pipeline;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mongopipe.core.util.MigrationUtil.getChecksum;
+import static org.mongopipe.core.util.MigrationUtil.getHash;
+
+public class PipelineBundleTest {
+
+  @Test
+  public void testCompiledBundleKeepsPipelinesAndFingerprints() throws Exception {
+    // Given
+    Path pipelinesDirectory = Paths.get(getClass().getClassLoader().getResource("pipe   lines").toURI());
+    Path bundleFile = Files.createTempFile("pipelines", ".bundle");
+
+    try {
+      // When
+      int count = PipelineBundleCompiler.compile(pipelinesDirectory, bundleFile);
+      List<MigratablePipeline> migratablePipelines = PipelineBundle.load(bundleFile.toUri().toURL()).getMigratablePipelines();
+
+      // Then
+      assertEquals(2, count);
+      assertEquals(2, migratablePipelines.size());
+      MigratablePipeline migratablePipeline = migratablePipelines.get(0);
+      assertEquals("bundle:group1/pipeline.bson", migratablePipeline.getSourcePath());
+      byte[] content = Files.readAllBytes(pipelinesDirectory.resolve("group1/pipeline.bson"));
+      assertEquals(Long.valueOf(content.length), migratablePipeline.getSize());
+      assertEquals(getHash(content), migratablePipeline.getContentHash());
+
+      Pipeline pipeline = migratablePipeline.getPipeline();
+      assertEquals("matchingPizzasBySize", pipeline.getId());
+      assertEquals(getChecksum(pipeline), migratablePipeline.getPipelineChecksum());
+      assertEquals("matchingPizzasBySize2", migratablePipelines.get(1).getPipeline().getId());
+    } finally {
+      Files.deleteIfExists(bundleFile);
+    }
+  }
+}
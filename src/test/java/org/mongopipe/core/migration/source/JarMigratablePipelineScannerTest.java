@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.mongopipe.core.migration.source;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mongopipe.core.config.MigrationConfig;
+import org.mongopipe.core.model.Pipeline;
+import org.mongopipe.core.util.MigrationUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.mongopipe.core.util.BsonUtil.toPojo;
+
+public class JarMigratablePipelineScannerTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static String pipeline(String id, String size) {
+    return "{ \"_id\": \"" + id + "\", \"collection\": \"pizzaCollection\", \"pipeline\": [{ $match: { size: \"" + size + "\" } }] }";
+  }
+
+  private File createJar(Map<String, String> entries) throws IOException {
+    File jar = folder.newFile("pipelines.jar");
+    try (JarOutputStream outputStream = new JarOutputStream(new FileOutputStream(jar))) {
+      outputStream.putNextEntry(new JarEntry("pipelines/"));
+      outputStream.closeEntry();
+      for (Map.Entry<String, String> entry : entries.entrySet()) {
+        outputStream.putNextEntry(new JarEntry(entry.getKey()));
+        outputStream.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+        outputStream.closeEntry();
+      }
+    }
+    return jar;
+  }
+
+  // As before the single pass, each entry is looked up and read again through its own URL.
+  private static byte[] readAgain(File jar, String path) throws IOException {
+    URLConnection connection = new URL("jar:" + jar.toURI().toURL() + "!/" + path).openConnection();
+    connection.setUseCaches(false);
+    try (InputStream inputStream = connection.getInputStream()) {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = inputStream.read(buffer)) != -1) {
+        outputStream.write(buffer, 0, read);
+      }
+      return outputStream.toByteArray();
+    }
+  }
+
+  @Test
+  public void testPipelinesAreReadInASinglePass() throws IOException {
+    // Given
+    Map<String, String> entries = new LinkedHashMap<>();
+    entries.put("pipelines/smallPizzas.json", pipeline("smallPizzas", "small"));
+    entries.put("pipelines/group/mediumPizzas.bson", pipeline("mediumPizzas", "medium"));
+    entries.put("pipelines/group/largePizzas.json", pipeline("largePizzas", "large"));
+    entries.put("pipelines/readme.txt", "Not a pipeline.");
+    entries.put("other/otherPizzas.json", pipeline("otherPizzas", "small"));
+    File jar = createJar(entries);
+    URL url = new URL("jar:" + jar.toURI().toURL() + "!/pipelines");
+
+    // When
+    List<MigratablePipeline> migratablePipelines = new JarMigratablePipelineScanner()
+        .loadPipelinesFromLocation(url, MigrationConfig.builder().pipelinesPath("pipelines").build());
+
+    // Then
+    assertEquals(3, migratablePipelines.size());
+    Map<String, MigratablePipeline> byPath = migratablePipelines.stream()
+        .collect(Collectors.toMap(pipeline -> pipeline.getSourcePath().substring(pipeline.getSourcePath().lastIndexOf("!/") + 2),
+            pipeline -> pipeline));
+    List<String> pipelinePaths = Arrays.asList("pipelines/smallPizzas.json", "pipelines/group/mediumPizzas.bson",
+        "pipelines/group/largePizzas.json");
+    for (String path : pipelinePaths) {
+      byte[] content = readAgain(jar, path);
+      MigratablePipeline migratablePipeline = byPath.get(path);
+      Pipeline expected = toPojo(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8), Pipeline.class);
+      assertEquals(jar.toURI().toURL().toString(), migratablePipeline.getSourceName());
+      assertEquals(Long.valueOf(content.length), migratablePipeline.getSize());
+      assertEquals(MigrationUtil.getHash(content), migratablePipeline.getContentHash());
+      assertEquals(expected.getId(), migratablePipeline.getPipeline().getId());
+      assertEquals(expected.getPipeline(), migratablePipeline.getPipeline().getPipeline());
+    }
+  }
+}
@@ -16,20 +16,43 @@
 
 package org.mongopipe.core.runner;
 
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoIterable;
+import de.flapdoodle.embed.process.runtime.Network;
 import org.bson.Document;
 import org.json.JSONException;
 import org.junit.Test;
 import org.mongopipe.core.Pipelines;
 import org.mongopipe.core.Stores;
+import org.mongopipe.core.config.CircuitBreakerConfig;
 import org.mongopipe.core.config.MongoPipeConfig;
+import org.mongopipe.core.config.PojoCodecConfig;
+import org.mongopipe.core.config.ResultCacheConfig;
+import org.mongopipe.core.exception.CircuitOpenException;
 import org.mongopipe.core.model.Pipeline;
 import org.mongopipe.core.model.Pizza;
+import org.mongopipe.core.runner.batch.BatchScope;
+import org.mongopipe.core.runner.command.param.AggregateParams;
 import org.mongopipe.core.store.MyRestaurant;
 import org.mongopipe.core.util.AbstractMongoDBTest;
 import org.mongopipe.core.util.Maps;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 import org.skyscreamer.jsonassert.JSONAssert;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.mongopipe.core.util.BsonUtil.loadResourceIntoDocumentList;
 import static org.mongopipe.core.util.BsonUtil.loadResourceIntoPojo;
@@ -119,6 +142,99 @@ public class PipelineRunnerTest extends AbstractMongoDBTest {
     assertEquals(Pizza.class, reports.get(0).getClass());
   }
 
+  @Test
+  public void testStreamResultsCanBeReadInParallel() {
+    // Given
+    Pipeline pipeline = loadResourceIntoPojo("runner/pipelineRun/matchingPizzasBySize.pipeline.bson", Pipeline.class);
+    db.getCollection(pipeline.getCollection()).insertMany(loadResourceIntoDocumentList("runner/pipelineRun/data.bson"));
+    Stores.getPipelineStore().create(pipeline);
+    PipelineRunner pipelineRunner = Pipelines.getRunner();
+    List<String> expected = pipelineRunner.runAndList("matchingPizzasBySize", Pizza.class, Maps.of("pizzaSize", "medium")).stream()
+        .map(Pizza::getName)
+        .collect(Collectors.toList());
+
+    // When
+    List<String> names;
+    try (Stream<Pizza> pizzas = pipelineRunner.runAndStream("matchingPizzasBySize", Pizza.class, Maps.of("pizzaSize", "medium"))) {
+      names = pizzas.parallel().map(Pizza::getName).collect(Collectors.toList());
+    }
+
+    // Then
+    assertEquals(expected, names);
+  }
+
+  @Test
+  public void testSingleFlightKeepsCursorResultsLazy() {
+    // Given
+    Stores.registerConfig(MongoPipeConfig.builder()
+        .uri("mongodb://localhost:" + PORT)
+        .databaseName("test")
+        .singleFlightEnabled(true)
+        .build());
+    Pipeline pipeline = loadResourceIntoPojo("runner/pipelineRun/matchingPizzasBySize.pipeline.bson", Pipeline.class);
+    db.getCollection(pipeline.getCollection()).insertMany(loadResourceIntoDocumentList("runner/pipelineRun/data.bson"));
+    Stores.getPipelineStore().create(pipeline);
+    PipelineRunner pipelineRunner = Pipelines.getRunner();
+
+    // When
+    Iterable<Pizza> pizzas = pipelineRunner.run("matchingPizzasBySize", Pizza.class, Iterable.class, Maps.of("pizzaSize", "medium"));
+    List<Pizza> deduplicated = pipelineRunner.runAndList("matchingPizzasBySize", Pizza.class, Maps.of("pizzaSize", "medium"));
+
+    // Then
+    assertTrue(pizzas instanceof MongoIterable);
+    List<Pizza> read = new ArrayList<>();
+    pizzas.forEach(read::add);
+    assertEquals(deduplicated.size(), read.size());
+  }
+
+  @Test
+  public void testResultsAreGivenInBatches() {
+    // Given
+    Pipeline pipeline = loadResourceIntoPojo("runner/pipelineRun/matchingPizzasBySize.pipeline.bson", Pipeline.class);
+    db.getCollection(pipeline.getCollection()).insertMany(loadResourceIntoDocumentList("runner/pipelineRun/data.bson"));
+    Stores.getPipelineStore().create(pipeline);
+    PipelineRunner pipelineRunner = Pipelines.getRunner();
+    List<Pizza> expected = pipelineRunner.runAndList("matchingPizzasBySize", Pizza.class, Maps.of("pizzaSize", "medium"));
+
+    // When
+    List<Integer> batchSizes = new ArrayList<>();
+    List<String> names = new ArrayList<>();
+    long count = pipelineRunner.runAndBatch("matchingPizzasBySize", Pizza.class, Maps.of("pizzaSize", "medium"), 2, batch -> {
+      batchSizes.add(batch.size());
+      batch.forEach(pizza -> names.add(pizza.getName()));
+    });
+
+    // Then
+    assertEquals(expected.size(), count);
+    assertEquals(expected.stream().map(Pizza::getName).collect(Collectors.toList()), names);
+    assertTrue(batchSizes.stream().allMatch(size -> size <= 2));
+  }
+
+  @Test
+  public void testBatchesOfACachedPipelineAreReadFromTheCursor() {
+    // Given
+    db.getCollection("pizzaCollection").insertMany(loadResourceIntoDocumentList("runner/pipelineRun/data.bson"));
+    Stores.getPipelineStore().create(Pipeline.builder()
+        .id("cachedPizzasByName")
+        .pipeline("[{ $match: { name: \"${name}\" } }]")
+        .collection("pizzaCollection")
+        .commandOptions(AggregateParams.builder().cacheResults(true).build())
+        .build());
+    PipelineRunner runner = Pipelines.getRunner();
+    assertEquals(3, runner.runAndList("cachedPizzasByName", Pizza.class, Maps.of("name", "Cheese")).size());
+    // Written by another process, not invalidating the cache.
+    db.getCollection("pizzaCollection").insertOne(new Document("_id", 100).append("name", "Cheese").append("price", 10));
+
+    // When
+    List<Pizza> pizzas = new ArrayList<>();
+    long count = runner.runAndBatch("cachedPizzasByName", Pizza.class, Maps.of("name", "Cheese"), 2, pizzas::addAll);
+
+    // Then
+    assertEquals(4, count);
+    assertEquals(4, pizzas.size());
+    assertEquals(3, runner.runAndList("cachedPizzasByName", Pizza.class, Maps.of("name", "Cheese")).size());
+  }
+
   @Test
   public void testRunnerWithoutAnnotationsWithStoreCacheEnabled() {
     // Given
@@ -135,6 +251,317 @@ public class PipelineRunnerTest extends AbstractMongoDBTest {
     assertJsonEqual(getClasspathFileContent("runner/pipelineRun/testRunnerDirectlyWithoutAnnotations.result.json"), reports);
   }
 
+  @Test
+  public void testAsyncRunsWithDifferentParameters() {
+    // Given
+    Pipeline pipeline = loadResourceIntoPojo("runner/pipelineRun/matchingPizzasBySize.pipeline.bson", Pipeline.class);
+    db.getCollection(pipeline.getCollection()).insertMany(loadResourceIntoDocumentList("runner/pipelineRun/data.bson"));
+    Stores.getPipelineStore().create(pipeline);
+
+    // When
+    CompletableFuture<List<Pizza>> mediumPizzas = Stores.from(MyRestaurant.class).matchingPizzasBySizeAsync("medium");
+    CompletableFuture<List<Pizza>> largePizzas = Pipelines.getRunner().runAndListAsync("matchingPizzasBySize", Pizza.class,
+        Maps.of("pizzaSize", "large"));
+
+    // Then
+    assertEquals(3, mediumPizzas.join().size());
+    assertEquals(Long.valueOf(1), mediumPizzas.join().get(0).getId());
+    assertEquals(2, largePizzas.join().size());
+    assertEquals(Long.valueOf(2), largePizzas.join().get(0).getId());
+  }
+
+  @Test
+  public void testCachedAsyncStoreMethodReadsTheResultCache() {
+    // Given
+    Pipeline pipeline = loadResourceIntoPojo("runner/pipelineRun/matchingPizzasBySize.pipeline.bson", Pipeline.class);
+    db.getCollection(pipeline.getCollection()).insertMany(loadResourceIntoDocumentList("runner/pipelineRun/data.bson"));
+    Stores.getPipelineStore().create(pipeline);
+    MyRestaurant myRestaurant = Stores.from(MyRestaurant.class);
+    assertEquals(3, myRestaurant.cachedMatchingPizzasBySizeAsync("medium").join().size());
+    // Written by another process, not invalidating the cache.
+    db.getCollection(pipeline.getCollection()).insertOne(new Document("_id", 100).append("name", "Cheese").append("size", "medium"));
+
+    // When
+    List<Pizza> pizzas = myRestaurant.cachedMatchingPizzasBySizeAsync("medium").join();
+
+    // Then
+    assertEquals(3, pizzas.size());
+    assertEquals(4, myRestaurant.matchingPizzasBySizeAsync("medium").join().size());
+  }
+
+  @Test
+  public void testRunAllKeepsTheParameterSetsOrder() {
+    // Given
+    Pipeline pipeline = loadResourceIntoPojo("runner/pipelineRun/matchingPizzasBySize.pipeline.bson", Pipeline.class);
+    db.getCollection(pipeline.getCollection()).insertMany(loadResourceIntoDocumentList("runner/pipelineRun/data.bson"));
+    Stores.getPipelineStore().create(pipeline);
+    List<Map<String, ?>> paramSets = Arrays.asList(Maps.of("pizzaSize", "small"), Maps.of("pizzaSize", "medium"),
+        Maps.of("pizzaSize", "large"));
+
+    // When
+    List<List<Pizza>> results = Pipelines.getRunner().runAll("matchingPizzasBySize", Pizza.class, paramSets, 2);
+
+    // Then
+    assertEquals(3, results.size());
+    assertEquals(Long.valueOf(0), results.get(0).get(0).getId());
+    assertEquals(Long.valueOf(1), results.get(1).get(0).getId());
+    assertEquals(Long.valueOf(2), results.get(2).get(0).getId());
+    assertEquals(8, Pipelines.getRunner().runAllAndStream("matchingPizzasBySize", Pizza.class, paramSets, 2).count());
+  }
+
+  @Test
+  public void testBatchableCallsInAScopeAreMerged() {
+    // Given
+    db.getCollection("pizzaCollection").insertMany(loadResourceIntoDocumentList("runner/pipelineRun/data.bson"));
+    Stores.getPipelineStore().create(Pipeline.builder()
+        .id("pizzasByName")
+        .pipeline("[{ $match: { name: { $in: \"${name}\" } } }]")
+        .collection("pizzaCollection")
+        .build());
+    MyRestaurant myRestaurant = Stores.from(MyRestaurant.class);
+
+    // When
+    CompletableFuture<List<Pizza>> cheese, vegan, unknown;
+    try (BatchScope scope = BatchScope.open()) {
+      cheese = myRestaurant.findPizzasByName("Cheese");
+      vegan = myRestaurant.findPizzasByName("Vegan");
+      unknown = myRestaurant.findPizzasByName("Unknown");
+      assertFalse(cheese.isDone());
+    }
+
+    // Then
+    assertEquals(3, cheese.join().size());
+    assertEquals("Cheese", cheese.join().get(0).getName());
+    assertEquals(2, vegan.join().size());
+    assertTrue(unknown.join().isEmpty());
+    // Outside a scope the call runs immediately.
+    assertEquals(3, myRestaurant.findPizzasByName("Pepperoni").join().size());
+  }
+
+  @Test
+  public void testCachedResultsAreInvalidatedOnPipelineUpdate() {
+    // Given
+    db.getCollection("pizzaCollection").insertMany(loadResourceIntoDocumentList("runner/pipelineRun/data.bson"));
+    Pipeline pipeline = Stores.getPipelineStore().create(Pipeline.builder()
+        .id("cachedPizzasByName")
+        .pipeline("[{ $match: { name: \"${name}\" } }]")
+        .collection("pizzaCollection")
+        .commandOptions(AggregateParams.builder().cacheResults(true).build())
+        .build());
+    PipelineRunner runner = Pipelines.getRunner();
+    assertEquals(3, runner.runAndList("cachedPizzasByName", Pizza.class, Maps.of("name", "Cheese")).size());
+
+    // When
+    db.getCollection("pizzaCollection").insertOne(new Document("_id", 100).append("name", "Cheese").append("price", 10));
+
+    // Then
+    assertEquals(3, runner.runAndList("cachedPizzasByName", Pizza.class, Maps.of("name", "Cheese")).size());
+    assertEquals(2, runner.runAndList("cachedPizzasByName", Pizza.class, Maps.of("name", "Vegan")).size());
+    Stores.getPipelineStore().update(pipeline);
+    assertEquals(4, runner.runAndList("cachedPizzasByName", Pizza.class, Maps.of("name", "Cheese")).size());
+  }
+
+  @Test
+  public void testNarrowerRunIsComputedFromBroaderCachedResults() {
+    // Given
+    Stores.registerConfig(MongoPipeConfig.builder()
+        .uri("mongodb://localhost:" + PORT)
+        .databaseName("test")
+        .resultCacheConfig(ResultCacheConfig.builder().subsumptionEnabled(true).build())
+        .build());
+    db.getCollection("pizzaCollection").insertMany(loadResourceIntoDocumentList("runner/pipelineRun/data.bson"));
+    Stores.getPipelineStore().create(Pipeline.builder()
+        .id("cachedPizzasCheaperThan")
+        .pipeline("[{ $match: { price: { $lte: \"${maxPrice}\" } } }, { $sort: { price: 1 } }]")
+        .collection("pizzaCollection")
+        .commandOptions(AggregateParams.builder().cacheResults(true).build())
+        .build());
+    PipelineRunner runner = Pipelines.getRunner();
+    assertEquals(7, runner.runAndList("cachedPizzasCheaperThan", Maps.of("maxPrice", 20)).size());
+    // Written by another process, not invalidating the cache.
+    db.getCollection("pizzaCollection").insertOne(new Document("_id", 100).append("name", "Cheese").append("price", 5));
+
+    // When
+    List<Document> pizzas = runner.runAndList("cachedPizzasCheaperThan", Maps.of("maxPrice", 13));
+
+    // Then
+    assertEquals(Arrays.asList(3, 4), pizzas.stream().map(pizza -> pizza.get("_id")).collect(Collectors.toList()));
+    assertEquals(1, runner.getRunContext().getResultCache().getSubsumedCount());
+    // Not subsumed, read from the database.
+    assertEquals(9, runner.runAndList("cachedPizzasCheaperThan", Maps.of("maxPrice", 30)).size());
+  }
+
+  private void newResilientPipelinesConfig() {
+    Stores.registerConfig(MongoPipeConfig.builder()
+        .uri("mongodb://localhost:" + PORT)
+        .databaseName("test")
+        .resultCacheConfig(ResultCacheConfig.builder().ttlMs(50).staleWhileRevalidateMs(60_000).staleIfErrorMs(60_000).build())
+        .circuitBreakerConfig(CircuitBreakerConfig.builder().minimumCalls(1).openDurationMs(60_000).build())
+        .storeCacheEnabled(true)
+        .build());
+  }
+
+  // Nothing listens on the port, so the server selection times out as when the database is down.
+  private static MongoClient newUnreachableClient() throws IOException {
+    return MongoClients.create("mongodb://localhost:" + Network.getFreeServerPort() + "/?serverSelectionTimeoutMS=200");
+  }
+
+  private static void setMongoClient(PipelineRunner runner, MongoClient mongoClient) {
+    runner.getRunContext().setMongoClient(mongoClient);
+    runner.getRunContext().setMongoDatabase(mongoClient.getDatabase("test").withCodecRegistry(PojoCodecConfig.getCodecRegistry()));
+  }
+
+  @Test
+  public void testStaleResultIsReturnedWhileRefreshed() throws InterruptedException {
+    // Given
+    newResilientPipelinesConfig();
+    db.getCollection("pizzaCollection").insertMany(loadResourceIntoDocumentList("runner/pipelineRun/data.bson"));
+    Stores.getPipelineStore().create(Pipeline.builder()
+        .id("cachedPizzasByName")
+        .pipeline("[{ $match: { name: \"${name}\" } }]")
+        .collection("pizzaCollection")
+        .commandOptions(AggregateParams.builder().cacheResults(true).build())
+        .build());
+    PipelineRunner runner = Pipelines.getRunner();
+    assertEquals(3, runner.runAndList("cachedPizzasByName", Pizza.class, Maps.of("name", "Cheese")).size());
+    // Written by another process, not invalidating the cache.
+    db.getCollection("pizzaCollection").insertOne(new Document("_id", 100).append("name", "Cheese").append("price", 10));
+    Thread.sleep(100);
+
+    // When
+    List<Pizza> stale = runner.runAndList("cachedPizzasByName", Pizza.class, Maps.of("name", "Cheese"));
+
+    // Then
+    assertEquals(3, stale.size());
+    long deadline = System.currentTimeMillis() + 5000;
+    while (runner.runAndList("cachedPizzasByName", Pizza.class, Maps.of("name", "Cheese")).size() == 3
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(4, runner.runAndList("cachedPizzasByName", Pizza.class, Maps.of("name", "Cheese")).size());
+  }
+
+  @Test
+  public void testFallbackSafePipelineReturnsLastKnownResultsWhenCircuitIsOpen() throws Exception {
+    // Given
+    newResilientPipelinesConfig();
+    db.getCollection("pizzaCollection").insertMany(loadResourceIntoDocumentList("runner/pipelineRun/data.bson"));
+    Stores.getPipelineStore().create(Pipeline.builder()
+        .id("fallbackPizzasByName")
+        .pipeline("[{ $match: { name: \"${name}\" } }]")
+        .collection("pizzaCollection")
+        .commandOptions(AggregateParams.builder().fallbackSafe(true).build())
+        .build());
+    PipelineRunner runner = Pipelines.getRunner();
+    assertEquals(3, runner.runAndList("fallbackPizzasByName", Pizza.class, Maps.of("name", "Cheese")).size());
+    Thread.sleep(100);
+
+    MongoClient mongoClient = runner.getRunContext().getMongoClient();
+    try (MongoClient unreachableClient = newUnreachableClient()) {
+      setMongoClient(runner, unreachableClient);
+
+      // When
+      try {
+        runner.runAndList("fallbackPizzasByName", Pizza.class, Maps.of("name", "Vegan"));
+        fail();
+      } catch (MongoTimeoutException e) {
+        // Opens the circuit.
+      }
+
+      // Then
+      assertTrue(runner.getRunContext().getCircuitBreaker().isOpen());
+      assertEquals(3, runner.runAndList("fallbackPizzasByName", Pizza.class, Maps.of("name", "Cheese")).size());
+      try {
+        runner.runAndList("fallbackPizzasByName", Pizza.class, Maps.of("name", "Vegan"));
+        fail();
+      } catch (CircuitOpenException e) {
+        // No last known results.
+      }
+    } finally {
+      setMongoClient(runner, mongoClient);
+    }
+  }
+
+  @Test
+  public void testLazyResultReadsAreRecordedByTheCircuitBreaker() throws IOException {
+    // Given
+    newResilientPipelinesConfig();
+    db.getCollection("pizzaCollection").insertMany(loadResourceIntoDocumentList("runner/pipelineRun/data.bson"));
+    Stores.getPipelineStore().create(Pipeline.builder()
+        .id("pizzasByName")
+        .pipeline("[{ $match: { name: \"${name}\" } }]")
+        .collection("pizzaCollection")
+        .build());
+    PipelineRunner runner = Pipelines.getRunner();
+    assertEquals(3, runner.runAndList("pizzasByName", Pizza.class, Maps.of("name", "Cheese")).size());
+
+    MongoClient mongoClient = runner.getRunContext().getMongoClient();
+    try (MongoClient unreachableClient = newUnreachableClient()) {
+      setMongoClient(runner, unreachableClient);
+      Iterable<Pizza> pizzas = runner.run("pizzasByName", Pizza.class, Iterable.class, Maps.of("name", "Cheese"));
+
+      // When
+      try {
+        pizzas.iterator();
+        fail();
+      } catch (MongoTimeoutException e) {
+        // Opens the circuit.
+      }
+
+      // Then
+      assertTrue(runner.getRunContext().getCircuitBreaker().isOpen());
+      try {
+        runner.runAndStream("pizzasByName", Pizza.class, Maps.of("name", "Cheese"));
+        fail();
+      } catch (CircuitOpenException e) {
+        // Rejected without calling the database.
+      }
+    } finally {
+      setMongoClient(runner, mongoClient);
+    }
+  }
+
+  @Test
+  public void testPublisherResultRequestedOneByOne() throws InterruptedException {
+    // Given
+    Pipeline pipeline = loadResourceIntoPojo("runner/pipelineRun/matchingPizzasBySize.pipeline.bson", Pipeline.class);
+    db.getCollection(pipeline.getCollection()).insertMany(loadResourceIntoDocumentList("runner/pipelineRun/data.bson"));
+    Stores.getPipelineStore().create(pipeline);
+    List<Pizza> pizzas = new ArrayList<>();
+    CountDownLatch completed = new CountDownLatch(1);
+
+    // When
+    Stores.from(MyRestaurant.class).publishMatchingPizzasBySize("medium").subscribe(new Subscriber<Pizza>() {
+      Subscription subscription;
+
+      @Override
+      public void onSubscribe(Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+      }
+
+      @Override
+      public void onNext(Pizza pizza) {
+        pizzas.add(pizza);
+        subscription.request(1);
+      }
+
+      @Override
+      public void onError(Throwable throwable) {
+        completed.countDown();
+      }
+
+      @Override
+      public void onComplete() {
+        completed.countDown();
+      }
+    });
+
+    // Then
+    assertTrue(completed.await(10, TimeUnit.SECONDS));
+    assertEquals(3, pizzas.size());
+  }
+
   @Test
   public void testWithPojoClassForResultAndWithoutPipelineRunAnnotation() throws JSONException {
     // Given
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.cache;
+
+import org.bson.BsonDocument;
+import org.junit.Test;
+import org.mongopipe.core.runner.local.LocalAggregation;
+import org.mongopipe.core.util.BsonUtil;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CacheSubsumptionTest {
+
+  private static BsonDocument filter(String json) {
+    return BsonDocument.parse(json);
+  }
+
+  @Test
+  public void testNarrowerFiltersImplyBroaderOnes() {
+    assertTrue(CacheSubsumption.implies(filter("{size: 'medium', price: {$lte: 15}}"), filter("{price: {$lte: 20}}")));
+    assertTrue(CacheSubsumption.implies(filter("{size: 'medium'}"), filter("{}")));
+    assertTrue(CacheSubsumption.implies(filter("{size: {$in: ['small', 'medium']}}"),
+        filter("{size: {$in: ['small', 'medium', 'large']}}")));
+    assertTrue(CacheSubsumption.implies(filter("{size: 'small'}"), filter("{size: {$in: ['small', 'medium']}}")));
+    assertTrue(CacheSubsumption.implies(filter("{price: {$gt: 10, $lt: 12}}"), filter("{price: {$gte: 10, $lte: 12.5}}")));
+    assertTrue(CacheSubsumption.implies(filter("{$and: [{price: 11}, {size: 'small'}]}"), filter("{price: {$gte: 10.5}, size: 'small'}")));
+    assertTrue(CacheSubsumption.implies(filter("{$or: [{a: 1}, {b: 1}], c: 2}"), filter("{$or: [{a: 1}, {b: 1}]}")));
+  }
+
+  @Test
+  public void testFiltersNotSurelyNarrowerDoNotImplyBroaderOnes() {
+    assertFalse(CacheSubsumption.implies(filter("{price: {$lte: 25}}"), filter("{price: {$lte: 20}}")));
+    assertFalse(CacheSubsumption.implies(filter("{price: {$lte: 20}}"), filter("{price: {$lt: 20}}")));
+    assertFalse(CacheSubsumption.implies(filter("{price: {$lte: '20'}}"), filter("{price: {$lte: 20}}"))); // Other type.
+    assertFalse(CacheSubsumption.implies(filter("{size: 'small'}"), filter("{price: {$lte: 20}}")));
+    assertFalse(CacheSubsumption.implies(filter("{price: 11}"), filter("{price: {$gte: 10.5}, $and: [{size: 'small'}]}")));
+    assertFalse(CacheSubsumption.implies(filter("{size: {$in: ['small', 'huge']}}"), filter("{size: {$in: ['small', 'medium']}}")));
+    assertFalse(CacheSubsumption.implies(filter("{size: {$ne: 'small'}}"), filter("{size: {$ne: 'large'}}")));
+    assertFalse(CacheSubsumption.implies(filter("{$or: [{a: 1}]}"), filter("{$or: [{a: 1}, {b: 1}]}")));
+  }
+
+  @Test
+  public void testLocalStagesAreRunOverTheCachedResults() {
+    List<BsonDocument> cachedStages = BsonUtil.toBsonList("[{$match: {price: {$lte: 20}}}, {$sort: {price: 1}}]");
+    List<BsonDocument> stages = BsonUtil.toBsonList("[{$match: {price: {$lte: 15}, size: 'medium'}}, {$sort: {price: 1}}, "
+        + "{$project: {name: 1}}, {$limit: 1}]");
+    List<BsonDocument> cachedResults = BsonUtil.toBsonList("[{_id: 3, name: 'Cheese', size: 'small', price: 12}, "
+        + "{_id: 4, name: 'Cheese', size: 'medium', price: 13}, {_id: 6, name: 'Vegan', size: 'medium', price: 14}, "
+        + "{_id: 1, name: 'Pepperoni', size: 'medium', price: 20}]");
+
+    List<BsonDocument> localStages = CacheSubsumption.getLocalStages(cachedStages, stages);
+
+    assertEquals(BsonUtil.toBsonList("[{$match: {price: {$lte: 15}, size: 'medium'}}, {$project: {name: 1}}, {$limit: 1}]"),
+        localStages);
+    assertEquals(Arrays.asList("{\"_id\": 4, \"name\": \"Cheese\"}"),
+        LocalAggregation.run(localStages, cachedResults).stream().map(BsonDocument::toJson).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testCachedStagesLosingRowsOrFieldsAreNotSubsuming() {
+    List<BsonDocument> stages = BsonUtil.toBsonList("[{$match: {price: {$lte: 15}, size: 'medium'}}, {$limit: 10}]");
+
+    assertNull(CacheSubsumption.getLocalStages(BsonUtil.toBsonList("[{$match: {price: {$lte: 20}}}, {$limit: 10}]"), stages));
+    assertNull(CacheSubsumption.getLocalStages(BsonUtil.toBsonList("[{$match: {price: {$lte: 20}}}, {$project: {size: 0}}]"),
+        BsonUtil.toBsonList("[{$match: {price: {$lte: 15}, size: 'medium'}}, {$project: {size: 0}}]")));
+    assertNull(CacheSubsumption.getLocalStages(BsonUtil.toBsonList("[{$match: {price: {$lte: 20}}}]"),
+        BsonUtil.toBsonList("[{$match: {price: {$lte: 15}}}, {$lookup: {from: 'orders', localField: '_id', "
+            + "foreignField: 'pizzaId', as: 'orders'}}]"))); // Not supported locally.
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.cache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mongopipe.core.model.Pipeline;
+import org.mongopipe.core.model.Pizza;
+import org.mongopipe.core.util.Maps;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DiskResultCacheTest {
+  private static final Set<String> PIZZAS = Collections.singleton("pizzaCollection");
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private static ResultCache.Key key(String size) {
+    return ResultCache.key(Pipeline.builder().id("pizzasBySize").version(1L).collection("pizzaCollection").pipeline("[]").build(),
+        Maps.of("size", size), Pizza.class);
+  }
+
+  private static List<Object> pizzas(int count) {
+    List<Object> pizzas = new ArrayList<>();
+    for (long i = 0; i < count; i++) {
+      Pizza pizza = new Pizza();
+      pizza.setId(i);
+      pizza.setName("Pizza " + i);
+      pizzas.add(pizza);
+    }
+    return pizzas;
+  }
+
+  @Test
+  public void testResultsSurviveReopening() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    DiskResultCache diskCache = new DiskResultCache(directory, 1024 * 1024);
+    diskCache.put(key("medium"), PIZZAS, pizzas(3), 0);
+    diskCache.put(key("large"), PIZZAS, pizzas(2), 0);
+    diskCache.put(key("small"), PIZZAS, pizzas(1), System.currentTimeMillis() - 1);
+    diskCache.invalidate("otherPipeline");
+    diskCache.close();
+
+    diskCache = new DiskResultCache(directory, 1024 * 1024);
+
+    List<Pizza> medium = diskCache.get(key("medium"), Pizza.class);
+    assertEquals(3, medium.size());
+    assertEquals("Pizza 2", medium.get(2).getName());
+    assertEquals(2, diskCache.get(key("large"), Pizza.class).size());
+    assertNull(diskCache.get(key("small"), Pizza.class)); // Expired.
+    diskCache.close();
+  }
+
+  @Test
+  public void testInvalidationSurvivesReopening() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    DiskResultCache diskCache = new DiskResultCache(directory, 1024 * 1024);
+    diskCache.put(key("medium"), PIZZAS, pizzas(3), 0);
+    diskCache.put(ResultCache.key(Pipeline.builder().id("orders").collection("orders").pipeline("[]").build(), null, Pizza.class),
+        Collections.singleton("orders"), pizzas(1), 0);
+    diskCache.invalidateCollection("pizzaCollection");
+    assertNull(diskCache.get(key("medium"), Pizza.class));
+    diskCache.close();
+
+    diskCache = new DiskResultCache(directory, 1024 * 1024);
+
+    assertNull(diskCache.get(key("medium"), Pizza.class));
+    assertEquals(1, diskCache.size());
+    diskCache.close();
+  }
+
+  @Test
+  public void testIncompleteRecordIsDroppedOnReopening() throws IOException {
+    Path directory = folder.getRoot().toPath();
+    DiskResultCache diskCache = new DiskResultCache(directory, 1024 * 1024);
+    diskCache.put(key("medium"), PIZZAS, pizzas(3), 0);
+    diskCache.close();
+    Path segment;
+    try (Stream<Path> files = Files.list(directory)) {
+      segment = files.collect(Collectors.toList()).get(0);
+    }
+    // A record partially written on a crash.
+    Files.write(segment, new byte[] {100, 0, 0, 0, 3}, StandardOpenOption.APPEND);
+
+    diskCache = new DiskResultCache(directory, 1024 * 1024);
+
+    assertEquals(3, diskCache.get(key("medium"), Pizza.class).size());
+    diskCache.put(key("large"), PIZZAS, pizzas(2), 0);
+    assertEquals(2, diskCache.get(key("large"), Pizza.class).size());
+    diskCache.close();
+  }
+
+  @Test
+  public void testOldestResultsAreDeletedOverTheQuota() throws IOException {
+    DiskResultCache diskCache = new DiskResultCache(folder.getRoot().toPath(), 4000);
+    for (int i = 0; i < 20; i++) {
+      diskCache.put(key("size" + i), PIZZAS, pizzas(5), 0);
+    }
+
+    assertTrue(diskCache.getTotalBytes() <= 4000);
+    assertNull(diskCache.get(key("size0"), Pizza.class));
+    assertEquals(5, diskCache.get(key("size19"), Pizza.class).size());
+    diskCache.close();
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.cache;
+
+import org.bson.BsonDocument;
+import org.junit.Test;
+import org.mongopipe.core.config.ResultCacheConfig;
+import org.mongopipe.core.model.Pipeline;
+import org.mongopipe.core.util.BsonUtil;
+import org.mongopipe.core.util.Maps;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ResultCacheTest {
+  private static final Set<String> PIZZAS = Collections.singleton("pizzaCollection");
+
+  private static Pipeline pipeline(String id, long version) {
+    return Pipeline.builder().id(id).version(version).collection("pizzaCollection").pipeline("[]").build();
+  }
+
+  private static List<Object> results(int size) {
+    return Collections.nCopies(size, (Object) "result");
+  }
+
+  @Test
+  public void testKeyDoesNotDependOnTheParametersOrder() {
+    Pipeline pipeline = pipeline("pizzas", 1);
+    assertEquals(ResultCache.key(pipeline, Maps.of("size", "medium", "price", 10), Object.class),
+        ResultCache.key(pipeline, Maps.of("price", 10, "size", "medium"), Object.class));
+    assertNotEquals(ResultCache.key(pipeline, Maps.of("size", "medium"), Object.class),
+        ResultCache.key(pipeline, Maps.of("size", "large"), Object.class));
+    assertNotEquals(ResultCache.key(pipeline, Maps.of("size", "medium"), Object.class),
+        ResultCache.key(pipeline("pizzas", 2), Maps.of("size", "medium"), Object.class));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedIsEvicted() {
+    ResultCache cache = new ResultCache(ResultCacheConfig.builder().maxEntries(2).maxWeight(5).build());
+    ResultCache.Key first = ResultCache.key(pipeline("first", 1), null, Object.class);
+    ResultCache.Key second = ResultCache.key(pipeline("second", 1), null, Object.class);
+    ResultCache.Key third = ResultCache.key(pipeline("third", 1), null, Object.class);
+
+    cache.put(first, PIZZAS, results(1), cache.getGeneration());
+    cache.put(second, PIZZAS, results(1), cache.getGeneration());
+    cache.get(first);
+    cache.put(third, PIZZAS, results(1), cache.getGeneration());
+    assertNotNull(cache.get(first));
+    assertNull(cache.get(second));
+
+    // Weight limit.
+    cache.put(second, PIZZAS, results(4), cache.getGeneration());
+    assertEquals(2, cache.size());
+    assertNull(cache.get(third));
+    assertNotNull(cache.get(second));
+    // Above the limit is not cached.
+    cache.put(third, PIZZAS, results(6), cache.getGeneration());
+    assertNull(cache.get(third));
+  }
+
+  @Test
+  public void testExpirationAndInvalidation() throws InterruptedException {
+    ResultCache cache = new ResultCache(ResultCacheConfig.builder().ttlMs(50).build());
+    ResultCache.Key first = ResultCache.key(pipeline("first", 1), Maps.of("size", "medium"), Object.class);
+    ResultCache.Key second = ResultCache.key(pipeline("second", 1), Maps.of("size", "medium"), Object.class);
+
+    cache.put(first, PIZZAS, results(1), cache.getGeneration());
+    Thread.sleep(100);
+    assertNull(cache.get(first));
+
+    cache.put(first, PIZZAS, results(1), cache.getGeneration());
+    cache.put(second, PIZZAS, Arrays.asList("a", "b"), cache.getGeneration());
+    cache.invalidate("first");
+    assertNull(cache.get(first));
+    assertEquals(2, cache.get(second).size());
+
+    // A result computed before the invalidation is not cached.
+    long generation = cache.getGeneration();
+    cache.invalidateAll();
+    cache.put(first, PIZZAS, results(1), generation);
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testWriteInvalidatesThePipelinesReadingTheCollection() {
+    ResultCache cache = new ResultCache(ResultCacheConfig.builder().build());
+    ResultCache.Key pizzas = ResultCache.key(pipeline("pizzas", 1), null, Object.class);
+    ResultCache.Key orders = ResultCache.key(pipeline("ordersWithPizzas", 1), null, Object.class);
+    ResultCache.Key customers = ResultCache.key(pipeline("customers", 1), null, Object.class);
+    cache.put(pizzas, PIZZAS, results(1), cache.getGeneration());
+    cache.put(orders, new HashSet<>(Arrays.asList("orders", "pizzaCollection")), results(1), cache.getGeneration());
+    cache.put(customers, Collections.singleton("customers"), results(1), cache.getGeneration());
+
+    long generation = cache.getGeneration();
+    cache.invalidateCollection("pizzaCollection");
+
+    assertNull(cache.get(pizzas));
+    assertNull(cache.get(orders));
+    assertNotNull(cache.get(customers));
+    // Only results reading the written collection are not cached anymore.
+    cache.put(pizzas, PIZZAS, results(1), generation);
+    assertNull(cache.get(pizzas));
+    cache.put(customers, Collections.singleton("customers"), results(1), generation);
+    assertNotNull(cache.get(customers));
+  }
+
+  @Test
+  public void testSubsumedOnlyFromTheCachedRunsOfTheSamePipeline() {
+    ResultCache cache = new ResultCache(ResultCacheConfig.builder().maxEntries(2).build());
+    ResultCache.Key broader = ResultCache.key(pipeline("pizzas", 1), Maps.of("price", 20), BsonDocument.class);
+    ResultCache.Key narrower = ResultCache.key(pipeline("pizzas", 1), Maps.of("price", 15), BsonDocument.class);
+    ResultCache.Key otherPipeline = ResultCache.key(pipeline("otherPizzas", 1), Maps.of("price", 15), BsonDocument.class);
+    List<BsonDocument> stages = BsonUtil.toBsonList("[{$match: {price: {$lte: 15}}}]");
+    cache.put(broader, PIZZAS, BsonUtil.toBsonList("[{$match: {price: {$lte: 20}}}]"),
+        Arrays.asList(BsonDocument.parse("{_id: 3, price: 12}"), BsonDocument.parse("{_id: 1, price: 20}")), cache.getGeneration());
+
+    assertEquals(BsonUtil.toBsonList("[{_id: 3, price: 12}]"), cache.getSubsumed(narrower, stages));
+    assertNull(cache.getSubsumed(otherPipeline, stages));
+
+    // Evicted or invalidated results do not subsume anymore.
+    cache.put(ResultCache.key(pipeline("first", 1), null, Object.class), PIZZAS, results(1), cache.getGeneration());
+    cache.put(ResultCache.key(pipeline("second", 1), null, Object.class), PIZZAS, results(1), cache.getGeneration());
+    assertNull(cache.getSubsumed(narrower, stages));
+    cache.put(broader, PIZZAS, BsonUtil.toBsonList("[{$match: {price: {$lte: 20}}}]"), results(0), cache.getGeneration());
+    cache.invalidate("pizzas");
+    assertNull(cache.getSubsumed(narrower, stages));
+  }
+}
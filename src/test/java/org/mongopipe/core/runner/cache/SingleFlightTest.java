@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.cache;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mongopipe.core.config.ResultCacheConfig;
+import org.mongopipe.core.model.Pipeline;
+import org.mongopipe.core.util.Maps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+  private static final Set<String> PIZZAS = Collections.singleton("pizzaCollection");
+  private final ResultCache resultCache = new ResultCache(ResultCacheConfig.builder().build());
+  private final SingleFlight singleFlight = new SingleFlight(resultCache);
+  // Enough threads for all the callers to wait at the same time.
+  private final ExecutorService executor = Executors.newFixedThreadPool(8);
+  private final ResultCache.Key key = ResultCache.key(
+      Pipeline.builder().id("pizzas").version(1L).collection("pizzaCollection").pipeline("[]").build(), Maps.of("size", "medium"),
+      Object.class);
+
+  private static void await(CountDownLatch latch) {
+    try {
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testConcurrentIdenticalRunsAreSentOnce() {
+    int callers = 8;
+    AtomicInteger runs = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    List<CompletableFuture<List<Object>>> results = new ArrayList<>();
+
+    results.add(CompletableFuture.supplyAsync(() -> singleFlight.run(key, PIZZAS, generation -> {
+      runs.incrementAndGet();
+      started.countDown();
+      // Wait for the others to join.
+      long deadline = System.currentTimeMillis() + 5000;
+      while (singleFlight.getDeduplicatedCount() < callers - 1 && System.currentTimeMillis() < deadline) {
+        Thread.yield();
+      }
+      return Collections.singletonList("pizza");
+    }), executor));
+    await(started);
+    for (int i = 1; i < callers; i++) {
+      results.add(CompletableFuture.supplyAsync(() -> singleFlight.run(key, PIZZAS, generation -> {
+        runs.incrementAndGet();
+        return Collections.singletonList("other");
+      }), executor));
+    }
+
+    results.forEach(result -> assertEquals(Collections.singletonList("pizza"), result.join()));
+    assertEquals(1, runs.get());
+    assertEquals(callers - 1, singleFlight.getDeduplicatedCount());
+  }
+
+  @Test
+  public void testRunStartedBeforeAWriteIsNotJoined() {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch written = new CountDownLatch(1);
+    CompletableFuture<List<Object>> beforeWrite = CompletableFuture.supplyAsync(() -> singleFlight.run(key, PIZZAS, generation -> {
+      started.countDown();
+      await(written);
+      return Collections.singletonList("old");
+    }), executor);
+    await(started);
+
+    resultCache.invalidateCollection("pizzaCollection");
+    List<Object> afterWrite = singleFlight.run(key, PIZZAS, generation -> Collections.singletonList("new"));
+    written.countDown();
+
+    assertEquals(Collections.singletonList("new"), afterWrite);
+    assertEquals(Collections.singletonList("old"), beforeWrite.join());
+    assertEquals(0, singleFlight.getDeduplicatedCount());
+  }
+
+  @Test
+  public void testErrorIsGivenToAllTheWaitingCallers() {
+    CountDownLatch started = new CountDownLatch(1);
+    CompletableFuture<List<Object>> first = CompletableFuture.supplyAsync(() -> singleFlight.run(key, PIZZAS, generation -> {
+      started.countDown();
+      long deadline = System.currentTimeMillis() + 5000;
+      while (singleFlight.getDeduplicatedCount() < 1 && System.currentTimeMillis() < deadline) {
+        Thread.yield();
+      }
+      throw new IllegalStateException("Database down");
+    }), executor);
+    await(started);
+    CompletableFuture<List<Object>> second = CompletableFuture.supplyAsync(() -> singleFlight.run(key, PIZZAS,
+        generation -> Collections.singletonList("other")), executor);
+
+    for (CompletableFuture<List<Object>> result : Arrays.asList(first, second)) {
+      try {
+        result.join();
+        fail();
+      } catch (CompletionException e) {
+        assertEquals("Database down", e.getCause().getMessage());
+      }
+    }
+    assertEquals(1, singleFlight.getDeduplicatedCount());
+    // The failed run is not kept.
+    assertEquals(Collections.singletonList("next"), singleFlight.run(key, PIZZAS, generation -> Collections.singletonList("next")));
+  }
+}
@@ -20,6 +20,10 @@ import org.bson.Document;
 import org.junit.Test;
 import org.mongopipe.core.Pipelines;
 import org.mongopipe.core.Stores;
+import org.mongopipe.core.annotation.Param;
+import org.mongopipe.core.annotation.PipelineRun;
+import org.mongopipe.core.annotation.Store;
+import org.mongopipe.core.exception.MongoPipeConfigException;
 import org.mongopipe.core.model.Pipeline;
 import org.mongopipe.core.runner.command.param.UpdateOneOptions;
 import org.mongopipe.core.store.MyRestaurant;
@@ -31,8 +35,19 @@ import static org.mongopipe.core.util.BsonUtil.loadResourceIntoDocumentList;
 import static org.mongopipe.core.util.BsonUtil.loadResourceIntoPojo;
 import static org.mongopipe.core.util.BsonUtil.toDocument;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
 public class UpdateOneCommandTest extends AbstractMongoDBTest {
 
+  @Store
+  public interface MyWronglyMicroBatchedRestaurant {
+    @PipelineRun(value = "updateOneMatchingPizza", microBatch = true)
+    Long updateOnePizzaByPizzaPriceInMicroBatch(@Param("pizzaPrice") Integer pizzaPrice);
+  }
+
   @Test
   public void testCommandRunningWithParams() {
     // Given
@@ -86,4 +101,92 @@ public class UpdateOneCommandTest extends AbstractMongoDBTest {
     // Test that pipeline added extra field.
     assertTrue(db.getCollection(pipeline.getCollection()).find(BsonUtil.toBsonDocument("price", 12)).iterator().next().get("isVegan", Boolean.class));
   }
+
+  @Test
+  public void testBatchUpdateUsesOneBulkWrite() {
+    // Given
+    Pipeline pipeline = loadResourceIntoPojo("command/updateOne/updateOneMatchingPizza.bson", Pipeline.class);
+    pipeline.setCommandOptions(UpdateOneOptions.builder().filter(toDocument("{'price': \"${pizzaPrice}\"}")).build());
+    db.getCollection(pipeline.getCollection()).insertMany(loadResourceIntoDocumentList("runner/pipelineRun/data.bson"));
+    Stores.getPipelineStore().create(pipeline);
+
+    // When
+    BatchUpdateResult result = Pipelines.getRunner().runBatch("updateOneMatchingPizza",
+        Arrays.asList(Maps.of("pizzaPrice", 12), Maps.of("pizzaPrice", 13), Maps.of("pizzaPrice", 999)));
+
+    // Then
+    assertFalse(result.hasErrors());
+    assertEquals(2, result.getMatchedCount());
+    assertEquals(2, result.getModifiedCount());
+    assertTrue(db.getCollection(pipeline.getCollection()).find(BsonUtil.toBsonDocument("price", 13)).iterator().next().get("isVegan", Boolean.class));
+  }
+
+  @Test
+  public void testBatchUpdateFromStoreMethod() {
+    // Given
+    Pipeline pipeline = loadResourceIntoPojo("command/updateOne/updateOneMatchingPizza.bson", Pipeline.class);
+    pipeline.setCommandOptions(UpdateOneOptions.builder().filter(toDocument("{'price': \"${pizzaPrice}\"}")).build());
+    db.getCollection(pipeline.getCollection()).insertMany(loadResourceIntoDocumentList("runner/pipelineRun/data.bson"));
+    Stores.getPipelineStore().create(pipeline);
+
+    // When
+    BatchUpdateResult result = Stores.from(MyRestaurant.class).updateOnePizzaByEachPizzaPrice(Arrays.asList(12, 13, 17));
+
+    // Then
+    assertEquals(3, result.getModifiedCount());
+  }
+
+  @Test
+  public void testConcurrentMicroBatchedUpdates() {
+    // Given
+    Pipeline pipeline = loadResourceIntoPojo("command/updateOne/updateOneMatchingPizza.bson", Pipeline.class);
+    pipeline.setCommandOptions(UpdateOneOptions.builder().filter(toDocument("{'price': \"${pizzaPrice}\"}")).build());
+    db.getCollection(pipeline.getCollection()).insertMany(loadResourceIntoDocumentList("runner/pipelineRun/data.bson"));
+    Stores.getPipelineStore().create(pipeline);
+    MyRestaurant myRestaurant = Stores.from(MyRestaurant.class);
+
+    // When
+    List<CompletableFuture<Void>> updates = Arrays.asList(12, 13, 17, 18).parallelStream()
+        .map(myRestaurant::updateOnePizzaByPizzaPriceInMicroBatch)
+        .collect(Collectors.toList());
+    updates.forEach(CompletableFuture::join);
+
+    // Then
+    assertEquals(4, db.getCollection(pipeline.getCollection()).countDocuments(toDocument("{isVegan: true}")));
+  }
+
+  @Test
+  public void testMicroBatchedMethodWithWrongReturnTypeDoesNotUpdate() {
+    // Given
+    Pipeline pipeline = loadResourceIntoPojo("command/updateOne/updateOneMatchingPizza.bson", Pipeline.class);
+    pipeline.setCommandOptions(UpdateOneOptions.builder().filter(toDocument("{'price': \"${pizzaPrice}\"}")).build());
+    db.getCollection(pipeline.getCollection()).insertMany(loadResourceIntoDocumentList("runner/pipelineRun/data.bson"));
+    Stores.getPipelineStore().create(pipeline);
+
+    // When
+    try {
+      Stores.from(MyWronglyMicroBatchedRestaurant.class).updateOnePizzaByPizzaPriceInMicroBatch(12);
+      fail("Micro batched methods can not return the modified count");
+    } catch (MongoPipeConfigException e) {
+      // Then
+      assertTrue(e.getMessage().contains("updateOnePizzaByPizzaPriceInMicroBatch"));
+    }
+    assertEquals(0, db.getCollection(pipeline.getCollection()).countDocuments(toDocument("{isVegan: true}")));
+  }
+
+  @Test
+  public void testMicroBatchNeedsAnUpdatePipeline() {
+    // Given
+    Pipeline pipeline = loadResourceIntoPojo("runner/pipelineRun/matchingPizzasBySize.pipeline.bson", Pipeline.class);
+    Stores.getPipelineStore().create(pipeline);
+
+    // When
+    try {
+      Pipelines.getRunner().runMicroBatched("matchingPizzasBySize", Maps.of("pizzaSize", "medium"));
+      fail("Only update pipelines can be micro batched");
+    } catch (MongoPipeConfigException e) {
+      // Then
+      assertTrue(e.getMessage().contains("matchingPizzasBySize"));
+    }
+  }
 }
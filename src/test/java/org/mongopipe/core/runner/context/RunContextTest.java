@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.context;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.mongopipe.core.migration.PipelineFileWatcher;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RunContextTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testVirtualExecutorModeRunsTasks() throws Exception {
+    RunContext runContext = new RunContext(MongoPipeConfig.builder()
+        .asyncExecutorMode(MongoPipeConfig.ExecutorMode.VIRTUAL)
+        .build());
+
+    Thread thread = CompletableFuture.supplyAsync(Thread::currentThread, runContext.getAsyncExecutor()).get();
+
+    // Virtual threads only on Java 21+, platform threads otherwise.
+    if (hasMethod(Thread.class, "isVirtual")) {
+      assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(thread));
+    }
+    assertSame(runContext.getAsyncExecutor(), runContext.getAsyncExecutor());
+  }
+
+  @Test
+  public void testProvidedExecutorIsUsed() {
+    Executor executor = Runnable::run;
+    RunContext runContext = new RunContext(MongoPipeConfig.builder().asyncExecutor(executor).build());
+
+    assertSame(executor, runContext.getAsyncExecutor());
+  }
+
+  @Test
+  public void testWatcherIsClosedWhenTheConfigIsRegisteredAgain() {
+    RunContext runContext = RunContextProvider.registerConfig(MongoPipeConfig.builder().id("watched").build());
+    PipelineFileWatcher watcher = new PipelineFileWatcher(null, Collections.singletonList(folder.getRoot().toPath()), 10);
+    watcher.start();
+    runContext.setPipelineFileWatcher(watcher);
+
+    RunContextProvider.registerConfig(MongoPipeConfig.builder().id("watched").build());
+
+    assertFalse(watcher.isRunning());
+  }
+
+  private static boolean hasMethod(Class clazz, String name) {
+    try {
+      clazz.getMethod(name);
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+}
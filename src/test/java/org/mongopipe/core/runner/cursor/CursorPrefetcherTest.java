@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.cursor;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mongopipe.core.exception.MongoPipeConfigException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CursorPrefetcherTest {
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private final AtomicInteger read = new AtomicInteger();
+
+  // Counts the documents read, like the cursor would fetch them.
+  private Iterable<Integer> results(int size) {
+    return () -> new Iterator<Integer>() {
+      @Override
+      public boolean hasNext() {
+        return read.get() < size;
+      }
+
+      @Override
+      public Integer next() {
+        return read.getAndIncrement();
+      }
+    };
+  }
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testResultsAreGivenInBatchesOnTheCallingThread() {
+    List<List<Integer>> batches = new ArrayList<>();
+    Thread caller = Thread.currentThread();
+
+    long count = new CursorPrefetcher<>(results(7), 3, executor).forEachBatch(batch -> {
+      assertEquals(caller, Thread.currentThread());
+      batches.add(batch);
+    });
+
+    assertEquals(7, count);
+    assertEquals(Arrays.asList(Arrays.asList(0, 1, 2), Arrays.asList(3, 4, 5), Arrays.asList(6)), batches);
+  }
+
+  @Test
+  public void testNextBatchIsReadWhileTheCurrentOneIsProcessed() {
+    List<Boolean> readAhead = new ArrayList<>();
+
+    new CursorPrefetcher<>(results(30), 10, executor).forEachBatch(batch -> {
+      if (batch.get(0) == 0) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (read.get() < 20 && System.currentTimeMillis() < deadline) {
+          Thread.yield();
+        }
+        readAhead.add(read.get() >= 20);
+      }
+    });
+
+    assertEquals(Arrays.asList(true), readAhead);
+    // Only one batch is read ahead.
+    assertTrue(read.get() <= 30);
+  }
+
+  @Test
+  public void testConsumerErrorStopsTheReading() throws InterruptedException {
+    try {
+      new CursorPrefetcher<>(results(1000), 10, executor).forEachBatch(batch -> {
+        throw new IllegalStateException("Processing failed");
+      });
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("Processing failed", e.getMessage());
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    // The batch given to the consumer and at most the next one.
+    assertTrue(read.get() <= 20);
+  }
+
+  @Test
+  public void testReadErrorIsThrownToTheCaller() {
+    Iterable<Integer> failing = () -> new Iterator<Integer>() {
+      @Override
+      public boolean hasNext() {
+        return true;
+      }
+
+      @Override
+      public Integer next() {
+        if (read.get() == 3) {
+          throw new IllegalStateException("Cursor not found");
+        }
+        return read.getAndIncrement();
+      }
+    };
+    List<Integer> consumed = new ArrayList<>();
+    try {
+      new CursorPrefetcher<>(failing, 2, executor).forEachBatch(consumed::addAll);
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("Cursor not found", e.getMessage());
+    }
+    assertEquals(Arrays.asList(0, 1), consumed);
+  }
+
+  @Test(expected = MongoPipeConfigException.class)
+  public void testBatchSizeMustBePositive() {
+    new CursorPrefetcher<>(results(1), 0, executor);
+  }
+}
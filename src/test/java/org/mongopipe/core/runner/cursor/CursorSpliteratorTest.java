@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.cursor;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.ServerCursor;
+import com.mongodb.client.MongoCursor;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CursorSpliteratorTest {
+
+  private static class ListCursor implements MongoCursor<Integer> {
+    private final Iterator<Integer> iterator;
+    private volatile boolean closed;
+
+    ListCursor(int size) {
+      iterator = IntStream.range(0, size).boxed().iterator();
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (closed) {
+        throw new IllegalStateException("Cursor has been closed");
+      }
+      return iterator.hasNext();
+    }
+
+    @Override
+    public Integer next() {
+      if (closed) {
+        throw new IllegalStateException("Cursor has been closed");
+      }
+      return iterator.next();
+    }
+
+    @Override
+    public int available() {
+      return 0;
+    }
+
+    @Override
+    public Integer tryNext() {
+      return hasNext() ? next() : null;
+    }
+
+    @Override
+    public ServerCursor getServerCursor() {
+      return null;
+    }
+
+    @Override
+    public ServerAddress getServerAddress() {
+      return null;
+    }
+  }
+
+  private static Stream<Integer> stream(ListCursor cursor, int splitSize) {
+    CursorSpliterator<Integer> spliterator = new CursorSpliterator<>(cursor, splitSize, "pizzas");
+    return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+  }
+
+  @Test
+  public void testSplitsTakeBatchesFromTheCursor() {
+    ListCursor cursor = new ListCursor(5);
+    CursorSpliterator<Integer> spliterator = new CursorSpliterator<>(cursor, 2, "pizzas");
+
+    Spliterator<Integer> first = spliterator.trySplit();
+    assertEquals(2, first.estimateSize());
+    assertTrue(first.hasCharacteristics(Spliterator.SIZED));
+    assertEquals(2, spliterator.trySplit().estimateSize());
+    assertEquals(1, spliterator.trySplit().estimateSize());
+    // The cursor is closed once exhausted.
+    assertTrue(cursor.closed);
+    assertNull(spliterator.trySplit());
+  }
+
+  @Test
+  public void testParallelStreamReadsAllDocumentsInOrder() {
+    ListCursor cursor = new ListCursor(10_000);
+    List<Integer> results;
+    try (Stream<Integer> stream = stream(cursor, 100)) {
+      results = stream.parallel().map(i -> i * 2).collect(Collectors.toList());
+    }
+    assertEquals(IntStream.range(0, 10_000).map(i -> i * 2).boxed().collect(Collectors.toList()), results);
+    assertTrue(cursor.closed);
+  }
+
+  @Test
+  public void testClosingTheStreamClosesTheCursor() {
+    ListCursor cursor = new ListCursor(10);
+    try (Stream<Integer> stream = stream(cursor, 2)) {
+      assertEquals(Optional.of(0), stream.findFirst());
+      assertFalse(cursor.closed);
+    }
+    assertTrue(cursor.closed);
+  }
+
+  @Test
+  public void testAbandonedStreamCursorIsClosed() throws InterruptedException {
+    ListCursor cursor = new ListCursor(10);
+    long leaks = CursorSpliterator.getLeakCount();
+    assertEquals(Optional.of(0), stream(cursor, 2).findFirst());
+
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (!cursor.closed && System.currentTimeMillis() < deadline) {
+      System.gc();
+      Thread.sleep(50);
+    }
+    assertTrue(cursor.closed);
+    assertEquals(leaks + 1, CursorSpliterator.getLeakCount());
+  }
+}
@@ -17,13 +17,16 @@
 package org.mongopipe.core.runner.evaluation;
 
 import static org.junit.Assert.assertEquals;
+import static org.mongopipe.core.util.BsonUtil.toBsonList;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import org.bson.BsonDocument;
 import org.junit.Test;
+import org.mongopipe.core.util.Maps;
 
 public class BsonParameterEvaluatorTest {
 
@@ -70,4 +73,16 @@ public class BsonParameterEvaluatorTest {
     //            .filter((s) -> !s.trim().isEmpty())
     //            .collect(Collectors.toList()));
   }
+
+  @Test
+  public void testEvaluationDoesNotChangeThePipeline() {
+    List<BsonDocument> pipeline = toBsonList("[{$match: {size: \"${pizzaSize}\"}}]");
+
+    List<BsonDocument> medium = new BsonParameterEvaluator(Maps.of("pizzaSize", "medium")).evaluate(pipeline);
+    List<BsonDocument> large = new BsonParameterEvaluator(Maps.of("pizzaSize", "large")).evaluate(pipeline);
+
+    assertEquals("medium", medium.get(0).getDocument("$match").getString("size").getValue());
+    assertEquals("large", large.get(0).getDocument("$match").getString("size").getValue());
+    assertEquals("${pizzaSize}", pipeline.get(0).getDocument("$match").getString("size").getValue());
+  }
 }
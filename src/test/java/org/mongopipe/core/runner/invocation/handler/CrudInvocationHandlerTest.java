@@ -19,17 +19,31 @@ package org.mongopipe.core.runner.invocation.handler;
 import static org.mongopipe.core.util.BsonUtil.loadResourceIntoDocumentList;
 
 import org.junit.Test;
+import org.mongopipe.core.Pipelines;
 import org.mongopipe.core.Stores;
 import org.mongopipe.core.annotation.Item;
 import org.mongopipe.core.annotation.Store;
+import org.mongopipe.core.model.Pipeline;
 import org.mongopipe.core.model.Pizza;
+import org.mongopipe.core.runner.PipelineRunner;
+import org.mongopipe.core.runner.command.param.AggregateParams;
 import org.mongopipe.core.util.AbstractMongoDBTest;
+import org.mongopipe.core.util.Maps;
+
+import java.util.concurrent.CompletableFuture;
 
 public class CrudInvocationHandlerTest extends AbstractMongoDBTest {
 
   @Store(items = {@Item(type = Pizza.class, collection = "pizzas")})
   public interface MyCrudRestaurant {
     Pizza findById(Integer pizzaId);
+
+    void deleteById(Integer pizzaId);
+  }
+
+  @Store(items = {@Item(type = Pizza.class, collection = "pizzas")})
+  public interface MyAsyncCrudRestaurant {
+    CompletableFuture<Pizza> findById(Integer pizzaId);
   }
 
   @Test
@@ -41,6 +55,32 @@ public class CrudInvocationHandlerTest extends AbstractMongoDBTest {
     assertEquals("Pepperoni", pizza.getName());
   }
 
+  @Test
+  public void testAsyncMethodResultIsMapped() {
+    db.getCollection("pizzas").insertMany(loadResourceIntoDocumentList("runner/pipelineRun/data.bson"));
+
+    Pizza pizza = Stores.from(MyAsyncCrudRestaurant.class).findById(1).join();
+
+    assertEquals("Pepperoni", pizza.getName());
+  }
+
+  @Test
+  public void testWriteInvalidatesTheCachedResultsReadingTheCollection() {
+    db.getCollection("pizzas").insertMany(loadResourceIntoDocumentList("runner/pipelineRun/data.bson"));
+    Stores.getPipelineStore().create(Pipeline.builder()
+        .id("cachedPizzasByName")
+        .pipeline("[{ $match: { name: \"${name}\" } }]")
+        .collection("pizzas")
+        .commandOptions(AggregateParams.builder().cacheResults(true).build())
+        .build());
+    PipelineRunner runner = Pipelines.getRunner();
+    assertEquals(3, runner.runAndList("cachedPizzasByName", Pizza.class, Maps.of("name", "Cheese")).size());
+
+    Stores.from(MyCrudRestaurant.class).deleteById(3);
+
+    assertEquals(2, runner.runAndList("cachedPizzasByName", Pizza.class, Maps.of("name", "Cheese")).size());
+  }
+
   //  @Store(
   //      // defaultItem = Pizza.class,  No need for default item as it is
   // extending CrudStore.
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.local;
+
+import org.bson.BsonDocument;
+import org.junit.Test;
+import org.mongopipe.core.exception.MongoPipeRunException;
+import org.mongopipe.core.model.Pipeline;
+import org.mongopipe.core.model.Pizza;
+import org.mongopipe.core.util.BsonUtil;
+import org.mongopipe.core.util.Maps;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mongopipe.core.util.BsonUtil.loadResourceIntoBsonDocumentList;
+
+public class LocalPipelineRunnerTest {
+  private final LocalPipelineRunner runner = new LocalPipelineRunner();
+  private final List<BsonDocument> pizzas = loadResourceIntoBsonDocumentList("runner/pipelineRun/data.bson");
+
+  private static Pipeline pipeline(String stages) {
+    return Pipeline.builder().id("localPipeline").collection("pizzaCollection").pipeline(stages).build();
+  }
+
+  private static List<String> toJson(List<BsonDocument> documents) {
+    return documents.stream().map(BsonDocument::toJson).collect(Collectors.toList());
+  }
+
+  @Test
+  public void testGroupWithAccumulators() {
+    Pipeline pipeline = pipeline("[{ $match: { size: { $in: ['small', 'medium'] } } }, "
+        + "{ $group: { _id: '$size', quantity: { $sum: '$quantity' }, maxPrice: { $max: '$price' }, names: { $push: '$name' }, "
+        + "count: { $count: {} }, averageQuantity: { $avg: '$quantity' } } }, { $sort: { quantity: -1 } }]");
+
+    List<BsonDocument> results = runner.run(pipeline, Collections.emptyMap(), pizzas);
+
+    assertEquals(Arrays.asList(
+        "{\"_id\": \"medium\", \"quantity\": 80, \"maxPrice\": 20, \"names\": [\"Pepperoni\", \"Cheese\", \"Vegan\"], \"count\": 3, "
+            + "\"averageQuantity\": 26.666666666666668}",
+        "{\"_id\": \"small\", \"quantity\": 35, \"maxPrice\": 19, \"names\": [\"Pepperoni\", \"Cheese\", \"Vegan\"], \"count\": 3, "
+            + "\"averageQuantity\": 11.666666666666666}"),
+        toJson(results));
+  }
+
+  @Test
+  public void testPerDocumentStagesReadTheDocumentsLazily() {
+    List<BsonDocument> stages = BsonUtil.toBsonList("[{ $match: { size: 'medium' } }, { $unwind: '$toppings' }, { $project: { name: 1 } }]");
+    List<BsonDocument> documents = BsonUtil.toBsonList("[{ _id: 1, name: 'Cheese', size: 'small', toppings: ['mozzarella'] }, "
+        + "{ _id: 2, name: 'Vegan', size: 'medium', toppings: ['tomato', 'basil'] }, { _id: 3, name: 'Tuna', size: 'medium' }]");
+    Iterator<BsonDocument> source = documents.iterator();
+    AtomicInteger read = new AtomicInteger();
+    Iterator<BsonDocument> counted = new Iterator<BsonDocument>() {
+      @Override
+      public boolean hasNext() {
+        return source.hasNext();
+      }
+
+      @Override
+      public BsonDocument next() {
+        read.incrementAndGet();
+        return source.next();
+      }
+    };
+
+    Iterator<BsonDocument> results = LocalAggregation.runPerDocument(stages, counted, null);
+
+    assertEquals("{\"_id\": 2, \"name\": \"Vegan\"}", results.next().toJson());
+    assertEquals(2, read.get());
+    assertEquals("{\"_id\": 2, \"name\": \"Vegan\"}", results.next().toJson());
+    assertEquals(2, read.get());
+    assertFalse(results.hasNext());
+    assertEquals(3, read.get());
+    assertFalse(LocalAggregation.isPerDocument(BsonUtil.toBsonList("[{ $match: { size: 'medium' } }, { $sort: { name: 1 } }]")));
+  }
+
+  @Test
+  public void testParametersAreBoundAndResultsConverted() {
+    Pipeline pipeline = pipeline("[{ $match: { name: '${name}', price: { $lt: '${maxPrice}' } } }, "
+        + "{ $addFields: { price: { $multiply: ['$price', 2] } } }, "
+        + "{ $project: { name: { $concat: ['$name', ' ', { $toUpper: '$size' }] }, price: 1, date: 1 } }, "
+        + "{ $sort: { price: -1 } }, { $skip: 1 }, { $limit: 1 }]");
+
+    List<Pizza> results = runner.run(pipeline, Maps.of("name", "Cheese", "maxPrice", 14), pizzas, Pizza.class);
+
+    assertEquals(1, results.size());
+    assertEquals(Long.valueOf(3), results.get(0).getId());
+    assertEquals("Cheese SMALL", results.get(0).getName());
+    assertEquals(24f, results.get(0).getPrice(), 0);
+  }
+
+  @Test
+  public void testUnwindAndCount() {
+    List<BsonDocument> orders = BsonUtil.toBsonList("[{ _id: 1, items: ['a', 'b'] }, { _id: 2, items: [] }, { _id: 3 }, "
+        + "{ _id: 4, items: 'c' }]");
+
+    assertEquals(Arrays.asList("{\"_id\": 1, \"items\": \"a\", \"index\": 0}", "{\"_id\": 1, \"items\": \"b\", \"index\": 1}",
+        "{\"_id\": 2, \"index\": null}", "{\"_id\": 3, \"index\": null}", "{\"_id\": 4, \"items\": \"c\", \"index\": null}"),
+        toJson(runner.run(pipeline("[{ $unwind: { path: '$items', includeArrayIndex: 'index', preserveNullAndEmptyArrays: true } }]"),
+            null, orders)));
+    assertEquals(Collections.singletonList("{\"items\": 3}"),
+        toJson(runner.run(pipeline("[{ $unwind: '$items' }, { $count: 'items' }]"), null, orders)));
+    assertTrue(runner.run(pipeline("[{ $match: { _id: 5 } }, { $count: 'items' }]"), null, orders).isEmpty());
+  }
+
+  @Test
+  public void testExpressionFilter() {
+    Pipeline pipeline = pipeline("[{ $match: { $expr: { $gt: [{ $multiply: ['$price', '$quantity'] }, 500] } } }, "
+        + "{ $project: { _id: 1 } }]");
+
+    assertEquals(Arrays.asList("{\"_id\": 2}", "{\"_id\": 4}"), toJson(runner.run(pipeline, null, pizzas)));
+  }
+
+  @Test
+  public void testUnsupportedStagesAreRejected() {
+    Pipeline pipeline = pipeline("[{ $lookup: { from: 'orders', localField: '_id', foreignField: 'pizzaId', as: 'orders' } }]");
+
+    assertFalse(runner.isSupported(pipeline, null));
+    try {
+      runner.run(pipeline, null, pizzas);
+      fail();
+    } catch (MongoPipeRunException e) {
+      assertTrue(e.getMessage().contains("$lookup"));
+    }
+  }
+}
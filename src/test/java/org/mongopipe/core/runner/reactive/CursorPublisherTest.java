@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.reactive;
+
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CursorPublisherTest {
+
+  private static class TestSubscriber implements Subscriber<Integer> {
+    List<Integer> items = new ArrayList<>();
+    Subscription subscription;
+    Throwable error;
+    boolean completed;
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(Integer item) {
+      items.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      error = throwable;
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+    }
+  }
+
+  @Test
+  public void testEmitsOnlyRequestedElements() {
+    CursorPublisher<Integer> publisher = new CursorPublisher<>(Arrays.asList(1, 2, 3, 4, 5), Runnable::run);
+    TestSubscriber subscriber = new TestSubscriber();
+    publisher.subscribe(subscriber);
+    assertTrue(subscriber.items.isEmpty());
+
+    subscriber.subscription.request(2);
+    assertEquals(Arrays.asList(1, 2), subscriber.items);
+    assertFalse(subscriber.completed);
+
+    subscriber.subscription.request(10);
+    assertEquals(Arrays.asList(1, 2, 3, 4, 5), subscriber.items);
+    assertTrue(subscriber.completed);
+  }
+
+  @Test
+  public void testCancelStopsEmitting() {
+    CursorPublisher<Integer> publisher = new CursorPublisher<>(Arrays.asList(1, 2, 3), Runnable::run);
+    TestSubscriber subscriber = new TestSubscriber();
+    publisher.subscribe(subscriber);
+
+    subscriber.subscription.request(1);
+    subscriber.subscription.cancel();
+    subscriber.subscription.request(1);
+
+    assertEquals(Collections.singletonList(1), subscriber.items);
+    assertFalse(subscriber.completed);
+  }
+
+  @Test
+  public void testNonPositiveRequestSignalsError() {
+    CursorPublisher<Integer> publisher = new CursorPublisher<>(Arrays.asList(1, 2, 3), Runnable::run);
+    TestSubscriber subscriber = new TestSubscriber();
+    publisher.subscribe(subscriber);
+
+    subscriber.subscription.request(0);
+
+    assertTrue(subscriber.error instanceof IllegalArgumentException);
+    assertTrue(subscriber.items.isEmpty());
+  }
+
+  @Test
+  public void testOnNextFailureCancelsTheSubscription() {
+    CursorPublisher<Integer> publisher = new CursorPublisher<>(Arrays.asList(1, 2, 3), Runnable::run);
+    TestSubscriber subscriber = new TestSubscriber() {
+      @Override
+      public void onNext(Integer item) {
+        super.onNext(item);
+        if (item == 2) {
+          throw new IllegalStateException("Subscriber failed");
+        }
+      }
+    };
+    publisher.subscribe(subscriber);
+
+    subscriber.subscription.request(3);
+    subscriber.subscription.request(1);
+
+    assertEquals(Arrays.asList(1, 2), subscriber.items);
+    // Not signaled back to the failed subscriber.
+    assertNull(subscriber.error);
+    assertFalse(subscriber.completed);
+  }
+
+  @Test
+  public void testEachSubscriptionGetsItsOwnCursor() {
+    AtomicInteger opened = new AtomicInteger();
+    CursorPublisher<Integer> publisher = new CursorPublisher<>(() -> {
+      opened.incrementAndGet();
+      return Arrays.asList(1, 2);
+    }, Runnable::run, true);
+    TestSubscriber first = new TestSubscriber();
+    TestSubscriber second = new TestSubscriber();
+    publisher.subscribe(first);
+    publisher.subscribe(second);
+
+    first.subscription.request(2);
+    second.subscription.request(2);
+
+    assertEquals(2, opened.get());
+    assertEquals(Arrays.asList(1, 2), first.items);
+    assertEquals(Arrays.asList(1, 2), second.items);
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.replication;
+
+import com.mongodb.client.MongoIterable;
+import org.bson.Document;
+import org.junit.Test;
+import org.mongopipe.core.Pipelines;
+import org.mongopipe.core.Stores;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.mongopipe.core.config.ReplicationConfig;
+import org.mongopipe.core.model.Pipeline;
+import org.mongopipe.core.runner.PipelineRunner;
+import org.mongopipe.core.util.AbstractMongoDBTest;
+import org.mongopipe.core.util.Maps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.mongopipe.core.util.BsonUtil.loadResourceIntoDocumentList;
+
+public class ReplicatedCollectionsTest extends AbstractMongoDBTest {
+
+  @Override
+  protected void beforeEach() {
+    Stores.registerConfig(MongoPipeConfig.builder()
+        .uri("mongodb://localhost:" + PORT)
+        .databaseName("test")
+        .replicationConfig(ReplicationConfig.builder().collections("pizzaSizes").maxDocuments(3).build())
+        .build());
+    db.getCollection("pizzaCollection").insertMany(loadResourceIntoDocumentList("runner/pipelineRun/data.bson"));
+    db.getCollection("pizzaSizes").insertMany(Arrays.asList(
+        new Document("_id", "small").append("diameter", 25),
+        new Document("_id", "medium").append("diameter", 30),
+        new Document("_id", "large").append("diameter", 35)));
+    Stores.getPipelineStore().create(Pipeline.builder()
+        .id("pizzasWithDiameter")
+        .pipeline("[{ $match: { name: \"${name}\" } }, "
+            + "{ $lookup: { from: \"pizzaSizes\", localField: \"size\", foreignField: \"_id\", as: \"sizes\" } }, "
+            + "{ $unwind: \"$sizes\" }, { $project: { name: 1, diameter: \"$sizes.diameter\" } }]")
+        .collection("pizzaCollection")
+        .build());
+  }
+
+  // Sorted, the per document join keeps the database order.
+  private static List<Integer> getDiameters(List<Document> pizzas) {
+    return pizzas.stream().map(pizza -> pizza.getInteger("diameter")).sorted().collect(Collectors.toList());
+  }
+
+  @Test
+  public void testLookupIsJoinedWithTheReplicatedCollection() {
+    // Given
+    PipelineRunner runner = Pipelines.getRunner();
+    ReplicatedCollections replicatedCollections = runner.getRunContext().getReplicatedCollections();
+    assertEquals(Arrays.asList(25, 30, 35), getDiameters(runner.runAndList("pizzasWithDiameter", Maps.of("name", "Cheese"))));
+
+    // When
+    // Written by another process, seen only after the refresh interval.
+    db.getCollection("pizzaSizes").updateOne(new Document("_id", "small"), new Document("$set", new Document("diameter", 20)));
+
+    // Then
+    assertEquals(Arrays.asList(25, 30), getDiameters(runner.runAndList("pizzasWithDiameter", Maps.of("name", "Vegan"))));
+    assertEquals(1, replicatedCollections.getLoadCount());
+    replicatedCollections.markStale("pizzaSizes");
+    assertEquals(Arrays.asList(20, 30), getDiameters(runner.runAndList("pizzasWithDiameter", Maps.of("name", "Vegan"))));
+    assertEquals(2, replicatedCollections.getLoadCount());
+  }
+
+  @Test
+  public void testPerDocumentJoinIsStreamedOverTheCursor() {
+    // Given
+    Stores.getPipelineStore().create(Pipeline.builder()
+        .id("pizzasWithSize")
+        .pipeline("[{ $match: { name: \"${name}\" } }, "
+            + "{ $lookup: { from: \"pizzaSizes\", localField: \"size\", foreignField: \"_id\", as: \"sizes\" } }, "
+            + "{ $unwind: \"$sizes\" }, { $project: { name: 1, diameter: \"$sizes.diameter\" } }]")
+        .collection("pizzaCollection")
+        .build());
+    PipelineRunner runner = Pipelines.getRunner();
+
+    // When
+    Iterable<Document> pizzas = runner.run("pizzasWithSize", Document.class, Iterable.class, Maps.of("name", "Cheese"));
+
+    // Then
+    assertTrue(pizzas instanceof MongoIterable);
+    List<Document> results = new ArrayList<>();
+    pizzas.forEach(results::add);
+    assertEquals(Arrays.asList(25, 30, 35), getDiameters(results));
+    assertTrue(runner.getRunContext().getReplicatedCollections().isReplicated("pizzaSizes"));
+  }
+
+  @Test
+  public void testBlockingStagesAfterTheLookupRunOnTheDatabase() {
+    // Given
+    Stores.getPipelineStore().create(Pipeline.builder()
+        .id("largestCheesePizza")
+        .pipeline("[{ $match: { name: \"Cheese\" } }, "
+            + "{ $lookup: { from: \"pizzaSizes\", localField: \"size\", foreignField: \"_id\", as: \"sizes\" } }, "
+            + "{ $unwind: \"$sizes\" }, { $project: { name: 1, diameter: \"$sizes.diameter\" } }, { $sort: { diameter: -1 } }, "
+            + "{ $limit: 1 }]")
+        .collection("pizzaCollection")
+        .build());
+    PipelineRunner runner = Pipelines.getRunner();
+
+    // When
+    List<Document> pizzas = runner.runAndList("largestCheesePizza", Collections.emptyMap());
+
+    // Then
+    assertEquals(Collections.singletonList(35), getDiameters(pizzas));
+    // Not loaded, the whole pipeline ran on the database.
+    assertEquals(0, runner.getRunContext().getReplicatedCollections().getLoadCount());
+  }
+
+  @Test
+  public void testLargeCollectionIsJoinedOnTheDatabase() {
+    // Given
+    db.getCollection("pizzaSizes").insertOne(new Document("_id", "family").append("diameter", 45));
+    PipelineRunner runner = Pipelines.getRunner();
+
+    // When
+    List<Document> pizzas = runner.runAndList("pizzasWithDiameter", Maps.of("name", "Cheese"));
+
+    // Then
+    assertEquals(Arrays.asList(25, 30, 35), getDiameters(pizzas));
+    assertFalse(runner.getRunContext().getReplicatedCollections().isReplicated("pizzaSizes"));
+  }
+}
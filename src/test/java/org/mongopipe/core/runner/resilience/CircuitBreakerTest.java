@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.runner.resilience;
+
+import com.mongodb.MongoException;
+import com.mongodb.MongoTimeoutException;
+import org.junit.Test;
+import org.mongopipe.core.config.CircuitBreakerConfig;
+import org.mongopipe.core.exception.CircuitOpenException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CircuitBreakerTest {
+
+  private static void callFailing(CircuitBreaker circuitBreaker) {
+    try {
+      circuitBreaker.call("failing", () -> {
+        throw new MongoTimeoutException("No server available");
+      });
+      fail();
+    } catch (MongoTimeoutException e) {
+      assertEquals("No server available", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testOpensOnFailureRateAndClosesAfterASuccessfulProbe() throws InterruptedException {
+    CircuitBreaker circuitBreaker = new CircuitBreaker(CircuitBreakerConfig.builder()
+        .windowSize(4)
+        .minimumCalls(4)
+        .failureRateThreshold(0.5)
+        .openDurationMs(100)
+        .build());
+
+    circuitBreaker.call("ok", () -> 1);
+    circuitBreaker.call("ok", () -> 1);
+    callFailing(circuitBreaker);
+    assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    callFailing(circuitBreaker);
+    assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    try {
+      circuitBreaker.call("rejected", () -> 1);
+      fail();
+    } catch (CircuitOpenException e) {
+      assertTrue(circuitBreaker.isOpen());
+    }
+
+    Thread.sleep(150);
+    // A single probe goes through.
+    assertTrue(circuitBreaker.tryAcquire());
+    assertFalse(circuitBreaker.tryAcquire());
+    circuitBreaker.record(false);
+    assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    assertEquals(Integer.valueOf(1), circuitBreaker.call("ok", () -> 1));
+  }
+
+  @Test
+  public void testSlowCallsCountAsFailedAndAFailedProbeOpensAgain() throws InterruptedException {
+    CircuitBreaker circuitBreaker = new CircuitBreaker(CircuitBreakerConfig.builder()
+        .minimumCalls(2)
+        .failureRateThreshold(1)
+        .slowCallDurationMs(20)
+        .openDurationMs(50)
+        .build());
+    for (int i = 0; i < 2; i++) {
+      circuitBreaker.call("slow", () -> {
+        try {
+          Thread.sleep(30);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return 1;
+      });
+    }
+    assertTrue(circuitBreaker.isOpen());
+
+    Thread.sleep(100);
+    callFailing(circuitBreaker);
+    assertTrue(circuitBreaker.isOpen());
+  }
+
+  @Test
+  public void testNonDatabaseErrorReleasesTheProbe() throws InterruptedException {
+    CircuitBreaker circuitBreaker = new CircuitBreaker(CircuitBreakerConfig.builder()
+        .minimumCalls(1)
+        .openDurationMs(50)
+        .build());
+    callFailing(circuitBreaker);
+    Thread.sleep(100);
+
+    try {
+      circuitBreaker.call("mapping", () -> {
+        throw new IllegalStateException("Can not decode");
+      });
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals("Can not decode", e.getMessage());
+    }
+
+    // Not closed by the failed mapping, the next call probes again.
+    assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+    assertTrue(circuitBreaker.tryAcquire());
+    assertFalse(circuitBreaker.tryAcquire());
+  }
+
+  @Test
+  public void testCallErrorsDoNotOpenTheCircuit() {
+    CircuitBreaker circuitBreaker = new CircuitBreaker(CircuitBreakerConfig.builder()
+        .minimumCalls(1)
+        .build());
+
+    try {
+      circuitBreaker.call("invalid", () -> {
+        throw new MongoException(40324, "Unrecognized pipeline stage name");
+      });
+      fail();
+    } catch (MongoException e) {
+      assertEquals(40324, e.getCode());
+    }
+
+    assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    callFailing(circuitBreaker);
+    assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+  }
+}
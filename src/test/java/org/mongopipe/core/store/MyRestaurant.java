@@ -17,11 +17,15 @@
 package org.mongopipe.core.store;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import org.bson.Document;
+import org.mongopipe.core.annotation.Batchable;
 import org.mongopipe.core.annotation.Param;
 import org.mongopipe.core.annotation.PipelineRun;
 import org.mongopipe.core.annotation.Store;
 import org.mongopipe.core.model.Pizza;
+import org.mongopipe.core.runner.command.BatchUpdateResult;
+import org.reactivestreams.Publisher;
 
 @Store
 public interface MyRestaurant {
@@ -31,12 +35,31 @@ public interface MyRestaurant {
 
   List<Pizza> matchingPizzasBySize(@Param("pizzaSize") String pizzaSize);
 
+  @PipelineRun("matchingPizzasBySize")
+  CompletableFuture<List<Pizza>> matchingPizzasBySizeAsync(@Param("pizzaSize") String pizzaSize);
+
+  @PipelineRun(value = "matchingPizzasBySize", cacheResults = true)
+  CompletableFuture<List<Pizza>> cachedMatchingPizzasBySizeAsync(@Param("pizzaSize") String pizzaSize);
+
+  @PipelineRun("matchingPizzasBySize")
+  Publisher<Pizza> publishMatchingPizzasBySize(@Param("pizzaSize") String pizzaSize);
+
+  @PipelineRun("pizzasByName")
+  @Batchable(value = "name", resultKey = "name")
+  CompletableFuture<List<Pizza>> findPizzasByName(@Param("name") String name);
+
   @PipelineRun("matchingPizzasByPrice")
   List<Pizza> getMatchingPizzasByPrice(Double price);
 
   @PipelineRun("updateOneMatchingPizza")
   Long updateOnePizzaByPizzaPrice(@Param("pizzaPrice") Integer pizzaPrice);
 
+  @PipelineRun("updateOneMatchingPizza")
+  BatchUpdateResult updateOnePizzaByEachPizzaPrice(List<Integer> pizzaPrices);
+
+  @PipelineRun(value = "updateOneMatchingPizza", microBatch = true)
+  CompletableFuture<Void> updateOnePizzaByPizzaPriceInMicroBatch(@Param("pizzaPrice") Integer pizzaPrice);
+
   @PipelineRun("findOnePizzaAndUpdate")
   Document findOneAndUpdate(@Param("pizzaPrice") Integer pizzaPrice);
 }
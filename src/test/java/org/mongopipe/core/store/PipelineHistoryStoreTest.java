@@ -18,6 +18,7 @@ package org.mongopipe.core.store;
 
 import static org.mongopipe.core.util.BsonUtil.loadResourceIntoPojo;
 
+import org.bson.Document;
 import org.junit.Test;
 import org.mongopipe.core.Stores;
 import org.mongopipe.core.config.MongoPipeConfig;
@@ -38,22 +39,50 @@ public class PipelineHistoryStoreTest extends AbstractMongoDBTest {
     // When
     pipeline.setDescription(newDescription);
     Stores.getPipelineStore().update(pipeline);
+    Stores.getPipelineStore().flushHistory();
 
     // Then
     PipelineHistoryStore historyStore = Stores.from(PipelineHistoryStore.class);
     assertEquals(Long.valueOf(1L), historyStore.count());
-    // List<Pipeline> oldPipelines =
-    // StreamSupport.stream(historyStore.findAll().spliterator(),
-    // false).collect(Collectors.toList());
-    Pipeline oldPipeline = historyStore.findById(pipeline.getId());
+    Pipeline oldPipeline = historyStore.findVersion(pipeline.getId(), 1L).get();
     assertEquals(Long.valueOf(1), oldPipeline.getVersion());
     assertEquals(oldDescription, oldPipeline.getDescription());
 
-    // Check after delete also.
+    // Check after delete also, the previous version is kept.
     Stores.getPipelineStore().delete(pipeline);
-    assertEquals(Long.valueOf(1L), historyStore.count());
-    oldPipeline = historyStore.findById(pipeline.getId());
+    Stores.getPipelineStore().flushHistory();
+    assertEquals(Long.valueOf(2L), historyStore.count());
+    oldPipeline = historyStore.findVersion(pipeline.getId(), 2L).get();
     assertEquals(Long.valueOf(2), oldPipeline.getVersion());
     assertEquals(newDescription, oldPipeline.getDescription());
   }
+
+  @Test
+  public void testHistoryRetention() {
+    // Given
+    Stores.registerConfig(MongoPipeConfig.builder().uri("mongodb://localhost:" + PORT).databaseName("test").storeHistoryEnabled(true)
+        .storeHistoryMaxVersions(2).storeHistoryTtlSeconds(3600).build());
+    Pipeline pipeline = loadResourceIntoPojo("runner/pipelineRun/matchingPizzasBySize.pipeline.bson", Pipeline.class);
+    PipelineStore pipelineStore = Stores.getPipelineStore();
+    pipelineStore.create(pipeline);
+
+    // When
+    for (int i = 0; i < 4; i++) {
+      pipeline.setDescription("Description " + i);
+      pipelineStore.update(pipeline);
+    }
+    pipelineStore.flushHistory();
+
+    // Then
+    PipelineHistoryStore historyStore = Stores.from(PipelineHistoryStore.class);
+    assertEquals(Long.valueOf(2L), historyStore.count());
+    assertFalse(historyStore.findVersion(pipeline.getId(), 2L).isPresent());
+    assertTrue(historyStore.findVersion(pipeline.getId(), 3L).isPresent());
+    assertTrue(historyStore.findVersion(pipeline.getId(), 4L).isPresent());
+    boolean ttlIndexFound = false;
+    for (Document index : db.getCollection(MongoPipeConfig.DEFAULT_HISTORY_COLLECTION).listIndexes()) {
+      ttlIndexFound |= index.get("expireAfterSeconds") != null;
+    }
+    assertTrue(ttlIndexFound);
+  }
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.util;
+
+import org.junit.Test;
+import org.mongopipe.core.model.Pipeline;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.mongopipe.core.util.BsonUtil.loadResourceIntoPojo;
+import static org.mongopipe.core.util.MigrationUtil.getChecksum;
+
+public class MigrationUtilTest {
+
+  @Test
+  public void testChecksumIgnoresStoreManagedFields() {
+    Pipeline pipeline = loadResourceIntoPojo("command/aggregate/pipeline.bson", Pipeline.class);
+    String checksum = getChecksum(pipeline);
+
+    Pipeline saved = loadResourceIntoPojo("command/aggregate/pipeline.bson", Pipeline.class);
+    saved.setVersion(3L);
+    saved.setCreatedAt(LocalDateTime.now());
+    saved.setUpdatedAt(LocalDateTime.now());
+    saved.setPipelineAsString(BsonUtil.toString(saved.getPipeline()));
+
+    assertEquals(checksum, getChecksum(saved));
+  }
+
+  @Test
+  public void testCachedChecksumIsInvalidatedOnContentChange() {
+    Pipeline pipeline = loadResourceIntoPojo("command/aggregate/pipeline.bson", Pipeline.class);
+    String checksum = getChecksum(pipeline);
+    assertEquals(checksum, getChecksum(pipeline));
+
+    pipeline.setDescription("changed");
+    assertNotEquals(checksum, getChecksum(pipeline));
+    // The cache is not persisted along with the pipeline.
+    assertFalse(BsonUtil.toBsonDocument(pipeline).containsKey("checksumCache"));
+  }
+
+  @Test
+  public void testChecksumIsThreadSafe() {
+    Pipeline pipeline = loadResourceIntoPojo("command/aggregate/pipeline.bson", Pipeline.class);
+    String checksum = MigrationUtil.computeChecksum(pipeline);
+
+    List<String> checksums = IntStream.range(0, 1000).parallel()
+        .mapToObj(i -> MigrationUtil.computeChecksum(pipeline))
+        .collect(Collectors.toList());
+
+    checksums.forEach(parallelChecksum -> assertEquals(checksum, parallelChecksum));
+  }
+}
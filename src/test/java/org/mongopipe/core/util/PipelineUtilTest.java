@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mongopipe.core.util;
+
+import org.junit.Test;
+import org.mongopipe.core.model.Pipeline;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import static org.junit.Assert.assertEquals;
+
+public class PipelineUtilTest {
+
+  @Test
+  public void testReadCollectionsIncludeTheNestedSources() {
+    Pipeline pipeline = Pipeline.builder()
+        .id("ordersReport")
+        .collection("orders")
+        .pipeline("[{ $lookup: { from: \"pizzas\", localField: \"pizzaId\", foreignField: \"_id\", as: \"pizza\" } },"
+            + " { $unionWith: { coll: \"archivedOrders\", pipeline: [{ $lookup: { from: \"customers\", pipeline: [], as: \"c\" } }] } },"
+            + " { $unionWith: \"returns\" },"
+            + " { $facet: { byShop: [{ $graphLookup: { from: \"shops\", startWith: \"$shopId\", connectFromField: \"parent\","
+            + " connectToField: \"_id\", as: \"shops\" } }] } }]")
+        .build();
+
+    assertEquals(new LinkedHashSet<>(Arrays.asList("orders", "pizzas", "archivedOrders", "customers", "returns", "shops")),
+        PipelineUtil.getReadCollections(pipeline));
+  }
+
+  @Test
+  public void testParameterizedSourceReadsAnyCollection() {
+    Pipeline pipeline = Pipeline.builder()
+        .id("lookupFromParameter")
+        .collection("orders")
+        .pipeline("[{ $lookup: { from: \"${source}\", localField: \"a\", foreignField: \"b\", as: \"c\" } }]")
+        .build();
+
+    assertEquals(new LinkedHashSet<>(Arrays.asList("orders", PipelineUtil.ANY_COLLECTION)), PipelineUtil.getReadCollections(pipeline));
+  }
+}